@@ -20,6 +20,9 @@
 #
 # script to execute the specified healthcheck module
 #
+# With -worker, the script runs healthcheck modules on request instead, see
+# run_worker below.
+#
 use warnings;
 use strict;
 use Getopt::Long;
@@ -28,7 +31,7 @@ use Bio::EnsEMBL::DBSQL::DBAdaptor;
 use Bio::EnsEMBL::Utils::ScriptUtils qw(inject);
 use Carp;
 
-my ( $host, $user, $pass, $port, $dbname, $species_id, $module );
+my ( $host, $user, $pass, $port, $dbname, $species_id, $module, $worker );
 
 # Allow password to be passed by setting the environment variable 'pass'.
 #
@@ -41,31 +44,26 @@ GetOptions(
 	"port=i",       \$port,
 	"dbname=s",     \$dbname,
 	"species_id=s", \$species_id,
-	"module=s",     \$module
+	"module=s",     \$module,
+	"worker",       \$worker
 );
 
 if (   !defined $host
 	|| !defined $port
 	|| !defined $user
-	|| !defined $module
-	|| !defined $dbname ) {
+	|| ( !$worker && ( !defined $module || !defined $dbname ) ) ) {
 	croak (
-		"Usage: $0 -host host -port port -user user [-pass password] -dbname db [-species_id species_id] -module module"
+		"Usage: $0 -host host -port port -user user [-pass password] -dbname db [-species_id species_id] -module module\n"
+		. "       $0 -host host -port port -user user [-pass password] -worker"
 	);
 }
 
-my %args = (
-	-HOST   => $host,
-	-USER   => $user,
-	-PORT   => $port,
-	-PASS   => $pass,
-	-DBNAME => $dbname
-);
-if ( defined $species_id ) {
-	$args{-SPECIES_ID}      = $species_id;
-	$args{-MULTISPECIES_DB} = 1;
+if ($worker) {
+	run_worker();
+	exit 0;
 }
-my $dba         = new Bio::EnsEMBL::DBSQL::DBAdaptor(%args);
+
+my $dba         = create_dba( $dbname, $species_id );
 inject($module);
 my $healthcheck = $module->new( dba => $dba );
 
@@ -76,3 +74,86 @@ if ($healthcheck_passed) {
 } else {
 	exit 1;
 }
+
+sub create_dba {
+	my ( $dbname, $species_id ) = @_;
+
+	my %args = (
+		-HOST   => $host,
+		-USER   => $user,
+		-PORT   => $port,
+		-PASS   => $pass,
+		-DBNAME => $dbname
+	);
+	if ( defined $species_id ) {
+		$args{-SPECIES_ID}      = $species_id;
+		$args{-MULTISPECIES_DB} = 1;
+	}
+	return new Bio::EnsEMBL::DBSQL::DBAdaptor(%args);
+}
+
+# Runs healthcheck modules read from STDIN until STDIN is closed, so perl,
+# the API and the connection to a database are set up once rather than once
+# per module and species. Used by
+# org.ensembl.healthcheck.testcase.PerlWorkerPool. Each request is one line:
+#
+#   RUN <tab> id <tab> module <tab> dbname <tab> species_id
+#
+# The output of the module goes to STDOUT as it does without -worker, STDERR
+# included, and is followed by
+#
+#   HEALTHCHECK-WORKER:DONE <tab> id <tab> 0 if the module passed, 1 if not
+#
+# A PING line is answered with HEALTHCHECK-WORKER:PONG.
+sub run_worker {
+
+	open( STDERR, '>&', \*STDOUT ) or croak "Can't send STDERR to STDOUT: $!";
+	select(STDERR);
+	$| = 1;
+	select(STDOUT);
+	$| = 1;
+
+	my %dbas;
+	my $current_dbname = '';
+
+	print "HEALTHCHECK-WORKER:READY\n";
+
+	while ( my $line = <STDIN> ) {
+		chomp $line;
+		next if $line eq '';
+
+		if ( $line eq 'PING' ) {
+			print "HEALTHCHECK-WORKER:PONG\n";
+			next;
+		}
+
+		my ( $command, $id, $module, $dbname, $species_id ) = split /\t/, $line;
+		if ( $command ne 'RUN' || !defined $dbname ) {
+			print "Can't understand request $line\n";
+			print "HEALTHCHECK-WORKER:DONE\t" . ( defined $id ? $id : '' ) . "\t1\n";
+			next;
+		}
+
+		# only keep the connections to one database open
+		if ( $dbname ne $current_dbname ) {
+			foreach my $dba ( values %dbas ) {
+				$dba->dbc->disconnect_if_idle();
+			}
+			%dbas           = ();
+			$current_dbname = $dbname;
+		}
+
+		my $passed = eval {
+			my $key = defined $species_id ? $species_id : '';
+			$dbas{$key} ||= create_dba( $dbname, $species_id );
+			inject($module);
+			$module->new( dba => $dbas{$key} )->run();
+		};
+		if ($@) {
+			print $@;
+			$passed = 0;
+		}
+
+		print "HEALTHCHECK-WORKER:DONE\t$id\t" . ( $passed ? 0 : 1 ) . "\n";
+	}
+}
@@ -0,0 +1,26 @@
+-- Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+-- 
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+-- 
+--      http://www.apache.org/licenses/LICENSE-2.0
+-- 
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+
+-- Fixed width digest of database_name, testcase, result and text, so
+-- existing reports can be found without comparing the text column.
+-- Must be computed the same way as DatabaseReportWriter.digest().
+
+alter table report add column report_digest CHAR(32) after created;
+alter table report add index report_digest_idx(report_digest);
+
+update report set report_digest = MD5(CONCAT(
+  IFNULL(database_name, ''), CHAR(0),
+  IFNULL(testcase, ''),      CHAR(0),
+  IFNULL(result, ''),        CHAR(0),
+  IFNULL(CONVERT(text USING utf8), ''), CHAR(0)));
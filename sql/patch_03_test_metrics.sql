@@ -0,0 +1,38 @@
+-- Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+-- 
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+-- 
+--      http://www.apache.org/licenses/LICENSE-2.0
+-- 
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+
+-- Wall time, CPU time and database use of each run of a test on a database,
+-- see org.ensembl.healthcheck.TestMetrics
+
+CREATE TABLE test_metrics (
+
+  test_metrics_id			INT(10) UNSIGNED NOT NULL AUTO_INCREMENT,
+  session_id				INT(10) UNSIGNED NOT NULL,
+  database_name				VARCHAR(255),
+  testcase				VARCHAR(255),
+  passed				TINYINT(1),
+  start_time				DATETIME,
+  wall_ms				BIGINT,
+  cpu_ms				BIGINT,
+  statements				BIGINT,
+  rows_fetched				BIGINT,
+  bytes_read				BIGINT,
+  connection_wait_ms			BIGINT,
+
+  PRIMARY KEY (test_metrics_id),
+  KEY session_idx(session_id),
+  KEY testcase_idx(testcase),
+  KEY database_name_idx(database_name)
+
+);
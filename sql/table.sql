@@ -45,6 +45,7 @@ CREATE TABLE report (
   text					TEXT,
   team_responsible                      VARCHAR(255),
   created                               DATETIME,
+  report_digest                         CHAR(32),
   
   PRIMARY KEY (report_id),
   KEY first_session_idx(first_session_id),
@@ -53,7 +54,8 @@ CREATE TABLE report (
   KEY database_name_idx(database_name),
   KEY species_idx(species),
   KEY result_idx(result),
-  KEY text_idx(text(255))
+  KEY text_idx(text(255)),
+  KEY report_digest_idx(report_digest)
 
 );
 
@@ -78,6 +80,31 @@ CREATE TABLE annotation (
   
 );
 
+-- Wall time, CPU time and database use of each run of a test on a database,
+-- see org.ensembl.healthcheck.TestMetrics
+
+CREATE TABLE test_metrics (
+
+  test_metrics_id			INT(10) UNSIGNED NOT NULL AUTO_INCREMENT,
+  session_id				INT(10) UNSIGNED NOT NULL,
+  database_name				VARCHAR(255),
+  testcase				VARCHAR(255),
+  passed				TINYINT(1),
+  start_time				DATETIME,
+  wall_ms				BIGINT,
+  cpu_ms				BIGINT,
+  statements				BIGINT,
+  rows_fetched				BIGINT,
+  bytes_read				BIGINT,
+  connection_wait_ms			BIGINT,
+
+  PRIMARY KEY (test_metrics_id),
+  KEY session_idx(session_id),
+  KEY testcase_idx(testcase),
+  KEY database_name_idx(database_name)
+
+);
+
 -- Most recent session
 CREATE VIEW recent_session AS
   SELECT s.*,
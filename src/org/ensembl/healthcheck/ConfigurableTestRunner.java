@@ -27,6 +27,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -49,6 +50,7 @@ import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
 import org.ensembl.healthcheck.util.ConnectionBasedSqlTemplateImpl;
 import org.ensembl.healthcheck.util.CreateHealthCheckDB;
 import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.SeqRegionCache;
 import org.ensembl.healthcheck.util.SqlTemplate;
 
 /**
@@ -124,6 +126,7 @@ public class ConfigurableTestRunner extends TestRunner {
 				configuration);
 		this.reporter = getReporter(this.reporterType);
 
+		systemPropertySetter.setPropertiesForConnectionPool();
 		DBUtils.setHostConfiguration((ConfigureHost) configuration);
 	}
 
@@ -346,6 +349,34 @@ public class ConfigurableTestRunner extends TestRunner {
                 String outputLevelString = configuration.getOutputLevel();
                 setOutputLevel(outputLevelString);
 
+		if (configuration.isThreads()) {
+			setThreads(
+				Integer.parseInt(configuration.getThreads()),
+				configuration.isThreadsPerServer() ? Integer.parseInt(configuration.getThreadsPerServer()) : 0
+			);
+		}
+
+		if (configuration.isReportMemoryLines()) {
+			System.setProperty(ReportStore.MEMORY_LINES, configuration.getReportMemoryLines());
+		}
+		if (configuration.isReportSpillDir()) {
+			System.setProperty(ReportStore.SPILL_DIR, configuration.getReportSpillDir());
+		}
+
+		if (configuration.isRegistryDiscoveryThreads()) {
+			System.setProperty(DatabaseRegistry.DISCOVERY_THREADS, configuration.getRegistryDiscoveryThreads());
+		}
+		if (configuration.isRegistrySnapshotFile()) {
+			System.setProperty(RegistrySnapshot.FILE, configuration.getRegistrySnapshotFile());
+		}
+		if (configuration.isSeqRegionCacheDatabases()) {
+			System.setProperty(SeqRegionCache.DATABASES, configuration.getSeqRegionCacheDatabases());
+		}
+
+		if (configuration.isIncrementalDir()) {
+			setIncrementalDirectory(new File(configuration.getIncrementalDir()));
+		}
+
 		ReportManager.setReporter(reporter);
 
 		DatabaseServer ds = connectToDatabase(configuration);
@@ -423,6 +454,7 @@ public class ConfigurableTestRunner extends TestRunner {
 			systemPropertySetter
 					.setPropertiesForReportManager_createDatabaseSession();
 			ReportManager.createDatabaseSession();
+			ReportManager.preloadReports(databasesToTestRegistry);
 		}
 
 		// When writing to a database, this must only be run after calling
@@ -621,11 +653,11 @@ public class ConfigurableTestRunner extends TestRunner {
 	protected TestRunStats runAllTestsWithAccounting(DatabaseRegistry databaseRegistry,
 			TestRegistry testRegistry, boolean skipSlow) {
 
-		int numberOfTestsRun = 0;
+		final AtomicInteger numberOfTestsRun = new AtomicInteger();
 		
-		HashSet<Class<? extends EnsTestCase>> testsRun = new HashSet<Class<? extends EnsTestCase>>();
-		Map<Class<? extends EnsTestCase>,TestRunStats.CompletionStatus> trackCompletionStatus = new HashMap<Class<? extends EnsTestCase>,TestRunStats.CompletionStatus>();
-		Map<
+		final HashSet<Class<? extends EnsTestCase>> testsRun = new HashSet<Class<? extends EnsTestCase>>();
+		final Map<Class<? extends EnsTestCase>,TestRunStats.CompletionStatus> trackCompletionStatus = new HashMap<Class<? extends EnsTestCase>,TestRunStats.CompletionStatus>();
+		final Map<
 			Class<? extends EnsTestCase>,
 			List<DatabaseRegistryEntry>
 		> exceptionToDb = new HashMap<
@@ -636,6 +668,8 @@ public class ConfigurableTestRunner extends TestRunner {
 		// --------------------------------
 		// Single-database tests
 
+		ParallelTestScheduler scheduler = new ParallelTestScheduler(threads, threadsPerServer);
+
 		// run the appropriate tests on each of them
 		for (DatabaseRegistryEntry database : databaseRegistry.getAll()) {
 
@@ -645,48 +679,81 @@ public class ConfigurableTestRunner extends TestRunner {
 				if (!testCase.isLongRunning()
 						|| (testCase.isLongRunning() && !skipSlow)) {
 
-					try {
-						ReportManager.startTestCase(testCase, database);
+					scheduler.add(testCase, database);
 
-						testCase.types();
-						
-						boolean result = testCase.run(database);
+				} else {
+					logger.info("Skipping long-running test "
+							+ testCase.getName());
+					trackCompletionStatus.put(testCase.getClass(), TestRunStats.CompletionStatus.SKIPPED_LONG_RUNNING);
+
+				}
+
+			} // foreach test
+
+		} // foreach DB
+
+		// The accounting collections are shared by the worker threads if the
+		// scheduler runs concurrently, so all updates lock on testsRun.
+		//
+		scheduler.runAll(new ParallelTestScheduler.PairRunner() {
+
+			public void run(SingleDatabaseTestCase testCase,
+					DatabaseRegistryEntry database) {
 
+				IncrementalTestTracker.Checkpoint checkpoint = getCheckpoint(testCase, database);
+				if (skipUnchanged(checkpoint, testCase, database)) {
+					synchronized (testsRun) {
 						testsRun.add(testCase.getClass());
 						trackCompletionStatus.put(testCase.getClass(), TestRunStats.CompletionStatus.COMPLETED);
-						
-						ReportManager
-								.finishTestCase(testCase, result, database);
+					}
+					numberOfTestsRun.incrementAndGet();
+					return;
+				}
 
-						checkRepair(testCase, database);
-						numberOfTestsRun++;
+				boolean result = false;
+				try {
+					ReportManager.startTestCase(testCase, database);
 
-					} catch (Throwable e) {
-						
+					testCase.types();
+					
+					result = testCase.run(database);
+
+					synchronized (testsRun) {
+						testsRun.add(testCase.getClass());
+						trackCompletionStatus.put(testCase.getClass(), TestRunStats.CompletionStatus.COMPLETED);
+					}
+					
+					ReportManager
+							.finishTestCase(testCase, result, database);
+
+					checkRepair(testCase, database);
+					numberOfTestsRun.incrementAndGet();
+
+				} catch (Throwable e) {
+					
+					synchronized (testsRun) {
 						trackCompletionStatus.put(testCase.getClass(), TestRunStats.CompletionStatus.DIED_WITH_EXCEPTION);
-						
+					
 						if (!exceptionToDb.containsKey(testCase.getClass())) {
 							exceptionToDb.put(testCase.getClass(), new ArrayList<DatabaseRegistryEntry>());
 						}
-						
-						exceptionToDb.get(testCase.getClass()).add(database);							
-						
-					  String msg = "Could not execute test "
-                + testCase.getName() + " on "
-                + database.getName() + ": " + e.getMessage();
-					  logger.log(Level.WARNING, msg, e);
+					
+						exceptionToDb.get(testCase.getClass()).add(database);
+					}
+					
+				  String msg = "Could not execute test "
+              + testCase.getName() + " on "
+              + database.getName() + ": " + e.getMessage();
+				  logger.log(Level.WARNING, msg, e);
+				  result = false;
+				} finally {
+					if (checkpoint != null) {
+						checkpoint.finish(result);
 					}
-
-				} else {
-					logger.info("Skipping long-running test "
-							+ testCase.getName());
-					trackCompletionStatus.put(testCase.getClass(), TestRunStats.CompletionStatus.SKIPPED_LONG_RUNNING);
-
 				}
 
-			} // foreach test
-
-		} // foreach DB
+			}
+		});
 
 		// --------------------------------
 		// Multi-database tests
@@ -713,7 +780,7 @@ public class ConfigurableTestRunner extends TestRunner {
 					logger.info(testCase.getName() + " "
 							+ (result ? "PASSED" : "FAILED"));
 
-					numberOfTestsRun++;
+					numberOfTestsRun.incrementAndGet();
 				} catch (Throwable e) {
 				  //TODO If we had a throwable then we should mark the test as failed 
           String msg = "Could not execute test "
@@ -756,16 +823,19 @@ public class ConfigurableTestRunner extends TestRunner {
         logger.log(Level.WARNING, msg, e);
 			}
 
-			numberOfTestsRun++;
+			numberOfTestsRun.incrementAndGet();
 
 		} // foreach test
 
 		// --------------------------------
 
-		if (numberOfTestsRun == 0) {
+		if (numberOfTestsRun.get() == 0) {
 			logger.warning("Warning: no tests were run.");
 		}
 
+		logger.fine("Reference data lookups: " + ReferenceDataCache.getHits()
+				+ " cached, " + ReferenceDataCache.getMisses() + " read");
+
 		return new TestRunStats(testsRun, trackCompletionStatus, exceptionToDb);
 	} // runAllTests
 	
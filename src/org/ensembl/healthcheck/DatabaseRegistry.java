@@ -18,14 +18,26 @@ package org.ensembl.healthcheck;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
+import org.ensembl.healthcheck.DatabaseRegistryEntry.DatabaseInfo;
+import org.ensembl.healthcheck.util.ConnectionPool;
 import org.ensembl.healthcheck.util.DBUtils;
 
 /**
@@ -42,13 +54,19 @@ public class DatabaseRegistry implements Iterable<DatabaseRegistryEntry> {
 
 	private DatabaseType globalType = null;
 
+	/**
+	 * System property with the number of servers looked at in parallel when
+	 * the registry is built.
+	 */
+	public static final String DISCOVERY_THREADS = "registry.discovery.threads";
+
 	/** The logger to use */
 	private static Logger logger = Logger.getLogger("HealthCheckLogger");
 
 	// -----------------------------------------------------------------
 	/**
 	 * Create a new DatabaseRegistry. DatabaseRegistryEntry objects for the databases matching regexp are created and added to the
-	 * registry.
+	 * registry. The servers are looked at in parallel, using at most registry.discovery.threads threads.
 	 * 
 	 * @param regexps
 	 *          The regular expressions matching the databases to use. If null, match everything.
@@ -56,7 +74,7 @@ public class DatabaseRegistry implements Iterable<DatabaseRegistryEntry> {
 	 *          If true, this is a secondary database registry.
 	 * @throws SQLException 
 	 */
-	public DatabaseRegistry(List<String> regexps, DatabaseType globalType, Species globalSpecies, boolean isSecondary) {
+	public DatabaseRegistry(final List<String> regexps, DatabaseType globalType, Species globalSpecies, boolean isSecondary) {
 
 		if (!isSecondary) {
 
@@ -67,43 +85,169 @@ public class DatabaseRegistry implements Iterable<DatabaseRegistryEntry> {
 
 		List<DatabaseServer> servers = isSecondary ? DBUtils.getSecondaryDatabaseServers() : DBUtils.getMainDatabaseServers();
 
-		for (DatabaseServer server : servers) {
+		// what is saved depends on the global species and type, so the
+		// snapshot is only used without them
+		final RegistrySnapshot snapshot = this.globalSpecies == null && this.globalType == null ? RegistrySnapshot.getInstance() : null;
 
-			if (regexps == null || regexps.size() == 0) {
+		int threads = Integer.getInteger(DISCOVERY_THREADS, 4);
 
-				String[] names = null;
-				
-				try {
-					
-					names = DBUtils.listDatabases(server.getServerConnection(), null);
-					
-				} catch(SQLException e) {
-					logger.warning(e.getMessage());
-				}
-				addEntriesToRegistry(server, names, isSecondary);
+		if (threads < 2 || servers.size() < 2) {
 
-			} else {
+			for (DatabaseServer server : servers) {
+				addEntriesToRegistry(findEntries(server, regexps, snapshot), isSecondary);
+			}
+			saveSnapshot(snapshot);
+			return;
+
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, servers.size()), new ThreadFactory() {
+
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "registry-worker-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		List<Future<List<DatabaseRegistryEntry>>> futures = new ArrayList<Future<List<DatabaseRegistryEntry>>>();
+
+		for (final DatabaseServer server : servers) {
+			futures.add(executor.submit(new Callable<List<DatabaseRegistryEntry>>() {
 
-				Iterator<String> it = regexps.iterator();
-				while (it.hasNext()) {
+				public List<DatabaseRegistryEntry> call() {
 
-					String regexp = it.next();
-					String[] names = null;
-					
+					int scope = ConnectionPool.beginScope();
 					try {
-						
-						names = DBUtils.listDatabases(server.getServerConnection(), regexp);
-					
-					} catch(SQLException e) {
-						logger.warning(e.getMessage());
+						return findEntries(server, regexps, snapshot);
+					} finally {
+						ConnectionPool.endScope(scope);
 					}
+				}
+			}));
+		}
+
+		executor.shutdown();
+
+		// added in the order of the servers, as if they had been looked at
+		// one after the other
+		try {
+			for (Future<List<DatabaseRegistryEntry>> future : futures) {
+				addEntriesToRegistry(future.get(), isSecondary);
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			executor.shutdownNow();
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
 
-					addEntriesToRegistry(server, names, isSecondary);
+		saveSnapshot(snapshot);
 
+	}
+
+	private void saveSnapshot(RegistrySnapshot snapshot) {
+
+		if (snapshot != null) {
+			snapshot.save();
+		}
+
+	}
+
+	// -----------------------------------------------------------------
+	/**
+	 * Create entries for the databases on server matching any of regexps. The
+	 * databases are listed once, and the types of those whose type can't be
+	 * told from the name are read from all their meta tables together.
+	 * Entries in snapshot which are still up to date are used as they are.
+	 */
+	private List<DatabaseRegistryEntry> findEntries(DatabaseServer server, List<String> regexps, RegistrySnapshot snapshot) {
+
+		List<DatabaseRegistryEntry> result = new ArrayList<DatabaseRegistryEntry>();
+
+		String[] allNames;
+		try {
+			allNames = DBUtils.listDatabases(server.getServerConnection());
+		} catch (SQLException e) {
+			logger.warning(e.getMessage());
+			return result;
+		}
+
+		// in the order of the regexps, each name once
+		Set<String> names = new LinkedHashSet<String>();
+		if (regexps == null || regexps.size() == 0) {
+			names.addAll(Arrays.asList(allNames));
+		} else {
+			for (String regexp : regexps) {
+				Pattern pattern = Pattern.compile(regexp);
+				for (String name : allNames) {
+					if (pattern.matcher(name).matches()) {
+						names.add(name);
+					}
 				}
 			}
 		}
 
+		Map<String, String> metaTimes = null;
+		if (snapshot != null) {
+			try {
+				metaTimes = snapshot.readMetaTimes(server);
+				snapshot.retainOnly(server, new HashSet<String>(Arrays.asList(allNames)));
+			} catch (SQLException e) {
+				logger.warning("Not using the registry snapshot for " + server + ": " + e.getMessage());
+			}
+		}
+
+		// null where there is an up to date entry in the snapshot
+		List<DatabaseInfo> infos = new ArrayList<DatabaseInfo>();
+		Map<String, DatabaseRegistryEntry> fromSnapshot = new HashMap<String, DatabaseRegistryEntry>();
+		List<String> unknown = new ArrayList<String>();
+		for (String name : names) {
+			if (metaTimes != null) {
+				DatabaseRegistryEntry dbre = snapshot.getEntry(server, name, metaTimes.get(name));
+				if (dbre != null) {
+					fromSnapshot.put(name, dbre);
+					infos.add(null);
+					continue;
+				}
+			}
+			DatabaseInfo info = DatabaseRegistryEntry.getInfoFromName(name, globalSpecies, globalType);
+			if (info.getType() == DatabaseType.UNKNOWN) {
+				unknown.add(name);
+			}
+			infos.add(info);
+		}
+
+		Map<String, DatabaseInfo> fromDatabases = new HashMap<String, DatabaseInfo>();
+		try {
+			fromDatabases = DatabaseRegistryEntry.getInfoFromDatabases(server, unknown);
+		} catch (SQLException e) {
+			logger.warning(e.getMessage());
+		}
+
+		Iterator<String> it = names.iterator();
+		for (DatabaseInfo info : infos) {
+			String name = it.next();
+			if (info == null) {
+				result.add(fromSnapshot.get(name));
+				continue;
+			}
+			DatabaseInfo dbInfo = fromDatabases.get(name);
+			DatabaseRegistryEntry dbre = new DatabaseRegistryEntry(server, dbInfo == null ? info : dbInfo);
+			if (metaTimes != null) {
+				snapshot.putEntry(server, dbre, metaTimes.get(name));
+			}
+			result.add(dbre);
+		}
+
+		return result;
+
 	}
 
 	// -------------------------------------------------------------------------
@@ -143,17 +287,16 @@ public class DatabaseRegistry implements Iterable<DatabaseRegistryEntry> {
 
 	// -----------------------------------------------------------------
 
-	private void addEntriesToRegistry(DatabaseServer server, final String[] names, boolean isSecondary) {
+	private void addEntriesToRegistry(List<DatabaseRegistryEntry> found, boolean isSecondary) {
 
-		if (names==null) {
-			return;
+		Set<String> names = new HashSet<String>();
+		for (DatabaseRegistryEntry entry : entries) {
+			names.add(entry.getName());
 		}
-		
-		for (String name : names) {
 
-			DatabaseRegistryEntry dbre = new DatabaseRegistryEntry(server, name, globalSpecies, globalType);
+		for (DatabaseRegistryEntry dbre : found) {
 
-			if (!this.contains(dbre)) {
+			if (names.add(dbre.getName())) {
 
 				// logger.finest(dbre.getName() + " appears to be type " + dbre.getType() + " and species " + dbre.getSpecies());
 
@@ -161,7 +304,7 @@ public class DatabaseRegistry implements Iterable<DatabaseRegistryEntry> {
 
 				entries.add(dbre);
 
-				logger.finest("Added DatabaseRegistryEntry for " + name + " to " + (isSecondary ? "secondary" : "main") + " DatabaseRegistry");
+				logger.finest("Added DatabaseRegistryEntry for " + dbre.getName() + " to " + (isSecondary ? "secondary" : "main") + " DatabaseRegistry");
 
 			} else {
 
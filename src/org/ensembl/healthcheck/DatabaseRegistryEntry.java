@@ -32,7 +32,14 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -183,14 +190,30 @@ public class DatabaseRegistryEntry implements Comparable<DatabaseRegistryEntry>
 			EA_DB, EGC_DB, EG_DB, E_DB, PE_DB, EM_DB, EE_DB, EEL_DB, U_DB,
 			V_DB, MYSQL_DB, BLAST_DB, UD_DB, TAX_DB, EW_DB, HELP_DB, GB_DB, MASTER_DB };
 
+	// names already parsed by getInfoFromName(String); every report line
+	// parses the name of its database, so the same few names come up over
+	// and over
+	private static final Map<String, DatabaseInfo> infoByName = new ConcurrentHashMap<String, DatabaseInfo>();
+
+	private static final int MAX_INFO_BY_NAME = 10000;
+
 	/**
-	 * Utility for building a {@link DatabaseInfo} object given a name
+	 * Utility for building a {@link DatabaseInfo} object given a name. The
+	 * result is cached, {@link DatabaseInfo} is read-only.
 	 * 
 	 * @param name
 	 * @return object containing information about a database
 	 */
 	public static DatabaseInfo getInfoFromName(String name) {
-		return getInfoFromName(name, null, null);
+		DatabaseInfo info = infoByName.get(name);
+		if (info == null) {
+			info = getInfoFromName(name, null, null);
+			if (infoByName.size() >= MAX_INFO_BY_NAME) {
+				infoByName.clear();
+			}
+			infoByName.put(name, info);
+		}
+		return info;
 	}
 
 	/**
@@ -206,10 +229,13 @@ public class DatabaseRegistryEntry implements Comparable<DatabaseRegistryEntry>
 	public static DatabaseInfo getInfoFromDatabase(DatabaseServer server,
 			final String name) throws SQLException {
 		SqlTemplate template = null;
+		Connection con = null;
 
 		try {
-			template = new ConnectionBasedSqlTemplateImpl(
-					server.getDatabaseConnection(name));
+			// borrowed rather than pinned, since the connection is only
+			// needed for the two queries below
+			con = server.borrowDatabaseConnection(name);
+			template = new ConnectionBasedSqlTemplateImpl(con);
 		} catch (NullPointerException e) {
 
 			// This exception can be thrown, if a database name has hashes in
@@ -227,9 +253,20 @@ public class DatabaseRegistryEntry implements Comparable<DatabaseRegistryEntry>
 
 			// No info will be available for this database.
 			//
+			server.returnDatabaseConnection(con);
 			return null;
 		}
 
+		try {
+			return getInfoFromDatabase(server, name, template);
+		} finally {
+			server.returnDatabaseConnection(con);
+		}
+	}
+
+	private static DatabaseInfo getInfoFromDatabase(DatabaseServer server,
+			final String name, SqlTemplate template) {
+
 		DatabaseInfo info = null;
 
 		boolean dbHasAMetaTable = template.queryForDefaultObjectList(
@@ -281,6 +318,107 @@ public class DatabaseRegistryEntry implements Comparable<DatabaseRegistryEntry>
 		return info;
 	}
 
+	// number of databases whose meta tables are read by one statement in
+	// getInfoFromDatabases
+	private static final int META_QUERY_DATABASES = 100;
+
+	private static final String META_TABLES_SQL = "SELECT DISTINCT TABLE_SCHEMA FROM information_schema.TABLES WHERE TABLE_NAME='meta'";
+
+	/**
+	 * Like {@link #getInfoFromDatabase(DatabaseServer, String)} for many
+	 * databases on one server. The databases with a meta table are found with
+	 * one query on information_schema and their meta tables are read with a
+	 * few UNION queries on the server connection. If one of those fails the
+	 * databases it covered are looked at one by one.
+	 * 
+	 * @param server
+	 * @param names
+	 * @return The info of the databases it could be found for, keyed on name.
+	 */
+	public static Map<String, DatabaseInfo> getInfoFromDatabases(
+			final DatabaseServer server, Collection<String> names)
+			throws SQLException {
+
+		Map<String, DatabaseInfo> result = new HashMap<String, DatabaseInfo>();
+		if (names.isEmpty()) {
+			return result;
+		}
+
+		SqlTemplate template = DBUtils.getSqlTemplate(server
+				.getServerConnection());
+
+		Set<String> withMeta = new HashSet<String>(
+				template.queryForDefaultObjectList(META_TABLES_SQL,
+						String.class));
+
+		List<String> toQuery = new ArrayList<String>();
+		for (String name : names) {
+			if (!withMeta.contains(name)) {
+				continue;
+			}
+			// names with quotes are looked at on their own rather than
+			// escaped
+			if (StringUtils.containsNone(name, "`'\\#")) {
+				toQuery.add(name);
+			} else {
+				DatabaseInfo info = getInfoFromDatabase(server, name);
+				if (info != null) {
+					result.put(name, info);
+				}
+			}
+		}
+
+		RowMapper<DatabaseInfo> mapper = new RowMapper<DatabaseInfo>() {
+			public DatabaseInfo mapRow(ResultSet resultSet, int position)
+					throws SQLException {
+				return new DatabaseInfo(resultSet.getString(1), null,
+						Species.UNKNOWN, DatabaseType.resolveAlias(resultSet
+								.getString(2)), resultSet.getString(3), null);
+			}
+		};
+
+		for (int i = 0; i < toQuery.size(); i += META_QUERY_DATABASES) {
+
+			List<String> chunk = toQuery.subList(i,
+					Math.min(i + META_QUERY_DATABASES, toQuery.size()));
+
+			StringBuilder sql = new StringBuilder();
+			for (String name : chunk) {
+				if (sql.length() > 0) {
+					sql.append(" UNION ALL ");
+				}
+				sql.append("(SELECT '").append(name)
+						.append("', m1.meta_value, m2.meta_value FROM `")
+						.append(name).append("`.meta m1 JOIN `").append(name)
+						.append("`.meta m2 WHERE m1.meta_key='schema_type'")
+						.append(" AND m2.meta_key='schema_version' LIMIT 1)");
+			}
+
+			try {
+
+				for (DatabaseInfo info : template.queryForList(
+						sql.toString(), mapper)) {
+					result.put(info.getName(), info);
+				}
+
+			} catch (SqlUncheckedException e) {
+
+				logger.fine("Reading meta tables on " + server
+						+ " together failed, reading them one by one: "
+						+ e.getMessage());
+
+				for (String name : chunk) {
+					DatabaseInfo info = getInfoFromDatabase(server, name);
+					if (info != null) {
+						result.put(name, info);
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+
 	/**
 	 * Utility for building a {@link DatabaseInfo} object given a name plus
 	 * optional {@link Species} and {@link DatabaseType} to use explicitly
@@ -355,12 +493,12 @@ public class DatabaseRegistryEntry implements Comparable<DatabaseRegistryEntry>
 
 	private List<Integer> speciesIds;
 
+	private ReferenceDataCache referenceData;
+
 	private final DatabaseServer server;
 
 	private DatabaseRegistry databaseRegistry;
 
-	private Connection connection;
-
 	/** The logger to use */
 	private static Logger logger = Logger.getLogger("HealthCheckLogger");
 
@@ -402,6 +540,24 @@ public class DatabaseRegistryEntry implements Comparable<DatabaseRegistryEntry>
 		this.info = info;
 	}
 
+	/**
+	 * @param server
+	 *            The server the database is on.
+	 * @param info
+	 *            Information about the database, e.g. from
+	 *            {@link #getInfoFromDatabases(DatabaseServer, Collection)}.
+	 */
+	public DatabaseRegistryEntry(DatabaseServer server, DatabaseInfo info) {
+		this(server, info, null);
+	}
+
+	DatabaseRegistryEntry(DatabaseServer server, DatabaseInfo info,
+			List<Integer> speciesIds) {
+		this.server = server;
+		this.info = info;
+		this.speciesIds = speciesIds;
+	}
+
 	// -----------------------------------------------------------------
 
 	/**
@@ -543,19 +699,28 @@ public class DatabaseRegistryEntry implements Comparable<DatabaseRegistryEntry>
 		return server;
 	}
 
+	/**
+	 * Get a connection to this database. The connection belongs to the
+	 * calling thread, so tests running concurrently on the same database
+	 * don't share one. It should not be closed by the caller.
+	 * 
+	 * The {@link ConnectionPool} only checks that the connection still works
+	 * if it has not been used for a while, so this is cheap enough to call in
+	 * a loop.
+	 * 
+	 * @return A connection, or null if none could be made.
+	 */
 	public Connection getConnection() {
 
-		if (
-			(connection == null) 
-			|| !(ConnectionPool.isValidConnection(connection))
-		) {
+		Connection connection = null;
 
-			try {
-				connection = server.getDatabaseConnection(getName());
-			} catch (SQLException e) {
+		try {
 
-				logger.warning(e.getMessage());
-			}
+			connection = server.getDatabaseConnection(getName());
+
+		} catch (SQLException e) {
+
+			logger.warning(e.getMessage());
 		}
 		return connection;
 	}
@@ -599,6 +764,24 @@ public class DatabaseRegistryEntry implements Comparable<DatabaseRegistryEntry>
 		return speciesIds;
 	}
 
+	/**
+	 * @return The contents of the small controlled tables of this database,
+	 *         read when first asked for.
+	 */
+	public synchronized ReferenceDataCache getReferenceData() {
+		if (referenceData == null) {
+			referenceData = new ReferenceDataCache(this);
+		}
+		return referenceData;
+	}
+
+	/**
+	 * @return The species IDs if they have been read, otherwise null.
+	 */
+	List<Integer> getKnownSpeciesIds() {
+		return speciesIds;
+	}
+
 	public String toString() {
 		return getName();
 	}
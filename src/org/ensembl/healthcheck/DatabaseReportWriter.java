@@ -0,0 +1,699 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>
+ * Writes ReportLines to the report table of the output database on a
+ * background thread, so tests do not have to wait for the database.
+ * </p>
+ *
+ * <p>
+ * Reports are queued and written in batches. Within a batch, reports which
+ * are identical (same database, test case, result and text) to one already
+ * written in this session are dropped, new reports are stored with one
+ * multi-row INSERT and the last_session_id of reports seen in earlier
+ * sessions is set with one UPDATE.
+ * </p>
+ *
+ * <p>
+ * Reports are identified by the digest stored in the report_digest column.
+ * The digests of the reports already in the database are loaded once per
+ * database and session, so checking whether a report exists does not need a
+ * query. The result in the database is the same as calling
+ * {@link ReportManager#checkAndAddToDatabase(ReportLine)} for every line.
+ * </p>
+ *
+ * <p>
+ * The {@link TestMetrics} of each test run are queued too, and stored in the
+ * test_metrics table with one INSERT per batch.
+ * </p>
+ *
+ * <p>
+ * The queue is bounded. If the database can not keep up, {@link #add(ReportLine)}
+ * blocks until there is space again. {@link #flush()} waits until everything
+ * queued so far has been written. A batch which fails is logged and dropped,
+ * and if the background thread stops neither method waits for it any longer.
+ * </p>
+ */
+public class DatabaseReportWriter implements Runnable {
+
+	/** System property with the maximum number of reports written in one batch. */
+	public static final String BATCH_SIZE = "output.report.batch.size";
+
+	/** System property with the maximum number of reports waiting to be written. */
+	public static final String QUEUE_SIZE = "output.report.queue.size";
+
+	private static final int DEFAULT_BATCH_SIZE = 500;
+
+	private static final int DEFAULT_QUEUE_SIZE = 10000;
+
+	/** Seconds between checks that the background thread is still running. */
+	private static final int WAIT_SECONDS = 5;
+
+	/** The logger to use for this class */
+	private static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	private final Connection con;
+
+	private final int batchSize;
+
+	private final BlockingQueue<Object> queue;
+
+	/** Digests of the reports written in the current session. */
+	private final Set<String> written = new HashSet<String>();
+
+	/** IDs of reports stored in earlier sessions, keyed on their digest. */
+	private final Map<String, Long> existing = new HashMap<String, Long>();
+
+	/** Databases whose reports have been loaded into existing. */
+	private final Set<String> loadedDatabases = new HashSet<String>();
+
+	/** False for output databases which predate the report_digest column. */
+	private final boolean hasDigestColumn;
+
+	/** False for output databases which predate the test_metrics table. */
+	private final boolean hasMetricsTable;
+
+	private long writtenSessionID = -1;
+
+	private Thread thread;
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Create a new writer with the batch and queue sizes taken from the system
+	 * properties. {@link #start()} has to be called before reports are added.
+	 *
+	 * @param con
+	 *          Connection to the output database.
+	 */
+	public DatabaseReportWriter(Connection con) {
+
+		this(con, Integer.getInteger(BATCH_SIZE, DEFAULT_BATCH_SIZE), Integer.getInteger(QUEUE_SIZE, DEFAULT_QUEUE_SIZE));
+
+	}
+
+	/**
+	 * Create a new writer.
+	 *
+	 * @param con
+	 *          Connection to the output database.
+	 * @param batchSize
+	 *          Maximum number of reports written in one go.
+	 * @param queueSize
+	 *          Maximum number of reports waiting to be written.
+	 */
+	public DatabaseReportWriter(Connection con, int batchSize, int queueSize) {
+
+		this.con = con;
+		this.batchSize = Math.max(batchSize, 1);
+		this.queue = new ArrayBlockingQueue<Object>(Math.max(queueSize, 1));
+		this.hasDigestColumn = hasDigestColumn(con);
+
+		if (!hasDigestColumn) {
+			logger.warning("The report table has no report_digest column, please apply sql/patch_02_report_digest.sql");
+		}
+
+		this.hasMetricsTable = hasMetricsTable(con);
+
+		if (!hasMetricsTable) {
+			logger.warning("There is no test_metrics table, please apply sql/patch_03_test_metrics.sql to store test metrics");
+		}
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Start the background thread.
+	 */
+	public synchronized void start() {
+
+		if (thread == null) {
+			thread = new Thread(this, "healthcheck-report-writer");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+	}
+
+	/**
+	 * Queue a report to be written, waiting for space in the queue if
+	 * necessary.
+	 */
+	public void add(ReportLine report) {
+
+		put(report);
+
+	}
+
+	/**
+	 * Queue the metrics of a test run to be written.
+	 */
+	public void add(TestMetrics.Measurement measurement) {
+
+		if (hasMetricsTable) {
+			put(measurement);
+		}
+
+	}
+
+	/**
+	 * Wait until all the reports queued so far have been written, or the
+	 * background thread has stopped.
+	 */
+	public void flush() {
+
+		CountDownLatch done = new CountDownLatch(1);
+		if (!put(done)) {
+			return;
+		}
+
+		try {
+			while (!done.await(WAIT_SECONDS, TimeUnit.SECONDS)) {
+				if (!isRunning()) {
+					logger.severe("The report writer has stopped, reports may not have been written to the database");
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+	}
+
+	/**
+	 * @return false if the item could not be queued because the background
+	 *         thread has stopped.
+	 */
+	private boolean put(Object item) {
+
+		try {
+			while (!queue.offer(item, WAIT_SECONDS, TimeUnit.SECONDS)) {
+				if (!isRunning()) {
+					logger.severe("The report writer has stopped, dropping " + item);
+					return false;
+				}
+			}
+			return true;
+		} catch (InterruptedException e) {
+			logger.warning("Interrupted while queueing report");
+			Thread.currentThread().interrupt();
+			return false;
+		}
+
+	}
+
+	private synchronized boolean isRunning() {
+
+		return thread != null && thread.isAlive();
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Take items off the queue and write them until the thread is interrupted.
+	 * Anyone waiting in {@link #flush()} is released when the thread stops.
+	 */
+	public void run() {
+
+		List<Object> items = new ArrayList<Object>();
+
+		try {
+
+			while (!Thread.currentThread().isInterrupted()) {
+
+				try {
+					items.add(queue.take());
+				} catch (InterruptedException e) {
+					break;
+				}
+				queue.drainTo(items, batchSize - 1);
+
+				List<ReportLine> batch = new ArrayList<ReportLine>();
+				List<TestMetrics.Measurement> measurements = new ArrayList<TestMetrics.Measurement>();
+
+				for (Object item : items) {
+
+					if (item instanceof ReportLine) {
+
+						batch.add((ReportLine) item);
+
+					} else if (item instanceof TestMetrics.Measurement) {
+
+						measurements.add((TestMetrics.Measurement) item);
+
+					} else {
+
+						// everything before a flush must have been written when it is
+						// released
+						writeBatch(batch, measurements);
+						((CountDownLatch) item).countDown();
+
+					}
+				}
+
+				writeBatch(batch, measurements);
+				items.clear();
+
+			}
+
+		} finally {
+
+			queue.drainTo(items);
+			for (Object item : items) {
+				if (item instanceof CountDownLatch) {
+					((CountDownLatch) item).countDown();
+				}
+			}
+
+		}
+
+	} // run
+
+	/**
+	 * Write and clear a batch of reports and metrics. Errors are logged so
+	 * that one bad batch does not stop the writer.
+	 */
+	private void writeBatch(List<ReportLine> batch, List<TestMetrics.Measurement> measurements) {
+
+		try {
+			write(batch);
+			writeMetrics(measurements);
+		} catch (RuntimeException e) {
+			logger.log(Level.SEVERE, "Could not write " + batch.size() + " reports and " + measurements.size()
+					+ " test metrics to the database", e);
+		} finally {
+			batch.clear();
+			measurements.clear();
+		}
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Load the digests of the reports already stored for some databases, so
+	 * reports for them can be checked without going to the database. Reports
+	 * for other databases are loaded the first time they are seen.
+	 *
+	 * @param databaseNames
+	 *          The databases which are about to be tested.
+	 */
+	public synchronized void preload(Collection<String> databaseNames) {
+
+		checkSession(ReportManager.getSessionID());
+
+		List<String> names = new ArrayList<String>();
+		for (String name : databaseNames) {
+			if (loadedDatabases.add(name)) {
+				names.add(name);
+			}
+		}
+
+		if (names.isEmpty()) {
+			return;
+		}
+
+		StringBuffer sql = new StringBuffer(hasDigestColumn ? "SELECT report_id, report_digest" : "SELECT report_id, database_name, testcase, result, text");
+		sql.append(" FROM report WHERE database_name IN (");
+		for (int i = 0; i < names.size(); i++) {
+			sql.append(i == 0 ? "?" : ", ?");
+		}
+		sql.append(")");
+
+		try {
+
+			PreparedStatement stmt = con.prepareStatement(sql.toString());
+			for (int i = 0; i < names.size(); i++) {
+				stmt.setString(i + 1, names.get(i));
+			}
+
+			ResultSet rs = stmt.executeQuery();
+			while (rs.next()) {
+				String digest = hasDigestColumn ? rs.getString(2) : digest(rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5));
+				if (digest != null && !existing.containsKey(digest)) {
+					existing.put(digest, rs.getLong(1));
+				}
+			}
+			rs.close();
+			stmt.close();
+
+		} catch (SQLException e) {
+
+			System.err.println("Error executing:\n" + sql);
+			e.printStackTrace();
+
+		}
+
+		logger.fine("Preloaded reports for " + names.size() + " databases, " + existing.size() + " known reports");
+
+	} // preload
+
+	/**
+	 * Reports written in a previous session have to be updated again in a new
+	 * one, and the IDs of reports inserted in the old session are not known.
+	 */
+	private void checkSession(long sessionID) {
+
+		if (sessionID != writtenSessionID) {
+			written.clear();
+			existing.clear();
+			loadedDatabases.clear();
+			writtenSessionID = sessionID;
+		}
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Write a batch of reports to the database.
+	 */
+	synchronized void write(List<ReportLine> batch) {
+
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		long sessionID = ReportManager.getSessionID();
+		checkSession(sessionID);
+
+		// reports in this batch which have not been written yet, keyed on digest
+		Map<String, ReportLine> pending = new LinkedHashMap<String, ReportLine>();
+		Set<String> databaseNames = new HashSet<String>();
+
+		for (ReportLine report : batch) {
+			String digest = digest(report);
+			if (!written.contains(digest) && !pending.containsKey(digest)) {
+				pending.put(digest, report);
+				databaseNames.add(report.getDatabaseName());
+			}
+		}
+
+		if (pending.isEmpty()) {
+			return;
+		}
+
+		preload(databaseNames);
+
+		List<ReportLine> inserts = new ArrayList<ReportLine>();
+		List<String> insertDigests = new ArrayList<String>();
+		List<Long> updates = new ArrayList<Long>();
+		List<String> updateDigests = new ArrayList<String>();
+
+		for (Map.Entry<String, ReportLine> entry : pending.entrySet()) {
+
+			Long reportID = existing.get(entry.getKey());
+			if (reportID != null) {
+				updates.add(reportID);
+				updateDigests.add(entry.getKey());
+			} else {
+				inserts.add(entry.getValue());
+				insertDigests.add(entry.getKey());
+			}
+		}
+
+		logger.fine("Writing " + batch.size() + " reports: " + inserts.size() + " new, " + updates.size() + " updated, "
+				+ (batch.size() - pending.size()) + " duplicates");
+
+		// the two statements are not a transaction, so record whichever of them
+		// succeeded; otherwise inserted reports would be inserted again
+		if (insertReports(inserts, insertDigests, sessionID)) {
+			written.addAll(insertDigests);
+		}
+		if (updateReports(updates, sessionID)) {
+			written.addAll(updateDigests);
+		}
+
+	} // write
+
+	/**
+	 * Store new reports with a single multi-row INSERT. The IDs of the new
+	 * reports are added to existing when the driver returns one per row.
+	 */
+	private boolean insertReports(List<ReportLine> reports, List<String> digests, long sessionID) {
+
+		if (reports.isEmpty()) {
+			return true;
+		}
+
+		StringBuffer sql = new StringBuffer(
+				"INSERT INTO report (first_session_id, last_session_id, database_name, species, database_type, testcase, result, text, timestamp, team_responsible, created"
+						+ (hasDigestColumn ? ", report_digest" : "") + ") VALUES ");
+
+		for (int i = 0; i < reports.size(); i++) {
+			sql.append(i == 0 ? "" : ", ").append(hasDigestColumn ? "(?, ?, ?, ?, ?, ?, ?, ?, NOW(), ?, NOW(), ?)" : "(?, ?, ?, ?, ?, ?, ?, ?, NOW(), ?, NOW())");
+		}
+
+		try {
+
+			PreparedStatement stmt = con.prepareStatement(sql.toString(), Statement.RETURN_GENERATED_KEYS);
+
+			int i = 1;
+			for (int r = 0; r < reports.size(); r++) {
+				ReportLine report = reports.get(r);
+				stmt.setLong(i++, sessionID);
+				stmt.setLong(i++, sessionID);
+				stmt.setString(i++, report.getDatabaseName());
+				stmt.setString(i++, report.getSpeciesName());
+				stmt.setString(i++, report.getType().toString());
+				stmt.setString(i++, report.getShortTestCaseName());
+				stmt.setString(i++, report.getLevelAsString());
+				stmt.setString(i++, report.getMessage());
+				stmt.setString(i++, report.getPrintableTeamResponsibleString());
+				if (hasDigestColumn) {
+					stmt.setString(i++, digests.get(r));
+				}
+			}
+			stmt.executeUpdate();
+
+			List<Long> reportIDs = new ArrayList<Long>();
+			ResultSet rs = stmt.getGeneratedKeys();
+			while (rs.next()) {
+				reportIDs.add(rs.getLong(1));
+			}
+			rs.close();
+			stmt.close();
+
+			if (reportIDs.size() == digests.size()) {
+				for (int r = 0; r < digests.size(); r++) {
+					existing.put(digests.get(r), reportIDs.get(r));
+				}
+			}
+
+		} catch (SQLException e) {
+
+			System.err.println("Error executing:\n" + sql);
+			e.printStackTrace();
+			return false;
+
+		}
+
+		return true;
+
+	}
+
+	/**
+	 * Set the last_session_id of reports from earlier sessions with a single
+	 * UPDATE.
+	 */
+	private boolean updateReports(List<Long> reportIDs, long sessionID) {
+
+		if (reportIDs.isEmpty()) {
+			return true;
+		}
+
+		StringBuffer sql = new StringBuffer("UPDATE report SET last_session_id=?, timestamp=NOW() WHERE report_id IN (");
+
+		for (int i = 0; i < reportIDs.size(); i++) {
+			sql.append(i == 0 ? "?" : ", ?");
+		}
+		sql.append(")");
+
+		try {
+
+			PreparedStatement stmt = con.prepareStatement(sql.toString());
+
+			stmt.setLong(1, sessionID);
+			for (int i = 0; i < reportIDs.size(); i++) {
+				stmt.setLong(i + 2, reportIDs.get(i));
+			}
+			stmt.executeUpdate();
+			stmt.close();
+
+		} catch (SQLException e) {
+
+			System.err.println("Error executing:\n" + sql);
+			e.printStackTrace();
+			return false;
+
+		}
+
+		return true;
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Store the metrics of test runs with a single multi-row INSERT.
+	 */
+	synchronized void writeMetrics(List<TestMetrics.Measurement> measurements) {
+
+		if (measurements.isEmpty()) {
+			return;
+		}
+
+		StringBuffer sql = new StringBuffer(
+				"INSERT INTO test_metrics (session_id, database_name, testcase, passed, start_time, wall_ms, cpu_ms, statements, rows_fetched, bytes_read, connection_wait_ms) VALUES ");
+
+		for (int i = 0; i < measurements.size(); i++) {
+			sql.append(i == 0 ? "" : ", ").append("(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+		}
+
+		try {
+
+			PreparedStatement stmt = con.prepareStatement(sql.toString(), Statement.RETURN_GENERATED_KEYS);
+
+			int i = 1;
+			for (TestMetrics.Measurement measurement : measurements) {
+				stmt.setLong(i++, ReportManager.getSessionID());
+				stmt.setString(i++, measurement.getDatabaseName());
+				stmt.setString(i++, measurement.getTestName());
+				stmt.setBoolean(i++, measurement.isPassed());
+				stmt.setTimestamp(i++, new Timestamp(measurement.getStartTime()));
+				stmt.setLong(i++, measurement.getWallTime());
+				stmt.setLong(i++, measurement.getCpuTime());
+				stmt.setLong(i++, measurement.getStatements());
+				stmt.setLong(i++, measurement.getRows());
+				stmt.setLong(i++, measurement.getBytes());
+				stmt.setLong(i++, measurement.getConnectionWait());
+			}
+			stmt.executeUpdate();
+			stmt.close();
+
+		} catch (SQLException e) {
+
+			System.err.println("Error executing:\n" + sql);
+			e.printStackTrace();
+
+		}
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * @return true if the database has a test_metrics table.
+	 */
+	public static boolean hasMetricsTable(Connection con) {
+
+		try {
+
+			Statement stmt = con.createStatement();
+			stmt.executeQuery("SELECT test_metrics_id FROM test_metrics WHERE 1=0").close();
+			stmt.close();
+			return true;
+
+		} catch (SQLException e) {
+
+			return false;
+
+		}
+
+	}
+
+	/**
+	 * @return true if the report table of the database has a report_digest
+	 *         column.
+	 */
+	public static boolean hasDigestColumn(Connection con) {
+
+		try {
+
+			Statement stmt = con.createStatement();
+			stmt.executeQuery("SELECT report_digest FROM report WHERE 1=0").close();
+			stmt.close();
+			return true;
+
+		} catch (SQLException e) {
+
+			return false;
+
+		}
+
+	}
+
+	/**
+	 * @return A hex encoded MD5 digest of the database, test case, result and
+	 *         text of a report. Two reports are considered the same if their
+	 *         digests are the same.
+	 */
+	public static String digest(ReportLine report) {
+
+		return digest(report.getDatabaseName(), report.getShortTestCaseName(), report.getLevelAsString(), report.getMessage());
+
+	}
+
+	static String digest(String databaseName, String testCase, String result, String text) {
+
+		try {
+
+			MessageDigest md = MessageDigest.getInstance("MD5");
+			String[] parts = { databaseName, testCase, result, text };
+			for (String part : parts) {
+				if (part != null) {
+					md.update(part.getBytes("UTF-8"));
+				}
+				md.update((byte) 0);
+			}
+
+			StringBuffer hex = new StringBuffer();
+			for (byte b : md.digest()) {
+				hex.append(String.format("%02x", b));
+			}
+			return hex.toString();
+
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+
+	}
+
+} // DatabaseReportWriter
@@ -20,6 +20,7 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.logging.Logger;
 
+import org.ensembl.healthcheck.util.ConnectionPool;
 import org.ensembl.healthcheck.util.DBUtils;
 
 /**
@@ -99,6 +100,31 @@ public class DatabaseServer {
 
 	// -------------------------------------------------------------------------
 
+	/**
+	 * Borrow a connection to a database on this server for the exclusive use
+	 * of the caller. It must be handed back with
+	 * {@link #returnDatabaseConnection(Connection)}.
+	 */
+	public Connection borrowDatabaseConnection(String databaseName) throws SQLException {
+
+		return ConnectionPool.borrowConnection(driver, databaseURL + databaseName, user, pass);
+
+	}
+
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Hand back a connection obtained with
+	 * {@link #borrowDatabaseConnection(String)}.
+	 */
+	public void returnDatabaseConnection(Connection con) {
+
+		ConnectionPool.returnConnection(con);
+
+	}
+
+	// -------------------------------------------------------------------------
+
 	public Connection getServerConnection() throws SQLException {
 
 		return DBUtils.openConnection(driver, databaseURL, user, pass);
@@ -49,10 +49,6 @@ public class DatabaseTestRunner extends TestRunner implements Reporter {
 
 	private boolean deletePrevious = false;
 
-	private long testStartTime;
-
-	private static String TIMINGS_FILE = "timings.txt";
-
 	// ---------------------------------------------------------------------
 	/**
 	 * Main run method.
@@ -89,8 +85,6 @@ public class DatabaseTestRunner extends TestRunner implements Reporter {
 
 		ReportManager.createDatabaseSession();
 
-		Utils.deleteFile(TIMINGS_FILE);
-		
 		runAllTests(databaseRegistry, testRegistry, false);
 
 		ReportManager.endDatabaseSession();
@@ -207,8 +201,6 @@ public class DatabaseTestRunner extends TestRunner implements Reporter {
 	 */
 	public void startTestCase(EnsTestCase testCase, DatabaseRegistryEntry dbre) {
 
-		testStartTime = System.currentTimeMillis();
-
 	}
 
 	// ---------------------------------------------------------------------
@@ -226,16 +218,7 @@ public class DatabaseTestRunner extends TestRunner implements Reporter {
 	 */
 	public void finishTestCase(EnsTestCase testCase, boolean result, DatabaseRegistryEntry dbre) {
 
-		long duration = System.currentTimeMillis() - testStartTime;
-
-		String str = duration + "\t";
-		if (dbre != null) {
-			str += dbre.getName() + "\t";
-		}
-		str += testCase.getShortTestName() + "\t";
-		str += Utils.formatTimeString(duration);
-
-		Utils.writeStringToFile(TIMINGS_FILE, str, true, true);
+		// timings are recorded by TestMetrics
 
 	}
 
@@ -28,6 +28,10 @@
  */
 package org.ensembl.healthcheck;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.ensembl.healthcheck.util.Utils;
 
 /**
@@ -35,6 +39,9 @@ import org.ensembl.healthcheck.util.Utils;
  */
 public final class DatabaseType {
 
+	// all types by name, filled by the constructor so must come first
+	private static final Map<String, DatabaseType> byName = new HashMap<String, DatabaseType>();
+
 	/** A core database */
 	public static final DatabaseType CORE = new DatabaseType("core");
 
@@ -116,11 +123,18 @@ public final class DatabaseType {
 	/** A database whose type has not been determined */
 	public static final DatabaseType UNKNOWN = new DatabaseType("unknown");
 
+	// aliases already resolved; the "in" checks below match substrings, so
+	// they can't simply be replaced by a map of names
+	private static final Map<String, DatabaseType> resolved = new ConcurrentHashMap<String, DatabaseType>();
+
+	private static final int MAX_RESOLVED = 1000;
+
 	private final String name;
 
 	private DatabaseType(final String name) {
 
 		this.name = name;
+		byName.put(name, this);
 	}
 
 	/**
@@ -139,6 +153,19 @@ public final class DatabaseType {
 		return this.name;
 	}
 
+	// -----------------------------------------------------------------
+	/**
+	 * Get a DatabaseType by its exact name, e.g. as returned by {@link #getName()}.
+	 * 
+	 * @return The DatabaseType called name, or DatabaseType.UNKNOWN if there is none.
+	 */
+	public static DatabaseType getByName(final String name) {
+
+		DatabaseType type = byName.get(name);
+		return type == null ? UNKNOWN : type;
+
+	}
+
 	// -----------------------------------------------------------------
 	/**
 	 * Resolve an alias to a DatabaseType object.
@@ -151,6 +178,21 @@ public final class DatabaseType {
 
 		String lcAlias = alias.toLowerCase();
 
+		DatabaseType type = resolved.get(lcAlias);
+		if (type == null) {
+			type = resolve(lcAlias);
+			if (resolved.size() < MAX_RESOLVED) {
+				resolved.put(lcAlias, type);
+			}
+		}
+		return type;
+
+	} // resolveAlias
+
+	// -----------------------------------------------------------------
+
+	private static DatabaseType resolve(final String lcAlias) {
+
 		// --------------------------------------
 		// needs to be before core and est since names
 		// are of the form homo_sapiens_coreexpressionest_24_34e
@@ -367,7 +409,7 @@ public final class DatabaseType {
 		// default case
 		return UNKNOWN;
 
-	} // resolveAlias
+	} // resolve
 
 	// -----------------------------------------------------------------
 
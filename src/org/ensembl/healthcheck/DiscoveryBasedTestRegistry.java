@@ -20,29 +20,36 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.ensembl.healthcheck.testcase.EnsTestCase;
-import org.ensembl.healthcheck.testcase.MultiDatabaseTestCase;
-import org.ensembl.healthcheck.testcase.OrderedDatabaseTestCase;
-import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
 import org.ensembl.healthcheck.util.ClassFileFilenameFilter;
 import org.ensembl.healthcheck.util.Utils;
 
 /**
  * Hold information about tests. Can also find tests in a particular location.
+ * 
+ * If there is a {@link TestCatalogue} on the classpath, what the registry knows about the tests is read from there and only the tests
+ * which are asked for are instantiated; otherwise all the tests are found and instantiated when the registry is created.
  */
 public class DiscoveryBasedTestRegistry implements TestRegistry {
 
 	private static Logger logger = Logger.getLogger("HealthCheckLogger");
 
-	private List allTests; // a list of EnsTestCase objects
+	// the name, kind, groups and types of each test
+	private final List<TestCatalogue.Entry> entries = new ArrayList<TestCatalogue.Entry>();
+
+	// the tests instantiated so far, keyed on class name
+	private final Map<String, EnsTestCase> instances = new HashMap<String, EnsTestCase>();
 
 	private static final String BASE_TESTCASE_PACKAGE = "org.ensembl.healthcheck.testcase";
 
@@ -52,7 +59,28 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 	 */
 	public DiscoveryBasedTestRegistry() {
 
-		allTests = findAllTests();
+		TestCatalogue catalogue = TestCatalogue.getInstance();
+
+		if (catalogue != null && catalogue.covers(BASE_TESTCASE_PACKAGE)) {
+
+			for (TestCatalogue.Entry entry : catalogue.getEntries(BASE_TESTCASE_PACKAGE)) {
+				// the tests findAllTests would find
+				if (entry.isTest() && isTestDirName(entry.getDirName())) {
+					entries.add(entry);
+				}
+			}
+			logger.finer("Found " + entries.size() + " test case class" + (entries.size() > 1 ? "es" : "") + " in the test catalogue");
+
+		} else {
+
+			Iterator it = findAllTests().iterator();
+			while (it.hasNext()) {
+				EnsTestCase test = (EnsTestCase) it.next();
+				entries.add(TestCatalogue.Entry.forTest(test));
+				instances.put(test.getName(), test);
+			}
+
+		}
 
 	}
 
@@ -62,7 +90,7 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 	 */
 	public List getAll() {
 
-		return allTests;
+		return select(null, null, null);
 
 	} // getAll
 
@@ -72,16 +100,7 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 	 */
 	public List getAllSingle() {
 
-		List allSingle = new ArrayList();
-		Iterator it = allTests.iterator();
-		while (it.hasNext()) {
-			Object test = it.next();
-			if (test instanceof SingleDatabaseTestCase) {
-				allSingle.add(test);
-			}
-		}
-
-		return allSingle;
+		return select(TestCatalogue.Entry.SINGLE, null, null);
 
 	} // getAllSingle
 
@@ -91,16 +110,7 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 	 */
 	public List getAllMulti() {
 
-		List allMulti = new ArrayList();
-		Iterator it = allTests.iterator();
-		while (it.hasNext()) {
-			Object test = it.next();
-			if (test instanceof MultiDatabaseTestCase) {
-				allMulti.add(test);
-			}
-		}
-
-		return allMulti;
+		return select(TestCatalogue.Entry.MULTI, null, null);
 
 	} // getAllMulti
 
@@ -110,16 +120,7 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 	 */
 	public List getAllOrdered() {
 
-		List allOrdered = new ArrayList();
-		Iterator it = allTests.iterator();
-		while (it.hasNext()) {
-			Object test = it.next();
-			if (test instanceof OrderedDatabaseTestCase) {
-				allOrdered.add(test);
-			}
-		}
-
-		return allOrdered;
+		return select(TestCatalogue.Entry.ORDERED, null, null);
 
 	} // getAllOrdered
 
@@ -135,17 +136,7 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 	 */
 	public List getAllSingle(List groups, DatabaseType type) {
 
-		List result = new ArrayList();
-
-		Iterator it = getAllSingle().iterator();
-		while (it.hasNext()) {
-			SingleDatabaseTestCase test = (SingleDatabaseTestCase) it.next();
-			if (test.inGroups(groups) && test.appliesToType(type)) {
-				result.add(test);
-			}
-		}
-
-		return result;
+		return select(TestCatalogue.Entry.SINGLE, groups, type);
 
 	}
 
@@ -160,16 +151,8 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 	 */
 	public List getAllMulti(List groups) {
 
-		List result = new ArrayList();
+		return select(TestCatalogue.Entry.MULTI, groups, null);
 
-		Iterator it = getAllMulti().iterator();
-		while (it.hasNext()) {
-			MultiDatabaseTestCase test = (MultiDatabaseTestCase) it.next();
-			if (test.inGroups(groups)) {
-				result.add(test);
-			}
-		}
-		return result;
 	}
 
 	// -----------------------------------------------------------------
@@ -183,16 +166,57 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 	 */
 	public List getAllOrdered(List groups) {
 
+		return select(TestCatalogue.Entry.ORDERED, groups, null);
+
+	}
+
+	// -----------------------------------------------------------------
+	/**
+	 * Instantiate the tests matching some conditions, or reuse the instances created before.
+	 * 
+	 * @param kind
+	 *          The kind of test, e.g. TestCatalogue.Entry.SINGLE, or null for all.
+	 * @param groups
+	 *          The tests must be in at least one of these groups, unless null.
+	 * @param type
+	 *          The tests must apply to this type, unless null.
+	 * @return The matching tests in the order they were found.
+	 */
+	private List select(String kind, List<String> groups, DatabaseType type) {
+
 		List result = new ArrayList();
 
-		Iterator it = getAllOrdered().iterator();
-		while (it.hasNext()) {
-			OrderedDatabaseTestCase test = (OrderedDatabaseTestCase) it.next();
-			if (test.inGroups(groups)) {
+		for (TestCatalogue.Entry entry : entries) {
+
+			if ((kind == null || kind.equals(entry.getKind())) && (groups == null || entry.inGroups(groups))
+					&& (type == null || entry.appliesToType(type))) {
+
+				EnsTestCase test = instances.get(entry.getClassName());
+				if (test == null) {
+					try {
+						test = entry.newTest();
+					} catch (Exception e) {
+						logger.log(Level.WARNING, entry.getClassName() + " is in the test catalogue but could not be instantiated", e);
+						continue;
+					}
+					instances.put(entry.getClassName(), test);
+				}
 				result.add(test);
+
 			}
 		}
+
 		return result;
+
+	}
+
+	/**
+	 * @return true if the tests in subdir of the testcase package are registered.
+	 */
+	private static boolean isTestDirName(String subdir) {
+
+		return !subdir.equals("multi") && subdir.equalsIgnoreCase("generic") || DatabaseType.resolveAlias(subdir) != DatabaseType.UNKNOWN;
+
 	}
 
 	// -----------------------------------------------------------------
@@ -206,7 +230,7 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 	 */
 	public List findAllTests() {
 
-		allTests = new ArrayList();
+		List allTests = new ArrayList();
 
 		// --------------------------------------
 		// Look for class files located in the appropriate package in the build/ directory.
@@ -221,7 +245,7 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 			String subdir = subdirs[i];
 
 			// check dir corresponds to a known database type
-			if (!subdir.equals("multi") && subdir.equalsIgnoreCase("generic") || DatabaseType.resolveAlias(subdir) != DatabaseType.UNKNOWN) {
+			if (isTestDirName(subdir)) {
 
 				String directoryName = startDir + File.separator + subdir;
 				String packageName = BASE_TESTCASE_PACKAGE + "." + subdir;
@@ -479,13 +503,10 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 
 		List types = new ArrayList();
 
-		Iterator it = allTests.iterator();
-		while (it.hasNext()) {
-			EnsTestCase test = (EnsTestCase) it.next();
-			DatabaseType[] testTypes = test.getAppliesToTypes();
-			for (int i = 0; i < testTypes.length; i++) {
-				if (!types.contains(testTypes[i])) {
-					types.add(testTypes[i]);
+		for (TestCatalogue.Entry entry : entries) {
+			for (DatabaseType type : entry.getTypes()) {
+				if (!types.contains(type)) {
+					types.add(type);
 				}
 			}
 		}
@@ -504,13 +525,8 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 
 		List groups = new ArrayList();
 
-		Iterator it = allTests.iterator();
-		while (it.hasNext()) {
-			EnsTestCase test = (EnsTestCase) it.next();
-			List testGroups = test.getGroups();
-			Iterator it2 = testGroups.iterator();
-			while (it2.hasNext()) {
-				String group = (String) it.next();
+		for (TestCatalogue.Entry entry : entries) {
+			for (String group : entry.getGroups()) {
 				// filter out test names
 				if (!isTestName(group) && !groups.contains(group)) {
 					groups.add(group);
@@ -532,15 +548,7 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 	 */
 	public EnsTestCase[] getTestsInGroup(String group) {
 
-		List result = new ArrayList();
-
-		Iterator it = allTests.iterator();
-		while (it.hasNext()) {
-			EnsTestCase test = (EnsTestCase) it.next();
-			if (test.inGroup(group)) {
-				result.add(test);
-			}
-		}
+		List result = select(null, Collections.singletonList(group), null);
 
 		return (EnsTestCase[]) result.toArray(new EnsTestCase[result.size()]);
 
@@ -558,14 +566,9 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 
 		List groups = new ArrayList();
 
-		Iterator it = allTests.iterator();
-		while (it.hasNext()) {
-			EnsTestCase test = (EnsTestCase) it.next();
-			if (test.appliesToType(type)) {
-				List testGroups = test.getGroups();
-				Iterator it2 = testGroups.iterator();
-				while (it2.hasNext()) {
-					String group = (String) it2.next();
+		for (TestCatalogue.Entry entry : entries) {
+			if (entry.appliesToType(type)) {
+				for (String group : entry.getGroups()) {
 					// filter out test names
 					if (!isTestName(group) && !groups.contains(group)) {
 						groups.add(group);
@@ -590,15 +593,7 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 	 */
 	public EnsTestCase[] getTestsInGroup(String group, DatabaseType type) {
 
-		List result = new ArrayList();
-
-		Iterator it = allTests.iterator();
-		while (it.hasNext()) {
-			EnsTestCase test = (EnsTestCase) it.next();
-			if (test.inGroup(group) && test.appliesToType(type)) {
-				result.add(test);
-			}
-		}
+		List result = select(null, Collections.singletonList(group), type);
 
 		return (EnsTestCase[]) result.toArray(new EnsTestCase[result.size()]);
 
@@ -610,10 +605,8 @@ public class DiscoveryBasedTestRegistry implements TestRegistry {
 	 */
 	private boolean isTestName(String s) {
 
-		Iterator it = allTests.iterator();
-		while (it.hasNext()) {
-			EnsTestCase test = (EnsTestCase) it.next();
-			if (test.getShortTestName().equals(s)) {
+		for (TestCatalogue.Entry entry : entries) {
+			if (entry.getShortName().equals(s)) {
 				return true;
 			}
 		}
@@ -0,0 +1,148 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
+import org.ensembl.healthcheck.util.ConnectionPool;
+import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.SqlTemplate;
+import org.ensembl.healthcheck.util.TableUpdateChecksumDatabase;
+
+/**
+ * <p>
+ * Keeps track of the single database tests which passed on a database, so
+ * that in incremental mode they are not run again until one of the tables
+ * they read has changed.
+ * </p>
+ *
+ * <p>
+ * For each (test, database) pair the creation and update times of the tables
+ * the test reads (see {@link SingleDatabaseTestCase#getInputTables()}) are
+ * stored in a {@link TableUpdateChecksumDatabase} file under
+ * directory/test name/ when the test passes. Nothing is stored if the test
+ * failed, threw an exception or connected to any database other than the
+ * one it was checking, since a comparison with e.g. the previous release can
+ * change without the database itself changing.
+ * </p>
+ */
+public class IncrementalTestTracker {
+
+	/**
+	 * Text of the report added for tests which are not run again.
+	 */
+	public static final String UNCHANGED_MESSAGE = "Not run again: no table read by this test has changed since it last passed";
+
+	private static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	private final File directory;
+
+	public IncrementalTestTracker(File directory) {
+		this.directory = directory;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Reads the current state of the tables testCase reads in database.
+	 *
+	 * @return The checkpoint or null if the state can't be read, in which
+	 *         case the test should just be run.
+	 */
+	public Checkpoint checkpoint(SingleDatabaseTestCase testCase,
+			DatabaseRegistryEntry database) {
+		try {
+			return new Checkpoint(testCase, database);
+		} catch (RuntimeException e) {
+			logger.warning("Can't read table times of " + database.getName()
+					+ ", running " + testCase.getShortTestName() + ": "
+					+ e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * @return The template the table times of database are read with.
+	 */
+	protected SqlTemplate getSqlTemplate(DatabaseRegistryEntry database) {
+		return DBUtils.getSqlTemplate(database);
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * The state of the tables a test reads, taken before it is run.
+	 */
+	public class Checkpoint {
+
+		private final TableUpdateChecksumDatabase checksums;
+
+		private final Properties before;
+
+		private final String databaseURL;
+
+		private Checkpoint(SingleDatabaseTestCase testCase,
+				DatabaseRegistryEntry database) {
+
+			String[] tables = testCase.getInputTables();
+			this.checksums = new TableUpdateChecksumDatabase(
+					database.getName(), getSqlTemplate(database),
+					new File(directory, testCase.getTestName()),
+					tables == null ? null : Arrays.asList(tables));
+			this.before = checksums.getChecksumFromDatabase();
+			this.databaseURL = database.getDatabaseServer().getDatabaseURL()
+					+ database.getName();
+		}
+
+		/**
+		 * @return true if the test passed the last time and none of its tables
+		 *         has changed since
+		 */
+		public boolean isUnchanged() {
+			return !checksums.isUpdated(before);
+		}
+
+		/**
+		 * Call just before the test is run.
+		 */
+		public void start() {
+			ConnectionPool.startRecording();
+		}
+
+		/**
+		 * Call after the test has run, also if it threw an exception.
+		 */
+		public void finish(boolean passed) {
+
+			Set<String> urls = ConnectionPool.stopRecording();
+			urls.remove(databaseURL);
+
+			if (passed && urls.isEmpty()) {
+				checksums.setRead(before);
+			} else {
+				checksums.reset();
+			}
+		}
+	}
+
+}
@@ -94,9 +94,13 @@ public class NodeDatabaseTestRunner extends DatabaseTestRunner implements Report
 			ReportManager.endDatabaseSession();
 			
 		}
+
+		ReportManager.preloadReports(mainDatabaseRegistry);
 		
 		runAllTests(mainDatabaseRegistry, testRegistry, false);
 
+		ReportManager.flushReports();
+
 		ConnectionPool.closeAll();
 
 	} // run
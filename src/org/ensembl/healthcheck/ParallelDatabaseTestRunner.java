@@ -73,6 +73,8 @@ public class ParallelDatabaseTestRunner extends TestRunner {
 
 		List<String> databasesAndGroups = Utils.getDatabasesAndGroups();
 
+		writeRegistrySnapshot(databasesAndGroups);
+
 		submitJobs(databasesAndGroups, ReportManager.getSessionID());
 
 		ConnectionPool.closeAll();
@@ -168,6 +170,43 @@ public class ParallelDatabaseTestRunner extends TestRunner {
 
 	}
 	
+	/**
+	 * If registry.snapshot.file is set, find all the databases the jobs will
+	 * test once, including their species IDs, so the node runners can take
+	 * them from the snapshot instead of each looking at them again.
+	 */
+	private void writeRegistrySnapshot(List<String> databasesAndGroups) {
+
+		RegistrySnapshot snapshot = RegistrySnapshot.getInstance();
+		if (snapshot == null) {
+			return;
+		}
+
+		List<String> regexps = new ArrayList<String>();
+		for (String databaseAndGroup : databasesAndGroups) {
+			regexps.add(databaseAndGroup.split(":")[0]);
+		}
+
+		DatabaseRegistry registry = new DatabaseRegistry(regexps, null, null, false);
+
+		for (DatabaseRegistryEntry dbre : registry.getAll()) {
+			int scope = ConnectionPool.beginScope();
+			try {
+				dbre.getSpeciesIds();
+			} catch (RuntimeException e) {
+				logger.warning("Can't read species IDs of " + dbre.getName() + ": " + e.getMessage());
+			} finally {
+				ConnectionPool.endScope(scope);
+			}
+		}
+
+		snapshot.updateSpeciesIds(registry);
+		snapshot.save();
+
+		logger.info("Wrote " + registry.getEntryCount() + " databases to registry snapshot " + System.getProperty(RegistrySnapshot.FILE));
+
+	}
+
 	private static final String MEMORY_RUSAGE = "select[mem>2000] rusage[mem=2000]";
 	private static final String MEMORY_RESERVATION = "2000";
 	
@@ -0,0 +1,299 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
+import org.ensembl.healthcheck.util.ConnectionPool;
+
+/**
+ * <p>
+ * Schedules (test, database) pairs of single database tests and runs them,
+ * either serially or on a pool of worker threads.
+ * </p>
+ *
+ * <p>
+ * Test case objects are shared between all the databases they are run on and
+ * many of them keep state in fields while they run. Therefore all the pairs
+ * belonging to one test case form a lane which is worked through in order by
+ * one thread at a time. Different lanes run concurrently. The number of
+ * tests running against the same {@link DatabaseServer} at any one time can
+ * be capped so a single MySQL instance is not swamped.
+ * </p>
+ *
+ * <p>
+ * With one thread the pairs are run on the calling thread in the order in
+ * which they were added, which is exactly what the serial test runners have
+ * always done.
+ * </p>
+ *
+ * <p>
+ * Each pair runs in its own {@link ConnectionPool} scope, so the connections
+ * a test obtains are returned to the pool as soon as it has finished.
+ * </p>
+ */
+public class ParallelTestScheduler {
+
+	/**
+	 * Implemented by test runners to do the actual work for a single pair.
+	 * Exceptions should be dealt with by the implementation.
+	 */
+	public interface PairRunner {
+
+		/**
+		 * Run testCase on database.
+		 *
+		 * @param testCase
+		 *            The test to run.
+		 * @param database
+		 *            The database to run it on.
+		 */
+		void run(SingleDatabaseTestCase testCase, DatabaseRegistryEntry database);
+
+	}
+
+	/** The logger to use for this class */
+	private static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	/** Pairs in the order they were added, used for serial runs. */
+	private final List<SingleDatabaseTestCase> orderedTests = new ArrayList<SingleDatabaseTestCase>();
+
+	private final List<DatabaseRegistryEntry> orderedDatabases = new ArrayList<DatabaseRegistryEntry>();
+
+	/** Databases to run on, keyed by test case, used for concurrent runs. */
+	private final Map<SingleDatabaseTestCase, List<DatabaseRegistryEntry>> lanes = new LinkedHashMap<SingleDatabaseTestCase, List<DatabaseRegistryEntry>>();
+
+	/** One semaphore per server, keyed on the server URL. */
+	private final Map<String, Semaphore> serverPermits = new HashMap<String, Semaphore>();
+
+	private final int threads;
+
+	private final int threadsPerServer;
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Create a new scheduler.
+	 *
+	 * @param threads
+	 *            The maximum number of tests running at the same time. Values
+	 *            below 2 mean the tests are run serially.
+	 * @param threadsPerServer
+	 *            The maximum number of tests running against any one database
+	 *            server at the same time. Values below 1 mean no limit.
+	 */
+	public ParallelTestScheduler(int threads, int threadsPerServer) {
+
+		this.threads = threads;
+		this.threadsPerServer = threadsPerServer;
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Add a (test, database) pair to be run.
+	 *
+	 * @param testCase
+	 *            The test to run.
+	 * @param database
+	 *            The database to run it on.
+	 */
+	public void add(SingleDatabaseTestCase testCase, DatabaseRegistryEntry database) {
+
+		orderedTests.add(testCase);
+		orderedDatabases.add(database);
+
+		List<DatabaseRegistryEntry> lane = lanes.get(testCase);
+		if (lane == null) {
+			lane = new ArrayList<DatabaseRegistryEntry>();
+			lanes.put(testCase, lane);
+		}
+		lane.add(database);
+
+	}
+
+	/**
+	 * @return The number of (test, database) pairs that have been added.
+	 */
+	public int size() {
+
+		return orderedTests.size();
+
+	}
+
+	/**
+	 * @return true if the pairs will be run on more than one thread.
+	 */
+	public boolean isConcurrent() {
+
+		return threads > 1;
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Run all the pairs that have been added and wait for them to finish.
+	 *
+	 * @param pairRunner
+	 *            Called once for each (test, database) pair.
+	 */
+	public void runAll(final PairRunner pairRunner) {
+
+		if (!isConcurrent()) {
+
+			for (int i = 0; i < orderedTests.size(); i++) {
+				runInConnectionScope(pairRunner, orderedTests.get(i), orderedDatabases.get(i));
+			}
+			return;
+
+		}
+
+		int poolSize = Math.min(threads, Math.max(lanes.size(), 1));
+
+		logger.info("Running " + size() + " tests in " + lanes.size() + " lanes on " + poolSize + " threads"
+				+ (threadsPerServer > 0 ? ", at most " + threadsPerServer + " per server" : ""));
+
+		ExecutorService executor = Executors.newFixedThreadPool(poolSize, new WorkerThreadFactory());
+
+		List<Future<Object>> futures = new ArrayList<Future<Object>>();
+
+		for (Map.Entry<SingleDatabaseTestCase, List<DatabaseRegistryEntry>> lane : lanes.entrySet()) {
+
+			final SingleDatabaseTestCase testCase = lane.getKey();
+			final List<DatabaseRegistryEntry> databases = lane.getValue();
+
+			futures.add(executor.submit(new Callable<Object>() {
+
+				public Object call() throws Exception {
+
+					for (DatabaseRegistryEntry database : databases) {
+						runWithServerPermit(pairRunner, testCase, database);
+					}
+					return null;
+
+				}
+			}));
+
+		}
+
+		executor.shutdown();
+
+		try {
+
+			for (Future<Object> future : futures) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					logger.log(Level.WARNING, "Test lane ended with an exception: " + e.getCause().getMessage(), e.getCause());
+				}
+			}
+
+		} catch (InterruptedException e) {
+
+			logger.warning("Interrupted while waiting for tests to finish, cancelling outstanding tests");
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+
+		}
+
+	} // runAll
+
+	// -------------------------------------------------------------------------
+
+	private void runWithServerPermit(PairRunner pairRunner, SingleDatabaseTestCase testCase, DatabaseRegistryEntry database)
+			throws InterruptedException {
+
+		Semaphore permit = getServerPermit(database.getDatabaseServer());
+
+		if (permit != null) {
+			permit.acquire();
+		}
+
+		try {
+			runInConnectionScope(pairRunner, testCase, database);
+		} finally {
+			if (permit != null) {
+				permit.release();
+			}
+		}
+
+	}
+
+	/**
+	 * Connections the test gets from the pool while it runs are handed back
+	 * when it has finished, so they can be used by the next test.
+	 */
+	private void runInConnectionScope(PairRunner pairRunner, SingleDatabaseTestCase testCase, DatabaseRegistryEntry database) {
+
+		int scope = ConnectionPool.beginScope();
+		try {
+			pairRunner.run(testCase, database);
+		} finally {
+			ConnectionPool.endScope(scope);
+		}
+
+	}
+
+	private synchronized Semaphore getServerPermit(DatabaseServer server) {
+
+		if (threadsPerServer < 1 || server == null) {
+			return null;
+		}
+
+		String key = server.getDatabaseURL();
+		Semaphore permit = serverPermits.get(key);
+		if (permit == null) {
+			permit = new Semaphore(threadsPerServer, true);
+			serverPermits.put(key, permit);
+		}
+		return permit;
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Names the worker threads so they can be told apart in log output and
+	 * thread dumps.
+	 */
+	private static class WorkerThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable r) {
+
+			Thread thread = new Thread(r, "healthcheck-worker-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+
+		}
+	}
+
+} // ParallelTestScheduler
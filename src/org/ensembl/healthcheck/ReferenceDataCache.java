@@ -0,0 +1,315 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.SqlTemplate;
+import org.ensembl.healthcheck.util.SqlTemplate.ResultSetCallback;
+
+/**
+ * <p>
+ * The contents of the small controlled tables of a database (analysis,
+ * attrib_type, external_db, coord_system, meta and mapping_session), read the
+ * first time a test asks for them and then shared by all tests run on the
+ * database. Get it with {@link DatabaseRegistryEntry#getReferenceData()}.
+ * </p>
+ *
+ * <p>
+ * Each table is read on its own, so a table missing from a database only
+ * affects the tests which use it. Call {@link #invalidate()} after changing a
+ * database; TestRunner does so after each repair. The maps and lists returned
+ * can't be modified.
+ * </p>
+ */
+public class ReferenceDataCache {
+
+	private static final AtomicLong hits = new AtomicLong();
+
+	private static final AtomicLong misses = new AtomicLong();
+
+	private final DatabaseRegistryEntry dbre;
+
+	private Map<Integer, String> logicNames;
+
+	private Map<String, Integer> attribTypeIds;
+
+	private Map<String, List<Integer>> externalDbIds;
+
+	private Map<Integer, String> coordSystemNames;
+
+	private Map<String, List<MetaValue>> meta;
+
+	private List<Integer> mappingSessionIds;
+
+	ReferenceDataCache(DatabaseRegistryEntry dbre) {
+		this.dbre = dbre;
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * @return Logic name keyed on analysis_id.
+	 */
+	public synchronized Map<Integer, String> getAnalysisLogicNames() {
+
+		if (count(logicNames)) {
+			logicNames = Collections.unmodifiableMap(getTemplate().execute(
+					"SELECT analysis_id, logic_name FROM analysis",
+					new ResultSetCallback<Map<Integer, String>>() {
+						public Map<Integer, String> process(ResultSet rs)
+								throws SQLException {
+							Map<Integer, String> map = new HashMap<Integer, String>();
+							while (rs.next()) {
+								map.put(rs.getInt(1), rs.getString(2));
+							}
+							return map;
+						}
+					}));
+		}
+		return logicNames;
+
+	}
+
+	/**
+	 * @return The attrib_type_id of the attrib_type with this code, or null if
+	 *         there is none.
+	 */
+	public synchronized Integer getAttribTypeId(String code) {
+
+		if (count(attribTypeIds)) {
+			attribTypeIds = Collections.unmodifiableMap(getTemplate().execute(
+					"SELECT code, attrib_type_id FROM attrib_type",
+					new ResultSetCallback<Map<String, Integer>>() {
+						public Map<String, Integer> process(ResultSet rs)
+								throws SQLException {
+							Map<String, Integer> map = new HashMap<String, Integer>();
+							while (rs.next()) {
+								map.put(rs.getString(1), rs.getInt(2));
+							}
+							return map;
+						}
+					}));
+		}
+		return attribTypeIds.get(code);
+
+	}
+
+	/**
+	 * @return The external_db_ids of all releases of the external_db with this
+	 *         db_name; empty if there are none.
+	 */
+	public synchronized List<Integer> getExternalDbIds(String dbName) {
+
+		if (count(externalDbIds)) {
+			externalDbIds = Collections.unmodifiableMap(getTemplate().execute(
+					"SELECT db_name, external_db_id FROM external_db ORDER BY external_db_id",
+					new ResultSetCallback<Map<String, List<Integer>>>() {
+						public Map<String, List<Integer>> process(ResultSet rs)
+								throws SQLException {
+							Map<String, List<Integer>> map = new HashMap<String, List<Integer>>();
+							while (rs.next()) {
+								List<Integer> ids = map.get(rs.getString(1));
+								if (ids == null) {
+									ids = new ArrayList<Integer>(1);
+									map.put(rs.getString(1), ids);
+								}
+								ids.add(rs.getInt(2));
+							}
+							return map;
+						}
+					}));
+		}
+		List<Integer> ids = externalDbIds.get(dbName);
+		return ids == null ? Collections.<Integer> emptyList() : Collections
+				.unmodifiableList(ids);
+
+	}
+
+	/**
+	 * @return Name keyed on coord_system_id.
+	 */
+	public synchronized Map<Integer, String> getCoordSystemNames() {
+
+		if (count(coordSystemNames)) {
+			coordSystemNames = Collections.unmodifiableMap(getTemplate()
+					.execute(
+							"SELECT coord_system_id, name FROM coord_system",
+							new ResultSetCallback<Map<Integer, String>>() {
+								public Map<Integer, String> process(
+										ResultSet rs) throws SQLException {
+									Map<Integer, String> map = new HashMap<Integer, String>();
+									while (rs.next()) {
+										map.put(rs.getInt(1), rs.getString(2));
+									}
+									return map;
+								}
+							}));
+		}
+		return coordSystemNames;
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * @return The values of meta_key for all species, in meta_id order.
+	 */
+	public List<String> getMetaValues(String key) {
+		return getMetaValues(key, null);
+	}
+
+	/**
+	 * @param speciesId
+	 *            Only return the values of this species; all if null.
+	 * @return The values of meta_key, in meta_id order.
+	 */
+	public List<String> getMetaValues(String key, Integer speciesId) {
+
+		List<String> values = new ArrayList<String>();
+		for (MetaValue value : getMeta(key)) {
+			if (speciesId == null || speciesId.equals(value.speciesId)) {
+				values.add(value.value);
+			}
+		}
+		return values;
+
+	}
+
+	/**
+	 * @return The first value of meta_key, or an empty string if there is
+	 *         none, as {@link DBUtils#getMetaValue} does.
+	 */
+	public String getMetaValue(String key) {
+		List<MetaValue> values = getMeta(key);
+		return values.isEmpty() ? "" : values.get(0).value;
+	}
+
+	private synchronized List<MetaValue> getMeta(String key) {
+
+		if (count(meta)) {
+			meta = Collections.unmodifiableMap(getTemplate().execute(
+					"SELECT meta_key, meta_value, species_id FROM meta ORDER BY meta_id",
+					new ResultSetCallback<Map<String, List<MetaValue>>>() {
+						public Map<String, List<MetaValue>> process(
+								ResultSet rs) throws SQLException {
+							Map<String, List<MetaValue>> map = new LinkedHashMap<String, List<MetaValue>>();
+							while (rs.next()) {
+								List<MetaValue> values = map.get(rs.getString(1));
+								if (values == null) {
+									values = new ArrayList<MetaValue>(1);
+									map.put(rs.getString(1), values);
+								}
+								int speciesId = rs.getInt(3);
+								values.add(new MetaValue(rs.wasNull() ? null
+										: speciesId, rs.getString(2)));
+							}
+							return map;
+						}
+					}));
+		}
+		List<MetaValue> values = meta.get(key);
+		return values == null ? Collections.<MetaValue> emptyList() : values;
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * @return The ID of the mapping_session created last, or null if there
+	 *         is none.
+	 */
+	public synchronized Integer getLatestMappingSessionId() {
+
+		if (count(mappingSessionIds)) {
+			mappingSessionIds = getTemplate().queryForDefaultObjectList(
+					"SELECT mapping_session_id FROM mapping_session ORDER BY created DESC LIMIT 1",
+					Integer.class);
+		}
+		return mappingSessionIds.isEmpty() ? null : mappingSessionIds.get(0);
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Forget everything read, e.g. after the database has been changed.
+	 */
+	public synchronized void invalidate() {
+
+		logicNames = null;
+		attribTypeIds = null;
+		externalDbIds = null;
+		coordSystemNames = null;
+		meta = null;
+		mappingSessionIds = null;
+
+	}
+
+	/**
+	 * @return The number of lookups answered from the caches of all
+	 *         databases.
+	 */
+	public static long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return The number of lookups for which a table had to be read.
+	 */
+	public static long getMisses() {
+		return misses.get();
+	}
+
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Count a lookup.
+	 *
+	 * @return true if the table has to be read.
+	 */
+	private static boolean count(Object cached) {
+		if (cached == null) {
+			misses.incrementAndGet();
+			return true;
+		}
+		hits.incrementAndGet();
+		return false;
+	}
+
+	private SqlTemplate getTemplate() {
+		return DBUtils.getSqlTemplate(dbre);
+	}
+
+	private static class MetaValue {
+
+		final Integer speciesId;
+
+		final String value;
+
+		MetaValue(Integer speciesId, String value) {
+			this.speciesId = speciesId;
+			this.value = value;
+		}
+	}
+
+} // ReferenceDataCache
@@ -0,0 +1,342 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry.DatabaseInfo;
+import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.MapRowMapper;
+
+/**
+ * <p>
+ * What is known about the databases on each server, saved to a file so that
+ * runners started one after the other (e.g. the NodeDatabaseTestRunners
+ * submitted by ParallelDatabaseTestRunner) don't all have to look at every
+ * database again.
+ * </p>
+ *
+ * <p>
+ * An entry is used as long as the database is still on the server and the
+ * creation and update times of its meta table are the same as when the entry
+ * was made. Databases whose meta table has no update time (e.g. InnoDB
+ * tables after a server restart) are always looked at again.
+ * </p>
+ */
+public class RegistrySnapshot {
+
+	/**
+	 * System property with the file the snapshot is kept in. If unset no
+	 * snapshot is used.
+	 */
+	public static final String FILE = "registry.snapshot.file";
+
+	private static final String NO_META = "none";
+
+	private static final String UNKNOWN = "unknown";
+
+	private static final String META_TIMES_SQL = "SELECT TABLE_SCHEMA, "
+			+ "CONCAT(IFNULL(CREATE_TIME,''), '/', IFNULL(UPDATE_TIME,'"
+			+ UNKNOWN + "')) FROM information_schema.TABLES "
+			+ "WHERE TABLE_NAME='meta'";
+
+	private static final MapRowMapper<String, String> META_TIMES_MAPPER = new MapRowMapper<String, String>() {
+
+		public Map<String, String> getMap() {
+			return new HashMap<String, String>();
+		}
+
+		public String getKey(ResultSet resultSet) throws SQLException {
+			return resultSet.getString(1);
+		}
+
+		public String mapRow(ResultSet resultSet, int position)
+				throws SQLException {
+			return resultSet.getString(2);
+		}
+
+		public void existingObject(String currentValue,
+				ResultSet resultSet, int position) throws SQLException {
+		}
+	};
+
+	private static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	private static RegistrySnapshot instance;
+
+	private final File file;
+
+	// server URL and user to database name to entry
+	private final Map<String, Map<String, Entry>> servers = new ConcurrentHashMap<String, Map<String, Entry>>();
+
+	private volatile boolean changed = false;
+
+	// -------------------------------------------------------------------------
+	/**
+	 * @return The snapshot in the file named by the registry.snapshot.file
+	 *         property, or null if it is unset.
+	 */
+	public static synchronized RegistrySnapshot getInstance() {
+
+		String name = System.getProperty(FILE);
+		if (name == null || name.length() == 0) {
+			return null;
+		}
+
+		File file = new File(name);
+		if (instance == null || !instance.file.equals(file)) {
+			instance = new RegistrySnapshot(file);
+		}
+		return instance;
+
+	}
+
+	public RegistrySnapshot(File file) {
+
+		this.file = file;
+		if (file.exists()) {
+			read();
+		}
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Read what has to match for an entry to be used, for all databases on
+	 * server with one query.
+	 *
+	 * @return Key to pass to {@link #getEntry} and {@link #putEntry} for each
+	 *         database with a meta table.
+	 */
+	public Map<String, String> readMetaTimes(DatabaseServer server)
+			throws SQLException {
+
+		return DBUtils.getSqlTemplate(server.getServerConnection())
+				.queryForMap(META_TIMES_SQL, META_TIMES_MAPPER);
+
+	}
+
+	/**
+	 * @param metaTime
+	 *            The value from {@link #readMetaTimes} for the database, null
+	 *            if it has no meta table.
+	 * @return An entry for database name on server, or null if there is none
+	 *         or it may be out of date.
+	 */
+	public DatabaseRegistryEntry getEntry(DatabaseServer server, String name,
+			String metaTime) {
+
+		Entry entry = getServer(server).get(name);
+		if (entry == null || !entry.metaTime.equals(key(metaTime))) {
+			return null;
+		}
+
+		return new DatabaseRegistryEntry(server, new DatabaseInfo(name,
+				entry.alias, entry.species,
+				DatabaseType.getByName(entry.type), entry.schemaVersion,
+				entry.genebuildVersion), entry.speciesIds);
+
+	}
+
+	public void putEntry(DatabaseServer server, DatabaseRegistryEntry dbre,
+			String metaTime) {
+
+		String key = key(metaTime);
+		if (key.endsWith(UNKNOWN)) {
+			getServer(server).remove(dbre.getName());
+			return;
+		}
+
+		Entry entry = new Entry();
+		entry.alias = dbre.getAlias();
+		entry.species = dbre.getSpecies();
+		entry.type = dbre.getType().getName();
+		entry.schemaVersion = dbre.getSchemaVersion();
+		entry.genebuildVersion = dbre.getGeneBuildVersion();
+		List<Integer> speciesIds = dbre.getKnownSpeciesIds();
+		entry.speciesIds = speciesIds == null ? null : new ArrayList<Integer>(speciesIds);
+		entry.metaTime = key;
+		getServer(server).put(dbre.getName(), entry);
+		changed = true;
+
+	}
+
+	/**
+	 * Forget the databases on server which are not in names.
+	 */
+	public void retainOnly(DatabaseServer server, Set<String> names) {
+
+		if (getServer(server).keySet().retainAll(names)) {
+			changed = true;
+		}
+
+	}
+
+	/**
+	 * Store the species IDs of the entries of registry that have been read
+	 * since they were added.
+	 */
+	public void updateSpeciesIds(DatabaseRegistry registry) {
+
+		for (DatabaseRegistryEntry dbre : registry.getAll()) {
+			Entry entry = getServer(dbre.getDatabaseServer()).get(
+					dbre.getName());
+			List<Integer> speciesIds = dbre.getKnownSpeciesIds();
+			if (entry != null && entry.speciesIds == null
+					&& speciesIds != null) {
+				entry.speciesIds = new ArrayList<Integer>(speciesIds);
+				changed = true;
+			}
+		}
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Write the snapshot if it has changed since it was read. It is written
+	 * to a temporary file which is then renamed, so other processes reading
+	 * it at the same time see either the old or the new snapshot.
+	 */
+	public synchronized void save() {
+
+		if (!changed) {
+			return;
+		}
+
+		File tmp = new File(file.getPath() + ".tmp" + System.nanoTime());
+		try {
+			File dir = file.getAbsoluteFile().getParentFile();
+			if (dir != null) {
+				dir.mkdirs();
+			}
+			ObjectOutputStream out = new ObjectOutputStream(
+					new FileOutputStream(tmp));
+			try {
+				Map<String, Map<String, Entry>> copy = new HashMap<String, Map<String, Entry>>();
+				for (Map.Entry<String, Map<String, Entry>> e : servers
+						.entrySet()) {
+					copy.put(e.getKey(), new HashMap<String, Entry>(e.getValue()));
+				}
+				out.writeObject(copy);
+			} finally {
+				out.close();
+			}
+			if (!tmp.renameTo(file)) {
+				file.delete();
+				if (!tmp.renameTo(file)) {
+					throw new IOException("Cannot rename " + tmp + " to "
+							+ file);
+				}
+			}
+			changed = false;
+		} catch (IOException e) {
+			tmp.delete();
+			logger.warning("Cannot write registry snapshot to " + file + ": "
+					+ e.getMessage());
+		}
+
+	}
+
+	@SuppressWarnings("unchecked")
+	private void read() {
+
+		try {
+			ObjectInputStream in = new ObjectInputStream(new FileInputStream(
+					file));
+			try {
+				Map<String, Map<String, Entry>> read = (Map<String, Map<String, Entry>>) in
+						.readObject();
+				for (Map.Entry<String, Map<String, Entry>> e : read.entrySet()) {
+					servers.put(e.getKey(), new ConcurrentHashMap<String, Entry>(
+							e.getValue()));
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			logger.warning("Cannot read registry snapshot from " + file + ": "
+					+ e.getMessage());
+		} catch (ClassNotFoundException e) {
+			logger.warning("Cannot read registry snapshot from " + file + ": "
+					+ e.getMessage());
+		}
+
+	}
+
+	// -------------------------------------------------------------------------
+
+	private Map<String, Entry> getServer(DatabaseServer server) {
+
+		String key = server.getDatabaseURL() + " " + server.getUser();
+		Map<String, Entry> entries = servers.get(key);
+		if (entries == null) {
+			synchronized (servers) {
+				entries = servers.get(key);
+				if (entries == null) {
+					entries = new ConcurrentHashMap<String, Entry>();
+					servers.put(key, entries);
+				}
+			}
+		}
+		return entries;
+
+	}
+
+	private static String key(String metaTime) {
+		return metaTime == null ? NO_META : metaTime;
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * What is stored for each database. The type is stored by name since
+	 * {@link DatabaseType} is not serializable.
+	 */
+	private static class Entry implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		String alias;
+
+		Species species;
+
+		String type;
+
+		String schemaVersion;
+
+		String genebuildVersion;
+
+		List<Integer> speciesIds;
+
+		String metaTime;
+	}
+
+} // RegistrySnapshot
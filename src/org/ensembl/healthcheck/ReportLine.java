@@ -113,6 +113,14 @@ public class ReportLine {
 
 	} // constructor
 
+	/**
+	 * Creates an empty ReportLine, used by {@link ReportStore} to restore the
+	 * reports it wrote to disk.
+	 */
+	ReportLine() {
+
+	}
+
 	// -------------------------------------------------------------------------
 	/**
 	 * Get the level of this ReportLine.
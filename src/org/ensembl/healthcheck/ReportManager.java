@@ -38,6 +38,9 @@ import org.ensembl.healthcheck.util.Utils;
 /**
  * ReportManager is the main class for reporting in the Ensj Healthcheck system. It provides methods for storing reports - single
  * items of information - and retrieving them in various formats.
+ * 
+ * The methods called while tests are running are synchronized, since tests may be run concurrently by the
+ * {@link ParallelTestScheduler}.
  */
 public class ReportManager {
 
@@ -51,35 +54,32 @@ public class ReportManager {
 	 */
 	public static void initialise() {
 
-		reportsByTest = new HashMap();
-		reportsByDatabase = new HashMap();
+		reports.close();
+		reports = new ReportStore();
 
 		outputDatabaseConnection = null;
+		reportWriter = null;
 		sessionID = -1;
 	}
 
-	/** A hash of lists keyed on the test name. */
-	protected static Map reportsByTest = new HashMap();
-
-	/** A hash of lists keyed on the database name */
-	protected static Map reportsByDatabase = new HashMap();
+	/** All reports of this session, indexed by test case and database. */
+	private static ReportStore reports = new ReportStore();
 
 	/** The logger to use for this class */
 	protected static Logger logger = Logger.getLogger("HealthCheckLogger");
 
-	/**
-	 * The maximum number of lines to store to prevent very verbose test cases causing memory problems
-	 */
-	protected static final int MAX_BUFFER_SIZE = 2000;
-
-	private static boolean bufferSizeWarningPrinted = false;
-
 	private static Reporter reporter;
 
 	private static boolean usingDatabase = false;
 
 	private static Connection outputDatabaseConnection;
 
+	/** Writes reports to the output database in the background. */
+	private static DatabaseReportWriter reportWriter;
+
+	/** Whether the report table of the output database stores report digests. */
+	private static boolean hasReportDigest = false;
+
 	private static long sessionID = -1;
 
 	// hide constructor to stop instantiation
@@ -99,7 +99,8 @@ public class ReportManager {
 	}
 
 	/**
-	 * Should be called before a test case is run.
+	 * Should be called before a test case is run. Starts measuring the run,
+	 * see {@link TestMetrics}.
 	 * 
 	 * @param testCase
 	 *          The testcase to be run.
@@ -108,13 +109,18 @@ public class ReportManager {
 	 */
 	public static void startTestCase(EnsTestCase testCase, DatabaseRegistryEntry dbre) {
 
-		if (reporter != null) {
-			reporter.startTestCase(testCase, dbre);
+		synchronized (ReportManager.class) {
+			if (reporter != null) {
+				reporter.startTestCase(testCase, dbre);
+			}
 		}
+
+		TestMetrics.start(testCase, dbre);
 	}
 
 	/**
-	 * Should be called immediately after a test case has run.
+	 * Should be called immediately after a test case has run. Records the
+	 * {@link TestMetrics} of the run.
 	 * 
 	 * @param testCase
 	 *          The testcase that was run.
@@ -125,9 +131,19 @@ public class ReportManager {
 	 */
 	public static void finishTestCase(EnsTestCase testCase, boolean result, DatabaseRegistryEntry dbre) {
 
-		if (reporter != null) {
-			reporter.finishTestCase(testCase, result, dbre);
+		TestMetrics.Measurement measurement = TestMetrics.finish(testCase, result, dbre);
+
+		synchronized (ReportManager.class) {
+			if (reporter != null) {
+				reporter.finishTestCase(testCase, result, dbre);
+			}
+			if (usingDatabase && measurement != null) {
+				getReportWriter().add(measurement);
+			}
 		}
+
+		// outside the lock so other tests can carry on reporting meanwhile
+		flushReports();
 	}
 
 	// -------------------------------------------------------------------------
@@ -137,63 +153,21 @@ public class ReportManager {
 	 * @param report
 	 *          The ReportLine to add.
 	 */
-	public static void add(ReportLine report) {
+	public static synchronized void add(ReportLine report) {
 
 		if (usingDatabase) {
 
-			checkAndAddToDatabase(report);
+			getReportWriter().add(report);
 			return;
 
 		}
 
 		String testCaseName = report.getTestCaseName();
-		String databaseName = report.getDatabaseName();
-
-		ArrayList lines;
-
-		// add to each hash
-		if (testCaseName != null && testCaseName.length() > 0) {
-			// create the lists if they're not there already
-			if (reportsByTest.get(testCaseName) == null) {
-				lines = new ArrayList();
-				lines.add(report);
-				reportsByTest.put(testCaseName, lines);
-			} else {
-				// get the relevant list, update it, and re-add it
-				lines = (ArrayList) reportsByTest.get(testCaseName);
-
-				// prevent the buffer getting too big
-				if (lines.size() > MAX_BUFFER_SIZE) {
-					if (!bufferSizeWarningPrinted) {
-						System.err.println("\n\nReportManager has reached its maximum buffer size (" + MAX_BUFFER_SIZE + " lines) - no more output will be stored\n");
-						bufferSizeWarningPrinted = true;
-					}
-				} else {
-					// buffer small enough, add it
-					lines.add(report);
-					reportsByTest.put(testCaseName, lines);
-				}
-
-			}
-
-		} else {
+		if (testCaseName == null || testCaseName.length() == 0) {
 			logger.warning("Cannot add report with test case name not set");
 		}
 
-		if (databaseName != null && databaseName.length() > 0) {
-			// create the lists if they're not there already
-			if (reportsByDatabase.get(databaseName) == null) {
-				lines = new ArrayList();
-				lines.add(report);
-				reportsByDatabase.put(databaseName, lines);
-			} else {
-				// get the relevant list, update it, and re-add it
-				lines = (ArrayList) reportsByDatabase.get(databaseName);
-				lines.add(report);
-				reportsByDatabase.put(databaseName, lines);
-			}
-
-		}
+		reports.add(report);
 
 		if (reporter != null) {
 			reporter.message(report);
@@ -378,7 +352,7 @@ public class ReportManager {
 	 */
 	public static Map getAllReportsByTestCase() {
 
-		return reportsByTest;
+		return reports.getAllByTestCase(ReportLine.ALL);
 
 	} // getAllReportsByTestCase
 
@@ -392,7 +366,7 @@ public class ReportManager {
 	 */
 	public static Map getAllReportsByTestCase(int level) {
 
-		return filterMap(reportsByTest, level);
+		return reports.getAllByTestCase(level);
 
 	} // getAllReportsByTestCase
 
@@ -404,7 +378,7 @@ public class ReportManager {
 	 */
 	public static Map getAllReportsByDatabase() {
 
-		return reportsByDatabase;
+		return reports.getAllByDatabase(ReportLine.ALL);
 
 	} // getReportsByDatabase
 
@@ -418,7 +392,7 @@ public class ReportManager {
 	 */
 	public static Map getAllReportsByDatabase(int level) {
 
-		return filterMap(reportsByDatabase, level);
+		return reports.getAllByDatabase(level);
 
 	} // getAllReportsByTestCase
 
@@ -434,9 +408,7 @@ public class ReportManager {
 	 */
 	public static List getReportsByTestCase(String testCaseName, int level) {
 
-		List allReports = (List) reportsByTest.get(testCaseName);
-
-		return filterList(allReports, level);
+		return reports.getByTestCase(testCaseName, level);
 
 	} // getReportsByTestCase
 
@@ -452,7 +424,7 @@ public class ReportManager {
 	 */
 	public static List getReportsByDatabase(String databaseName, int level) {
 
-		return filterList((List) reportsByDatabase.get(databaseName), level);
+		return reports.getByDatabase(databaseName, level);
 
 	} // getReportsByDatabase
 
@@ -521,38 +493,7 @@ public class ReportManager {
 	 */
 	public static int[] countPassesAndFailsDatabase(String database) {
 
-		int[] result = new int[2];
-
-		List testsRun = new ArrayList();
-
-		// get all of them to build a list of the tests that were run
-		List reports = getReportsByDatabase(database, ReportLine.ALL);
-		Iterator it = reports.iterator();
-		while (it.hasNext()) {
-			ReportLine line = (ReportLine) it.next();
-			String test = line.getTestCaseName();
-			if (!testsRun.contains(test)) {
-				testsRun.add(test);
-			}
-		}
-
-		// count those that failed
-		List testsFailed = new ArrayList();
-		reports = getReportsByDatabase(database, ReportLine.PROBLEM);
-		it = reports.iterator();
-		while (it.hasNext()) {
-			ReportLine line = (ReportLine) it.next();
-			String test = line.getTestCaseName();
-			if (!testsFailed.contains(test)) {
-				testsFailed.add(test);
-			}
-		}
-
-		result[1] = testsFailed.size();
-		result[0] = testsRun.size() - testsFailed.size(); // if it didn't
-		// fail, it passed
-
-		return result;
+		return reports.countPassesAndFailsDatabase(database);
 
 	}
 
@@ -567,38 +508,7 @@ public class ReportManager {
 	 */
 	public static int[] countPassesAndFailsTest(String test) {
 
-		int[] result = new int[2];
-
-		List allDBs = new ArrayList();
-
-		// get all of them to build a list of the tests that were run
-		List reports = getReportsByTestCase(test, ReportLine.ALL);
-		Iterator it = reports.iterator();
-		while (it.hasNext()) {
-			ReportLine line = (ReportLine) it.next();
-			String database = line.getDatabaseName();
-			if (!allDBs.contains(database)) {
-				allDBs.add(database);
-			}
-		}
-
-		// count those that failed
-		List dbsFailed = new ArrayList();
-		reports = getReportsByTestCase(test, ReportLine.PROBLEM);
-		it = reports.iterator();
-		while (it.hasNext()) {
-			ReportLine line = (ReportLine) it.next();
-			String database = line.getDatabaseName();
-			if (!dbsFailed.contains(database)) {
-				dbsFailed.add(database);
-			}
-		}
-
-		result[1] = dbsFailed.size();
-		result[0] = allDBs.size() - dbsFailed.size(); // if it didn't fail, it
-		// passed
-
-		return result;
+		return reports.countPassesAndFailsTest(test);
 
 	}
 
@@ -612,19 +522,7 @@ public class ReportManager {
 	 */
 	public static int[] countPassesAndFailsAll() {
 
-		int[] result = new int[2];
-
-		Map allByDB = getAllReportsByDatabase();
-		Set dbs = allByDB.keySet();
-		Iterator it = dbs.iterator();
-		while (it.hasNext()) {
-			String database = (String) it.next();
-			int[] dbResult = countPassesAndFailsDatabase(database);
-			result[0] += dbResult[0];
-			result[1] += dbResult[1];
-		}
-
-		return result;
+		return reports.countPassesAndFailsAll();
 
 	}
 
@@ -641,16 +539,7 @@ public class ReportManager {
 	 */
 	public static boolean databasePassed(String test, String database) {
 
-		List reports = getReportsByTestCase(test, ReportLine.PROBLEM);
-		Iterator it = reports.iterator();
-		while (it.hasNext()) {
-			ReportLine line = (ReportLine) it.next();
-			if (database.equals(line.getDatabaseName())) {
-				return false;
-			}
-		}
-
-		return true;
+		return reports.databasePassed(test, database);
 
 	}
 
@@ -664,12 +553,21 @@ public class ReportManager {
 	 */
 	public static boolean allDatabasesPassed(String test) {
 
-		List reports = getReportsByTestCase(test, ReportLine.PROBLEM);
-		if (reports.size() > 0) {
-			return false;
-		}
+		return reports.allDatabasesPassed(test);
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Check if a test case has reported anything.
+	 * 
+	 * @param test
+	 *          The name of the test case.
+	 * @return true if there is at least one report from test.
+	 */
+	public static boolean hasReportsForTestCase(String test) {
 
-		return true;
+		return reports.hasReportsForTestCase(test);
 
 	}
 
@@ -685,19 +583,7 @@ public class ReportManager {
 	 */
 	public static List getReports(String test, String database) {
 
-		List result = new ArrayList();
-
-		List allReports = (List) reportsByTest.get(test);
-
-		Iterator it = allReports.iterator();
-		while (it.hasNext()) {
-			ReportLine line = (ReportLine) it.next();
-			if (database.equals(line.getDatabaseName())) {
-				result.add(line);
-			}
-		}
-
-		return result;
+		return reports.get(test, database);
 
 	} // getReports
 
@@ -735,6 +621,59 @@ public class ReportManager {
 
 	}
 
+	// -------------------------------------------------------------------------
+	/**
+	 * The writer is started on first use, as some runners set the session ID
+	 * rather than calling createDatabaseSession().
+	 */
+	private static synchronized DatabaseReportWriter getReportWriter() {
+
+		if (reportWriter == null) {
+			reportWriter = new DatabaseReportWriter(outputDatabaseConnection);
+			reportWriter.start();
+		}
+		return reportWriter;
+
+	}
+
+	/**
+	 * Load what is already known about the databases which are about to be
+	 * tested, so reports for them can be checked against the output database
+	 * without a query per report. Should be called once the session ID is set.
+	 * 
+	 * @param databaseRegistry
+	 *          The databases which will be tested.
+	 */
+	public static void preloadReports(DatabaseRegistry databaseRegistry) {
+
+		if (!usingDatabase) {
+			return;
+		}
+
+		List<String> names = new ArrayList<String>();
+		for (DatabaseRegistryEntry dbre : databaseRegistry.getAll()) {
+			names.add(dbre.getName());
+		}
+		getReportWriter().preload(names);
+
+	}
+
+	/**
+	 * Wait until all the reports added so far have been written to the output
+	 * database. Does nothing if the database is not being used.
+	 */
+	public static void flushReports() {
+
+		DatabaseReportWriter writer;
+		synchronized (ReportManager.class) {
+			writer = reportWriter;
+		}
+		if (writer != null) {
+			writer.flush();
+		}
+
+	}
+
 	// -------------------------------------------------------------------------
 	/**
 	 * Set up connection to a database for output. Sets usingDatabase to true.
@@ -756,6 +695,8 @@ public class ReportManager {
 			throw new RuntimeException(e);			
 		}
 
+		hasReportDigest = DatabaseReportWriter.hasDigestColumn(outputDatabaseConnection);
+
 		usingDatabase = true;
 
 	}
@@ -819,6 +760,8 @@ public class ReportManager {
 	 */
 	public static void endDatabaseSession() {
 
+		flushReports();
+
 		String sql = "UPDATE session SET end_time=NOW() WHERE session_id=" + sessionID;
 
 		try {
@@ -888,23 +831,29 @@ public class ReportManager {
 
 	// -------------------------------------------------------------------------
 	/**
-	 * Check if a report exists (i.e. same database, testcase, result and text).
+	 * Check if a report exists (i.e. same database, testcase, result and text). Uses the indexed report digest if the output
+	 * database has one.
 	 * 
 	 * @return -1 if the report does not exist, report_id if it does.
 	 */
 	public static long reportExistsInDatabase(ReportLine report) {
 
-		String sql = "SELECT report_id FROM report WHERE database_name=? AND testcase=? AND result=? AND BINARY(text)=BINARY(?)";
+		String sql = hasReportDigest ? "SELECT report_id FROM report WHERE report_digest=?"
+				: "SELECT report_id FROM report WHERE database_name=? AND testcase=? AND result=? AND BINARY(text)=BINARY(?)";
 
 		long reportID = -1;
 
 		try {
 
 			PreparedStatement stmt = outputDatabaseConnection.prepareStatement(sql);
-			stmt.setString(1, report.getDatabaseName());
-			stmt.setString(2, report.getShortTestCaseName());
-			stmt.setString(3, report.getLevelAsString());
-			stmt.setString(4, report.getMessage());
+			if (hasReportDigest) {
+				stmt.setString(1, DatabaseReportWriter.digest(report));
+			} else {
+				stmt.setString(1, report.getDatabaseName());
+				stmt.setString(2, report.getShortTestCaseName());
+				stmt.setString(3, report.getLevelAsString());
+				stmt.setString(4, report.getMessage());
+			}
 			ResultSet rs = stmt.executeQuery();
 			if (rs != null) {
 				if (rs.first()) {
@@ -946,7 +895,8 @@ public class ReportManager {
 
 		logger.fine("Adding report for: " + report.getDatabaseName() + " " + report.getTestCaseName() + " " + report.getLevelAsString() + " " + report.getMessage());
 
-		String sql = "INSERT INTO report (first_session_id, last_session_id, database_name, species, database_type, testcase, result, text, timestamp, team_responsible, created) VALUES (?, ?, ?, ?, ?, ?, ?, ?, NOW(), ?, NOW())";
+		String sql = hasReportDigest ? "INSERT INTO report (first_session_id, last_session_id, database_name, species, database_type, testcase, result, text, timestamp, team_responsible, created, report_digest) VALUES (?, ?, ?, ?, ?, ?, ?, ?, NOW(), ?, NOW(), ?)"
+				: "INSERT INTO report (first_session_id, last_session_id, database_name, species, database_type, testcase, result, text, timestamp, team_responsible, created) VALUES (?, ?, ?, ?, ?, ?, ?, ?, NOW(), ?, NOW())";
 
 		try {
 
@@ -961,6 +911,9 @@ public class ReportManager {
 			stmt.setString(7, report.getLevelAsString());
 			stmt.setString(8, report.getMessage());
 			stmt.setString(9, report.getPrintableTeamResponsibleString());
+			if (hasReportDigest) {
+				stmt.setString(10, DatabaseReportWriter.digest(report));
+			}
 			stmt.executeUpdate();
 
 			stmt.close();
@@ -0,0 +1,467 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import org.ensembl.healthcheck.testcase.EnsTestCase;
+
+/**
+ * <p>
+ * Holds the reports of a session for {@link ReportManager}, indexed by test
+ * case and by database.
+ * </p>
+ *
+ * <p>
+ * Which databases each test ran on and which of them had problems is kept up
+ * to date as reports are added, so pass and fail counts don't have to be
+ * worked out from the reports. They can be read while reports are added.
+ * </p>
+ *
+ * <p>
+ * The first report.memory.lines reports are kept in memory. Later ones are
+ * written to a temporary file in report.spill.dir and read back when they are
+ * asked for, so nothing is lost however much a test reports. The lists
+ * returned only hold the positions of their reports and read spilled ones
+ * one at a time as they are accessed, so going through all of them doesn't
+ * bring them all back into memory. They must be used before the store is
+ * closed.
+ * </p>
+ */
+public class ReportStore {
+
+	/**
+	 * System property with the number of reports kept in memory.
+	 */
+	public static final String MEMORY_LINES = "report.memory.lines";
+
+	/**
+	 * System property with the directory reports which don't fit in memory
+	 * are written to. Defaults to java.io.tmpdir.
+	 */
+	public static final String SPILL_DIR = "report.spill.dir";
+
+	private static final int DEFAULT_MEMORY_LINES = 100000;
+
+	private static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	// read from MEMORY_LINES when the first report is added, so the store can
+	// be created before the configuration is read
+	private int memoryLines;
+
+	// the first memoryLines reports
+	private final List<ReportLine> lines = new ArrayList<ReportLine>();
+
+	// level of every report, so spilled ones can be filtered without reading
+	// them back
+	private int[] levels = new int[1024];
+
+	// file offset of every spilled report
+	private long[] offsets = new long[0];
+
+	private int size = 0;
+
+	private File spillFile;
+
+	private RandomAccessFile spill;
+
+	// positions of the reports of each test case and database, in the order
+	// they were added
+	private final Map<String, Positions> byTest = new LinkedHashMap<String, Positions>();
+
+	private final Map<String, Positions> byDatabase = new LinkedHashMap<String, Positions>();
+
+	// needed to restore spilled reports
+	private final Map<String, EnsTestCase> testCases = new ConcurrentHashMap<String, EnsTestCase>();
+
+	private final Set<String> failedTests = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	private final Map<String, Set<String>> databasesByTest = new ConcurrentHashMap<String, Set<String>>();
+
+	private final Map<String, Set<String>> failedDatabasesByTest = new ConcurrentHashMap<String, Set<String>>();
+
+	private final Map<String, Set<String>> testsByDatabase = new ConcurrentHashMap<String, Set<String>>();
+
+	private final Map<String, Set<String>> failedTestsByDatabase = new ConcurrentHashMap<String, Set<String>>();
+
+	public ReportStore() {
+		this(-1);
+	}
+
+	public ReportStore(int memoryLines) {
+		this.memoryLines = memoryLines;
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Add a report. Reports without a test case name are only indexed by
+	 * database.
+	 */
+	public synchronized void add(ReportLine report) {
+
+		String test = report.getTestCaseName();
+		String database = report.getDatabaseName();
+		boolean hasTest = test != null && test.length() > 0;
+		boolean hasDatabase = database != null && database.length() > 0;
+
+		if (!hasTest && !hasDatabase) {
+			return;
+		}
+
+		if (memoryLines < 0) {
+			memoryLines = Integer.getInteger(MEMORY_LINES, DEFAULT_MEMORY_LINES);
+		}
+
+		int position = size;
+		if (size < memoryLines) {
+			lines.add(report);
+		} else {
+			writeSpilled(report);
+		}
+		if (size == levels.length) {
+			levels = Arrays.copyOf(levels, size * 2);
+		}
+		levels[size++] = report.getLevel();
+
+		boolean problem = report.getLevel() >= ReportLine.PROBLEM;
+
+		if (hasTest) {
+			positions(byTest, test).add(position);
+			if (problem) {
+				failedTests.add(test);
+			}
+			if (report.getTestCase() != null && !testCases.containsKey(test)) {
+				testCases.put(test, report.getTestCase());
+			}
+		}
+
+		if (hasDatabase) {
+			positions(byDatabase, database).add(position);
+			if (hasTest) {
+				names(testsByDatabase, database).add(test);
+				names(databasesByTest, test).add(database);
+				if (problem) {
+					names(failedTestsByDatabase, database).add(test);
+					names(failedDatabasesByTest, test).add(database);
+				}
+			}
+		}
+
+	}
+
+	// -------------------------------------------------------------------------
+
+	public synchronized boolean hasReportsForTestCase(String test) {
+		return byTest.containsKey(test);
+	}
+
+	/**
+	 * @return The reports of test with at least the given level, in the order
+	 *         they were added.
+	 */
+	public synchronized List<ReportLine> getByTestCase(String test, int level) {
+		return read(byTest.get(test), level, null);
+	}
+
+	public synchronized List<ReportLine> getByDatabase(String database, int level) {
+		return read(byDatabase.get(database), level, null);
+	}
+
+	public synchronized List<ReportLine> get(String test, String database) {
+		return read(byTest.get(test), ReportLine.ALL, database);
+	}
+
+	/**
+	 * @return The reports with at least the given level keyed on test case
+	 *         name, in the order the test cases first reported.
+	 */
+	public synchronized Map<String, List<ReportLine>> getAllByTestCase(int level) {
+		return readAll(byTest, level);
+	}
+
+	public synchronized Map<String, List<ReportLine>> getAllByDatabase(int level) {
+		return readAll(byDatabase, level);
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * @return The number of tests which passed [0] and failed [1] on database.
+	 */
+	public int[] countPassesAndFailsDatabase(String database) {
+		return passesAndFails(testsByDatabase.get(database), failedTestsByDatabase.get(database));
+	}
+
+	/**
+	 * @return The number of databases which passed [0] and failed [1] test.
+	 */
+	public int[] countPassesAndFailsTest(String test) {
+		return passesAndFails(databasesByTest.get(test), failedDatabasesByTest.get(test));
+	}
+
+	public int[] countPassesAndFailsAll() {
+		int[] result = new int[2];
+		for (String database : testsByDatabase.keySet()) {
+			int[] dbResult = countPassesAndFailsDatabase(database);
+			result[0] += dbResult[0];
+			result[1] += dbResult[1];
+		}
+		return result;
+	}
+
+	public boolean databasePassed(String test, String database) {
+		Set<String> failed = failedDatabasesByTest.get(test);
+		return failed == null || !failed.contains(database);
+	}
+
+	public boolean allDatabasesPassed(String test) {
+		return !failedTests.contains(test);
+	}
+
+	/**
+	 * @return The number of reports added.
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Delete the file spilled reports were written to.
+	 */
+	public synchronized void close() {
+		if (spill != null) {
+			try {
+				spill.close();
+			} catch (IOException e) {
+				logger.warning("Can't close " + spillFile + ": " + e.getMessage());
+			}
+			spillFile.delete();
+			spill = null;
+		}
+	}
+
+	// -------------------------------------------------------------------------
+
+	private int[] passesAndFails(Set<String> all, Set<String> failed) {
+		int[] result = new int[2];
+		result[1] = failed == null ? 0 : failed.size();
+		result[0] = (all == null ? 0 : all.size()) - result[1];
+		return result;
+	}
+
+	private static Positions positions(Map<String, Positions> index, String key) {
+		Positions positions = index.get(key);
+		if (positions == null) {
+			positions = new Positions();
+			index.put(key, positions);
+		}
+		return positions;
+	}
+
+	private static Set<String> names(Map<String, Set<String>> index, String key) {
+		Set<String> names = index.get(key);
+		if (names == null) {
+			names = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+			index.put(key, names);
+		}
+		return names;
+	}
+
+	private Map<String, List<ReportLine>> readAll(Map<String, Positions> index, int level) {
+		Map<String, List<ReportLine>> result = new LinkedHashMap<String, List<ReportLine>>();
+		for (Map.Entry<String, Positions> entry : index.entrySet()) {
+			result.put(entry.getKey(), read(entry.getValue(), level, null));
+		}
+		return result;
+	}
+
+	/**
+	 * @return The reports at positions with at least the given level which
+	 *         are also in the positions of database, if it is not null.
+	 */
+	private List<ReportLine> read(Positions positions, int level, String database) {
+
+		Positions result = new Positions();
+		if (positions == null) {
+			return new Reports(result);
+		}
+
+		// both are in the order the reports were added
+		Positions other = database == null ? null : byDatabase.get(database);
+		int j = 0;
+
+		for (int i = 0; i < positions.size; i++) {
+			int position = positions.values[i];
+			if (levels[position] < level) {
+				continue;
+			}
+			if (database != null) {
+				while (other != null && j < other.size && other.values[j] < position) {
+					j++;
+				}
+				if (other == null || j == other.size || other.values[j] != position) {
+					continue;
+				}
+			}
+			result.add(position);
+		}
+		return new Reports(result);
+
+	}
+
+	private synchronized ReportLine getReport(int position) {
+		return position < lines.size() ? lines.get(position) : readSpilled(position - lines.size());
+	}
+
+	// -------------------------------------------------------------------------
+
+	private void writeSpilled(ReportLine report) {
+
+		try {
+
+			if (spill == null) {
+				String dir = System.getProperty(SPILL_DIR);
+				spillFile = File.createTempFile("healthcheck-reports", ".spill",
+						dir == null || dir.length() == 0 ? null : new File(dir));
+				spillFile.deleteOnExit();
+				spill = new RandomAccessFile(spillFile, "rw");
+				logger.info("More than " + memoryLines + " reports, writing the rest to " + spillFile);
+			}
+
+			int index = size - memoryLines;
+			if (index == offsets.length) {
+				offsets = Arrays.copyOf(offsets, Math.max(1024, index * 2));
+			}
+			long offset = spill.length();
+			offsets[index] = offset;
+
+			spill.seek(offset);
+			spill.writeInt(report.getLevel());
+			writeString(report.getTestCaseName());
+			writeString(report.getDatabaseName());
+			writeString(report.getSpeciesName());
+			writeString(report.getMessage());
+			writeString(report.getTeamResponsible() == null ? null : report.getTeamResponsible().name());
+			writeString(report.getSecondTeamResponsible() == null ? null : report.getSecondTeamResponsible().name());
+
+		} catch (IOException e) {
+			throw new RuntimeException("Can't write report to " + spillFile, e);
+		}
+
+	}
+
+	private ReportLine readSpilled(int index) {
+
+		try {
+
+			spill.seek(offsets[index]);
+
+			ReportLine report = new ReportLine();
+			report.level = spill.readInt();
+			report.testCaseName = readString();
+			report.databaseName = readString();
+			report.speciesName = readString();
+			report.message = readString();
+			String team = readString();
+			report.teamResponsible = team == null ? null : Team.valueOf(team);
+			team = readString();
+			report.secondTeamResponsible = team == null ? null : Team.valueOf(team);
+			report.testCase = testCases.get(report.testCaseName);
+			if (report.databaseName != null) {
+				report.type = DatabaseRegistryEntry.getInfoFromName(report.databaseName).getType();
+			}
+			return report;
+
+		} catch (IOException e) {
+			throw new RuntimeException("Can't read report from " + spillFile, e);
+		}
+
+	}
+
+	private void writeString(String s) throws IOException {
+		if (s == null) {
+			spill.writeInt(-1);
+		} else {
+			byte[] bytes = s.getBytes("UTF-8");
+			spill.writeInt(bytes.length);
+			spill.write(bytes);
+		}
+	}
+
+	private String readString() throws IOException {
+		int length = spill.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		spill.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Reports at a fixed set of positions, read when they are accessed.
+	 */
+	private class Reports extends AbstractList<ReportLine> {
+
+		private final Positions positions;
+
+		Reports(Positions positions) {
+			this.positions = positions;
+		}
+
+		@Override
+		public ReportLine get(int index) {
+			if (index < 0 || index >= positions.size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + positions.size);
+			}
+			return getReport(positions.values[index]);
+		}
+
+		@Override
+		public int size() {
+			return positions.size;
+		}
+	}
+
+	private static class Positions {
+
+		int[] values = new int[8];
+
+		int size = 0;
+
+		void add(int position) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = position;
+		}
+	}
+
+} // ReportStore
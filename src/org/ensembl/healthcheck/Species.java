@@ -126,12 +126,21 @@ public enum Species {
 
 	private static Map<Species, String> vegaStableIDPrefix = new EnumMap<Species, String>(Species.class);
 
+	// lowercased alias to species, the first species listed wins if two share
+	// an alias
+	private static Map<String, Species> aliasToSpecies = new HashMap<String, Species>();
+
 	private static Logger logger = Logger.getLogger("HealthCheckLogger");
 	// populate the hash tables
 	static {
 		for (Species s : values()) {
 			taxonIDToSpecies.put(s.getTaxonID(), s);
 			assemblyPrefixToSpecies.put(s.getAssemblyPrefix(), s);
+			for (String a : s.aliasSet) {
+				if (!aliasToSpecies.containsKey(a)) {
+					aliasToSpecies.put(a, s);
+				}
+			}
 			// we have to add to the Vega hash the 4 species with Vega annotation
 			switch (s) {
 			case HOMO_SAPIENS:
@@ -205,15 +214,8 @@ public enum Species {
 	 */
 	public static Species resolveAlias(String speciesAlias) {
 
-		String alias = speciesAlias.toLowerCase();
-
-		// --------------------------------------
-		for (Species s : values()) {
-		  if(s.aliasSet.contains(alias)) {
-		    return s;
-		  }
-		}
-		return Species.UNKNOWN;
+		Species species = aliasToSpecies.get(speciesAlias.toLowerCase());
+		return species == null ? Species.UNKNOWN : species;
 	}
 
 	// -----------------------------------------------------------------
@@ -17,6 +17,7 @@
 package org.ensembl.healthcheck;
 
 import org.ensembl.healthcheck.configuration.ConfigurationUserParameters;
+import org.ensembl.healthcheck.util.ConnectionPool;
 import org.ensembl.healthcheck.util.SqlTemplate;
 
 import uk.co.flamingpenguin.jewel.cli.Option;
@@ -62,8 +63,38 @@ public class SystemPropertySetter {
 		System.setProperty("output.database",    configuration.getOutputDatabase());
 		System.setProperty("output.user",        configuration.getOutputUser());
 		System.setProperty("output.password",    configuration.getOutputPassword());
+
+		if (configuration.isOutputReportBatchSize()) {
+			System.setProperty(DatabaseReportWriter.BATCH_SIZE, configuration.getOutputReportBatchSize());
+		}
+		if (configuration.isOutputReportQueueSize()) {
+			System.setProperty(DatabaseReportWriter.QUEUE_SIZE, configuration.getOutputReportQueueSize());
+		}
 	}
 	
+	/**
+	 * Sets the system properties read by the {@link ConnectionPool}. Must be
+	 * called before the first connection is made.
+	 */
+	public void setPropertiesForConnectionPool() {
+
+		if (configuration.isConnectionPoolMaxPerServer()) {
+			System.setProperty(ConnectionPool.MAX_PER_SERVER,       configuration.getConnectionPoolMaxPerServer());
+		}
+		if (configuration.isConnectionPoolMaxIdleSeconds()) {
+			System.setProperty(ConnectionPool.MAX_IDLE_SECONDS,     configuration.getConnectionPoolMaxIdleSeconds());
+		}
+		if (configuration.isConnectionPoolMaxLifetimeSeconds()) {
+			System.setProperty(ConnectionPool.MAX_LIFETIME_SECONDS, configuration.getConnectionPoolMaxLifetimeSeconds());
+		}
+		if (configuration.isConnectionPoolWaitSeconds()) {
+			System.setProperty(ConnectionPool.WAIT_SECONDS,         configuration.getConnectionPoolWaitSeconds());
+		}
+		if (configuration.isConnectionPoolValidationIntervalSeconds()) {
+			System.setProperty(ConnectionPool.VALIDATION_INTERVAL_SECONDS, configuration.getConnectionPoolValidationIntervalSeconds());
+		}
+	}
+
 	/**
 	 * Sets system properties for the healthchecks.
 	 * 
@@ -114,6 +145,52 @@ public class SystemPropertySetter {
 			System.setProperty("master.schema",    configuration.getMasterSchema());
 		}
 		
+		if (configuration.isSchemaCompareThreads()) {
+			// Used in:
+			//
+			// org.ensembl.healthcheck.testcase.generic.AbstractCompareSchema
+			// org.ensembl.healthcheck.testcase.eg_core.EGAbstractCompareSchema
+			//
+			System.setProperty(
+				org.ensembl.healthcheck.testcase.generic.AbstractCompareSchema.COMPARE_THREADS,
+				configuration.getSchemaCompareThreads()
+			);
+		}
+		
+		if (configuration.isSchemaCompareCacheDir()) {
+			// Used in:
+			//
+			// org.ensembl.healthcheck.testcase.generic.AbstractCompareSchema
+			// org.ensembl.healthcheck.testcase.eg_core.EGAbstractCompareSchema
+			//
+			System.setProperty(
+				org.ensembl.healthcheck.testcase.generic.AbstractCompareSchema.CACHE_DIR,
+				configuration.getSchemaCompareCacheDir()
+			);
+		}
+		
+		
+		if (configuration.isMetaCoordThreads()) {
+			// Used in:
+			//
+			// org.ensembl.healthcheck.testcase.MetaCoordChecker
+			//
+			System.setProperty(
+				org.ensembl.healthcheck.testcase.MetaCoordChecker.THREADS,
+				configuration.getMetaCoordThreads()
+			);
+		}
+		
+		if (configuration.isSqlCompareThreads()) {
+			// Used in:
+			//
+			// org.ensembl.healthcheck.util.SqlResultComparator
+			//
+			System.setProperty(
+				org.ensembl.healthcheck.util.SqlResultComparator.THREADS,
+				configuration.getSqlCompareThreads()
+			);
+		}
 		
 		if (configuration.isPerl()) {
 			// Used in:
@@ -126,6 +203,105 @@ public class SystemPropertySetter {
 			);
 		}
 		
+		if (configuration.isPerlWorkers()) {
+			// Used in:
+			//
+			// org.ensembl.healthcheck.testcase.PerlWorkerPool
+			//
+			System.setProperty(
+				org.ensembl.healthcheck.testcase.PerlWorkerPool.WORKERS,
+				configuration.getPerlWorkers()
+			);
+		}
+		
+		if (configuration.isShellSpeciesThreads()) {
+			// Used in:
+			//
+			// org.ensembl.healthcheck.testcase.AbstractShellBasedTestCase
+			//
+			System.setProperty(
+				org.ensembl.healthcheck.testcase.AbstractShellBasedTestCase.SPECIES_THREADS,
+				configuration.getShellSpeciesThreads()
+			);
+		}
+		
+		if (configuration.isShellSpeciesTimeout()) {
+			// Used in:
+			//
+			// org.ensembl.healthcheck.testcase.AbstractShellBasedTestCase
+			//
+			System.setProperty(
+				org.ensembl.healthcheck.testcase.AbstractShellBasedTestCase.SPECIES_TIMEOUT,
+				configuration.getShellSpeciesTimeout()
+			);
+		}
+		
+		if (configuration.isMetricsFile()) {
+			// Used in:
+			//
+			// org.ensembl.healthcheck.TestMetrics
+			//
+			System.setProperty(
+				org.ensembl.healthcheck.TestMetrics.FILE,
+				configuration.getMetricsFile()
+			);
+		}
+		
+		if (configuration.isMetricsSummaryFile()) {
+			// Used in:
+			//
+			// org.ensembl.healthcheck.TestMetrics
+			//
+			System.setProperty(
+				org.ensembl.healthcheck.TestMetrics.SUMMARY_FILE,
+				configuration.getMetricsSummaryFile()
+			);
+		}
+		
+		if (configuration.isMetricsJdbc()) {
+			// Used in:
+			//
+			// org.ensembl.healthcheck.TestMetrics
+			//
+			System.setProperty(
+				org.ensembl.healthcheck.TestMetrics.JDBC,
+				configuration.getMetricsJdbc()
+			);
+		}
+		
+		if (configuration.isSqlTraceFile()) {
+			// Used in:
+			//
+			// org.ensembl.healthcheck.util.SqlTrace
+			//
+			System.setProperty(
+				org.ensembl.healthcheck.util.SqlTrace.FILE,
+				configuration.getSqlTraceFile()
+			);
+		}
+		
+		if (configuration.isSqlTraceTop()) {
+			// Used in:
+			//
+			// org.ensembl.healthcheck.util.SqlTrace
+			//
+			System.setProperty(
+				org.ensembl.healthcheck.util.SqlTrace.TOP,
+				configuration.getSqlTraceTop()
+			);
+		}
+		
+		if (configuration.isSqlTraceExplainMs()) {
+			// Used in:
+			//
+			// org.ensembl.healthcheck.util.SqlTrace
+			//
+			System.setProperty(
+				org.ensembl.healthcheck.util.SqlTrace.EXPLAIN_MS,
+				configuration.getSqlTraceExplainMs()
+			);
+		}
+		
 		if (configuration.isMasterVariationSchema()) {
 			// Used in:
 			//
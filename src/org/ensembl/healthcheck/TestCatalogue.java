@@ -0,0 +1,533 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.Modifier;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.ensembl.PackageScan;
+import org.ensembl.healthcheck.testcase.EnsTestCase;
+import org.ensembl.healthcheck.testcase.MultiDatabaseTestCase;
+import org.ensembl.healthcheck.testcase.OrderedDatabaseTestCase;
+import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
+
+/**
+ * <p>
+ * Index of the tests and groups of tests, written at build time by
+ * "ant build-test-catalogue" so that the registries know the names, groups
+ * and types of all the tests without loading and instantiating every class
+ * on the classpath. Only the tests which are actually run are instantiated.
+ * </p>
+ *
+ * <p>
+ * The catalogue is the resource org/ensembl/healthcheck/test-catalogue.txt,
+ * one line per class with tab-separated fields:
+ * </p>
+ *
+ * <pre>
+ * class name, kind, aliases, groups, database types, long running
+ * </pre>
+ *
+ * <p>
+ * where kind is one of single, multi, ordered, test or group, and aliases,
+ * groups and types are comma-separated. The types are those the test has in
+ * {@link DiscoveryBasedTestRegistry}, i.e. after setTypeFromDirName and
+ * types() have been called. If there is no catalogue on the classpath, or it
+ * doesn't cover a package, the callers scan the classpath as before.
+ * "ant compile" deletes the catalogue when any class is recompiled. Classes
+ * compiled some other way (e.g. by an IDE) are caught when the catalogue is
+ * loaded: if a class file in a catalogued package is newer than the
+ * catalogue, it is ignored with a warning and the classpath is scanned.
+ * </p>
+ */
+public class TestCatalogue {
+
+	public static final String RESOURCE = "org/ensembl/healthcheck/test-catalogue.txt";
+
+	private static final String PACKAGES = "# packages\t";
+
+	private static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	private static TestCatalogue instance;
+
+	private static boolean loaded = false;
+
+	private final List<String> packages;
+
+	private final List<Entry> entries;
+
+	// -------------------------------------------------------------------------
+	/**
+	 * @return The catalogue on the classpath, or null if there is none or it
+	 *         can't be read.
+	 */
+	public static synchronized TestCatalogue getInstance() {
+
+		if (!loaded) {
+			loaded = true;
+			URL url = TestCatalogue.class.getClassLoader().getResource(RESOURCE);
+			if (url == null) {
+				logger.fine("No test catalogue on the classpath; tests will be found by scanning");
+			} else {
+				InputStream in = null;
+				try {
+					in = url.openStream();
+					instance = read(in);
+					logger.fine("Read " + instance.entries.size() + " entries from test catalogue " + url);
+					String newer = findNewerClass(TestCatalogue.class.getClassLoader(), url, instance.packages);
+					if (newer != null) {
+						logger.warning("Test catalogue " + url + " is older than " + newer
+								+ "; tests will be found by scanning. Run \"ant build-test-catalogue\" to update it.");
+						instance = null;
+					}
+				} catch (IOException e) {
+					logger.log(Level.WARNING, "Could not read test catalogue " + url + "; tests will be found by scanning", e);
+				} finally {
+					IOUtils.closeQuietly(in);
+				}
+			}
+		}
+		return instance;
+
+	}
+
+	TestCatalogue(List<String> packages, List<Entry> entries) {
+		this.packages = packages;
+		this.entries = entries;
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * @return true if the catalogue was built by scanning packageName, or a
+	 *         package containing it.
+	 */
+	public boolean covers(String packageName) {
+
+		for (String p : packages) {
+			if (packageName.equals(p) || packageName.startsWith(p + ".")) {
+				return true;
+			}
+		}
+		return false;
+
+	}
+
+	/**
+	 * @return The entries for classes in packageName and its subpackages, in
+	 *         the order of the catalogue.
+	 */
+	public List<Entry> getEntries(String packageName) {
+
+		List<Entry> result = new ArrayList<Entry>();
+		for (Entry entry : entries) {
+			if (entry.getClassName().startsWith(packageName + ".")) {
+				result.add(entry);
+			}
+		}
+		return result;
+
+	}
+
+	/**
+	 * @return The entry for className, or null if it isn't in the catalogue.
+	 */
+	public Entry getEntry(String className) {
+
+		for (Entry entry : entries) {
+			if (entry.getClassName().equals(className)) {
+				return entry;
+			}
+		}
+		return null;
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Look for class files which were compiled after a catalogue was written,
+	 * in all the directories and jars on the classpath of loader which hold
+	 * one of packages.
+	 *
+	 * @return The URL of the first newer class file found, or null if there is
+	 *         none or the time the catalogue was written isn't known.
+	 */
+	public static String findNewerClass(ClassLoader loader, URL catalogue, Collection<String> packages) throws IOException {
+
+		long written = lastModified(catalogue);
+		if (written <= 0) {
+			return null;
+		}
+
+		for (String packageName : packages) {
+			String path = packageName.replace('.', '/');
+			Enumeration<URL> roots = loader.getResources(path);
+			while (roots.hasMoreElements()) {
+				URL root = roots.nextElement();
+				String newer = null;
+				if (root.getProtocol().equals("file")) {
+					newer = findNewerClass(FileUtils.toFile(root), written);
+				} else if (root.getProtocol().equals("jar")) {
+					newer = findNewerClass(((JarURLConnection) root.openConnection()).getJarFile(), path + "/", written);
+				}
+				if (newer != null) {
+					return newer;
+				}
+			}
+		}
+		return null;
+
+	}
+
+	private static String findNewerClass(File directory, long written) {
+
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return null;
+		}
+		for (File file : files) {
+			String newer = null;
+			if (file.isDirectory()) {
+				newer = findNewerClass(file, written);
+			} else if (file.getName().endsWith(".class") && file.lastModified() > written) {
+				newer = file.toURI().toString();
+			}
+			if (newer != null) {
+				return newer;
+			}
+		}
+		return null;
+
+	}
+
+	private static String findNewerClass(JarFile jar, String path, long written) {
+
+		Enumeration<JarEntry> entries = jar.entries();
+		while (entries.hasMoreElements()) {
+			JarEntry entry = entries.nextElement();
+			if (entry.getName().startsWith(path) && entry.getName().endsWith(".class") && entry.getTime() > written) {
+				return "jar:file:" + jar.getName() + "!/" + entry.getName();
+			}
+		}
+		return null;
+
+	}
+
+	/**
+	 * @return The time url was last modified, or 0 if it isn't known.
+	 */
+	private static long lastModified(URL url) throws IOException {
+
+		if (url.getProtocol().equals("file")) {
+			return FileUtils.toFile(url).lastModified();
+		}
+		if (url.getProtocol().equals("jar")) {
+			JarEntry entry = ((JarURLConnection) url.openConnection()).getJarEntry();
+			return entry == null ? 0 : entry.getTime();
+		}
+		return 0;
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Read a catalogue written by {@link #main}.
+	 */
+	public static TestCatalogue read(InputStream in) throws IOException {
+
+		List<String> packages = new ArrayList<String>();
+		List<Entry> entries = new ArrayList<Entry>();
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (line.startsWith(PACKAGES)) {
+				packages.addAll(split(line.substring(PACKAGES.length())));
+			} else if (line.length() > 0 && !line.startsWith("#")) {
+				String[] fields = line.split("\t", -1);
+				if (fields.length != 6) {
+					throw new IOException("Malformed line in test catalogue: " + line);
+				}
+				List<DatabaseType> types = new ArrayList<DatabaseType>();
+				for (String type : split(fields[4])) {
+					types.add(DatabaseType.getByName(type));
+				}
+				entries.add(new Entry(fields[0], fields[1], split(fields[2]), split(fields[3]), types, Boolean.valueOf(fields[5])));
+			}
+		}
+
+		return new TestCatalogue(packages, entries);
+
+	}
+
+	static void write(PrintWriter out, String[] packages, List<Entry> entries) {
+
+		out.println("# Test catalogue, see " + TestCatalogue.class.getName());
+		out.println(PACKAGES + StringUtils.join(packages, ","));
+		for (Entry entry : entries) {
+			out.println(entry.getClassName() + "\t" + entry.getKind() + "\t" + StringUtils.join(entry.getAliases(), ",") + "\t"
+					+ StringUtils.join(entry.getGroups(), ",") + "\t" + StringUtils.join(entry.getTypes(), ",") + "\t" + entry.isLongRunning());
+		}
+
+	}
+
+	private static List<String> split(String field) {
+
+		if (field.length() == 0) {
+			return Collections.emptyList();
+		}
+		return Arrays.asList(field.split(","));
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Instantiate every test and group in packages to write their entries.
+	 *
+	 * @return The entries, in the order the classes were found.
+	 */
+	static List<Entry> scan(String[] packages) {
+
+		List<Entry> entries = new ArrayList<Entry>();
+
+		for (String packageName : packages) {
+
+			List<Class<?>> classes;
+			try {
+				classes = PackageScan.getClassesForPackage(packageName, true);
+			} catch (ClassNotFoundException e) {
+				throw new RuntimeException(e);
+			}
+
+			for (Class<?> c : classes) {
+
+				if (Modifier.isAbstract(c.getModifiers()) || c.getName().indexOf('$') > 0
+						|| !(EnsTestCase.class.isAssignableFrom(c) || GroupOfTests.class.isAssignableFrom(c))) {
+					continue;
+				}
+
+				Object obj;
+				try {
+					obj = c.newInstance();
+				} catch (Exception e) {
+					logger.log(Level.WARNING, "Could not instantiate " + c.getName() + "; leaving it out of the test catalogue", e);
+					continue;
+				}
+
+				if (obj instanceof EnsTestCase) {
+					// the types the test has in DiscoveryBasedTestRegistry
+					EnsTestCase test = (EnsTestCase) obj;
+					String[] bits = test.getName().split("\\.");
+					test.setTypeFromDirName(bits[bits.length - 2]);
+					test.types();
+					entries.add(Entry.forTest(test));
+				} else {
+					entries.add(new Entry(c.getName(), Entry.GROUP, TestInstantiator.knownNamesForGroupOfTests((GroupOfTests) obj),
+							Collections.<String> emptyList(), Collections.<DatabaseType> emptyList(), false));
+				}
+			}
+		}
+
+		return entries;
+
+	}
+
+	/**
+	 * Write the catalogue of the classes on the classpath.
+	 *
+	 * @param args
+	 *          The file to write and the packages to scan.
+	 */
+	public static void main(String[] args) throws IOException {
+
+		if (args.length < 2) {
+			System.err.println("Usage: " + TestCatalogue.class.getName() + " output-file package...");
+			System.exit(1);
+		}
+
+		String[] packages = Arrays.copyOfRange(args, 1, args.length);
+		List<Entry> entries = scan(packages);
+
+		File file = new File(args[0]);
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		try {
+			write(out, packages, entries);
+		} finally {
+			out.close();
+		}
+
+		System.out.println("Wrote " + entries.size() + " entries to " + file);
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * What the catalogue knows about one test or group of tests.
+	 */
+	public static class Entry {
+
+		public static final String SINGLE = "single";
+
+		public static final String MULTI = "multi";
+
+		public static final String ORDERED = "ordered";
+
+		public static final String TEST = "test";
+
+		public static final String GROUP = "group";
+
+		private final String className;
+
+		private final String kind;
+
+		private final List<String> aliases;
+
+		private final List<String> groups;
+
+		private final List<DatabaseType> types;
+
+		private final boolean longRunning;
+
+		Entry(String className, String kind, List<String> aliases, List<String> groups, List<DatabaseType> types, boolean longRunning) {
+			this.className = className;
+			this.kind = kind;
+			this.aliases = aliases;
+			this.groups = groups;
+			this.types = types;
+			this.longRunning = longRunning;
+		}
+
+		/**
+		 * @return The entry describing test as it is now.
+		 */
+		static Entry forTest(EnsTestCase test) {
+
+			String kind = TEST;
+			if (test instanceof SingleDatabaseTestCase) {
+				kind = SINGLE;
+			} else if (test instanceof MultiDatabaseTestCase) {
+				kind = MULTI;
+			} else if (test instanceof OrderedDatabaseTestCase) {
+				kind = ORDERED;
+			}
+
+			return new Entry(test.getName(), kind, TestInstantiator.knownNamesForEnsTestCase(test), new ArrayList<String>(test.getGroups()),
+					Arrays.asList(test.getAppliesToTypes()), test.isLongRunning());
+
+		}
+
+		public String getClassName() {
+			return className;
+		}
+
+		public String getKind() {
+			return kind;
+		}
+
+		public boolean isTest() {
+			return !GROUP.equals(kind);
+		}
+
+		/**
+		 * @return The short name of the test or group, i.e. the class name
+		 *         without the package.
+		 */
+		public String getShortName() {
+			return className.substring(className.lastIndexOf('.') + 1);
+		}
+
+		/**
+		 * @return The last component of the package, e.g. generic or compara.
+		 */
+		public String getDirName() {
+			String[] bits = className.split("\\.");
+			return bits[bits.length - 2];
+		}
+
+		public List<String> getAliases() {
+			return aliases;
+		}
+
+		public List<String> getGroups() {
+			return groups;
+		}
+
+		public List<DatabaseType> getTypes() {
+			return types;
+		}
+
+		public boolean isLongRunning() {
+			return longRunning;
+		}
+
+		public boolean inGroup(String group) {
+			return groups.contains(group);
+		}
+
+		public boolean inGroups(List<String> checkGroups) {
+			for (String group : checkGroups) {
+				if (inGroup(group)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		public boolean appliesToType(DatabaseType type) {
+			return types.contains(type);
+		}
+
+		/**
+		 * @return A new instance of the test, with the types it has in
+		 *         {@link DiscoveryBasedTestRegistry}.
+		 * @throws Exception
+		 *           If the class can't be loaded or instantiated, e.g. if it
+		 *           was removed since the catalogue was written.
+		 */
+		public EnsTestCase newTest() throws Exception {
+
+			EnsTestCase test = (EnsTestCase) Class.forName(className).newInstance();
+			test.setTypeFromDirName(getDirName());
+			test.types();
+			return test;
+
+		}
+
+	} // Entry
+
+} // TestCatalogue
@@ -376,6 +376,8 @@ public class TestInstantiator {
 	
 	/**
 	 * Scans a given package for classes that are subclasses of EnsTestCase.
+	 * If the {@link TestCatalogue} covers the package, the names are taken
+	 * from there instead, so no class is loaded.
 	 * 
 	 * @param packageToScan
 	 * 
@@ -383,6 +385,25 @@ public class TestInstantiator {
 	public static Map<String,String> createMap(String packageToScan) {
 		
 		Map<String,String> simpleNameToClass = new HashMap();
+		
+		TestCatalogue catalogue = TestCatalogue.getInstance();
+		
+		if (catalogue != null && catalogue.covers(packageToScan)) {
+			
+			for (TestCatalogue.Entry entry : catalogue.getEntries(packageToScan)) {
+				for (String testName : entry.getAliases()) {
+					addToMapWithCheck(
+						simpleNameToClass, 
+						new keyValuePair(
+							testName, 
+							entry.getClassName()
+						)
+					);
+				}
+			}
+			return simpleNameToClass;
+		}
+		
 		List<Class<?>> classesInPackage = null;
 		
 		try {
@@ -0,0 +1,576 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.ensembl.healthcheck.testcase.EnsTestCase;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * <p>
+ * Measures each run of a test on a database, from
+ * {@link ReportManager#startTestCase} to {@link ReportManager#finishTestCase}:
+ * wall time, CPU time of the thread running the test, and the SQL statements
+ * executed, rows fetched, bytes read and time spent waiting for a connection
+ * by that thread and the worker threads of the test (see {@link #inherit}).
+ * The JDBC counts come from
+ * {@link org.ensembl.healthcheck.util.MonitoredConnection}.
+ * </p>
+ *
+ * <p>
+ * Each measurement is appended as a line to the CSV file metrics.file and,
+ * if the reports go to the output database, stored in its test_metrics
+ * table. The measurements of each test are also summed up in histograms,
+ * which are written as JSON to metrics.summary.file when the JVM exits, the
+ * tests taking the most time first.
+ * </p>
+ */
+public class TestMetrics {
+
+	/** System property with the CSV file, empty for none. */
+	public static final String FILE = "metrics.file";
+
+	/** System property with the JSON summary file, empty for none. */
+	public static final String SUMMARY_FILE = "metrics.summary.file";
+
+	/** System property turning the counting of statements, rows and bytes on or off. */
+	public static final String JDBC = "metrics.jdbc";
+
+	static final String CSV_HEADER = "test,database,passed,start_time,wall_ms,cpu_ms,statements,rows,bytes,connection_wait_ms";
+
+	private static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	// not inherited, so that threads which happen to be started while a test
+	// runs (e.g. the report writer) are not counted towards it for good; the
+	// test's own workers are bound to it with inherit()
+	private static final ThreadLocal<Measurement> current = new ThreadLocal<Measurement>();
+
+	// summaries keyed on test name, in the order the tests were first run
+	private static final Map<String, Summary> summaries = new LinkedHashMap<String, Summary>();
+
+	// only used while holding the class lock
+	private static final SimpleDateFormat TIME_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+	private static PrintWriter csv;
+
+	private static String csvName;
+
+	static {
+		Runtime.getRuntime().addShutdownHook(new Thread("metrics-summary") {
+			public void run() {
+				writeSummaryFile();
+			}
+		});
+	}
+
+	// hide constructor to stop instantiation
+	private TestMetrics() {
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Start measuring a run of testCase on the current thread.
+	 */
+	public static void start(EnsTestCase testCase, DatabaseRegistryEntry dbre) {
+
+		current.set(new Measurement(testCase.getShortTestName(), dbre == null ? null : dbre.getName()));
+
+	}
+
+	/**
+	 * Finish the measurement started on the current thread and record it.
+	 *
+	 * @return The measurement, or null if none was started for testCase.
+	 */
+	public static Measurement finish(EnsTestCase testCase, boolean result, DatabaseRegistryEntry dbre) {
+
+		Measurement measurement = current.get();
+		current.remove();
+
+		if (measurement == null || !measurement.getTestName().equals(testCase.getShortTestName())) {
+			return null;
+		}
+
+		measurement.stop(result);
+		record(measurement);
+		return measurement;
+
+	}
+
+	/**
+	 * @return The measurement of the test running on the current thread, or
+	 *         null if there is none.
+	 */
+	public static Measurement current() {
+
+		return current.get();
+
+	}
+
+	/**
+	 * Bind a worker of the test running on the current thread to its
+	 * measurement. Executors started by tests wrap their threads' Runnables
+	 * with this in their ThreadFactory, which runs on the thread submitting
+	 * the work.
+	 *
+	 * @return r, run with the measurement of the current thread, or r itself
+	 *         if no test is being measured.
+	 */
+	public static Runnable inherit(final Runnable r) {
+
+		final Measurement measurement = current.get();
+		if (measurement == null) {
+			return r;
+		}
+		return new Runnable() {
+			public void run() {
+				current.set(measurement);
+				try {
+					r.run();
+				} finally {
+					current.remove();
+				}
+			}
+		};
+
+	}
+
+	/**
+	 * Add time spent waiting for a free connection to the current test.
+	 */
+	public static void addConnectionWait(long millis) {
+
+		Measurement measurement = current.get();
+		if (measurement != null) {
+			measurement.connectionWait.addAndGet(millis);
+		}
+
+	}
+
+	/**
+	 * @return true if JDBC connections should count statements, rows and
+	 *         bytes.
+	 */
+	public static boolean isJdbcEnabled() {
+
+		return Boolean.valueOf(System.getProperty(JDBC, "true"));
+
+	}
+
+	// -------------------------------------------------------------------------
+
+	private static synchronized void record(Measurement measurement) {
+
+		Summary summary = summaries.get(measurement.getTestName());
+		if (summary == null) {
+			summary = new Summary(measurement.getTestName());
+			summaries.put(measurement.getTestName(), summary);
+		}
+		summary.add(measurement);
+
+		PrintWriter out = getCsv();
+		if (out != null) {
+			out.println(measurement.toCsv());
+			out.flush();
+		}
+
+	}
+
+	/**
+	 * The file is appended to with one write per line, so several JVMs can
+	 * share it.
+	 */
+	private static PrintWriter getCsv() {
+
+		String name = System.getProperty(FILE, "");
+		if (name.equals(csvName)) {
+			return csv;
+		}
+
+		if (csv != null) {
+			csv.close();
+			csv = null;
+		}
+		csvName = name;
+		if (name.length() == 0) {
+			return null;
+		}
+
+		try {
+			File file = new File(name);
+			boolean isNew = !file.exists() || file.length() == 0;
+			csv = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8"));
+			if (isNew) {
+				csv.println(CSV_HEADER);
+				csv.flush();
+			}
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Could not open " + name + " for test metrics", e);
+		}
+		return csv;
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * @return The summary of each test run so far, the test with the longest
+	 *         total wall time first.
+	 */
+	public static synchronized List<Summary> getSummaries() {
+
+		List<Summary> result = new ArrayList<Summary>(summaries.values());
+		Collections.sort(result, new Comparator<Summary>() {
+			public int compare(Summary s1, Summary s2) {
+				long t1 = s1.wallTime.getTotal();
+				long t2 = s2.wallTime.getTotal();
+				return t1 < t2 ? 1 : t1 > t2 ? -1 : 0;
+			}
+		});
+		return result;
+
+	}
+
+	/**
+	 * Write the summaries as JSON.
+	 */
+	public static synchronized void writeSummary(Writer out) throws IOException {
+
+		List<Map<String, Object>> tests = new ArrayList<Map<String, Object>>();
+		for (Summary summary : getSummaries()) {
+			tests.add(summary.toMap());
+		}
+
+		Gson gson = new GsonBuilder().setPrettyPrinting().create();
+		out.write(gson.toJson(tests));
+		out.write('\n');
+		out.flush();
+
+	}
+
+	private static void writeSummaryFile() {
+
+		String name = System.getProperty(SUMMARY_FILE, "");
+		if (name.length() == 0 || getSummaries().isEmpty()) {
+			return;
+		}
+
+		Writer out = null;
+		try {
+			out = new OutputStreamWriter(new FileOutputStream(name), "UTF-8");
+			writeSummary(out);
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Could not write test metrics summary to " + name, e);
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					// nothing more to do
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Forget the summaries and close the CSV file.
+	 */
+	public static synchronized void reset() {
+
+		summaries.clear();
+		if (csv != null) {
+			csv.close();
+		}
+		csv = null;
+		csvName = null;
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * One run of a test on a database, or on no or several databases.
+	 */
+	public static class Measurement {
+
+		private final String testName;
+
+		private final String databaseName;
+
+		private final long startTime = System.currentTimeMillis();
+
+		private final long startNanos = System.nanoTime();
+
+		private final long startCpuNanos = cpuNanos();
+
+		private long wallTime;
+
+		private long cpuTime = -1;
+
+		private boolean passed;
+
+		final AtomicLong statements = new AtomicLong();
+
+		final AtomicLong rows = new AtomicLong();
+
+		final AtomicLong bytes = new AtomicLong();
+
+		final AtomicLong connectionWait = new AtomicLong();
+
+		Measurement(String testName, String databaseName) {
+			this.testName = testName;
+			this.databaseName = databaseName;
+		}
+
+		void stop(boolean passed) {
+			this.passed = passed;
+			wallTime = (System.nanoTime() - startNanos) / 1000000;
+			if (startCpuNanos >= 0) {
+				cpuTime = (cpuNanos() - startCpuNanos) / 1000000;
+			}
+		}
+
+		private static long cpuNanos() {
+			return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1;
+		}
+
+		public void addStatement() {
+			statements.incrementAndGet();
+		}
+
+		public void addRow() {
+			rows.incrementAndGet();
+		}
+
+		public void addBytes(long n) {
+			bytes.addAndGet(n);
+		}
+
+		public String getTestName() {
+			return testName;
+		}
+
+		/**
+		 * @return The name of the database, or null if the test was not run on
+		 *         a single database.
+		 */
+		public String getDatabaseName() {
+			return databaseName;
+		}
+
+		public long getStartTime() {
+			return startTime;
+		}
+
+		public boolean isPassed() {
+			return passed;
+		}
+
+		public long getWallTime() {
+			return wallTime;
+		}
+
+		/**
+		 * @return The CPU time in milliseconds, or -1 if the JVM can't measure it.
+		 */
+		public long getCpuTime() {
+			return cpuTime;
+		}
+
+		public long getStatements() {
+			return statements.get();
+		}
+
+		public long getRows() {
+			return rows.get();
+		}
+
+		public long getBytes() {
+			return bytes.get();
+		}
+
+		public long getConnectionWait() {
+			return connectionWait.get();
+		}
+
+		String toCsv() {
+			return testName + "," + (databaseName == null ? "" : databaseName) + "," + passed + ","
+					+ TIME_FORMAT.format(new Date(startTime)) + "," + wallTime + "," + cpuTime + ","
+					+ getStatements() + "," + getRows() + "," + getBytes() + "," + getConnectionWait();
+		}
+
+	} // Measurement
+
+	// -------------------------------------------------------------------------
+	/**
+	 * All the runs of one test.
+	 */
+	public static class Summary {
+
+		private final String testName;
+
+		private int runs = 0;
+
+		private int failures = 0;
+
+		final Histogram wallTime = new Histogram();
+
+		final Histogram cpuTime = new Histogram();
+
+		final Histogram statements = new Histogram();
+
+		final Histogram rows = new Histogram();
+
+		final Histogram bytes = new Histogram();
+
+		final Histogram connectionWait = new Histogram();
+
+		Summary(String testName) {
+			this.testName = testName;
+		}
+
+		void add(Measurement measurement) {
+			runs++;
+			if (!measurement.isPassed()) {
+				failures++;
+			}
+			wallTime.add(measurement.getWallTime());
+			if (measurement.getCpuTime() >= 0) {
+				cpuTime.add(measurement.getCpuTime());
+			}
+			statements.add(measurement.getStatements());
+			rows.add(measurement.getRows());
+			bytes.add(measurement.getBytes());
+			connectionWait.add(measurement.getConnectionWait());
+		}
+
+		public String getTestName() {
+			return testName;
+		}
+
+		public int getRuns() {
+			return runs;
+		}
+
+		public int getFailures() {
+			return failures;
+		}
+
+		public Histogram getWallTime() {
+			return wallTime;
+		}
+
+		Map<String, Object> toMap() {
+			Map<String, Object> map = new LinkedHashMap<String, Object>();
+			map.put("test", testName);
+			map.put("runs", runs);
+			map.put("failures", failures);
+			map.put("wall_ms", wallTime.toMap());
+			map.put("cpu_ms", cpuTime.toMap());
+			map.put("statements", statements.toMap());
+			map.put("rows", rows.toMap());
+			map.put("bytes", bytes.toMap());
+			map.put("connection_wait_ms", connectionWait.toMap());
+			return map;
+		}
+
+	} // Summary
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Counts of values in buckets whose bounds are powers of 2: bucket 0 holds
+	 * 0, bucket i holds values from 2^(i-1) up to 2^i - 1.
+	 */
+	public static class Histogram {
+
+		private final long[] buckets = new long[64];
+
+		private long count = 0;
+
+		private long total = 0;
+
+		private long max = 0;
+
+		public void add(long value) {
+			value = Math.max(value, 0);
+			buckets[64 - Long.numberOfLeadingZeros(value)]++;
+			count++;
+			total += value;
+			max = Math.max(max, value);
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getTotal() {
+			return total;
+		}
+
+		public long getMax() {
+			return max;
+		}
+
+		/**
+		 * @return The number of values in bucket i.
+		 */
+		public long getBucket(int i) {
+			return buckets[i];
+		}
+
+		Map<String, Object> toMap() {
+			Map<String, Object> map = new LinkedHashMap<String, Object>();
+			map.put("total", total);
+			map.put("max", max);
+			map.put("mean", count == 0 ? 0 : total / count);
+			// bucket upper bounds, exclusive
+			Map<String, Long> histogram = new LinkedHashMap<String, Long>();
+			for (int i = 0; i < buckets.length; i++) {
+				if (buckets[i] > 0) {
+					histogram.put("<" + (1L << i), buckets[i]);
+				}
+			}
+			map.put("histogram", histogram);
+			return map;
+		}
+
+	} // Histogram
+
+} // TestMetrics
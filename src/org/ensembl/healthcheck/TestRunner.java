@@ -17,11 +17,13 @@
 
 package org.ensembl.healthcheck;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,6 +32,7 @@ import org.ensembl.healthcheck.testcase.MultiDatabaseTestCase;
 import org.ensembl.healthcheck.testcase.OrderedDatabaseTestCase;
 import org.ensembl.healthcheck.testcase.Repair;
 import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
+import org.ensembl.healthcheck.util.SeqRegionCache;
 
 /**
  * <p>
@@ -72,6 +75,25 @@ public class TestRunner {
 	/** Flag to determine whether repairs will be carried out if appropriate */
 	protected boolean doRepair = false;
 
+	/**
+	 * Number of single database tests to run at the same time. 1 means tests
+	 * are run serially.
+	 */
+	protected int threads = 1;
+
+	/**
+	 * Maximum number of single database tests running against the same
+	 * database server. 0 means no limit.
+	 */
+	protected int threadsPerServer = 0;
+
+	/**
+	 * Remembers which single database tests passed, so that they are not
+	 * run again while their tables don't change. Null unless running in
+	 * incremental mode.
+	 */
+	protected IncrementalTestTracker incrementalTracker;
+
 	// -------------------------------------------------------------------------
 	/** Creates a new instance of TestRunner */
 
@@ -97,11 +119,13 @@ public class TestRunner {
 	protected void runAllTests(DatabaseRegistry databaseRegistry,
 			TestRegistry testRegistry, boolean skipSlow) {
 
-		int numberOfTestsRun = 0;
+		final AtomicInteger numberOfTestsRun = new AtomicInteger();
 
 		// --------------------------------
 		// Single-database tests
 
+		ParallelTestScheduler scheduler = new ParallelTestScheduler(threads, threadsPerServer);
+
 		// run the appropriate tests on each of them
 		for (DatabaseRegistryEntry database : databaseRegistry.getAll()) {
 
@@ -119,32 +143,7 @@ public class TestRunner {
 				if (!testCase.isLongRunning()
 						|| (testCase.isLongRunning() && !skipSlow)) {
 
-					try {
-						ReportManager.startTestCase(testCase, database);
-						logger.info("Running " + testCase.getName() + " ["
-								+ database.getName() + "]");
-
-						testCase.types();
-						
-						boolean result = testCase.run(database);
-
-						ReportManager
-								.finishTestCase(testCase, result, database);
-						logger.info(testCase.getName() + " ["
-								+ database.getName() + "]"
-								+ (result ? "PASSED" : "FAILED"));
-
-						checkRepair(testCase, database);
-						numberOfTestsRun++;
-
-					} catch (Throwable e) {
-					  String msg = "Could not execute test "
-                + testCase.getName() + " on "
-                + database.getName() + ": " + e.getMessage();
-					  logger.log(Level.WARNING, msg, e);
-					  //TODO Get the logger to do this
-					  e.printStackTrace();
-					}
+					scheduler.add(testCase, database);
 
 				} else {
 					logger.info("Skipping long-running test "
@@ -156,6 +155,52 @@ public class TestRunner {
 
 		} // foreach DB
 
+		scheduler.runAll(new ParallelTestScheduler.PairRunner() {
+
+			public void run(SingleDatabaseTestCase testCase,
+					DatabaseRegistryEntry database) {
+
+				IncrementalTestTracker.Checkpoint checkpoint = getCheckpoint(testCase, database);
+				if (skipUnchanged(checkpoint, testCase, database)) {
+					numberOfTestsRun.incrementAndGet();
+					return;
+				}
+
+				boolean result = false;
+				try {
+					ReportManager.startTestCase(testCase, database);
+					logger.info("Running " + testCase.getName() + " ["
+							+ database.getName() + "]");
+
+					testCase.types();
+
+					result = testCase.run(database);
+
+					ReportManager.finishTestCase(testCase, result, database);
+					logger.info(testCase.getName() + " ["
+							+ database.getName() + "]"
+							+ (result ? "PASSED" : "FAILED"));
+
+					checkRepair(testCase, database);
+					numberOfTestsRun.incrementAndGet();
+
+				} catch (Throwable e) {
+				  String msg = "Could not execute test "
+              + testCase.getName() + " on "
+              + database.getName() + ": " + e.getMessage();
+				  logger.log(Level.WARNING, msg, e);
+				  //TODO Get the logger to do this
+				  e.printStackTrace();
+				  result = false;
+				} finally {
+					if (checkpoint != null) {
+						checkpoint.finish(result);
+					}
+				}
+
+			}
+		});
+
 		// --------------------------------
 		// Multi-database tests
 
@@ -179,7 +224,7 @@ public class TestRunner {
 					logger.info(testCase.getName() + " "
 							+ (result ? "PASSED" : "FAILED"));
 
-					numberOfTestsRun++;
+					numberOfTestsRun.incrementAndGet();
 				} catch (Throwable e) {
 				  //TODO If we had a throwable then we should mark the test as failed 
           String msg = "Could not execute test "
@@ -223,18 +268,64 @@ public class TestRunner {
         e.printStackTrace();
 			}
 
-			numberOfTestsRun++;
+			numberOfTestsRun.incrementAndGet();
 
 		} // foreach test
 
 		// --------------------------------
 
-		if (numberOfTestsRun == 0) {
+		if (numberOfTestsRun.get() == 0) {
 			logger.warning("Warning: no tests were run.");
 		}
 
+		logger.fine("Reference data lookups: " + ReferenceDataCache.getHits()
+				+ " cached, " + ReferenceDataCache.getMisses() + " read");
+
 	} // runAllTests
 
+	// ---------------------------------------------------------------------
+	/**
+	 * @return The state of the tables testCase reads in database, or null if
+	 *         not running in incremental mode.
+	 */
+	protected IncrementalTestTracker.Checkpoint getCheckpoint(
+			SingleDatabaseTestCase testCase, DatabaseRegistryEntry database) {
+
+		return incrementalTracker == null ? null : incrementalTracker
+				.checkpoint(testCase, database);
+
+	}
+
+	/**
+	 * If nothing testCase reads in database has changed since it last passed
+	 * there, reports it as passed again without running it. Otherwise starts
+	 * the checkpoint.
+	 * 
+	 * @return true if the test was skipped.
+	 */
+	protected boolean skipUnchanged(IncrementalTestTracker.Checkpoint checkpoint,
+			SingleDatabaseTestCase testCase, DatabaseRegistryEntry database) {
+
+		if (checkpoint == null) {
+			return false;
+		}
+
+		if (!checkpoint.isUnchanged()) {
+			checkpoint.start();
+			return false;
+		}
+
+		ReportManager.startTestCase(testCase, database);
+		ReportManager.correct(testCase, database.getConnection(),
+				IncrementalTestTracker.UNCHANGED_MESSAGE);
+		ReportManager.finishTestCase(testCase, true, database);
+		logger.info(testCase.getName() + " [" + database.getName() + "]"
+				+ " unchanged since it last passed");
+
+		return true;
+
+	}
+
 	// ---------------------------------------------------------------------
 	/**
 	 * Check if the given testcase can repair errors on the given database.
@@ -249,6 +340,8 @@ public class TestRunner {
 			}
 			if (doRepair) {
 				((Repair) testCase).repair(database);
+				database.getReferenceData().invalidate();
+				SeqRegionCache.invalidate(database);
 			}
 		}
 
@@ -465,6 +558,41 @@ public class TestRunner {
 
 	} // setOutputLevel
 
+	// -------------------------------------------------------------------------
+	/**
+	 * Set the number of single database tests that are run concurrently.
+	 *
+	 * @param threads
+	 *            The number of worker threads, 1 to run serially.
+	 * @param threadsPerServer
+	 *            The maximum number of tests running against any one database
+	 *            server, 0 for no limit.
+	 */
+	public void setThreads(int threads, int threadsPerServer) {
+
+		this.threads = threads;
+		this.threadsPerServer = threadsPerServer;
+		logger.finest("Set threads to " + threads + ", threads per server to " + threadsPerServer);
+
+	} // setThreads
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Run in incremental mode: single database tests which passed before are
+	 * only run again if a table they read has changed.
+	 * 
+	 * @param directory
+	 *            Where the state of the tables is kept between runs, or null
+	 *            to run all tests.
+	 */
+	public void setIncrementalDirectory(File directory) {
+
+		this.incrementalTracker = directory == null ? null
+				: new IncrementalTestTracker(directory);
+		logger.finest("Set incremental directory to " + directory);
+
+	} // setIncrementalDirectory
+
 	// -------------------------------------------------------------------------
 
 	/**
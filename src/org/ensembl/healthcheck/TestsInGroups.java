@@ -88,6 +88,9 @@ public class TestsInGroups {
 	 * Creates a map from a name of a testcase group to a list of names of 
 	 * its testcase members. 
 	 * 
+	 * The groups of classes in the {@see TestCatalogue} are read from 
+	 * there, other classes are instantiated to find their groups.
+	 * 
 	 * @param classNames: An array of class names.
 	 * 
 	 * @return A Map<String,List<String>> as described above.
@@ -97,8 +100,26 @@ public class TestsInGroups {
 
 		Map<String,List<String>> testcasegroupToMembers = new HashMap<String,List<String>>(); 
 		
+		TestCatalogue catalogue = TestCatalogue.getInstance();
+		
 		for (String className : classNames) {
 
+			TestCatalogue.Entry entry = catalogue == null ? null : catalogue.getEntry(className);
+			
+			if (entry != null) {
+				
+				if (entry.isTest()) {
+					
+					List<String> groups = new ArrayList<String>(entry.getGroups());
+					groups.remove(entry.getShortName());
+					
+					for (String groupName : groups) {
+						addMember(testcasegroupToMembers, groupName, className);
+					}
+				}
+				continue;
+			}
+			
 			try {
 				 Class c = Class.forName(className);
 				 
@@ -115,18 +136,7 @@ public class TestsInGroups {
 					 groups.remove(etc.getShortTestName());
 					 
 					 for (String groupName : groups) {
-
-						 if (testcasegroupToMembers.containsKey(groupName)) {
-							 
-							 List x = testcasegroupToMembers.get(groupName);
-							 x.add(toClassName(c));
-							 testcasegroupToMembers.put(groupName, x);
-						 } else {
-							 
-							 LinkedList<String> ll = new LinkedList<String>();
-							 ll.add(toClassName(c));							 
-							 testcasegroupToMembers.put(groupName, ll);
-						 }
+						 addMember(testcasegroupToMembers, groupName, toClassName(c));
 					 }
 				 }
 			} catch (ClassNotFoundException e) {
@@ -140,6 +150,21 @@ public class TestsInGroups {
 		return testcasegroupToMembers;
 	}
 	
+	private static void addMember(Map<String,List<String>> testcasegroupToMembers, String groupName, String className) {
+
+		if (testcasegroupToMembers.containsKey(groupName)) {
+			
+			List x = testcasegroupToMembers.get(groupName);
+			x.add(className);
+			testcasegroupToMembers.put(groupName, x);
+		} else {
+			
+			LinkedList<String> ll = new LinkedList<String>();
+			ll.add(className);							 
+			testcasegroupToMembers.put(groupName, ll);
+		}
+	}
+	
 	/**
 	 * @param packageWithHealthchecks: Name of packages the will be searched 
 	 * for testcases.
@@ -17,6 +17,7 @@
 
 package org.ensembl.healthcheck;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -187,6 +188,9 @@ public class TextTestRunner extends TestRunner implements Reporter {
 		System.out.println("  -nofailuretext  Don't print failure hints.");
 		System.out.println("  -skipslow       Don't run long-running tests");
 		System.out.println("  -nologging      Suppress logging info");
+		System.out.println("  -threads n      Run up to n single database tests at the same time; default is 1");
+		System.out.println("  -serverthreads n  With -threads, run at most n tests against any one database server at the same time");
+		System.out.println("  -incremental dir  Only run single database tests again if a table they read has changed since they last passed; state is kept in dir");
 		System.out.println("  -host           Custom database connection information. Note that in most cases this should be set in the");
 		System.out.println("  -port           properties file and not on the command line.");
 		System.out.println("  -user           Note that, since the password is optional, if it is set in the properties file but not on");
@@ -338,6 +342,20 @@ public class TextTestRunner extends TestRunner implements Reporter {
 
 					noLogging = true;
 
+				} else if (args[i].equals("-threads")) {
+
+					threads = Integer.parseInt(args[++i]);
+					logger.finest("Will run " + threads + " tests at the same time");
+
+				} else if (args[i].equals("-serverthreads")) {
+
+					threadsPerServer = Integer.parseInt(args[++i]);
+					logger.finest("Will run at most " + threadsPerServer + " tests per server at the same time");
+
+				} else if (args[i].equals("-incremental")) {
+
+					setIncrementalDirectory(new File(args[++i]));
+
 				} else if (args[i].equals("-host")) {
 
 					customHost = args[++i];
@@ -494,14 +512,27 @@ public class TextTestRunner extends TestRunner implements Reporter {
 	 */
 	public void startTestCase(EnsTestCase testCase, DatabaseRegistryEntry dbre) {
 
+		// when tests run concurrently the whole line is printed when the test
+		// finishes so that lines from different tests don't get mixed up
+		if (threads > 1) {
+			return;
+		}
+
+		System.out.print(testCaseLabel(testCase, dbre));
+		System.out.flush();
+
+	}
+
+	private String testCaseLabel(EnsTestCase testCase, DatabaseRegistryEntry dbre) {
+
 		String name;
 		name = testCase.getClass().getName();
 		name = name.substring(name.lastIndexOf(".") + 1);
-		System.out.print(name + " ");
+		String label = name + " ";
 		if (dbre != null) {
-			System.out.print("[" + dbre.getName() + "] ");
+			label += "[" + dbre.getName() + "] ";
 		}
-		System.out.flush();
+		return label;
 
 	}
 
@@ -519,7 +550,11 @@ public class TextTestRunner extends TestRunner implements Reporter {
 
 		// long duration = (System.currentTimeMillis() - startTime) / 1000;
 
-		System.out.println((result ? " PASSED" : " FAILED"));
+		if (threads > 1) {
+			System.out.println(testCaseLabel(testCase, dbre) + (result ? " PASSED" : " FAILED"));
+		} else {
+			System.out.println((result ? " PASSED" : " FAILED"));
+		}
 
 		/*
 		 * lastDatabase = ""; Iterator it = outputBuffer.iterator(); while (it.hasNext()) { System.out.println((String)it.next()); }
@@ -55,9 +55,7 @@ public class WebTestRunner extends TestRunner implements Reporter {
 
 	private String configFile = "web.properties";
 
-	private long testStartTime, appStartTime;
-
-	private static String TIMINGS_FILE = "timings.txt";
+	private long appStartTime;
 
 	// ---------------------------------------------------------------------
 	/**
@@ -210,8 +208,6 @@ public class WebTestRunner extends TestRunner implements Reporter {
 	 */
 	public void startTestCase(EnsTestCase testCase, DatabaseRegistryEntry dbre) {
 
-		testStartTime = System.currentTimeMillis();
-
 	}
 
 	// ---------------------------------------------------------------------
@@ -229,16 +225,7 @@ public class WebTestRunner extends TestRunner implements Reporter {
 	 */
 	public void finishTestCase(EnsTestCase testCase, boolean result, DatabaseRegistryEntry dbre) {
 
-		long duration = System.currentTimeMillis() - testStartTime;
-
-		String str = duration + "\t";
-		if (dbre != null) {
-			str += dbre.getName() + "\t";
-		}
-		str += testCase.getShortTestName() + "\t";
-		str += Utils.formatTimeString(duration);
-
-		Utils.writeStringToFile(TIMINGS_FILE, str, true, true);
+		// timings are recorded by TestMetrics
 
 	}
 
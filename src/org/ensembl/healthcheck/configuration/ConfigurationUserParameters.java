@@ -54,6 +54,7 @@ public interface ConfigurationUserParameters
 		ConfigureTestRunner,
 		ConfigureHealthcheckDatabase,
 		ConfigureCompareSchema,
+		ConfigureConnectionPool,
 		ConfigureMiscProperties {
 	
 	@Option(helpRequest = true, description = "display help", shortName = "h")
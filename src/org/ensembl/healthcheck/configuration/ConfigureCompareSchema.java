@@ -59,4 +59,27 @@ public interface ConfigureCompareSchema {
 
 	boolean isMasterFuncgenSchema();
 
+	// Used in:
+	//
+	// org.ensembl.healthcheck.testcase.generic.AbstractCompareSchema
+	// org.ensembl.healthcheck.testcase.eg_core.EGAbstractCompareSchema
+	//
+	@Option(longName = "schema.compare.threads", description = "Number of "
+			+ "databases compared with the master schema at the same time.")
+	String getSchemaCompareThreads();
+
+	boolean isSchemaCompareThreads();
+
+	// Used in:
+	//
+	// org.ensembl.healthcheck.testcase.generic.AbstractCompareSchema
+	// org.ensembl.healthcheck.testcase.eg_core.EGAbstractCompareSchema
+	//
+	@Option(longName = "schema.compare.cache.dir", description = "Directory "
+			+ "in which schema snapshots and comparison results are kept, so "
+			+ "databases which have not changed are not compared again.")
+	String getSchemaCompareCacheDir();
+
+	boolean isSchemaCompareCacheDir();
+
 }
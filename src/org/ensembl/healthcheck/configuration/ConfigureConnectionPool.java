@@ -0,0 +1,70 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.configuration;
+
+import uk.co.flamingpenguin.jewel.cli.Option;
+
+/**
+ * Interface for configuring the
+ * {@link org.ensembl.healthcheck.util.ConnectionPool}. The values are copied
+ * into system properties of the same name.
+ * 
+ */
+public interface ConfigureConnectionPool {
+
+	@Option(
+		longName    = "connection.pool.max.per.server",
+		description = "Maximum number of connections open to one database "
+			+ "server at the same time. 0 means no limit. Multi database "
+			+ "tests keep a connection open to every database they look at, "
+			+ "so this must be larger than the number of databases tested."
+	)
+	String getConnectionPoolMaxPerServer();
+	boolean isConnectionPoolMaxPerServer();
+
+	@Option(
+		longName    = "connection.pool.max.idle.seconds",
+		description = "Connections which have not been used for this many "
+			+ "seconds are closed."
+	)
+	String getConnectionPoolMaxIdleSeconds();
+	boolean isConnectionPoolMaxIdleSeconds();
+
+	@Option(
+		longName    = "connection.pool.max.lifetime.seconds",
+		description = "Connections older than this are closed instead of "
+			+ "being reused."
+	)
+	String getConnectionPoolMaxLifetimeSeconds();
+	boolean isConnectionPoolMaxLifetimeSeconds();
+
+	@Option(
+		longName    = "connection.pool.wait.seconds",
+		description = "How long to wait for a free connection if "
+			+ "connection.pool.max.per.server has been reached."
+	)
+	String getConnectionPoolWaitSeconds();
+	boolean isConnectionPoolWaitSeconds();
+
+	@Option(
+		longName    = "connection.pool.validation.interval.seconds",
+		description = "A connection is checked before it is handed out only "
+			+ "if it has not been used for this many seconds."
+	)
+	String getConnectionPoolValidationIntervalSeconds();
+	boolean isConnectionPoolValidationIntervalSeconds();
+}
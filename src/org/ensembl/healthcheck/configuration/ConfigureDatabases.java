@@ -56,5 +56,20 @@ public interface ConfigureDatabases {
         @Option(longName = "dbtype", description = "If set, this will be used as the type for all databases.")
         String getDbType();
         boolean isDbType();
+
+	@Option(longName = "registry.discovery.threads", description = "Number of database servers "
+			+ "whose databases are listed and looked at in parallel when finding the databases to test.")
+	String getRegistryDiscoveryThreads();
+	boolean isRegistryDiscoveryThreads();
+
+	@Option(longName = "registry.snapshot.file", description = "File in which what is known about the databases "
+			+ "on each server is kept between runs. Databases whose meta table has not changed are not looked at again.")
+	String getRegistrySnapshotFile();
+	boolean isRegistrySnapshotFile();
+
+	@Option(longName = "seq.region.cache.databases", description = "Number of databases whose seq_regions "
+			+ "are kept in memory for the tests which look up seq_region lengths and names.")
+	String getSeqRegionCacheDatabases();
+	boolean isSeqRegionCacheDatabases();
 	
 }
@@ -107,6 +107,23 @@ public interface ConfigureHealthcheckDatabase {
 		String getOutputSchemafile();
 		boolean isOutputSchemafile();	
 		
+		@Option(
+			longName    = "output.report.batch.size",
+			description = "The maximum number of reports written to the "
+				+ "output database in one statement."
+		)
+		String getOutputReportBatchSize();
+		boolean isOutputReportBatchSize();
+
+		@Option(
+			longName    = "output.report.queue.size",
+			description = "The maximum number of reports waiting to be "
+				+ "written to the output database. Tests wait when the queue "
+				+ "is full."
+		)
+		String getOutputReportQueueSize();
+		boolean isOutputReportQueueSize();
+
 		@Option(
 			longName    = "production.database",
 			description = "The name of the Ensembl production database to use to retrieve division information. " +
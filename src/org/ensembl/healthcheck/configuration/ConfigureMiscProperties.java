@@ -70,6 +70,25 @@ public interface ConfigureMiscProperties {
 	String getVariationSchemaFile();
 	boolean isVariationSchemaFile();
 
+	// Used in:
+	//
+	// org.ensembl.healthcheck.testcase.MetaCoordChecker
+	//
+	@Option(longName = "meta.coord.threads", description = "Number of feature tables "
+			+ "read at the same time by the MetaCoord tests")
+	String getMetaCoordThreads();
+	boolean isMetaCoordThreads();
+
+	// Used in:
+	//
+	// org.ensembl.healthcheck.util.SqlResultComparator
+	//
+	@Option(longName = "sql.compare.threads", description = "Number of databases "
+			+ "queried at the same time when checking that a query gives the same "
+			+ "result on all of them")
+	String getSqlCompareThreads();
+	boolean isSqlCompareThreads();
+
 	// Used in:
 	//
 	// org.ensembl.healthcheck.testcase.AbstractPerlBasedTestCase
@@ -80,6 +99,74 @@ public interface ConfigureMiscProperties {
 
 	boolean isPerl();
 
+	// Used in:
+	//
+	// org.ensembl.healthcheck.testcase.PerlWorkerPool
+	//
+	@Option(longName = "perl.workers", description = "Maximum number of perl "
+			+ "processes per server kept running perl module based tests; 0 "
+			+ "starts a process for each database and species instead")
+	String getPerlWorkers();
+	boolean isPerlWorkers();
+
+	// Used in:
+	//
+	// org.ensembl.healthcheck.testcase.AbstractShellBasedTestCase
+	//
+	@Option(longName = "shell.species.threads", description = "Number of species "
+			+ "of a database run at the same time by species id aware shell and "
+			+ "perl based tests; 1 runs them one by one")
+	String getShellSpeciesThreads();
+	boolean isShellSpeciesThreads();
+
+	@Option(longName = "shell.species.timeout", description = "Seconds species id "
+			+ "aware shell and perl based tests may run on all species of a "
+			+ "database when run concurrently; 0 for no limit")
+	String getShellSpeciesTimeout();
+	boolean isShellSpeciesTimeout();
+
+	// Used in:
+	//
+	// org.ensembl.healthcheck.TestMetrics
+	//
+	@Option(longName = "metrics.file", description = "CSV file the wall time, "
+			+ "CPU time and database use of each test run on each database are "
+			+ "appended to; empty for none")
+	String getMetricsFile();
+	boolean isMetricsFile();
+
+	@Option(longName = "metrics.summary.file", description = "JSON file with "
+			+ "histograms of the metrics of each test, written at the end of the "
+			+ "run; empty for none")
+	String getMetricsSummaryFile();
+	boolean isMetricsSummaryFile();
+
+	@Option(longName = "metrics.jdbc", description = "Whether to count the SQL "
+			+ "statements, rows and bytes of each test run (true or false)")
+	String getMetricsJdbc();
+	boolean isMetricsJdbc();
+
+	// Used in:
+	//
+	// org.ensembl.healthcheck.util.SqlTrace
+	//
+	@Option(longName = "sql.trace.file", description = "File the statements "
+			+ "taking the most time are written to at the end of the run; empty "
+			+ "to turn SQL tracing off")
+	String getSqlTraceFile();
+	boolean isSqlTraceFile();
+
+	@Option(longName = "sql.trace.top", description = "Number of statements "
+			+ "in sql.trace.file")
+	String getSqlTraceTop();
+	boolean isSqlTraceTop();
+
+	@Option(longName = "sql.trace.explain.ms", description = "Run EXPLAIN on "
+			+ "SELECT statements taking at least this many milliseconds and add "
+			+ "the plan to sql.trace.file; 0 for never")
+	String getSqlTraceExplainMs();
+	boolean isSqlTraceExplainMs();
+
 	// Used in:
 	//
 	// org.ensembl.healthcheck.testcase.EnsTestCase
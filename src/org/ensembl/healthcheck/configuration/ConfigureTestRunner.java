@@ -43,4 +43,36 @@ public interface ConfigureTestRunner {
                         + "The allowed options are \"All\", \"None\", \"Problem\", \"Current\", \"Warning\" and \"Info\", .")
         String getOutputLevel();
         boolean isOutputLevel();
+
+	@Option(longName = "threads", description = "Number of single database "
+			+ "tests that will be run at the same time. The default of 1 "
+			+ "runs all tests serially.")
+	String getThreads();
+	boolean isThreads();
+
+	@Option(longName = "threads.per.server", description = "Maximum number "
+			+ "of tests that will be run against the same database server at "
+			+ "the same time, if threads is greater than 1. The default of 0 "
+			+ "means no limit.")
+	String getThreadsPerServer();
+	boolean isThreadsPerServer();
+
+	@Option(longName = "incremental.dir", description = "Run in incremental "
+			+ "mode: single database tests which passed before are only run "
+			+ "again if a table they read has changed. The state of the "
+			+ "tables is kept in this directory.")
+	String getIncrementalDir();
+	boolean isIncrementalDir();
+
+	@Option(longName = "report.memory.lines", description = "Number of "
+			+ "reports kept in memory. Any further reports are written to a "
+			+ "temporary file.")
+	String getReportMemoryLines();
+	boolean isReportMemoryLines();
+
+	@Option(longName = "report.spill.dir", description = "Directory for the "
+			+ "temporary file reports which don't fit in memory are written "
+			+ "to. Defaults to the system temporary directory.")
+	String getReportSpillDir();
+	boolean isReportSpillDir();
 }
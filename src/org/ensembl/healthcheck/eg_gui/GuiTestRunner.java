@@ -239,7 +239,7 @@ public class GuiTestRunner {
                             // The user may think that the test was not run.
                             // So in this case a standard line is generated.
                             //
-                            boolean testHasReportedSomething = ReportManager.getAllReportsByTestCase().containsKey(testCase.getTestName()); 
+                            boolean testHasReportedSomething = ReportManager.hasReportsForTestCase(testCase.getTestName()); 
                             
                             if (!testHasReportedSomething) { 
 	                            if (passed) {
@@ -302,7 +302,7 @@ public class GuiTestRunner {
                         // The user may think that the test was not run.
                         // So in this case a standard line is generated.
                         //
-                        boolean testHasReportedSomething = ReportManager.getAllReportsByTestCase().containsKey(testCase.getTestName()); 
+                        boolean testHasReportedSomething = ReportManager.hasReportsForTestCase(testCase.getTestName()); 
                         
                         if (passed && !testHasReportedSomething) {
                         	ReportManager.report(
@@ -438,10 +438,9 @@ class ReporterPrintStream extends PrintStream {
 		//
 		// ReportManager.problem(e, (Connection) null, s);
 		//
-		// because in the event that more than ReportManager.MAX_BUFFER_SIZE
-		// lines are reported, the ReportManager will write to System.err
-		// which will make these two methods call each other recursively and
-		// lead to a java.lang.StackOverflowError.
+		// because if the ReportManager writes to System.err, these two
+		// methods will call each other recursively and lead to a
+		// java.lang.StackOverflowError.
 		//
 		// Instead, error messages are forwarded to the logger.
 		
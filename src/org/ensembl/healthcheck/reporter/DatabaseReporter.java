@@ -21,12 +21,10 @@ import org.ensembl.healthcheck.ReportLine;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Reporter;
 import org.ensembl.healthcheck.testcase.EnsTestCase;
-import org.ensembl.healthcheck.util.Utils;
 
 public class DatabaseReporter implements Reporter {
 
-	private long testStartTime;
-	private static String TIMINGS_FILE = "timings.txt";
+	// timings are recorded by TestMetrics, for every reporter
 
 	/**
 	 * Should be called just after a test case has been run.
@@ -41,17 +39,6 @@ public class DatabaseReporter implements Reporter {
 	 */
 	public void finishTestCase(EnsTestCase testCase, boolean result, DatabaseRegistryEntry dbre) {
 
-		long duration = System.currentTimeMillis() - testStartTime;
-
-		String str = duration + "\t";
-		if (dbre != null) {
-			str += dbre.getName() + "\t";
-		}
-		str += testCase.getShortTestName() + "\t";
-		str += Utils.formatTimeString(duration);
-
-		Utils.writeStringToFile(TIMINGS_FILE, str, true, true);
-		
 		// Copied over from the NodeDatabaseTestRunner so we have the markers
 		// in the database that the webcode needs
 		//
@@ -90,8 +77,6 @@ public class DatabaseReporter implements Reporter {
 	 */
 	public void startTestCase(EnsTestCase testCase, DatabaseRegistryEntry dbre) {
 
-		testStartTime = System.currentTimeMillis();
-		
 		// Copied over from the NodeDatabaseTestRunner so we have the markers
 		// in the database that the webcode needs
 		//
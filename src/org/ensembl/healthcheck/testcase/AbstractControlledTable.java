@@ -288,23 +288,14 @@ public abstract class AbstractControlledTable extends AbstractControlledRows {
 			logger.log(Level.INFO, "Columns are ok.");
 		}
 		
-		int limit = batchSize;
-		boolean allRowsInMaster = true;
-		
-		for(int currentOffset = 0; currentOffset<rowCount && !numReportedRowsExceedsMaximum(); currentOffset+=limit) {
-			
-			logger.info("Checking rows " + currentOffset + " out of " + rowCount);
-			
-			allRowsInMaster &= checkRangeOfRowsInTable(
-				controlledTableToTest,
-				masterTable,
-				testDbre,
-				masterDbRe,
-				limit,
-				currentOffset
-			);			
-		}
-		return allRowsInMaster;
+		return checkRowsInBatches(
+			controlledTableToTest,
+			masterTable,
+			testDbre,
+			masterDbRe,
+			"",
+			rowCount
+		);
 	}
 
 	/**
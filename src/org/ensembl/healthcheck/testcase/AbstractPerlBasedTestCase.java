@@ -84,7 +84,16 @@ public abstract class AbstractPerlBasedTestCase extends
 
 	protected String createCommandLine(final DatabaseRegistryEntry dbre,
 			int speciesId) {
-		String commandLine = getPerlScript(dbre, speciesId);
+		return prependPerlBinary(getPerlScript(dbre, speciesId));
+	}
+
+	/**
+	 * @return script with the perl binary and options from
+	 *         {@link AbstractPerlBasedTestCase#getConfig()} in front, if they
+	 *         are set.
+	 */
+	protected String prependPerlBinary(String script) {
+		String commandLine = script;
 		
 		if (getConfig() != null) {
 
@@ -29,6 +29,7 @@ import org.ensembl.healthcheck.util.LogMapperPerl2Java;
 import org.ensembl.healthcheck.util.ActionAppendable;
 import org.ensembl.healthcheck.util.TemplateBuilder;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -47,6 +48,7 @@ public abstract class AbstractPerlModuleBasedTestCase extends AbstractPerlBasedT
 
 	//private static final String SCRIPT = "./perl/run_healthcheck.pl -host $host$ -port $port$ -user $user$ -pass $pass$ -dbname $dbname$ -species_id $species_id$ -module $module$";
 	private static final String SCRIPT = "./perl/run_healthcheck.pl -host $host$ -port $port$ -user $user$ -dbname $dbname$ -species_id $species_id$ -module $module$";
+	private static final String WORKER_SCRIPT = "./perl/run_healthcheck.pl -host $host$ -port $port$ -user $user$ -worker";
 	private final LogMapperPerl2Java logMapper;
 	private final Formatter perlLogMessagesFormatter;
 
@@ -206,6 +208,38 @@ public abstract class AbstractPerlModuleBasedTestCase extends AbstractPerlBasedT
 			h.setFormatter(savedFormatter.get(h));
 		}
 	}
+	/**
+	 * <p>
+	 * 	Runs the module in a worker from a {@link PerlWorkerPool} unless
+	 * perl.workers is 0, in which case it is run in a process of its own.
+	 * </p>
+	 */
+	@Override
+	protected int execShellTest(
+			final DatabaseRegistryEntry dbre, 
+			int speciesId, 
+			boolean useSpeciesId,
+			Appendable out,
+			Appendable err
+	) throws IOException {
+		
+		if (!PerlWorkerPool.isEnabled() || !useSpeciesId) {
+			return super.execShellTest(dbre, speciesId, useSpeciesId, out, err);
+		}
+		
+		DatabaseServer srv = dbre.getDatabaseServer();
+		String workerCmd = prependPerlBinary(TemplateBuilder.template(WORKER_SCRIPT, 
+				"host", srv.getHost(),
+				"port", srv.getPort(),
+				"user", srv.getUser()));
+		PerlWorkerPool pool = PerlWorkerPool.getInstance(workerCmd, environmentVarsToSet());
+		
+		logger.info("Running: " + getModule() + " on " + dbre.getName() + " species_id " + speciesId);
+		
+		// stderr of the worker comes with its stdout
+		return pool.run(getModule(), dbre.getName(), speciesId, out) ? 0 : 1;
+	}
+	
 	@Override
 	public boolean run(final DatabaseRegistryEntry dbre) {
 		
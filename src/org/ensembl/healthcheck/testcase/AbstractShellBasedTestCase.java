@@ -18,13 +18,25 @@ package org.ensembl.healthcheck.testcase;
 
 import java.io.IOException;
 import java.sql.Connection;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang.StringUtils;
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
+import org.ensembl.healthcheck.TestMetrics;
 import org.ensembl.healthcheck.util.ActionAppendable;
 import org.ensembl.healthcheck.util.ProcessExec;
 
@@ -60,6 +72,22 @@ public abstract class AbstractShellBasedTestCase extends SingleDatabaseTestCase
 	 */
 	boolean isSpeciesIdAware = false;
 
+	/**
+	 * System property with the number of species run at the same time by
+	 * species id aware tests; 1 runs them one by one.
+	 */
+	public static final String SPECIES_THREADS = "shell.species.threads";
+
+	/**
+	 * System property with the number of seconds species id aware tests may
+	 * run on all species of a database when run concurrently; 0 for no limit.
+	 */
+	public static final String SPECIES_TIMEOUT = "shell.species.timeout";
+
+	private static final int DEFAULT_SPECIES_THREADS = 4;
+
+	private static final long DEFAULT_SPECIES_TIMEOUT = 0;
+
 	public boolean isSpeciesIdAware() {
 		return isSpeciesIdAware;
 	}
@@ -158,94 +186,231 @@ public abstract class AbstractShellBasedTestCase extends SingleDatabaseTestCase
 		return environmentVars;
 	}
 
-	public boolean runShellTest(final DatabaseRegistryEntry dbre, int speciesId, boolean useSpeciesId) {
+	/**
+	 * <p>
+	 * 	Returns the command run for a species, or for the database if 
+	 * useSpeciesId is false. Used for running it and in reports.
+	 * </p>
+	 */
+	protected String createShellCommand(final DatabaseRegistryEntry dbre, int speciesId, boolean useSpeciesId) {
 		
-		boolean passes = true;
+		if (useSpeciesId) {
+			return createCommandLine(dbre, speciesId);
+		} else {
+			return createCommandLine(dbre);
+		}
+	}
+
+	/**
+	 * <p>
+	 * 	Runs the test for a species, or for the database if useSpeciesId is 
+	 * false, and sends its output to out and err. Doesn't report anything to
+	 * the ReportManager, so it can be run in any thread.
+	 * </p>
+	 * 
+	 * @return The exit status, 0 if the test passed.
+	 * @throws IOException
+	 *             If the test could not be run.
+	 */
+	protected int execShellTest(
+			final DatabaseRegistryEntry dbre, 
+			int speciesId, 
+			boolean useSpeciesId,
+			Appendable out,
+			Appendable err
+	) throws IOException {
+		
+		String shellCmd = createShellCommand(dbre, speciesId, useSpeciesId);
+
+		logger.info(
+			"Running: "
+			+ shellCmd
+		);
+		
+		if (StringUtils.isEmpty(shellCmd)) {
+			throw new RuntimeException("Shell based test "+this.getName()+" has not returned a valid command line");
+		}
+		
+		//
+		// Running the command by creating an array avoids the 
+		// problem of java breaking the command down at spaces to
+		// divide it into command and arguments.
+		//
+		// The command is passed to the bash so things like pipes and
+		// backticks are interpreted. 
+		//
+		String[] cmdLineItems = new String[] {
+				"/bin/bash",
+				"-c",
+				shellCmd,
+		};
+		
+		return ProcessExec.exec(
+			cmdLineItems, 
+			out, 
+			err, 
+			false, 
+			environmentVarsToSet()
+		);
+	}
+
+	/**
+	 * <p>
+	 * 	Reports the outcome of running shellCmd to the ReportManager.
+	 * </p>
+	 * 
+	 * @param error
+	 *            The exception thrown running shellCmd, or null.
+	 * @return true if the test passed.
+	 */
+	protected boolean reportShellTest(final DatabaseRegistryEntry dbre, String shellCmd, int exit, IOException error) {
+		
+		if (error != null) {
+			ReportManager.problem(
+				this, 
+				dbre.getConnection(),
+				"Could not execute " 
+				+ shellCmd 
+				+ "\nGot the following error: "
+				+ error.getMessage()
+			);
+			return false;
+		}
+		if (exit == 0) {
+			ReportManager.correct(
+					this, 
+					dbre.getConnection(), 
+					"Command \n"
+					+ shellCmd 
+					+ "\ncompleted successfully"
+			);
+			return true;
+		}
+		ReportManager.problem(
+				this, 
+				dbre.getConnection(), 
+				"Command \n"
+				+ shellCmd 
+				+ "\ndid not complete successfully"
+		);
+		return false;
+	}
+
+	public boolean runShellTest(final DatabaseRegistryEntry dbre, int speciesId, boolean useSpeciesId) {
 		
 		final EnsTestCase currentTestCase = this;
 		
 		Appendable out = createStdoutProcessor(currentTestCase, dbre.getConnection());
 		Appendable err = createStderrProcessor(currentTestCase, dbre.getConnection());
 		
-		String lastCmdThatWasRun = "";
+		String shellCmd = createShellCommand(dbre, speciesId, useSpeciesId);
 		
 		try {
-			
-			String shellCmd;
-			
-			if (useSpeciesId) {
-				shellCmd = createCommandLine(dbre, speciesId);
-			} else {
-				shellCmd = createCommandLine(dbre);
-			}
+			int exit = execShellTest(dbre, speciesId, useSpeciesId, out, err);
+			return reportShellTest(dbre, shellCmd, exit, null);
+		} catch (IOException e) {
+			return reportShellTest(dbre, shellCmd, 1, e);
+		} 
+	}
+	
+	/**
+	 * <p>
+	 * 	Runs the test for up to shell.species.threads species at a time. The 
+	 * output of each species is held back and passed on, followed by its 
+	 * result, in the order of speciesIds once the species is done, so the 
+	 * reports of a species stay together. As when run one by one, nothing 
+	 * is reported for the species after the first one failing and the 
+	 * processes still running for them are destroyed. If the species are 
+	 * not done after shell.species.timeout seconds, the test fails and the 
+	 * processes still running are destroyed too.
+	 * </p>
+	 */
+	protected boolean runShellTestsConcurrently(final DatabaseRegistryEntry dbre, List<Integer> speciesIds, int threads) {
+		
+		final String threadName = getShortTestName() + "-worker-";
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.min(threads, speciesIds.size()), new ThreadFactory() {
 
-			logger.info(
-				"Running: "
-				+ shellCmd
-			);
-				
+					private final AtomicInteger count = new AtomicInteger();
 
-			int exit = 1;
-			
-			if (!StringUtils.isEmpty(shellCmd)) {
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(TestMetrics.inherit(r), threadName
+								+ count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+
+		Map<Integer, Future<SpeciesRun>> futures = new LinkedHashMap<Integer, Future<SpeciesRun>>();
+
+		for (final int speciesId : speciesIds) {
+			futures.put(speciesId, executor.submit(new Callable<SpeciesRun>() {
+
+				public SpeciesRun call() {
+
+					SpeciesRun run = new SpeciesRun(createShellCommand(dbre, speciesId, true));
+					try {
+						run.exit = execShellTest(dbre, speciesId, true, run.out, run.err);
+					} catch (IOException e) {
+						run.error = e;
+					}
+					return run;
+				}
+			}));
+		}
+
+		executor.shutdown();
+
+		long timeout = Long.getLong(SPECIES_TIMEOUT, DEFAULT_SPECIES_TIMEOUT);
+		long deadline = System.currentTimeMillis() + timeout * 1000;
+		
+		boolean passes = true;
+		
+		try {
+			for (Future<SpeciesRun> future : futures.values()) {
 				
-				//
-				// Running the command by creating an array avoids the 
-				// problem of java breaking the command down at spaces to
-				// divide it into command and arguments.
-				//
-				// The command is passed to the bash so things like pipes and
-				// backticks are interpreted. 
-				//
-				String[] cmdLineItems = new String[] {
-						"/bin/bash",
-						"-c",
-						shellCmd,
-				};
+				SpeciesRun run;
+				if (timeout > 0) {
+					run = future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+				} else {
+					run = future.get();
+				}
 				
-				exit = ProcessExec.exec(
-					cmdLineItems, 
-					out, 
-					err, 
-					false, 
-					environmentVarsToSet()
+				run.replay(
+					createStdoutProcessor(this, dbre.getConnection()), 
+					createStderrProcessor(this, dbre.getConnection())
 				);
 				
-				lastCmdThatWasRun = shellCmd;
-				
-			} else {
-				throw new RuntimeException("Shell based test "+this.getName()+" has not returned a valid command line");
-			}
-			
-			if (exit == 0) {
-				ReportManager.correct(
-						this, 
-						dbre.getConnection(), 
-						"Command \n"
-						+ lastCmdThatWasRun 
-						+ "\ncompleted successfully"
-				);
-			} else {
-				ReportManager.problem(
-						this, 
-						dbre.getConnection(), 
-						"Command \n"
-						+ lastCmdThatWasRun 
-						+ "\ndid not complete successfully"
-				);
-				passes = false;
+				// Once a test has failed, should not report on other species 
+				// ids.
+				//
+				if (!reportShellTest(dbre, run.shellCmd, run.exit, run.error)) {
+					passes = false;
+					break;
+				}
 			}
-		} catch (IOException e) {
+		} catch (TimeoutException e) {
 			ReportManager.problem(
 				this, 
-				dbre.getConnection(),
-				"Could not execute " 
-				+ lastCmdThatWasRun 
-				+ "\nGot the following error: "
-				+ e.getMessage()
+				dbre.getConnection(), 
+				"Shell based test " + getName() + " did not finish on all species of " 
+				+ dbre.getName() + " within " + timeout + " seconds"
 			);
 			passes = false;
-		} 
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			passes = false;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		} finally {
+			// interrupts the species still running, which destroys their 
+			// processes
+			executor.shutdownNow();
+		}
+		
 		return passes;
 	}
 	
@@ -271,12 +436,21 @@ public abstract class AbstractShellBasedTestCase extends SingleDatabaseTestCase
 				passes = false;
 			}
 
-			for (int speciesId : dbre_speciesIds) {
+			int threads = Integer.getInteger(SPECIES_THREADS, DEFAULT_SPECIES_THREADS);
+			
+			if (threads > 1 && dbre_speciesIds.size() > 1) {
 				
-				// Once a test has failed, should not do anymore tests on  
-				// other species ids.
-				//
-				passes = passes && runShellTest(dbre, speciesId, true);
+				passes = runShellTestsConcurrently(dbre, dbre_speciesIds, threads);
+				
+			} else {
+				
+				for (int speciesId : dbre_speciesIds) {
+					
+					// Once a test has failed, should not do anymore tests on  
+					// other species ids.
+					//
+					passes = passes && runShellTest(dbre, speciesId, true);
+				}
 			}
 
 		} else {
@@ -284,4 +458,54 @@ public abstract class AbstractShellBasedTestCase extends SingleDatabaseTestCase
 		}
 		return passes;
 	}
-};
+	
+	/**
+	 * <p>
+	 * 	The output and outcome of running the test for one species in 
+	 * {@link #runShellTestsConcurrently}.
+	 * </p>
+	 */
+	private static class SpeciesRun {
+		
+		final String shellCmd;
+		
+		// lines from stdout and stderr in the order they came in; true for
+		// stderr
+		final List<String> lines = new ArrayList<String>();
+		final List<Boolean> fromErr = new ArrayList<Boolean>();
+		
+		final Appendable out = new ActionAppendable() {
+			@Override public void process(String message) {
+				add(message, false);
+			}
+		};
+		
+		final Appendable err = new ActionAppendable() {
+			@Override public void process(String message) {
+				add(message, true);
+			}
+		};
+		
+		int exit = 1;
+		IOException error = null;
+		
+		SpeciesRun(String shellCmd) {
+			this.shellCmd = shellCmd;
+		}
+		
+		synchronized void add(String message, boolean isErr) {
+			lines.add(message);
+			fromErr.add(isErr);
+		}
+		
+		synchronized void replay(Appendable out, Appendable err) {
+			try {
+				for (int i = 0; i < lines.size(); i++) {
+					(fromErr.get(i) ? err : out).append(lines.get(i));
+				}
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+};
\ No newline at end of file
@@ -1100,32 +1100,7 @@ public abstract class EnsTestCase {
 	public boolean checkForOrphans(Connection con, String table1, String col1,
 			String table2, String col2) {
 
-		int orphans = 0;
-		boolean result = true;
-
-		orphans = countOrphans(con, table1, col1, table2, col2, true);
-
-		String useful_sql = "SELECT " + table1 + "." + col1 + " FROM " + table1
-				+ " LEFT JOIN " + table2 + " ON " + table1 + "." + col1 + " = "
-				+ table2 + "." + col2 + " WHERE " + table2 + "." + col2
-				+ " iS NULL";
-
-		if (orphans > 0) {
-			ReportManager.problem(this, con, "FAILED " + table1 + " -> "
-					+ table2 + " using FK " + col1 + "(" + col2 + ")"
-					+ " relationships");
-			ReportManager.problem(this, con, "FAILURE DETAILS: " + orphans
-					+ " " + table1 + " entries are not linked to " + table2);
-			ReportManager.problem(this, con, "USEFUL SQL: " + useful_sql);
-			result = false;
-		} else if (orphans < 0) {
-			ReportManager.problem(this, con, "TEST NOT COMPLETED " + table1
-					+ " -> " + table2 + " using FK " + col1
-					+ ", look at the StackTrace if any");
-			result = false;
-		}
-
-		return result;
+		return checkForOrphans(con, table1, col1, table2, col2, true);
 
 	} // checkForOrphans
 		// -------------------------------------------------------------------------
@@ -1167,12 +1142,7 @@ public abstract class EnsTestCase {
 		logger.finest("Left: " + resultLeft);
 
 		if (resultLeft > 0) {
-			String[] values = DBUtils.getColumnValues(con, "SELECT " + table1
-					+ "." + col1 + sql + " LIMIT 20");
-			for (int i = 0; i < values.length; i++) {
-				ReportManager.info(this, con, table1 + "." + col1 + " "
-						+ values[i] + " is not linked.");
-			}
+			reportUnlinked(con, table1, col1, sql);
 		}
 
 		if (!oneWayOnly) {
@@ -1184,12 +1154,7 @@ public abstract class EnsTestCase {
 			resultRight = DBUtils.getRowCount(con, "SELECT COUNT(*)" + sql);
 
 			if (resultRight > 0) {
-				String[] values = DBUtils.getColumnValues(con, "SELECT "
-						+ table2 + "." + col2 + sql + " LIMIT 20");
-				for (int i = 0; i < values.length; i++) {
-					ReportManager.info(this, con, table2 + "." + col2 + " "
-							+ values[i] + " is not linked.");
-				}
+				reportUnlinked(con, table2, col2, sql);
 			}
 
 			logger.finest("Right: " + resultRight);
@@ -1240,12 +1205,7 @@ public abstract class EnsTestCase {
 
 		resultLeft = DBUtils.getRowCount(con, "SELECT COUNT(*)" + sql);
 		if (resultLeft > 0) {
-			String[] values = DBUtils.getColumnValues(con, "SELECT " + table1
-					+ "." + col1 + sql + " LIMIT 20");
-			for (int i = 0; i < values.length; i++) {
-				ReportManager.info(this, con, table1 + "." + col1 + " "
-						+ values[i] + " is not linked.");
-			}
+			reportUnlinked(con, table1, col1, sql);
 		}
 
 		logger.finest("Left: " + resultLeft);
@@ -1254,6 +1214,25 @@ public abstract class EnsTestCase {
 
 	} // countOrphans
 
+	// -------------------------------------------------------------------------
+	/**
+	 * Report up to 20 of the values of table.col which are not linked.
+	 * 
+	 * @param from
+	 *            The FROM and WHERE clauses selecting the rows of table which
+	 *            are not linked.
+	 */
+	void reportUnlinked(Connection con, String table, String col, String from) {
+
+		String[] values = DBUtils.getColumnValues(con, "SELECT " + table + "."
+				+ col + from + " LIMIT 20");
+		for (int i = 0; i < values.length; i++) {
+			ReportManager.info(this, con, table + "." + col + " " + values[i]
+					+ " is not linked.");
+		}
+
+	} // reportUnlinked
+
 	// -------------------------------------------------------------------------
 	/**
 	 * Generic way to check for orphan foreign key relationships.
@@ -1268,6 +1247,19 @@ public abstract class EnsTestCase {
 
 		int orphans = countOrphans(con, table1, col1, table2, col2, oneWay);
 
+		return reportOrphans(con, table1, col1, table2, col2, oneWay, orphans);
+
+	} // checkForOrphans
+
+	/**
+	 * Report the result of {@link #checkForOrphans(Connection, String, String,
+	 * String, String, boolean)}.
+	 * 
+	 * @return true If there are no orphans.
+	 */
+	boolean reportOrphans(Connection con, String table1, String col1,
+			String table2, String col2, boolean oneWay, int orphans) {
+
 		boolean result = true;
 
 		String useful_sql = "SELECT " + table1 + "." + col1 + " FROM " + table1
@@ -1307,7 +1299,7 @@ public abstract class EnsTestCase {
 		 * 
 		 * return orphans == 0;
 		 */
-	} // checkForOrphans
+	} // reportOrphans
 
 	// -------------------------------------------------------------------------
 	/**
@@ -1421,11 +1413,25 @@ public abstract class EnsTestCase {
 	public boolean checkForOrphansWithConstraint(Connection con, String table1,
 			String col1, String table2, String col2, String constraint1) {
 
-		int orphans = 0;
-		boolean result = true;
+		int orphans = countOrphansWithConstraint(con, table1, col1, table2,
+				col2, constraint1);
+
+		return reportOrphansWithConstraint(con, table1, col1, table2, col2,
+				constraint1, orphans);
+
+	} // checkForOrphansWithConstraint
 
-		orphans = countOrphansWithConstraint(con, table1, col1, table2, col2,
-				constraint1);
+	/**
+	 * Report the result of {@link #checkForOrphansWithConstraint(Connection,
+	 * String, String, String, String, String)}.
+	 * 
+	 * @return boolean true if everything is fine false otherwise
+	 */
+	boolean reportOrphansWithConstraint(Connection con, String table1,
+			String col1, String table2, String col2, String constraint1,
+			int orphans) {
+
+		boolean result = true;
 
 		String useful_sql = "SELECT " + table1 + "." + col1 + " FROM " + table1
 				+ " LEFT JOIN " + table2 + " ON " + table1 + "." + col1 + " = "
@@ -1459,7 +1465,7 @@ public abstract class EnsTestCase {
 
 		return result;
 
-	} // checkForOrphansWithConstraint
+	} // reportOrphansWithConstraint
 
 	// -------------------------------------------------------------------------
 	/**
@@ -0,0 +1,228 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.testcase;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+import org.ensembl.healthcheck.TestMetrics;
+import org.ensembl.healthcheck.util.ConnectionPool;
+import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.SqlTemplate.ResultSetCallback;
+
+/**
+ * <p>
+ * Reads what the meta_coord tests compare: the meta_coord table, with one
+ * query, and the coordinate systems used in each feature table with their
+ * longest feature, with one GROUP BY query per table:
+ * </p>
+ *
+ * <pre>
+ * SELECT sr.coord_system_id, ABS(MAX(f.seq_region_end - f.seq_region_start) + 1)
+ * FROM seq_region sr, table f WHERE sr.seq_region_id = f.seq_region_id
+ * GROUP BY sr.coord_system_id
+ * </pre>
+ *
+ * <p>
+ * The feature tables are read on up to meta.coord.threads threads at the
+ * same time, each with its own connection, so the number of connections to
+ * the server is limited by that and by connection.pool.max.per.server.
+ * </p>
+ */
+public class MetaCoordChecker {
+
+	/**
+	 * System property with the number of feature tables read at the same
+	 * time.
+	 */
+	public static final String THREADS = "meta.coord.threads";
+
+	private static final int DEFAULT_THREADS = 4;
+
+	private final String threadName;
+
+	public MetaCoordChecker(EnsTestCase testCase) {
+		this.threadName = testCase.getShortTestName() + "-worker-";
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * @return The max_length values of meta_coord keyed on table name and
+	 *         coord_system_id. There is more than one value if an entry is
+	 *         duplicated.
+	 */
+	public Map<String, Map<String, List<String>>> readMetaCoord(Connection con) {
+
+		return DBUtils.getSqlTemplate(con).execute(
+				"SELECT table_name, coord_system_id, max_length FROM meta_coord",
+				new ResultSetCallback<Map<String, Map<String, List<String>>>>() {
+					public Map<String, Map<String, List<String>>> process(
+							ResultSet rs) throws SQLException {
+						Map<String, Map<String, List<String>>> metaCoord = new LinkedHashMap<String, Map<String, List<String>>>();
+						while (rs.next()) {
+							Map<String, List<String>> table = metaCoord.get(rs.getString(1));
+							if (table == null) {
+								table = new LinkedHashMap<String, List<String>>();
+								metaCoord.put(rs.getString(1), table);
+							}
+							List<String> maxLengths = table.get(rs.getString(2));
+							if (maxLengths == null) {
+								maxLengths = new ArrayList<String>(1);
+								table.put(rs.getString(2), maxLengths);
+							}
+							maxLengths.add(rs.getString(3));
+						}
+						return metaCoord;
+					}
+				});
+
+	}
+
+	/**
+	 * @param coordSystemVersion
+	 *            If not null, only coordinate systems whose version is LIKE
+	 *            this are returned.
+	 * @return For each table, the length of the longest feature keyed on the
+	 *         coord_system_id of each coordinate system the features of the
+	 *         table are on, in the order of tables. Tables without features
+	 *         are left out.
+	 */
+	public Map<String, Map<String, String>> readFeatureCoordSystems(
+			final DatabaseRegistryEntry dbre, String[] tables,
+			final String coordSystemVersion) {
+
+		Map<String, Map<String, String>> result = new LinkedHashMap<String, Map<String, String>>();
+
+		int threads = Integer.getInteger(THREADS, DEFAULT_THREADS);
+		if (threads < 2 || tables.length < 2) {
+			for (String table : tables) {
+				putIfNotEmpty(result, table, readFeatureCoordSystems(dbre, table,
+						coordSystemVersion));
+			}
+			return result;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.min(threads, tables.length), new ThreadFactory() {
+
+					private final AtomicInteger count = new AtomicInteger();
+
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(TestMetrics.inherit(r), threadName
+								+ count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+
+		Map<String, Future<Map<String, String>>> futures = new LinkedHashMap<String, Future<Map<String, String>>>();
+
+		for (final String table : tables) {
+			futures.put(table, executor.submit(new Callable<Map<String, String>>() {
+
+				public Map<String, String> call() {
+
+					int scope = ConnectionPool.beginScope();
+					try {
+						return readFeatureCoordSystems(dbre, table,
+								coordSystemVersion);
+					} finally {
+						ConnectionPool.endScope(scope);
+					}
+				}
+			}));
+		}
+
+		executor.shutdown();
+
+		try {
+			for (Map.Entry<String, Future<Map<String, String>>> e : futures
+					.entrySet()) {
+				putIfNotEmpty(result, e.getKey(), e.getValue().get());
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted reading feature tables of "
+					+ dbre.getName(), e);
+		} catch (ExecutionException e) {
+			executor.shutdownNow();
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+
+		return result;
+
+	}
+
+	/**
+	 * Tables without features are not checked against meta_coord, so their
+	 * meta_coord entries are not reported as unused.
+	 */
+	private static void putIfNotEmpty(Map<String, Map<String, String>> result,
+			String table, Map<String, String> coordSystems) {
+		if (!coordSystems.isEmpty()) {
+			result.put(table, coordSystems);
+		}
+	}
+
+	private Map<String, String> readFeatureCoordSystems(
+			DatabaseRegistryEntry dbre, String table, String coordSystemVersion) {
+
+		String sql;
+		if (coordSystemVersion != null) {
+			sql = "SELECT sr.coord_system_id, ABS(MAX(f.seq_region_end - f.seq_region_start) + 1) "
+					+ "FROM seq_region sr join coord_system cs on sr.coord_system_id = cs.coord_system_id, "
+					+ table
+					+ " f WHERE sr.seq_region_id = f.seq_region_id and cs.version like '"
+					+ coordSystemVersion + "' GROUP BY sr.coord_system_id";
+		} else {
+			sql = "SELECT sr.coord_system_id, ABS(MAX(f.seq_region_end - f.seq_region_start) + 1) "
+					+ "FROM seq_region sr, " + table
+					+ " f WHERE sr.seq_region_id = f.seq_region_id GROUP BY sr.coord_system_id";
+		}
+
+		return DBUtils.getSqlTemplate(dbre.getConnection()).execute(sql,
+				new ResultSetCallback<Map<String, String>>() {
+					public Map<String, String> process(ResultSet rs)
+							throws SQLException {
+						Map<String, String> coordSystems = new LinkedHashMap<String, String>();
+						while (rs.next()) {
+							coordSystems.put(rs.getString(1), rs.getString(2));
+						}
+						return coordSystems;
+					}
+				});
+
+	}
+
+} // MetaCoordChecker
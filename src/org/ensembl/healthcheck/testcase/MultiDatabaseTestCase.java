@@ -23,6 +23,14 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.sql.Statement;
 import java.sql.ResultSet;
 
@@ -31,6 +39,8 @@ import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.DatabaseType;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Species;
+import org.ensembl.healthcheck.TestMetrics;
+import org.ensembl.healthcheck.util.ConnectionPool;
 import org.ensembl.healthcheck.util.Utils;
 import org.ensembl.healthcheck.util.DBUtils;
 
@@ -49,6 +59,109 @@ public abstract class MultiDatabaseTestCase extends EnsTestCase {
 	 */
 	public abstract boolean run(DatabaseRegistry dbr);
 
+	/**
+	 * A check which is done on each of several databases independently of
+	 * the others. See {@link MultiDatabaseTestCase#checkEachDatabase}.
+	 */
+	public interface DatabaseCheck {
+
+		/**
+		 * @return true if the database passed.
+		 */
+		boolean check(DatabaseRegistryEntry dbre) throws Exception;
+
+	}
+
+	// ---------------------------------------------------------------------
+	/**
+	 * Run a check on each of the databases, using up to threads threads at
+	 * the same time. Each database is checked in its own
+	 * {@link ConnectionPool} scope on a worker thread, so the check must get
+	 * its connections there rather than use ones opened by the caller.
+	 * Checks which throw an exception are logged and count as failed.
+	 * 
+	 * @param databases
+	 *          The databases to check.
+	 * @param threads
+	 *          The maximum number of databases checked at the same time. With
+	 *          less than 2 the databases are checked in order on the calling
+	 *          thread.
+	 * @param check
+	 *          The check to run.
+	 * @return true if all the databases passed.
+	 */
+	protected boolean checkEachDatabase(List<DatabaseRegistryEntry> databases, int threads, final DatabaseCheck check) {
+
+		boolean result = true;
+
+		if (threads < 2 || databases.size() < 2) {
+
+			for (DatabaseRegistryEntry dbre : databases) {
+				result &= runDatabaseCheck(check, dbre);
+			}
+			return result;
+
+		}
+
+		final String threadName = getShortTestName() + "-worker-";
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, databases.size()), new ThreadFactory() {
+
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(TestMetrics.inherit(r), threadName + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+
+		for (final DatabaseRegistryEntry dbre : databases) {
+			futures.add(executor.submit(new Callable<Boolean>() {
+
+				public Boolean call() {
+
+					int scope = ConnectionPool.beginScope();
+					try {
+						return runDatabaseCheck(check, dbre);
+					} finally {
+						ConnectionPool.endScope(scope);
+					}
+				}
+			}));
+		}
+
+		executor.shutdown();
+
+		try {
+			for (Future<Boolean> future : futures) {
+				result &= future.get();
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+			result = false;
+		} catch (ExecutionException e) {
+			logger.log(Level.SEVERE, "Unexpected failure checking databases", e.getCause());
+			result = false;
+		}
+
+		return result;
+
+	} // checkEachDatabase
+
+	private boolean runDatabaseCheck(DatabaseCheck check, DatabaseRegistryEntry dbre) {
+
+		try {
+			return check.check(dbre);
+		} catch (Exception e) {
+			logger.log(Level.SEVERE, "Could not check " + dbre.getName() + ": " + e.getMessage(), e);
+			return false;
+		}
+
+	}
+
 	// ---------------------------------------------------------------------
 	/**
 	 * Build a hash of arrays of DatabaseRegistryEntries, one key for each species.
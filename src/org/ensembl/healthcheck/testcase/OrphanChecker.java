@@ -0,0 +1,303 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.testcase;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.RowMapper;
+import org.ensembl.healthcheck.util.SqlUncheckedException;
+
+/**
+ * <p>
+ * Checks many foreign key relations at once. Relations are added with the
+ * same methods {@link EnsTestCase} has for checking one relation, and
+ * {@link #run(Connection)} then counts the orphans of all relations with the
+ * same child table with one query, so each child table is read once instead
+ * of once per relation:
+ * </p>
+ *
+ * <pre>
+ * SELECT SUM(CASE WHEN NOT EXISTS (SELECT 1 FROM parent1 p WHERE p.col = child.col1) THEN 1 ELSE 0 END),
+ *        SUM(CASE WHEN NOT EXISTS (SELECT 1 FROM parent2 p WHERE p.col = child.col2) THEN 1 ELSE 0 END)
+ * FROM child
+ * </pre>
+ *
+ * <p>
+ * The results are reported per relation, in the order the relations were
+ * added, with the same messages as the EnsTestCase methods. Constraints may
+ * only refer to columns of table1, since table2 is not joined.
+ * </p>
+ */
+public class OrphanChecker {
+
+	private static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	private final EnsTestCase testCase;
+
+	private final List<Relation> relations = new ArrayList<Relation>();
+
+	public OrphanChecker(EnsTestCase testCase) {
+		this.testCase = testCase;
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * See
+	 * {@link EnsTestCase#checkForOrphans(Connection, String, String, String, String)}
+	 */
+	public void checkForOrphans(String table1, String col1, String table2,
+			String col2) {
+		checkForOrphans(table1, col1, table2, col2, true);
+	}
+
+	/**
+	 * See
+	 * {@link EnsTestCase#checkForOrphans(Connection, String, String, String, String, boolean)}
+	 */
+	public void checkForOrphans(String table1, String col1, String table2,
+			String col2, boolean oneWay) {
+		Relation relation = new Relation(table1, col1, table2, col2, null);
+		relation.directions.add(new Direction(table1, col1, table2, col2, null));
+		if (!oneWay) {
+			relation.directions.add(new Direction(table2, col2, table1, col1,
+					null));
+		}
+		relation.oneWay = oneWay;
+		relations.add(relation);
+	}
+
+	/**
+	 * See
+	 * {@link EnsTestCase#checkForOrphansWithConstraint(Connection, String, String, String, String, String)}
+	 */
+	public void checkForOrphansWithConstraint(String table1, String col1,
+			String table2, String col2, String constraint1) {
+		Relation relation = new Relation(table1, col1, table2, col2,
+				constraint1);
+		relation.directions.add(new Direction(table1, col1, table2, col2,
+				constraint1));
+		relations.add(relation);
+	}
+
+	/**
+	 * See
+	 * {@link EnsTestCase#checkOptionalRelation(Connection, String, String, String, String)}
+	 */
+	public void checkOptionalRelation(String table1, String col1,
+			String table2, String col2) {
+		checkForOrphansWithConstraint(table1, col1, table2, col2, col1
+				+ " IS NOT NULL");
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Check all relations added so far and report the results.
+	 *
+	 * @return true if none of the relations has orphans.
+	 */
+	public boolean run(Connection con) {
+
+		Map<String, List<Direction>> byChild = new LinkedHashMap<String, List<Direction>>();
+		for (Relation relation : relations) {
+			for (Direction direction : relation.directions) {
+				List<Direction> directions = byChild.get(direction.child);
+				if (directions == null) {
+					directions = new ArrayList<Direction>();
+					byChild.put(direction.child, directions);
+				}
+				directions.add(direction);
+			}
+		}
+
+		for (Map.Entry<String, List<Direction>> e : byChild.entrySet()) {
+			countOrphans(con, e.getKey(), e.getValue());
+		}
+
+		boolean result = true;
+
+		for (Relation relation : relations) {
+
+			int orphans = 0;
+			for (Direction direction : relation.directions) {
+				if (direction.orphans > 0) {
+					testCase.reportUnlinked(con, direction.child,
+							direction.childCol, direction.getFrom());
+				}
+				orphans += direction.orphans;
+			}
+
+			if (relation.constraint == null) {
+				result &= testCase.reportOrphans(con, relation.table1,
+						relation.col1, relation.table2, relation.col2,
+						relation.oneWay, orphans);
+			} else {
+				result &= testCase.reportOrphansWithConstraint(con,
+						relation.table1, relation.col1, relation.table2,
+						relation.col2, relation.constraint, orphans);
+			}
+		}
+
+		relations.clear();
+
+		return result;
+
+	}
+
+	/**
+	 * Count the orphans of all directions with child table child with one
+	 * query. If that fails they are counted one by one, so a missing table
+	 * only affects its own relations.
+	 */
+	private void countOrphans(Connection con, String child,
+			final List<Direction> directions) {
+
+		if (directions.size() > 1) {
+
+			StringBuilder sql = new StringBuilder("SELECT ");
+			for (int i = 0; i < directions.size(); i++) {
+				if (i > 0) {
+					sql.append(", ");
+				}
+				sql.append(directions.get(i).getSum());
+			}
+			sql.append(" FROM ").append(child);
+
+			try {
+
+				int[] counts = DBUtils.getSqlTemplate(con).queryForObject(
+						sql.toString(), new RowMapper<int[]>() {
+							public int[] mapRow(ResultSet resultSet,
+									int position) throws SQLException {
+								int[] counts = new int[directions.size()];
+								for (int i = 0; i < counts.length; i++) {
+									// SUM of no rows is NULL, read as 0
+									counts[i] = resultSet.getInt(i + 1);
+								}
+								return counts;
+							}
+						});
+
+				for (int i = 0; i < counts.length; i++) {
+					directions.get(i).orphans = counts[i];
+				}
+				return;
+
+			} catch (SqlUncheckedException e) {
+				logger.fine("Counting orphans in " + child
+						+ " together failed, counting them one by one: "
+						+ e.getMessage());
+			}
+		}
+
+		for (Direction direction : directions) {
+			direction.orphans = DBUtils.getRowCount(con, "SELECT COUNT(*)"
+					+ direction.getFrom());
+		}
+
+	}
+
+	// -------------------------------------------------------------------------
+
+	private static class Relation {
+
+		final String table1;
+
+		final String col1;
+
+		final String table2;
+
+		final String col2;
+
+		final String constraint;
+
+		boolean oneWay = true;
+
+		final List<Direction> directions = new ArrayList<Direction>(2);
+
+		Relation(String table1, String col1, String table2, String col2,
+				String constraint) {
+			this.table1 = table1;
+			this.col1 = col1;
+			this.table2 = table2;
+			this.col2 = col2;
+			this.constraint = constraint;
+		}
+	}
+
+	/**
+	 * Rows of child whose childCol is not in parent.parentCol.
+	 */
+	private static class Direction {
+
+		final String child;
+
+		final String childCol;
+
+		final String parent;
+
+		final String parentCol;
+
+		final String constraint;
+
+		int orphans;
+
+		Direction(String child, String childCol, String parent,
+				String parentCol, String constraint) {
+			this.child = child;
+			this.childCol = childCol;
+			this.parent = parent;
+			this.parentCol = parentCol;
+			this.constraint = constraint;
+		}
+
+		/**
+		 * @return The FROM and WHERE clauses used by EnsTestCase.
+		 */
+		String getFrom() {
+			String from = " FROM " + child + " LEFT JOIN " + parent + " ON "
+					+ child + "." + childCol + " = " + parent + "." + parentCol
+					+ " WHERE " + parent + "." + parentCol + " IS NULL";
+			if (constraint != null) {
+				from += " AND " + child + "." + constraint;
+			}
+			return from;
+		}
+
+		/**
+		 * @return Expression counting the orphans in a query on child.
+		 */
+		String getSum() {
+			String notExists = "NOT EXISTS (SELECT 1 FROM " + parent
+					+ " p WHERE p." + parentCol + " = " + child + "."
+					+ childCol + ")";
+			if (constraint != null) {
+				notExists = "(" + child + "." + constraint + ") AND "
+						+ notExists;
+			}
+			return "SUM(CASE WHEN " + notExists + " THEN 1 ELSE 0 END)";
+		}
+	}
+
+} // OrphanChecker
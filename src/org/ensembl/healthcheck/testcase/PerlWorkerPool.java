@@ -0,0 +1,384 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.testcase;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * <p>
+ * Long-lived perl processes running healthcheck modules on request, so perl,
+ * the API and the connection to the database are set up once per worker
+ * rather than once per database and species. A worker is
+ * perl/run_healthcheck.pl started with -worker; it reads one request per line
+ * on stdin and writes the output of the module on stdout followed by a line
+ * with the result.
+ * </p>
+ *
+ * <p>
+ * There is one pool per worker command line, i.e. per server, with up to
+ * perl.workers workers; tests asking for more wait for one to be free. An
+ * idle worker is pinged before it is reused and replaced if it doesn't
+ * answer. A worker which dies while running a module, or whose thread is
+ * interrupted waiting for it, is destroyed and replaced for the next
+ * request. Setting perl.workers to 0 runs each module in a process of its own
+ * as before.
+ * </p>
+ */
+public class PerlWorkerPool {
+
+	/**
+	 * System property with the maximum number of workers per pool.
+	 */
+	public static final String WORKERS = "perl.workers";
+
+	private static final int DEFAULT_WORKERS = 2;
+
+	// milliseconds between checks for output or an interrupt
+	private static final long POLL_INTERVAL = 10;
+
+	/**
+	 * Prefix of the lines the worker writes to talk to the pool, as opposed
+	 * to the output of the modules.
+	 */
+	static final String MARKER = "HEALTHCHECK-WORKER:";
+
+	private static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	private static final Map<String, PerlWorkerPool> pools = new HashMap<String, PerlWorkerPool>();
+
+	static {
+		Runtime.getRuntime().addShutdownHook(
+				new Thread("perl-worker-shutdown") {
+					public void run() {
+						shutdownAll();
+					}
+				});
+	}
+
+	private final String command;
+
+	private final Map<String, String> environment;
+
+	private final int maxWorkers;
+
+	private final LinkedList<Worker> idle = new LinkedList<Worker>();
+
+	// workers started and not yet destroyed, idle or busy
+	private int started = 0;
+
+	// -------------------------------------------------------------------------
+
+	public static boolean isEnabled() {
+		return Integer.getInteger(WORKERS, DEFAULT_WORKERS) > 0;
+	}
+
+	/**
+	 * @param command
+	 *            The shell command starting a worker.
+	 * @param environment
+	 *            The environment of the workers.
+	 * @return The pool of workers started with command and environment.
+	 */
+	public static PerlWorkerPool getInstance(String command,
+			Map<String, String> environment) {
+
+		String key = command + "\n" + environment;
+		synchronized (pools) {
+			PerlWorkerPool pool = pools.get(key);
+			if (pool == null) {
+				pool = new PerlWorkerPool(command, environment, Integer
+						.getInteger(WORKERS, DEFAULT_WORKERS));
+				pools.put(key, pool);
+			}
+			return pool;
+		}
+
+	}
+
+	/**
+	 * Stop the idle workers of all pools.
+	 */
+	public static void shutdownAll() {
+		synchronized (pools) {
+			for (PerlWorkerPool pool : pools.values()) {
+				pool.shutdown();
+			}
+			pools.clear();
+		}
+	}
+
+	PerlWorkerPool(String command, Map<String, String> environment,
+			int maxWorkers) {
+		this.command = command;
+		this.environment = new HashMap<String, String>(environment);
+		this.maxWorkers = Math.max(1, maxWorkers);
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Run a healthcheck module in a worker, waiting for one to be free if
+	 * necessary.
+	 *
+	 * @param output
+	 *            Gets each line the module writes, stdout and stderr.
+	 * @return true if the module passed.
+	 * @throws IOException
+	 *             If no worker could be started or the worker died while
+	 *             running the module.
+	 */
+	public boolean run(String module, String dbname, int speciesId,
+			Appendable output) throws IOException {
+
+		Worker worker = borrow();
+		boolean healthy = false;
+		try {
+			boolean passed = worker.run(module, dbname, speciesId, output);
+			healthy = true;
+			return passed;
+		} finally {
+			release(worker, healthy);
+		}
+
+	}
+
+	/**
+	 * Stop the idle workers. Busy ones finish what they are running and are
+	 * kept.
+	 */
+	public synchronized void shutdown() {
+		for (Worker worker : idle) {
+			worker.close();
+		}
+		started -= idle.size();
+		idle.clear();
+		notifyAll();
+	}
+
+	// -------------------------------------------------------------------------
+
+	private Worker borrow() throws IOException {
+
+		Worker worker = null;
+		synchronized (this) {
+			try {
+				while (idle.isEmpty() && started >= maxWorkers) {
+					wait();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException(
+						"Interrupted waiting for a perl worker");
+			}
+			if (!idle.isEmpty()) {
+				worker = idle.removeFirst();
+			} else {
+				started++;
+			}
+		}
+
+		if (worker != null) {
+			if (worker.isHealthy()) {
+				return worker;
+			}
+			logger.warning("Perl worker " + command
+					+ " is not responding; starting a new one");
+			worker.destroy();
+		}
+
+		try {
+			return new Worker(command, environment);
+		} catch (IOException e) {
+			synchronized (this) {
+				started--;
+				notifyAll();
+			}
+			throw e;
+		}
+
+	}
+
+	private synchronized void release(Worker worker, boolean healthy) {
+		if (healthy) {
+			idle.addFirst(worker);
+		} else {
+			worker.destroy();
+			started--;
+		}
+		notifyAll();
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * One perl process and the pipes to it.
+	 */
+	private static class Worker {
+
+		private final Process process;
+
+		private final BufferedReader in;
+
+		private final Writer out;
+
+		private int requests = 0;
+
+		Worker(String command, Map<String, String> environment)
+				throws IOException {
+
+			ProcessBuilder builder = new ProcessBuilder("/bin/bash", "-c",
+					command);
+			builder.environment().clear();
+			for (Map.Entry<String, String> e : environment.entrySet()) {
+				if (e.getValue() != null) {
+					builder.environment().put(e.getKey(), e.getValue());
+				}
+			}
+			builder.redirectErrorStream(true);
+			process = builder.start();
+			in = new BufferedReader(new InputStreamReader(process
+					.getInputStream()));
+			out = new BufferedWriter(new OutputStreamWriter(process
+					.getOutputStream()));
+
+			// anything before READY is an error, e.g. a missing perl module
+			List<String> startup = new ArrayList<String>();
+			String line;
+			try {
+				while ((line = readLine()) != null) {
+					if (line.equals(MARKER + "READY")) {
+						logger.fine("Started perl worker " + command);
+						return;
+					}
+					startup.add(line);
+				}
+			} catch (IOException e) {
+				destroy();
+				throw e;
+			}
+			destroy();
+			throw new IOException("Perl worker " + command
+					+ " exited before it was ready: " + startup);
+
+		}
+
+		boolean run(String module, String dbname, int speciesId,
+				Appendable output) throws IOException {
+
+			int id = ++requests;
+			send("RUN\t" + id + "\t" + module + "\t" + dbname + "\t"
+					+ speciesId);
+
+			String done = MARKER + "DONE\t" + id + "\t";
+			String line;
+			while ((line = readLine()) != null) {
+				if (line.startsWith(done)) {
+					return line.substring(done.length()).equals("0");
+				}
+				output.append(line);
+				output.append('\n');
+			}
+			throw new IOException("Perl worker exited while running " + module
+					+ " on " + dbname + " species_id " + speciesId);
+
+		}
+
+		/**
+		 * @return true if the process is running and answers a ping.
+		 */
+		boolean isHealthy() {
+
+			if (!isRunning()) {
+				return false;
+			}
+			try {
+				send("PING");
+				String line;
+				while ((line = readLine()) != null) {
+					if (line.equals(MARKER + "PONG")) {
+						return true;
+					}
+					logger.fine("Perl worker: " + line);
+				}
+			} catch (IOException e) {
+				logger.fine("Perl worker: " + e.getMessage());
+			}
+			return false;
+
+		}
+
+		/**
+		 * Close stdin so the worker exits once it is done.
+		 */
+		void close() {
+			IOUtils.closeQuietly(out);
+			IOUtils.closeQuietly(in);
+		}
+
+		void destroy() {
+			close();
+			process.destroy();
+		}
+
+		/**
+		 * Like in.readLine(), but throws an InterruptedIOException if the
+		 * thread is interrupted while waiting for the worker, e.g. when the
+		 * test is cancelled. The pool then destroys the worker.
+		 */
+		private String readLine() throws IOException {
+			while (!in.ready() && isRunning()) {
+				try {
+					Thread.sleep(POLL_INTERVAL);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException(
+							"Interrupted waiting for a perl worker");
+				}
+			}
+			return in.readLine();
+		}
+
+		private boolean isRunning() {
+			try {
+				process.exitValue();
+				return false;
+			} catch (IllegalThreadStateException e) {
+				return true;
+			}
+		}
+
+		private void send(String request) throws IOException {
+			out.write(request);
+			out.write('\n');
+			out.flush();
+		}
+
+	} // Worker
+
+} // PerlWorkerPool
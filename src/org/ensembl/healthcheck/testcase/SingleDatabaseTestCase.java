@@ -38,6 +38,21 @@ public abstract class SingleDatabaseTestCase extends EnsTestCase {
 
     public abstract boolean run(DatabaseRegistryEntry dbre);
 
+    // -------------------------------------------------------------------------
+    /**
+     * Tables of the database being checked which this test reads. In
+     * incremental mode the test is only run again on a database if one of
+     * them has changed since the test last passed there.
+     * 
+     * @return The table names, or null (the default) if any table of the
+     *          database may affect the result.
+     */
+    public String[] getInputTables() {
+
+        return null;
+
+    }
+
     // -------------------------------------------------------------------------
     /**
      * Check that the count in a table for a given constraint is 0.
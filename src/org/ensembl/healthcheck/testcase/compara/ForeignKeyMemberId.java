@@ -22,6 +22,7 @@ import java.sql.Connection;
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
+import org.ensembl.healthcheck.testcase.OrphanChecker;
 import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
 
 /**
@@ -58,14 +59,19 @@ public class ForeignKeyMemberId extends SingleDatabaseTestCase {
 
         if (tableHasRows(con, "member")) {
 
+            // relations are checked together by child table, see OrphanChecker
+            OrphanChecker orphanChecker = new OrphanChecker(this);
+
                 // Had to invent this tricky workaround because "gene members" and "non-gene members" are held in the same table:
-            result &= checkForOrphansWithConstraint(con, "member", "member_id", "family_member", "member_id", "source_name in ('Uniprot/SWISSPROT', 'Uniprot/SPTREMBL', 'ENSEMBLPEP') AND member.member_id < 300000000");
-            result &= checkForOrphansWithConstraint(con, "member", "member_id", "family_member", "member_id", "source_name='ENSEMBLGENE' AND member.member_id in (SELECT gene_member_id FROM member m2 WHERE m2.source_name='ENSEMBLPEP' AND m2.member_id < 300000000)");
+            orphanChecker.checkForOrphansWithConstraint("member", "member_id", "family_member", "member_id", "source_name in ('Uniprot/SWISSPROT', 'Uniprot/SPTREMBL', 'ENSEMBLPEP') AND member.member_id < 300000000");
+            orphanChecker.checkForOrphansWithConstraint("member", "member_id", "family_member", "member_id", "source_name='ENSEMBLGENE' AND member.member_id in (SELECT gene_member_id FROM member m2 WHERE m2.source_name='ENSEMBLPEP' AND m2.member_id < 300000000)");
+
+            orphanChecker.checkForOrphans("family_member", "member_id", "member", "member_id");
+            orphanChecker.checkForOrphans("homology_member", "member_id", "member", "member_id");
+            orphanChecker.checkForOrphans("homology_member", "peptide_member_id", "member", "member_id");
+            orphanChecker.checkForOrphans("domain_member", "member_id", "member", "member_id");
 
-            result &= checkForOrphans(con, "family_member", "member_id", "member", "member_id");
-            result &= checkForOrphans(con, "homology_member", "member_id", "member", "member_id");
-            result &= checkForOrphans(con, "homology_member", "peptide_member_id", "member", "member_id");
-            result &= checkForOrphans(con, "domain_member", "member_id", "member", "member_id");
+            result &= orphanChecker.run(con);
 
         } else {
             ReportManager.correct(this, con, "NO ENTRIES in member table, so nothing to test IGNORED");
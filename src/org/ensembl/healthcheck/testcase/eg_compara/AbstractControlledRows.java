@@ -23,20 +23,35 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringUtils;
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.testcase.AbstractTemplatedTestCase;
 import org.ensembl.healthcheck.testcase.EnsTestCase;
+import org.ensembl.healthcheck.util.RowHashSet;
 import org.ensembl.healthcheck.util.SqlTemplate;
 import org.ensembl.healthcheck.util.SqlTemplate.ResultSetCallback;
 
 abstract public class AbstractControlledRows extends AbstractTemplatedTestCase {
 
+	/** The "where" a where clause passed to the checks starts with. */
+	private static final Pattern WHERE_KEYWORD = Pattern.compile("^\\s*where\\b", Pattern.CASE_INSENSITIVE);
+
 	protected Connection masterDbConn;
 	protected SqlTemplate masterSqlTemplate;
 
+	/**
+	 * The rows of the master table last used by checkRangeOfRowsInTable and
+	 * what they were selected with, so the master table is only read once
+	 * for all the ranges and databases checked against it.
+	 */
+	private String masterRowSetKey;
+	private RowHashSet masterRowSet;
+
 	protected void init() {
 		DatabaseRegistryEntry masterDbRe = getComparaMasterDatabase();
 		masterDbConn = masterDbRe.getConnection();
@@ -78,37 +93,191 @@ abstract public class AbstractControlledRows extends AbstractTemplatedTestCase {
 			int offset
 		) {
 
+		final Connection testDbConn = testDbre.getConnection();
+		
+		String fetchAllRowsFromTableSql = generateFetchAllRowsFromTableSql(testDbConn, controlledTableToTest, whereClause, limit, offset);
+
+		return checkRowsInMaster(
+			controlledTableToTest, 
+			masterTable, 
+			testDbre, 
+			masterDbRe, 
+			whereClause, 
+			fetchAllRowsFromTableSql, 
+			new Object[0], 
+			null
+		).allRowsPresentInMasterDb;
+	}
+
+	/**
+	 * <p>
+	 * 	Checks all rows of controlledTableToTest matching whereClause in 
+	 * batches of {@link #batchSize} rows.
+	 * </p>
+	 * 
+	 * <p>
+	 * 	If the table has a primary key, batches are fetched by key ranges 
+	 * ("where key > last key seen order by key limit n"), so every batch 
+	 * is a cheap index range scan. Tables without one are paged with limit 
+	 * and offset, which gets slower the further into the table it gets.
+	 * </p>
+	 * 
+	 * @param whereClause
+	 * 		Empty or a where clause including the "where" keyword.
+	 * @param rowCount
+	 * 		The number of rows expected. Only used for progress messages and
+	 * 		for paging tables without a primary key.
+	 */
+	protected boolean checkRowsInBatches(
+			final String controlledTableToTest,
+			final String masterTable,
+			DatabaseRegistryEntry testDbre,
+			DatabaseRegistryEntry masterDbRe,
+			String whereClause,
+			int rowCount
+		) {
+		
+		final Connection testDbConn = testDbre.getConnection();
+		
+		List<String> keyColumns = getPrimaryKeyColumns(testDbConn, controlledTableToTest);
+		
+		boolean allRowsInMaster = true;
+		
+		if (keyColumns.isEmpty()) {
+			
+			int limit = batchSize;
+			
+			for(int currentOffset = 0; currentOffset<rowCount && !numReportedRowsExceedsMaximum(); currentOffset+=limit) {
+				
+				getLogger().info("Checking rows " + currentOffset + " out of " + rowCount);
+				
+				allRowsInMaster &= checkRangeOfRowsInTable(
+					controlledTableToTest,
+					masterTable,
+					testDbre,
+					masterDbRe,
+					whereClause,
+					limit,
+					currentOffset
+				);			
+			}
+			return allRowsInMaster;
+		}
+		
+		List<String> columns = getColumnsOfTable(testDbConn, controlledTableToTest);
+		
+		Object[] lastKey = null;
+		int rowsChecked  = 0;
+		
+		while (!numReportedRowsExceedsMaximum()) {
+			
+			getLogger().info("Checking rows " + rowsChecked + " out of " + rowCount);
+			
+			String sql = fetchRowsAfterKeySql(controlledTableToTest, columns, keyColumns, whereClause, lastKey != null, batchSize);
+			
+			CheckedRows checked = checkRowsInMaster(
+				controlledTableToTest, 
+				masterTable, 
+				testDbre, 
+				masterDbRe, 
+				whereClause, 
+				sql, 
+				lastKey == null ? new Object[0] : keysetParameters(lastKey), 
+				keyColumns
+			);
+			
+			allRowsInMaster &= checked.allRowsPresentInMasterDb;
+			rowsChecked     += checked.numRows;
+			lastKey          = checked.lastKey;
+			
+			if (checked.numRows < batchSize) {
+				break;
+			}
+		}
+		return allRowsInMaster;
+	}
+
+	/**
+	 * The outcome of checking one batch of rows.
+	 */
+	protected static class CheckedRows {
+		
+		boolean allRowsPresentInMasterDb = true;
+		
+		int numRows = 0;
+		
+		/** Values of the key columns of the last row checked */
+		Object[] lastKey;
+	}
+	
+	/**
+	 * Checks every row returned by fetchRowsSql against masterTable. If 
+	 * keyColumns is given, the values of these columns in the last row are
+	 * returned, so the next batch can start from there.
+	 */
+	protected CheckedRows checkRowsInMaster(
+			final String controlledTableToTest,
+			final String masterTable,
+			DatabaseRegistryEntry testDbre,
+			DatabaseRegistryEntry masterDbRe,
+			String whereClause,
+			String fetchRowsSql,
+			Object[] fetchRowsParameters,
+			final List<String> keyColumns
+		) {
+
 		final Connection testDbConn = testDbre.getConnection();
 		final Connection masterconn = masterDbRe.getConnection();
 		
 		final SqlTemplate sqlTemplateTestDb        = getSqlTemplate(testDbConn);  
 		final SqlTemplate sqlTemplateComparaMaster = getSqlTemplate(masterconn);
 		
-		String fetchAllRowsFromTableSql = generateFetchAllRowsFromTableSql(testDbConn, controlledTableToTest, whereClause, limit, offset);
-
 		final EnsTestCase thisTest = this;
 		final List<String> testTableColumns = getColumnsOfTable(testDbConn, controlledTableToTest);
 		
-		boolean result = sqlTemplateTestDb.execute(
-			fetchAllRowsFromTableSql,
-			new ResultSetCallback<Boolean>() {
+		final RowHashSet masterRows = useMasterRowSet()
+			? getMasterRowSet(sqlTemplateComparaMaster, masterDbRe, masterTable, testTableColumns, whereClause)
+			: null;
+		
+		return sqlTemplateTestDb.execute(
+			fetchRowsSql,
+			new ResultSetCallback<CheckedRows>() {
 
-				@Override public Boolean process(ResultSet rs) throws SQLException {
+				@Override public CheckedRows process(ResultSet rs) throws SQLException {
 					
 					rs.setFetchSize(batchSize);					
 							
-					boolean allRowsPresentInMasterDb = true;				
+					CheckedRows checked = new CheckedRows();
 					
-					while (rs.next() && !numReportedRowsExceedsMaximum()) {
+					while (rs.next()) {
 						
-						boolean currentRowPresentInMasterDb = isCurrentRowInMaster(
-							rs,
-							sqlTemplateComparaMaster, 
-							masterTable,
-							testTableColumns 
-						);
+						checked.numRows++;
+						
+						if (keyColumns != null) {
+							checked.lastKey = new Object[keyColumns.size()];
+							for (int i = 0; i < keyColumns.size(); i++) {
+								checked.lastKey[i] = rs.getObject(keyColumns.get(i));
+							}
+						}
 						
-						allRowsPresentInMasterDb &= currentRowPresentInMasterDb;
+						if (numReportedRowsExceedsMaximum()) {
+							break;
+						}
+						
+						// Rows found exactly once in the master need no query. 
+						// Anything else is confirmed with one, which also 
+						// reports rows that are in the master more than once.
+						//
+						boolean currentRowPresentInMasterDb = 
+							(masterRows != null && masterRows.count(rs) == 1)
+							|| isCurrentRowInMaster(
+								rs,
+								sqlTemplateComparaMaster, 
+								masterTable,
+								testTableColumns 
+							);
+						
+						checked.allRowsPresentInMasterDb &= currentRowPresentInMasterDb;
 						
 						if (!currentRowPresentInMasterDb) {
 							
@@ -129,14 +298,157 @@ abstract public class AbstractControlledRows extends AbstractTemplatedTestCase {
 							}
 						}
 					}					
-					return allRowsPresentInMasterDb;
+					return checked;
+				}
+			},
+			fetchRowsParameters
+		);
+	}
+
+	/**
+	 * 
+	 * Returns the primary key columns of a table in key order or an empty 
+	 * list, if the table has no primary key.
+	 * 
+	 */
+	protected List<String> getPrimaryKeyColumns(Connection conn, String table) {
+		
+		// getPrimaryKeys returns the columns ordered by name, KEY_SEQ gives 
+		// their position in the key.
+		//
+		Map<Integer, String> keyColumnsBySeq = new TreeMap<Integer, String>();
+		
+		try {
+			ResultSet rs = conn.getMetaData().getPrimaryKeys(null, null, table);
+			while (rs.next()) {
+				keyColumnsBySeq.put(rs.getInt("KEY_SEQ"), rs.getString("COLUMN_NAME"));
+			}
+			rs.close();
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+		return new ArrayList<String>(keyColumnsBySeq.values());
+	}
+
+	/**
+	 * 
+	 * Generates a sql statement that fetches the next limit rows of the 
+	 * table ordered by keyColumns. If afterKey is true, only rows after the
+	 * key given as parameters (see {@link #keysetParameters(Object[])}) are
+	 * fetched.
+	 * 
+	 * For a key (a, b) the condition is "a > ? or (a = ? and b > ?)".
+	 * 
+	 */
+	protected String fetchRowsAfterKeySql(
+			String tableName,
+			List<String> columns,
+			List<String> keyColumns,
+			String whereClause,
+			boolean afterKey,
+			int limit
+		) {
+		
+		StringBuffer sql = new StringBuffer("select " + asCommaSeparatedString(columns) + " from " + tableName + " ");
+		
+		if (!afterKey) {
+			sql.append(whereClause);
+		} else {
+			
+			List<String> alternatives = new ArrayList<String>();
+			for (int i = 0; i < keyColumns.size(); i++) {
+				
+				List<String> conditions = new ArrayList<String>();
+				for (int j = 0; j < i; j++) {
+					conditions.add(keyColumns.get(j) + " = ?");
+				}
+				conditions.add(keyColumns.get(i) + " > ?");
+				alternatives.add("(" + joinListOfStrings(conditions, " and ") + ")");
+			}
+			
+			// The condition of whereClause is bracketed, so an "or" in it can
+			// not bind to the key condition.
+			String condition = WHERE_KEYWORD.matcher(whereClause).replaceFirst("").trim();
+			sql.append(condition.length() == 0 ? "where " : "where (" + condition + ") and ");
+			sql.append("(" + joinListOfStrings(alternatives, " or ") + ")");
+		}
+		
+		sql.append(" order by " + asCommaSeparatedString(keyColumns) + " limit " + limit);
+		
+		return sql.toString();
+	}
+
+	/**
+	 * The parameters for the condition generated by 
+	 * {@link #fetchRowsAfterKeySql}.
+	 */
+	protected Object[] keysetParameters(Object[] lastKey) {
+		
+		List<Object> parameters = new ArrayList<Object>();
+		for (int i = 0; i < lastKey.length; i++) {
+			for (int j = 0; j <= i; j++) {
+				parameters.add(lastKey[j]);
+			}
+		}
+		return parameters.toArray();
+	}
+
+	/**
+	 * If true, checkRangeOfRowsInTable reads the master table once into a
+	 * {@link RowHashSet} and looks rows up in that instead of running a query
+	 * for every row of the tested table. Override to return false, if the 
+	 * master table is too big to be held in memory.
+	 */
+	protected boolean useMasterRowSet() {
+		return true;
+	}
+
+	/**
+	 * Returns the hashes of the given columns of all the rows of masterTable
+	 * matching whereClause. Rows can only match if they satisfy the same 
+	 * where clause as the rows of the tested table, so the rest of the 
+	 * master table does not have to be read.
+	 */
+	protected RowHashSet getMasterRowSet(
+			final SqlTemplate sqlTemplateComparaMaster,
+			final DatabaseRegistryEntry masterDbRe,
+			final String masterTable,
+			final List<String> columns,
+			final String whereClause
+		) {
+		
+		String sql = "select " + asCommaSeparatedString(columns) + " from " + masterTable + " " + whereClause;
+		String key = masterDbRe.getName() + ":" + sql;
+		
+		if (key.equals(masterRowSetKey)) {
+			return masterRowSet;
+		}
+		
+		RowHashSet rows = sqlTemplateComparaMaster.execute(
+			sql,
+			new ResultSetCallback<RowHashSet>() {
+
+				@Override public RowHashSet process(ResultSet rs) throws SQLException {
+					
+					rs.setFetchSize(batchSize);
+					
+					RowHashSet rows = new RowHashSet();
+					while (rs.next()) {
+						rows.add(rs);
+					}
+					rows.seal();
+					return rows;
 				}
 			},
-			// No bound parameters
-			//
 			new Object[0]
 		);
-		return result;
+		
+		getLogger().info("Read " + rows.size() + " rows from " + masterTable + " in the master database");
+		
+		masterRowSetKey = key;
+		masterRowSet    = rows;
+		
+		return rows;
 	}
 
 	/**
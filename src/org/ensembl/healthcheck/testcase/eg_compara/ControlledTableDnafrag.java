@@ -131,24 +131,16 @@ public class ControlledTableDnafrag extends AbstractControlledRows {
 			logger.log(Level.INFO, "Columns are ok.");
 		}
 		
-		int limit = batchSize;
-		boolean allRowsInMaster = true;
-		
-		for(int currentOffset = 0; currentOffset<rowCount && !numReportedRowsExceedsMaximum(); currentOffset+=limit) {
-			
-			logger.info("Checking rows " + currentOffset + " out of " + rowCount + " for species " + speciesName);
-			
-			allRowsInMaster &= checkRangeOfRowsInTable(
-				controlledTableToTest,
-				masterTable,
-				testDbre,
-				masterDbRe,
-				whereClause,
-				limit,
-				currentOffset
-			);			
-		}
-		return allRowsInMaster;
+		logger.info("Checking rows for species " + speciesName);
+		
+		return checkRowsInBatches(
+			controlledTableToTest,
+			masterTable,
+			testDbre,
+			masterDbRe,
+			whereClause,
+			rowCount
+		);
 	}
 	
 	protected boolean checkAllRowsInTableIfInDnaCompara(
@@ -21,6 +21,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
@@ -32,8 +33,11 @@ import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.SystemCommand;
 import org.ensembl.healthcheck.TestRunner;
 import org.ensembl.healthcheck.testcase.MultiDatabaseTestCase;
+import org.ensembl.healthcheck.testcase.generic.AbstractCompareSchema;
 import org.ensembl.healthcheck.util.ActionAppendable;
 import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.SchemaChecksumDatabase;
+import org.ensembl.healthcheck.util.SchemaSnapshot;
 
 import java.util.regex.Matcher;
 import java.util.*;
@@ -198,8 +202,12 @@ public abstract class EGAbstractCompareSchema extends MultiDatabaseTestCase {
 		    logger.fine("Got connection to a master database.");
 		}
 		
-		String masterShortName = DBUtils.getShortDatabaseName(masterCon);
+		final String masterShortName = DBUtils.getShortDatabaseName(masterCon);
 
+		// The meta table checks all use the master connection, so they are
+		// done here. Only the mysqldiff runs are done in parallel.
+		//
+		List<DatabaseRegistryEntry> databasesToDiff = new ArrayList<DatabaseRegistryEntry>();
 		for (final DatabaseRegistryEntry dbre : databasesToRunOn) {
 
 			final Connection checkCon = dbre.getConnection();
@@ -214,125 +222,205 @@ public abstract class EGAbstractCompareSchema extends MultiDatabaseTestCase {
 				result = false;
 				continue;
 			}
+			databasesToDiff.add(dbre);
+		}
+		somethingWasChecked = !databasesToDiff.isEmpty();
 
-			DatabaseServer srv = dbre.getDatabaseServer();
-			final StringBuffer patch = new StringBuffer();
-
-			logger.info("Running " + mysqldiffBin);
-
-			systemCommand.runCmd(
-				new String[] {
-						mysqldiffBin,
-						"--tolerant",
-						"--host", srv.getHost(),
-						"--port", srv.getPort(),
-						"--user", srv.getUser(),
-						"--password", srv.getPass(),
-						"db:" + dbre.getName(),
-						"db:" + masterShortName,
-				},
-				new ActionAppendable() {
-					@Override public void process(String message) {
-						patch.append(message);
-					}
-				},
-				new ActionAppendable() {
-					@Override public void process(String message) {
-						ReportManager.problem(compareSchemaTest, checkCon, message);
-					}
+		// Digest of the master schema, stored with the verdicts if
+		// schema.compare.cache.dir is set.
+		//
+		String digest = null;
+		if (getCacheDirectory() != null) {
+			try {
+				digest = SchemaSnapshot.fromDatabase(masterCon).digest();
+			} catch (SQLException e) {
+				logger.warning("Can't read the master schema, not using the cache: " + e.getMessage());
+			}
+		}
+		final String masterDigest = digest;
+
+		final SystemCommand diffCommand = systemCommand;
+		result &= checkEachDatabase(
+			databasesToDiff,
+			Integer.getInteger(AbstractCompareSchema.COMPARE_THREADS, 4),
+			new DatabaseCheck() {
+				public boolean check(DatabaseRegistryEntry dbre) {
+					return diffSchema(diffCommand, dbre, masterShortName, masterDigest);
 				}
+			}
+		);
+
+		if (!somethingWasChecked) {
+
+			// Depending on the users configuration this doesn't have to be an
+			// error, but most of the time it will be a misconfiguration.
+			//
+			ReportManager.correct(
+				compareSchemaTest,
+				masterCon,
+				"Warning: Nothing was compared."
 			);
+		}
 
-			logger.info("Done running " + mysqldiffBin);
+		compareSchemaStrategy.cleanup();
+		return result;
+	}
+
+	/**
+	 * @return The directory set in schema.compare.cache.dir or null
+	 */
+	protected File getCacheDirectory() {
+		String dir = System.getProperty(AbstractCompareSchema.CACHE_DIR);
+		if (dir == null || dir.trim().length() == 0) {
+			return null;
+		}
+		return new File(dir.trim());
+	}
+
+	/**
+	 * Runs mysqldiff between one database and the master and reports the
+	 * patch, if there is one. If masterDigest is given, mysqldiff is not run
+	 * for databases which have not changed since they last matched the same
+	 * master. May be called on a worker thread.
+	 */
+	protected boolean diffSchema(
+			SystemCommand systemCommand,
+			DatabaseRegistryEntry dbre,
+			String masterShortName,
+			String masterDigest
+	) {
 
-			boolean schemasAreEqual = patch.toString().trim().equals("");
-			somethingWasChecked = true;
+		final Connection checkCon = dbre.getConnection();
 
-			if (schemasAreEqual) {
+		SchemaChecksumDatabase cache = null;
+		if (masterDigest != null) {
+			cache = new SchemaChecksumDatabase(dbre, getCacheDirectory());
+			cache.getSnapshot();
+			if (cache.hasPassed(getTestName(), masterDigest)) {
 				ReportManager.correct(
-					compareSchemaTest,
+					this,
 					checkCon,
 					"The schema of " + dbre.getName() + " is correct."
 				);
-				continue;
-			} else {
-				result = false;
+				return true;
 			}
+		}
 
-			logger.info("Found schema differences.");
+		boolean passed = runMysqldiff(systemCommand, dbre, masterShortName);
+		if (cache != null) {
+			cache.setPassed(getTestName(), masterDigest, passed);
+		}
+		return passed;
+	}
 
-			String patchFileNameBase = "schema_patch_from_"+compareSchemaTest.getShortTestName()+".sql";
-			String patchFileDir      = "external_reports/" + dbre.getName();
+	protected boolean runMysqldiff(
+			SystemCommand systemCommand,
+			DatabaseRegistryEntry dbre,
+			String masterShortName
+	) {
 
-			new File(patchFileDir).mkdirs();
+		final Connection checkCon = dbre.getConnection();
+
+		DatabaseServer srv = dbre.getDatabaseServer();
+		final StringBuffer patch = new StringBuffer();
+
+		logger.info("Running " + mysqldiffBin);
+
+		systemCommand.runCmd(
+			new String[] {
+					mysqldiffBin,
+					"--tolerant",
+					"--host", srv.getHost(),
+					"--port", srv.getPort(),
+					"--user", srv.getUser(),
+					"--password", srv.getPass(),
+					"db:" + dbre.getName(),
+					"db:" + masterShortName,
+			},
+			new ActionAppendable() {
+				@Override public void process(String message) {
+					patch.append(message);
+				}
+			},
+			new ActionAppendable() {
+				@Override public void process(String message) {
+					ReportManager.problem(EGAbstractCompareSchema.this, checkCon, message);
+				}
+			}
+		);
 
-			File patchFile = new File(patchFileDir + File.separatorChar + patchFileNameBase);
+		logger.info("Done running " + mysqldiffBin);
 
-			// Mysqldiff will insert the name of the master database into the
-			// report. If a temporary database was used, the name will be
-			// different during every run. This will cause problems in the
-			// web interface, which assumes that the exact same error is
-			// given for the same problem every time.
-			//
-			// Therefore the name of the master database is replaced with the
-			// constant string "master_database" here.
-			//
-			// The second call to replaceAll removes the date that is inserted
-			// by mysqldiff.
-			//
-			// The third removes the password from the report.
-			//
-			String patchedPatch = patch.toString()
-					.replaceAll(masterShortName, "master_database")
-					.replaceAll("## Run on .*?\n", "")
-					.replaceAll("password=.*?,", "password=*,")
-					;
-
-
-			ReportManager.problem(compareSchemaTest, checkCon,
-					"\n"
-					+ "\nDifferences between the two schemas were found. The "
-					+ "following sql commands would patch the schema of your "
-					+ "database to match the one of the master database:\n"
-					+ "\n"
-					+ "\n-----------------------------------\n"
-					+ patchedPatch
-					+ "\n-----------------------------------\n"
+		boolean schemasAreEqual = patch.toString().trim().equals("");
+
+		if (schemasAreEqual) {
+			ReportManager.correct(
+				this,
+				checkCon,
+				"The schema of " + dbre.getName() + " is correct."
 			);
-			try {
+			return true;
+		}
 
-				logger.info("Storing patch file in " + patchFile.getCanonicalPath());
+		logger.info("Found schema differences.");
 
-				PrintWriter out = new PrintWriter(patchFile);
-				out.println(patchedPatch);
-				out.close();
+		String patchFileNameBase = "schema_patch_from_"+this.getShortTestName()+".sql";
+		String patchFileDir      = "external_reports/" + dbre.getName();
 
-				ReportManager.problem(compareSchemaTest, checkCon,
-						  "\nA patch file with the commands shown above has been written to:\n"
-						+ patchFile.getCanonicalPath()
-						+ "\n\n"
-				);
+		new File(patchFileDir).mkdirs();
 
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
+		File patchFile = new File(patchFileDir + File.separatorChar + patchFileNameBase);
 
-		}
+		// Mysqldiff will insert the name of the master database into the
+		// report. If a temporary database was used, the name will be
+		// different during every run. This will cause problems in the
+		// web interface, which assumes that the exact same error is
+		// given for the same problem every time.
+		//
+		// Therefore the name of the master database is replaced with the
+		// constant string "master_database" here.
+		//
+		// The second call to replaceAll removes the date that is inserted
+		// by mysqldiff.
+		//
+		// The third removes the password from the report.
+		//
+		String patchedPatch = patch.toString()
+				.replaceAll(masterShortName, "master_database")
+				.replaceAll("## Run on .*?\n", "")
+				.replaceAll("password=.*?,", "password=*,")
+				;
+
+
+		ReportManager.problem(this, checkCon,
+				"\n"
+				+ "\nDifferences between the two schemas were found. The "
+				+ "following sql commands would patch the schema of your "
+				+ "database to match the one of the master database:\n"
+				+ "\n"
+				+ "\n-----------------------------------\n"
+				+ patchedPatch
+				+ "\n-----------------------------------\n"
+		);
+		try {
 
-		if (!somethingWasChecked) {
+			logger.info("Storing patch file in " + patchFile.getCanonicalPath());
 
-			// Depending on the users configuration this doesn't have to be an
-			// error, but most of the time it will be a misconfiguration.
-			//
-			ReportManager.correct(
-				compareSchemaTest,
-				masterCon,
-				"Warning: Nothing was compared."
+			PrintWriter out = new PrintWriter(patchFile);
+			out.println(patchedPatch);
+			out.close();
+
+			ReportManager.problem(this, checkCon,
+					  "\nA patch file with the commands shown above has been written to:\n"
+					+ patchFile.getCanonicalPath()
+					+ "\n\n"
 			);
+
+		} catch (IOException e) {
+			e.printStackTrace();
 		}
 
-		compareSchemaStrategy.cleanup();
-		return result;
+		return false;
 	}
 
 	protected boolean assertSchemaTypesCompatible(
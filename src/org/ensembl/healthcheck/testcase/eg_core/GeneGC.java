@@ -22,7 +22,6 @@
  */
 package org.ensembl.healthcheck.testcase.eg_core;
 
-import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -40,7 +39,7 @@ import org.ensembl.healthcheck.util.TestCaseUtils;
  */
 public class GeneGC extends AbstractEgCoreTestCase {
 
-	private static final String ATTRIB_TYPE_QUERY = "SELECT attrib_type_id FROM attrib_type WHERE code='GeneGC'";
+	private static final String ATTRIB_TYPE_CODE = "GeneGC";
 	private final static String GC_QUERY = "select attrib_type_id,count(*) from gene "
 			+ "join gene_attrib using (gene_id) join attrib_type using (attrib_type_id) "
 			+ "join seq_region using (seq_region_id) join coord_system using (coord_system_id) "
@@ -52,26 +51,19 @@ public class GeneGC extends AbstractEgCoreTestCase {
 		SqlTemplate template = getTemplate(dbre);
 
 		// 1. check for GC attribute as correct value
-		List<Integer> gcAtt = template.queryForDefaultObjectList(
-				ATTRIB_TYPE_QUERY, Integer.class);
-		if (gcAtt.size() > 1) {
-			ReportManager.problem(this, dbre.getConnection(),
-					"More than one GeneGC attrib_type found");
-			passes = false;
-		} else {
-			Integer att = CollectionUtils.getFirstElement(gcAtt, null);
-			if (att != null) {
-				if (att != Integer.parseInt(ATTR_ID)) {
-					ReportManager.problem(this, dbre.getConnection(),
-							"GeneGC attrib_type has ID " + att + " instead of "
-									+ ATTR_ID);
-					passes = false;
-				}
-			} else {
+		// attrib_type.code is unique, so there is at most one
+		Integer att = dbre.getReferenceData().getAttribTypeId(ATTRIB_TYPE_CODE);
+		if (att != null) {
+			if (att != Integer.parseInt(ATTR_ID)) {
 				ReportManager.problem(this, dbre.getConnection(),
-						"No GeneGC attrib_type found");
+						"GeneGC attrib_type has ID " + att + " instead of "
+								+ ATTR_ID);
 				passes = false;
 			}
+		} else {
+			ReportManager.problem(this, dbre.getConnection(),
+					"No GeneGC attrib_type found");
+			passes = false;
 		}
 
 		for (int speciesId : dbre.getSpeciesIds()) {
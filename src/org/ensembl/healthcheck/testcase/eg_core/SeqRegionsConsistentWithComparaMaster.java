@@ -82,9 +82,9 @@ public class SeqRegionsConsistentWithComparaMaster extends AbstractControlledRow
 	
 	protected boolean runTestForSpecies(DatabaseRegistryEntry dbre, int speciesId) {
 		
-		String productionName     = fetchSingleMetaValueFor(sqlTemplateTestDb, speciesId, "species.production_name");
-		String assemblyDefault    = fetchSingleMetaValueFor(sqlTemplateTestDb, speciesId, "assembly.default");
-		String genebuildStartDate = fetchSingleMetaValueFor(sqlTemplateTestDb, speciesId, "genebuild.start_date");
+		String productionName     = fetchSingleMetaValueFor(dbre, speciesId, "species.production_name");
+		String assemblyDefault    = fetchSingleMetaValueFor(dbre, speciesId, "assembly.default");
+		String genebuildStartDate = fetchSingleMetaValueFor(dbre, speciesId, "genebuild.start_date");
 		
 		if (!speciesConfiguredForDnaCompara(productionName)) {
 			getLogger().info("Skipping species " + productionName + ", because it is not linked to any method involving DNA comparisons in the compara master.");
@@ -400,27 +400,23 @@ public class SeqRegionsConsistentWithComparaMaster extends AbstractControlledRow
 	}
 	
 	/**
-	 * @param sqlTemplateTestDb
+	 * @param dbre
 	 * @param metaKey
 	 * @return
 	 */
 	protected String fetchSingleMetaValueFor(
-			final SqlTemplate sqlTemplateTestDb,
+			final DatabaseRegistryEntry dbre,
 			int speciesId,
 			String metaKey
 		) {
 		
-		String sql = "select meta_value from meta where meta.meta_key = '"+metaKey+"' and species_id="+speciesId;
-		
-		List<String> metaValueList = sqlTemplateTestDb.queryForDefaultObjectList(
-				sql, String.class
-		);
+		List<String> metaValueList = dbre.getReferenceData().getMetaValues(metaKey, speciesId);
 		
 		if (metaValueList.size()>1) {
-			throw new RuntimeException("Got more than one meta_value for metaKey "+metaKey+". Expected only one!\n"+sql);
+			throw new RuntimeException("Got more than one meta_value for metaKey "+metaKey+" and species_id "+speciesId+". Expected only one!");
 		}
 		if (metaValueList.size()==0) {
-			throw new RuntimeException("Metakey "+metaKey+" is missing in the meta table!\n"+sql);
+			throw new RuntimeException("Metakey "+metaKey+" is missing in the meta table for species_id "+speciesId+"!");
 		}
 		
 		String metaValue = metaValueList.get(0);
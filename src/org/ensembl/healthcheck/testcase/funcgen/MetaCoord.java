@@ -23,19 +23,14 @@ package org.ensembl.healthcheck.testcase.funcgen;
 */
 
 import java.sql.Connection;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
+import org.ensembl.healthcheck.testcase.MetaCoordChecker;
 import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
-import org.ensembl.healthcheck.util.DBUtils;
 
 /**
  * Check that meta_coord table contains entries for all the coordinate systems
@@ -70,85 +65,64 @@ public class MetaCoord extends SingleDatabaseTestCase {
 
 		Connection con = dbre.getConnection();
 
-		// coordSystems is a hash of lists of coordinate systems that each feature
+		MetaCoordChecker checker = new MetaCoordChecker(this);
+
+		Map<String, Map<String, List<String>>> metaCoord = checker.readMetaCoord(con);
+
+		// coordSystems is a hash of the coordinate systems that each feature
 		// table contains
-		Map coordSystems = new HashMap(); 
-
-		try {
-
-			Statement stmt = con.createStatement();
-
-			// build up a list of all the coordinate systems that are in the various
-			// feature tables
-			for (int tableIndex = 0; tableIndex < featureTables.length; tableIndex++) {
-
-				String tableName = featureTables[tableIndex];
-				String sql = "SELECT DISTINCT(sr.coord_system_id) FROM seq_region sr, " + tableName
-						+ " f WHERE sr.seq_region_id = f.seq_region_id";
-
-				logger.finest("Getting feature coordinate systems for " + tableName);
-				ResultSet rs = stmt.executeQuery(sql);
-
-				while (rs.next()) {
-					String coordSystemID = rs.getString(1);
-					logger.finest("Added feature coordinate system for " + tableName + ": " + coordSystemID);
-					// check that the meta_coord table has an entry corresponding to this
-					int mc = DBUtils.getRowCount(con, "SELECT COUNT(*) FROM meta_coord WHERE coord_system_id=" + coordSystemID + " AND table_name='"
-							+ tableName + "'");
-					if (mc == 0) {
-						ReportManager.problem(this, con, "No entry for coordinate system with ID " + coordSystemID + " for " + tableName
-								+ " in meta_coord");
-						result = false;
-					} else if (mc > 1) {
-						ReportManager.problem(this, con, "Coordinate system with ID " + coordSystemID + " duplicated for " + tableName
-								+ " in meta_coord");
-						result = false;
-					} else {
-						ReportManager.correct(this, con, "Coordinate system with ID " + coordSystemID + " for table " + tableName
-								+ " has an entry in meta_coord");
-					}
-
-					// store in coordSystems map - create List if necessary
-					List csList = (ArrayList) coordSystems.get(tableName);
-					if (csList == null) {
-						csList = new ArrayList();
-					}
-					csList.add(coordSystemID);
-					coordSystems.put(tableName, csList);
-				}
+		logger.finest("Getting feature coordinate systems");
+		Map<String, Map<String, String>> coordSystems = checker.readFeatureCoordSystems(dbre, featureTables, null);
 
-				rs.close();
+		for (int tableIndex = 0; tableIndex < featureTables.length; tableIndex++) {
 
+			String tableName = featureTables[tableIndex];
+			Map<String, String> tableCoordSystems = coordSystems.get(tableName);
+			if (tableCoordSystems == null) {
+				continue;
+			}
+			Map<String, List<String>> tableMetaCoord = metaCoord.get(tableName);
+
+			for (String coordSystemID : tableCoordSystems.keySet()) {
+				logger.finest("Added feature coordinate system for " + tableName + ": " + coordSystemID);
+				// check that the meta_coord table has an entry corresponding to this
+				List<String> maxLengths = tableMetaCoord == null ? null : tableMetaCoord.get(coordSystemID);
+				int mc = maxLengths == null ? 0 : maxLengths.size();
+				if (mc == 0) {
+					ReportManager.problem(this, con, "No entry for coordinate system with ID " + coordSystemID + " for " + tableName
+							+ " in meta_coord");
+					result = false;
+				} else if (mc > 1) {
+					ReportManager.problem(this, con, "Coordinate system with ID " + coordSystemID + " duplicated for " + tableName
+							+ " in meta_coord");
+					result = false;
+				} else {
+					ReportManager.correct(this, con, "Coordinate system with ID " + coordSystemID + " for table " + tableName
+							+ " has an entry in meta_coord");
+				}
 			}
 
-			// check that every meta_coord table entry refers to a coordinate system
-			// that is used in a feature
-			// if this isn't true it's not fatal but should be flagged
-			String sql = "SELECT * FROM meta_coord";
-			ResultSet rs = stmt.executeQuery(sql);
-			while (rs.next()) {
-				String tableName = rs.getString("table_name");
-				String csID = rs.getString("coord_system_id");
+		}
+
+		// check that every meta_coord table entry refers to a coordinate system
+		// that is used in a feature
+		// if this isn't true it's not fatal but should be flagged
+		for (Map.Entry<String, Map<String, List<String>>> table : metaCoord.entrySet()) {
+			String tableName = table.getKey();
+			Map<String, String> featureCSs = coordSystems.get(tableName);
+			for (String csID : table.getValue().keySet()) {
 				logger.finest("Checking for coord_system_id " + csID + " in " + tableName);
-				List featureCSs = (ArrayList) coordSystems.get(tableName);
-				if (featureCSs != null && !featureCSs.contains(csID)) {
+				if (featureCSs != null && !featureCSs.containsKey(csID)) {
 					ReportManager.problem(this, con, "meta_coord has entry for coord_system ID " + csID + " in " + tableName
 							+ " but this coordinate system is not actually used in " + tableName);
 					result = false;
 				}
-
 			}
-
-			rs.close();
-			stmt.close();
-
-			// check that there are no null max_length entries
-			result &= checkNoNulls(con, "meta_coord", "max_length");
-
-		} catch (SQLException e) {
-			e.printStackTrace();
 		}
 
+		// check that there are no null max_length entries
+		result &= checkNoNulls(con, "meta_coord", "max_length");
+
 		return result;
 
 	}
@@ -24,29 +24,28 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.apache.commons.lang.StringUtils;
 import org.ensembl.healthcheck.DatabaseRegistry;
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.DatabaseType;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.TestRunner;
 import org.ensembl.healthcheck.testcase.MultiDatabaseTestCase;
-import org.ensembl.healthcheck.util.ConnectionBasedSqlTemplateImpl;
 import org.ensembl.healthcheck.util.DBUtils;
-import org.ensembl.healthcheck.util.DefaultObjectRowMapper;
-import org.ensembl.healthcheck.util.PoorLruMap;
-import org.ensembl.healthcheck.util.RowMapper;
+import org.ensembl.healthcheck.util.SchemaChecksumDatabase;
+import org.ensembl.healthcheck.util.SchemaSnapshot;
+import org.ensembl.healthcheck.util.SchemaSnapshot.Column;
+import org.ensembl.healthcheck.util.SchemaSnapshot.Index;
+import org.ensembl.healthcheck.util.SchemaSnapshot.Table;
+import org.ensembl.healthcheck.util.SqlUncheckedException;
 
 /**
  * A re-implementation of the {@link CompareSchema} health-check code but the
@@ -65,12 +64,31 @@ import org.ensembl.healthcheck.util.RowMapper;
  * is used as the master</li>
  * </ol>
  * 
+ * Schemas are read into a {@link SchemaSnapshot} with a few bulk queries on
+ * information_schema. The master is read once per run and the other databases
+ * are compared with it on up to {@link #COMPARE_THREADS} threads. If
+ * {@link #CACHE_DIR} is set, the snapshots of the other databases and whether
+ * they matched the master are kept there, so a database which has not changed
+ * since it last matched the same master is not compared again.
+ * 
  * @author ayates
  */
 public abstract class AbstractCompareSchema extends MultiDatabaseTestCase {
 
-	private static final int MAX_CACHE_SIZE = 3;
-	
+	/**
+	 * System property with the number of databases compared with the master
+	 * at the same time.
+	 */
+	public static final String COMPARE_THREADS = "schema.compare.threads";
+
+	private static final int DEFAULT_COMPARE_THREADS = 4;
+
+	/**
+	 * System property with the directory schema snapshots and verdicts are
+	 * kept in between runs. Nothing is kept if it is not set.
+	 */
+	public static final String CACHE_DIR = "schema.compare.cache.dir";
+
 	private boolean usingTemporaryDatabase;
 	private String masterShortName;
 	
@@ -90,14 +108,18 @@ public abstract class AbstractCompareSchema extends MultiDatabaseTestCase {
 	};
 
 	private Set<TestTypes> testTypes = new HashSet<TestTypes>();
-	private Map<String, Set<String>> views = new PoorLruMap<String, Set<String>>(
-	    MAX_CACHE_SIZE);
-	private Map<String, Map<String, Set<Column>>> columns = new PoorLruMap<String, Map<String, Set<Column>>>(
-	    MAX_CACHE_SIZE);
-	private Map<String, String> createTables = new PoorLruMap<String, String>(
-	    MAX_CACHE_SIZE);
-	private Map<String, Set<String>> tables = new PoorLruMap<String, Set<String>>(
-	    MAX_CACHE_SIZE);
+
+	/**
+	 * Snapshots of the schemas being compared keyed on JDBC URL. The master
+	 * stays here for the whole run, the others are dropped once they have 
+	 * been compared.
+	 */
+	private Map<String, SchemaSnapshot> snapshots = new ConcurrentHashMap<String, SchemaSnapshot>();
+
+	/**
+	 * Digest of the master snapshot, stored with the verdicts.
+	 */
+	private String masterDigest;
 
 	public AbstractCompareSchema() {
 		addGroups();
@@ -283,67 +305,36 @@ public abstract class AbstractCompareSchema extends MultiDatabaseTestCase {
 			}
 
 			setMasterShortName(DBUtils.getShortDatabaseName(masterCon));
+			
+			// Read the master once, every target is compared with the same
+			// snapshot.
+			masterDigest = getSnapshot(masterCon).digest();
+			
+			List<DatabaseRegistryEntry> targets = new ArrayList<DatabaseRegistryEntry>();
 			for (DatabaseRegistryEntry dbre : databases) {
-				
-				DatabaseType type = dbre.getType();
-
-				if (appliesToType(type)) {
-					Connection checkCon = dbre.getConnection();
-					String checkShortName = DBUtils.getShortDatabaseName(checkCon);
-					if (checkCon != masterCon) {
-						logger.info("Comparing " + checkShortName + " with " + getMasterShortName());
-						// check that both schemas have the same tables
-						somethingWasCompared = true;
-						int directionFlag = COMPARE_BOTH;
-						boolean ignoreBackupTables = false;
-						if (type == DatabaseType.SANGER_VEGA) {
-							directionFlag = COMPARE_RIGHT;
-							ignoreBackupTables = true;
-						}
-						
-						// for sangervega, ignore backup tables. If not the same, this
-						// method will generate a report
-						if (!compareTableEquality(masterCon, dbre, ignoreBackupTables, directionFlag)) {
-							result = false;
-							
-							if(skipCheckingIfTablesAreUnequal()) {
-								String msg;
-								if(searchForTemporaryTables(checkCon)) {
-									msg = String.format(
-											"Table name discrepancy detected but temporary tables " +
-											"were found in the schema '%s'. Try running " +
-											"ensembl/misc-scripts/db/cleanup_tmp_tables.pl",
-											checkShortName
-									);
-								}
-								else {
-									msg = "Table name discrepancy detected, skipping rest of checks";
-								}
-								ReportManager.problem(this, checkCon, msg);
-								continue;
-							}
-							else {
-								ReportManager.problem(this, checkCon, 
-										"Table name discrepancy detected but continuing with table checks");
-							}
-						}
-
-						for (String table : getTableNames(masterCon)) {
-							result &= compareTable(masterCon, dbre, table);
-						}
-					} // if checkCon != masterCon
-
-				} // if appliesToType
-
-			} // for database
+				if (appliesToType(dbre.getType()) && !dbre.getName().equals(getMasterShortName())) {
+					targets.add(dbre);
+				}
+			}
+			somethingWasCompared = !targets.isEmpty();
+			
+			final Connection master = masterCon;
+			result &= checkEachDatabase(targets, getCompareThreads(), new DatabaseCheck() {
+				public boolean check(DatabaseRegistryEntry dbre) throws SQLException {
+					return compareSchema(master, dbre);
+				}
+			});
 
 		}
-		catch (SQLException e) {
+		catch (SqlUncheckedException e) {
 			
 			logger.severe(e.getMessage());
+			result = false;
 		}
 		finally {
 			
+			snapshots.clear();
+			
 			// avoid leaving temporary DBs lying around if something bad happens
 			if (isUsingTemporaryDatabase() && masterCon != null) {
 				// double-check to make sure the DB we're going to remove is a
@@ -369,6 +360,112 @@ public abstract class AbstractCompareSchema extends MultiDatabaseTestCase {
 		return result;
 	}
 
+	/**
+	 * Compares the schema of one database with the master unless the cache
+	 * says it has not changed since it last matched. Called on a worker
+	 * thread, so the connection to the target has to be got here.
+	 */
+	protected boolean compareSchema(Connection masterCon, DatabaseRegistryEntry dbre) throws SQLException {
+		
+		SchemaChecksumDatabase cache = getSchemaCache(dbre);
+		if (cache == null) {
+			return compareWithMaster(masterCon, dbre);
+		}
+		
+		Connection checkCon = dbre.getConnection();
+		snapshots.put(checkCon.getMetaData().getURL(), cache.getSnapshot());
+		
+		if (cache.hasPassed(getTestName(), masterDigest)) {
+			forgetSnapshot(checkCon);
+			logger.info(dbre.getName() + " has not changed since it last matched "
+			    + getMasterShortName());
+			return true;
+		}
+		
+		boolean result = compareWithMaster(masterCon, dbre);
+		cache.setPassed(getTestName(), masterDigest, result);
+		return result;
+	}
+
+	/**
+	 * @return The cache for dbre or null if {@link #CACHE_DIR} is not set.
+	 */
+	protected SchemaChecksumDatabase getSchemaCache(DatabaseRegistryEntry dbre) {
+		String dir = System.getProperty(CACHE_DIR);
+		if (dir == null || dir.trim().length() == 0) {
+			return null;
+		}
+		return new SchemaChecksumDatabase(dbre, new File(dir.trim()));
+	}
+
+	/**
+	 * Compares the schema of one database with the master.
+	 */
+	protected boolean compareWithMaster(Connection masterCon, DatabaseRegistryEntry dbre) throws SQLException {
+		
+		boolean result = true;
+		
+		DatabaseType type = dbre.getType();
+		Connection checkCon = dbre.getConnection();
+		String checkShortName = DBUtils.getShortDatabaseName(checkCon);
+		
+		try {
+			
+			logger.info("Comparing " + checkShortName + " with " + getMasterShortName());
+			// check that both schemas have the same tables
+			int directionFlag = COMPARE_BOTH;
+			boolean ignoreBackupTables = false;
+			if (type == DatabaseType.SANGER_VEGA) {
+				directionFlag = COMPARE_RIGHT;
+				ignoreBackupTables = true;
+			}
+			
+			// for sangervega, ignore backup tables. If not the same, this
+			// method will generate a report
+			if (!compareTableEquality(masterCon, dbre, ignoreBackupTables, directionFlag)) {
+				result = false;
+				
+				if(skipCheckingIfTablesAreUnequal()) {
+					String msg;
+					if(searchForTemporaryTables(checkCon)) {
+						msg = String.format(
+								"Table name discrepancy detected but temporary tables " +
+								"were found in the schema '%s'. Try running " +
+								"ensembl/misc-scripts/db/cleanup_tmp_tables.pl",
+								checkShortName
+						);
+					}
+					else {
+						msg = "Table name discrepancy detected, skipping rest of checks";
+					}
+					ReportManager.problem(this, checkCon, msg);
+					return result;
+				}
+				else {
+					ReportManager.problem(this, checkCon, 
+							"Table name discrepancy detected but continuing with table checks");
+				}
+			}
+			
+			for (String table : getTables(masterCon)) {
+				result &= compareTable(masterCon, dbre, table);
+			}
+			
+		} finally {
+			forgetSnapshot(checkCon);
+		}
+		
+		return result;
+	}
+
+	/**
+	 * Number of databases compared at the same time, from the system property
+	 * {@link #COMPARE_THREADS}.
+	 */
+	protected int getCompareThreads() {
+		return Integer.getInteger(COMPARE_THREADS, DEFAULT_COMPARE_THREADS);
+	}
+
 	/**
 	 * Currently delegates onto 
 	 * {@link #compareTablesInSchema(Connection, Connection, boolean, int)} but
@@ -436,11 +533,10 @@ public abstract class AbstractCompareSchema extends MultiDatabaseTestCase {
 			String name2 = getDbNameForMsg(schema2);
 
 			// check each table in turn
-			String[] tables = getTableNames(schema1);
-			for (int i = 0; i < tables.length; i++) {
-				String table = tables[i];
+			Set<String> tables2 = getSnapshot(schema2).getTableNames();
+			for (String table : getSnapshot(schema1).getTableNames()) {
 				if (!ignoreBackupTables || !table.contains(backupIdentifier)) {
-					if (!DBUtils.checkTableExists(schema2, table)) {
+					if (!tables2.contains(table)) {
 						ReportManager.problem(
 								this, 
 								getConnectionForReportManager(schema1), 
@@ -507,13 +603,15 @@ public abstract class AbstractCompareSchema extends MultiDatabaseTestCase {
 	}
 
 	/**
-	 * Performs tests on the equivalent sets of columns in the given table, the
-	 * indexes on the given table, the type of the table (view or not) as well as
-	 * other creation parameters e.g. <em>AVG_ROW_LENGTH</em>. Many of these are
+	 * Compares the definition of a table in the {@link SchemaSnapshot}s of the
+	 * master and the target: the columns, the indexes, whether it is a view,
+	 * and creation parameters e.g. <em>AVG_ROW_LENGTH</em>. Many of these are
 	 * controlled by the {@link TestTypes} enum.
 	 * 
-	 * To help with speed we first compare a <em>SHOW CREATE TABLE</em> with some
-	 * post modification.
+	 * The two {@link Table}s are compared as a whole first, so no further work
+	 * is done for the common case of identical tables; only when they differ
+	 * are the columns, indexes and options compared one by one to report what
+	 * is different.
 	 */
 	protected boolean compareTable(Connection master, DatabaseRegistryEntry targetDbre,
 	    String table) throws SQLException {
@@ -527,8 +625,11 @@ public abstract class AbstractCompareSchema extends MultiDatabaseTestCase {
 			return false;
 		}
 		
-		// - test show create table as it's the fastest ... apparently
-		if (getCreateTable(master, table).equals(getCreateTable(target, table))) {
+		Table masterTable = getSnapshot(master).getTable(table);
+		Table targetTable = getSnapshot(target).getTable(table);
+		
+		// the whole definition is compared first as it is nearly always the same
+		if (masterTable.equals(targetTable)) {
 			return true;
 		}
 
@@ -621,49 +722,33 @@ public abstract class AbstractCompareSchema extends MultiDatabaseTestCase {
 
 		// Compare avg_row_length
 		if (applyTest(TestTypes.AVG_ROW_LENGTH)) {
-			boolean result = regexCreateTable(master, target, table,
-			    "AVG_ROW_LENGTH=(\\d+)", Integer.class, TestTypes.AVG_ROW_LENGTH);
-			if (!result) {
-				okay = false;
-			}
+			okay &= compareTableOption(master, target, table, TestTypes.AVG_ROW_LENGTH,
+			    masterTable.getCreateOption("avg_row_length"), targetTable.getCreateOption("avg_row_length"));
 		}
 
 		// Compare max rows
 		if (applyTest(TestTypes.MAX_ROWS)) {
-			boolean result = regexCreateTable(master, target, table,
-			    "MAX_ROWS=(\\d+)", Integer.class, TestTypes.MAX_ROWS);
-			if (!result) {
-				okay = false;
-			}
+			okay &= compareTableOption(master, target, table, TestTypes.MAX_ROWS,
+			    masterTable.getCreateOption("max_rows"), targetTable.getCreateOption("max_rows"));
 		}
 
 		// Compare charset
 		if (applyTest(TestTypes.CHARSET)) {
-			boolean result = regexCreateTable(master, target, table,
-			    "DEFAULT CHARSET=([a-zA-Z0-9]+)", String.class, TestTypes.CHARSET);
-			if (!result) {
-				okay = false;
-			}
+			okay &= compareTableOption(master, target, table, TestTypes.CHARSET,
+			    masterTable.getCharset(), targetTable.getCharset());
 		}
 
 		// Compare engine
 		if (applyTest(TestTypes.ENGINE)) {
-			boolean result = regexCreateTable(master, target, table,
-			    "ENGINE=([a-zA-Z0-9]+)", String.class, TestTypes.ENGINE);
-			if (!result) {
-				okay = false;
-			}
+			okay &= compareTableOption(master, target, table, TestTypes.ENGINE,
+			    masterTable.getEngine(), targetTable.getEngine());
 		}
 
 		return okay;
 	}
 
-	protected boolean regexCreateTable(Connection master, Connection target,
-	    String table, String regex, Class<?> type, TestTypes testing)
-	    throws SQLException {
-		Pattern p = Pattern.compile(regex);
-		Object masterValue = regex(p, getCreateTable(master, table), type);
-		Object targetValue = regex(p, getCreateTable(target, table), type);
+	protected boolean compareTableOption(Connection master, Connection target,
+	    String table, TestTypes testing, String masterValue, String targetValue) {
 		if (masterValue.equals(targetValue)) {
 			return true;
 		}
@@ -679,58 +764,38 @@ public abstract class AbstractCompareSchema extends MultiDatabaseTestCase {
 		return false;
 	}
 
-	protected Object regex(Pattern p, CharSequence target, Class<?> type) {
-		final Object o;
-		Matcher matcher = p.matcher(target);
-		if (matcher.find()) {
-			if (Integer.class.equals(type)) {
-				o = Integer.valueOf(matcher.group(1));
-			}
-			else {
-				o = matcher.group(1);
+	/**
+	 * Returns the snapshot of the schema conn is connected to, reading it if
+	 * this has not been done yet.
+	 */
+	protected SchemaSnapshot getSnapshot(Connection conn) {
+		try {
+			String url = conn.getMetaData().getURL();
+			SchemaSnapshot snapshot = snapshots.get(url);
+			if (snapshot == null) {
+				snapshot = SchemaSnapshot.fromDatabase(conn);
+				snapshots.put(url, snapshot);
 			}
+			return snapshot;
 		}
-		else {
-			o = "";
+		catch (SQLException e) {
+			throw new SqlUncheckedException("Could not read the schema of "
+			    + DBUtils.getShortDatabaseName(conn), e);
 		}
-		return o;
 	}
 
-	protected String getCreateTable(Connection conn, String table)
-	    throws SQLException {
-		String key = conn.getMetaData().getURL() + ":" + table;
-		if (createTables.containsKey(key)) {
-			return createTables.get(key);
-		}
-		String sql = "SHOW CREATE TABLE " + table;
-		RowMapper<String> mapper = new DefaultObjectRowMapper<String>(String.class,
-		    2);
-		String createTable = new ConnectionBasedSqlTemplateImpl(conn)
-		    .queryForObject(sql, mapper);
-		if (applyTest(TestTypes.IGNORE_AUTOINCREMENT_OPTION)) {
-			createTable = createTable.replaceFirst("AUTO_INCREMENT=\\d+\\s*", "");
-		}
-		createTables.put(key, createTable);
-		return createTable;
+	/**
+	 * Drops the snapshot of a schema which will not be compared again.
+	 */
+	protected void forgetSnapshot(Connection conn) throws SQLException {
+		snapshots.remove(conn.getMetaData().getURL());
 	}
 
 	/**
-	 * Used to cache the current known set of views for each distinct JDBC URL
-	 * retrieved from {@link Connection#getMetaData()}.
-	 * 
-	 * @param conn
-	 *          Connection to query with
-	 * @return {@link Set} of all views known of in the given connection
-	 * @throws SQLException
-	 *           Thrown if there is an issue with MetaData retrieval
+	 * @return {@link Set} of all views in the schema conn is connected to
 	 */
 	private Set<String> getViews(Connection conn) throws SQLException {
-		String dbmsUrl = conn.getMetaData().getURL();
-		if (!views.containsKey(dbmsUrl)) {
-			List<String> dbViews = DBUtils.getViews(conn);
-			views.put(dbmsUrl, new HashSet<String>(dbViews));
-		}
-		return views.get(dbmsUrl);
+		return getSnapshot(conn).getViewNames();
 	}
 
 	/**
@@ -738,60 +803,11 @@ public abstract class AbstractCompareSchema extends MultiDatabaseTestCase {
 	 */
 	protected Set<Column> getColumns(Connection conn, String table)
 	    throws SQLException {
-		return new HashSet<Column>(getColumns(conn).get(table));
+		return new HashSet<Column>(getSnapshot(conn).getTable(table).getColumns());
 	}
 
 	/**
-	 * Used to cache the columns from a single schema.
-	 * 
-	 * @param conn
-	 *          Connection to query with
-	 * @return {@link Set} of all columns in a given connection keyed by the table
-	 *         name
-	 * @throws SQLException
-	 *           Thrown if there is an issue with MetaData retrieval
-	 */
-	protected Map<String, Set<Column>> getColumns(Connection conn)
-	    throws SQLException {
-		String dbmsUrl = conn.getMetaData().getURL();
-		if (!columns.containsKey(dbmsUrl)) {
-			Map<String, Set<Column>> dbColumns = new LinkedHashMap<String, Set<Column>>();
-			ResultSet rs = conn.getMetaData().getColumns(null,
-			    DBUtils.getShortDatabaseName(conn), "%", "%");
-			try {
-
-				boolean processAutoIncrement = DBUtils.resultSetContainsColumn(rs,
-				    "IS_AUTOINCREMENT");
-
-				while (rs.next()) {
-					String table = rs.getString("TABLE_NAME");
-					// Get columns list
-					Set<Column> tableColumns = dbColumns.get(table);
-					if (tableColumns == null) {
-						tableColumns = new LinkedHashSet<Column>();
-						dbColumns.put(table, tableColumns);
-					}
-
-					boolean autoIncrement = (processAutoIncrement) ? rs
-					    .getBoolean("IS_AUTOINCREMENT") : false;
-					Column columnInstance = new Column(rs.getString("COLUMN_NAME"),
-					    rs.getInt("DATA_TYPE"), rs.getInt("COLUMN_SIZE"),
-					    rs.getInt("DECIMAL_DIGITS"), rs.getBoolean("NULLABLE"),
-					    rs.getString("COLUMN_DEF"), rs.getInt("CHAR_OCTET_LENGTH"),
-					    autoIncrement);
-					tableColumns.add(columnInstance);
-				}
-			}
-			finally {
-				DBUtils.closeQuietly(rs);
-			}
-			columns.put(dbmsUrl, dbColumns);
-		}
-		return columns.get(dbmsUrl);
-	}
-
-	/**
-	 * Used to return all known indexed columns for a database
+	 * Used to return all known indexed columns for a table
 	 * 
 	 * @param conn
 	 *          Connection to query
@@ -803,38 +819,14 @@ public abstract class AbstractCompareSchema extends MultiDatabaseTestCase {
 	 */
 	protected Set<Index> getIndexes(Connection conn, String table)
 	    throws SQLException {
-		Map<String, Index> indexes = new HashMap<String, Index>();
-		ResultSet rs = conn.getMetaData().getIndexInfo(null,
-		    DBUtils.getShortDatabaseName(conn), table, false, false);
-		try {
-			while (rs.next()) {
-				String indexName = rs.getString("INDEX_NAME");
-				Index index = indexes.get(indexName);
-				if (index == null) {
-					index = new Index(indexName, rs.getBoolean("NON_UNIQUE"),
-					    rs.getInt("TYPE"));
-					indexes.put(indexName, index);
-				}
-				index.addColumn(rs.getString("COLUMN_NAME"));
-			}
-		}
-		finally {
-			DBUtils.closeQuietly(rs);
-		}
-
-		return new LinkedHashSet<Index>(indexes.values());
+		return new LinkedHashSet<Index>(getSnapshot(conn).getTable(table).getIndexes());
 	}
 	
 	/**
-	 * Returns a locally cached Set of table names in the given schema
+	 * Returns the table names in the given schema
 	 */
 	protected Set<String> getTables(Connection conn) throws SQLException {
-		String url = conn.getMetaData().getURL();
-		if(! tables.containsKey(url)) {
-			String[] array = getTableNames(conn);
-			tables.put(url, new HashSet<String>(Arrays.asList(array)));
-		}
-		return tables.get(url);
+		return getSnapshot(conn).getTableNames();
 	}
 	
 	private boolean searchForTemporaryTables(Connection conn) throws SQLException {
@@ -851,154 +843,4 @@ public abstract class AbstractCompareSchema extends MultiDatabaseTestCase {
 		}
 		return temporaryTables;
 	}
-
-	/**
-	 * Internal class used to represent a column
-	 */
-	private static class Column {
-
-		private String name;
-		private int dataType;
-		private int columnSize;
-		private int decimalDigits;
-		private boolean nullable;
-		private String columnDefault;
-		private int charOctetLength;
-		private boolean autoIncrement;
-
-		public Column(String name, int dataType, int columnSize, int decimalDigits,
-		    boolean nullable, String columnDefault, int charOctetLength,
-		    boolean autoIncrement) {
-			super();
-			this.name = name;
-			this.dataType = dataType;
-			this.columnSize = columnSize;
-			this.decimalDigits = decimalDigits;
-			this.nullable = nullable;
-			this.columnDefault = columnDefault;
-			this.charOctetLength = charOctetLength;
-			this.autoIncrement = autoIncrement;
-		}
-
-		public String getName() {
-			return name;
-		}
-
-		@Override
-		public int hashCode() {
-			final int prime = 31;
-			int result = 1;
-			result = prime * result + (autoIncrement ? 1231 : 1237);
-			result = prime * result + charOctetLength;
-			result = prime * result
-			    + ((columnDefault == null) ? 0 : columnDefault.hashCode());
-			result = prime * result + columnSize;
-			result = prime * result + dataType;
-			result = prime * result + decimalDigits;
-			result = prime * result + ((name == null) ? 0 : name.hashCode());
-			result = prime * result + (nullable ? 1231 : 1237);
-			return result;
-		}
-
-		@Override
-		public boolean equals(Object obj) {
-			if (this == obj)
-				return true;
-			if (obj == null)
-				return false;
-			if (getClass() != obj.getClass())
-				return false;
-			Column other = (Column) obj;
-			if (autoIncrement != other.autoIncrement)
-				return false;
-			if (charOctetLength != other.charOctetLength)
-				return false;
-			if (columnDefault == null) {
-				if (other.columnDefault != null)
-					return false;
-			}
-			else if (!columnDefault.equals(other.columnDefault))
-				return false;
-			if (columnSize != other.columnSize)
-				return false;
-			if (dataType != other.dataType)
-				return false;
-			if (decimalDigits != other.decimalDigits)
-				return false;
-			if (name == null) {
-				if (other.name != null)
-					return false;
-			}
-			else if (!name.equals(other.name))
-				return false;
-			if (nullable != other.nullable)
-				return false;
-			return true;
-		}
-
-		@Override
-		public String toString() {
-			return getName();
-		}
-	}
-
-	/**
-	 * Represents an Index with an equality and hashcode method which does not
-	 * take into account name which is why a List would not suffice
-	 */
-	private static class Index {
-
-		private String name;
-		private List<String> columns = new ArrayList<String>();
-		private boolean nonUnique;
-		private int type;
-
-		public Index(String name, boolean nonUnique, int type) {
-			super();
-			this.name = name;
-			this.nonUnique = nonUnique;
-			this.type = type;
-		}
-
-		public void addColumn(String col) {
-			columns.add(col);
-		}
-
-		@Override
-		public int hashCode() {
-			final int prime = 31;
-			int result = 1;
-			result = prime * result + ((columns == null) ? 0 : columns.hashCode());
-			result = prime * result + (nonUnique ? 1231 : 1237);
-			result = prime * result + type;
-			return result;
-		}
-
-		@Override
-		public boolean equals(Object obj) {
-			if (this == obj)
-				return true;
-			if (obj == null)
-				return false;
-			if (getClass() != obj.getClass())
-				return false;
-			Index other = (Index) obj;
-			if (columns == null) {
-				if (other.columns != null)
-					return false;
-			}
-			else if (!columns.equals(other.columns))
-				return false;
-			if (nonUnique != other.nonUnique)
-				return false;
-			if (type != other.type)
-				return false;
-			return true;
-		}
-
-		@Override
-		public String toString() {
-			return name + "=[" + StringUtils.join(columns, ',') + "]";
-		}
-	}
 }
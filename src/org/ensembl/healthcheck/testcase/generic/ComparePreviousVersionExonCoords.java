@@ -111,7 +111,7 @@ public class ComparePreviousVersionExonCoords extends SingleDatabaseTestCase {
 		}
 
 		// and those where the meta key genebuild.last_geneset_update has changed
-		if (!DBUtils.getMetaValue(currentCon, "genebuild.last_geneset_update").equals(DBUtils.getMetaValue(previousCon, "genebuild.last_geneset_update"))) {
+		if (!current.getReferenceData().getMetaValue("genebuild.last_geneset_update").equals(previous.getReferenceData().getMetaValue("genebuild.last_geneset_update"))) {
 			ReportManager.correct(this, currentCon, "Meta entry genebuild.last_geneset_update has changed since " + previous.getName() + ", skipping");
 			return true;
 		}
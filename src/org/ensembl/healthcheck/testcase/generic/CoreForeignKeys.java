@@ -35,6 +35,7 @@ import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.DatabaseType;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
+import org.ensembl.healthcheck.testcase.OrphanChecker;
 import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
 import org.ensembl.healthcheck.util.DBUtils;
 
@@ -73,82 +74,85 @@ public class CoreForeignKeys extends SingleDatabaseTestCase {
 
 		Connection con = dbre.getConnection();
 
+		// relations are checked together by child table, see OrphanChecker
+		OrphanChecker orphanChecker = new OrphanChecker(this);
+
 		// ----------------------------
 
-		result &= checkForOrphans(con, "exon", "exon_id", "exon_transcript", "exon_id", false);
+		orphanChecker.checkForOrphans("exon", "exon_id", "exon_transcript", "exon_id", false);
 
-		result &= checkForOrphans(con, "transcript", "transcript_id", "exon_transcript", "transcript_id", false);
+		orphanChecker.checkForOrphans("transcript", "transcript_id", "exon_transcript", "transcript_id", false);
 
-		result &= checkForOrphans(con, "gene", "gene_id", "transcript", "gene_id", false);
+		orphanChecker.checkForOrphans("gene", "gene_id", "transcript", "gene_id", false);
 
-		result &= checkForOrphans(con, "object_xref", "xref_id", "xref", "xref_id", true);
+		orphanChecker.checkForOrphans("object_xref", "xref_id", "xref", "xref_id", true);
 
-		result &= checkForOrphans(con, "xref", "external_db_id", "external_db", "external_db_id", true);
+		orphanChecker.checkForOrphans("xref", "external_db_id", "external_db", "external_db_id", true);
 
-		result &= checkForOrphans(con, "dna", "seq_region_id", "seq_region", "seq_region_id", true);
+		orphanChecker.checkForOrphans("dna", "seq_region_id", "seq_region", "seq_region_id", true);
 
-		result &= checkForOrphans(con, "seq_region", "coord_system_id", "coord_system", "coord_system_id", true);
+		orphanChecker.checkForOrphans("seq_region", "coord_system_id", "coord_system", "coord_system_id", true);
 
-		result &= checkForOrphans(con, "assembly", "cmp_seq_region_id", "seq_region", "seq_region_id", true);
+		orphanChecker.checkForOrphans("assembly", "cmp_seq_region_id", "seq_region", "seq_region_id", true);
 
-		result &= checkForOrphans(con, "marker_feature", "marker_id", "marker", "marker_id", true);
+		orphanChecker.checkForOrphans("marker_feature", "marker_id", "marker", "marker_id", true);
 
-		result &= checkForOrphans(con, "seq_region_attrib", "seq_region_id", "seq_region", "seq_region_id", true);
+		orphanChecker.checkForOrphans("seq_region_attrib", "seq_region_id", "seq_region", "seq_region_id", true);
 
-		result &= checkForOrphans(con, "seq_region_attrib", "attrib_type_id", "attrib_type", "attrib_type_id", true);
+		orphanChecker.checkForOrphans("seq_region_attrib", "attrib_type_id", "attrib_type", "attrib_type_id", true);
 
-		result &= checkForOrphans(con, "misc_feature_misc_set", "misc_feature_id", "misc_feature", "misc_feature_id", true);
+		orphanChecker.checkForOrphans("misc_feature_misc_set", "misc_feature_id", "misc_feature", "misc_feature_id", true);
 
-		result &= checkForOrphans(con, "misc_feature_misc_set", "misc_set_id", "misc_set", "misc_set_id", true);
+		orphanChecker.checkForOrphans("misc_feature_misc_set", "misc_set_id", "misc_set", "misc_set_id", true);
 
 		// for a sangervega db, ignore misc_featres whcih have no annotation
 		if (dbre.getType() == DatabaseType.SANGER_VEGA) {
-			result &= checkForOrphansWithConstraint(con, "misc_feature", "misc_feature_id", "misc_attrib", "misc_feature_id",
+			orphanChecker.checkForOrphansWithConstraint("misc_feature", "misc_feature_id", "misc_attrib", "misc_feature_id",
 					"misc_feature_id NOT IN (select mfms.misc_feature_id from misc_feature_misc_set as mfms join misc_set as ms on mfms.misc_set_id=ms.misc_set_id and ms.code='noAnnotation')");
 		} else {
-			result &= checkForOrphans(con, "misc_feature", "misc_feature_id", "misc_attrib", "misc_feature_id", true);
+			orphanChecker.checkForOrphans("misc_feature", "misc_feature_id", "misc_attrib", "misc_feature_id", true);
 		}
 
-		result &= checkForOrphans(con, "misc_attrib", "attrib_type_id", "attrib_type", "attrib_type_id", true);
+		orphanChecker.checkForOrphans("misc_attrib", "attrib_type_id", "attrib_type", "attrib_type_id", true);
 
-		result &= checkForOrphans(con, "assembly_exception", "seq_region_id", "seq_region", "seq_region_id", true);
+		orphanChecker.checkForOrphans("assembly_exception", "seq_region_id", "seq_region", "seq_region_id", true);
 
-		result &= checkForOrphans(con, "assembly_exception", "exc_seq_region_id", "seq_region", "seq_region_id", true);
+		orphanChecker.checkForOrphans("assembly_exception", "exc_seq_region_id", "seq_region", "seq_region_id", true);
 
-		result &= checkForOrphans(con, "protein_feature", "translation_id", "translation", "translation_id", true);
+		orphanChecker.checkForOrphans("protein_feature", "translation_id", "translation", "translation_id", true);
 
-		result &= checkForOrphans(con, "marker_synonym", "marker_id", "marker", "marker_id", true);
+		orphanChecker.checkForOrphans("marker_synonym", "marker_id", "marker", "marker_id", true);
 
-		result &= checkForOrphans(con, "translation_attrib", "translation_id", "translation", "translation_id", true);
+		orphanChecker.checkForOrphans("translation_attrib", "translation_id", "translation", "translation_id", true);
 
-		result &= checkForOrphans(con, "transcript_attrib", "transcript_id", "transcript", "transcript_id", true);
+		orphanChecker.checkForOrphans("transcript_attrib", "transcript_id", "transcript", "transcript_id", true);
 
 		/*
 		 * // now redundant (done for all tables with analysis_id) result &= checkForOrphans(con, "analysis_id", "analysis",
 		 * "analysis_id", true); result &= checkForOrphans(con, "transcript", "analysis_id", "analysis", "analysis_id", true);
 		 */
 
-		result &= checkForOrphans(con, "external_synonym", "xref_id", "xref", "xref_id", true);
+		orphanChecker.checkForOrphans("external_synonym", "xref_id", "xref", "xref_id", true);
 
-		result &= checkForOrphans(con, "identity_xref", "object_xref_id", "object_xref", "object_xref_id", true);
+		orphanChecker.checkForOrphans("identity_xref", "object_xref_id", "object_xref", "object_xref_id", true);
 
-		result &= checkForOrphans(con, "supporting_feature", "exon_id", "exon", "exon_id", true);
+		orphanChecker.checkForOrphans("supporting_feature", "exon_id", "exon", "exon_id", true);
 
-		result &= checkForOrphans(con, "translation", "transcript_id", "transcript", "transcript_id", true);
+		orphanChecker.checkForOrphans("translation", "transcript_id", "transcript", "transcript_id", true);
 
-		result &= checkForOrphans(con, "ontology_xref", "object_xref_id", "object_xref", "object_xref_id", true);
+		orphanChecker.checkForOrphans("ontology_xref", "object_xref_id", "object_xref", "object_xref_id", true);
 
 		// stable ID archive
-		result &= checkForOrphansWithConstraint(con, "gene_archive", "peptide_archive_id", "peptide_archive", "peptide_archive_id", "peptide_archive_id != 0");
-		result &= checkForOrphans(con, "peptide_archive", "peptide_archive_id", "gene_archive", "peptide_archive_id", true);
-		result &= checkForOrphans(con, "stable_id_event", "mapping_session_id", "mapping_session", "mapping_session_id", false);
-		result &= checkForOrphans(con, "gene_archive", "mapping_session_id", "mapping_session", "mapping_session_id", true);
+		orphanChecker.checkForOrphansWithConstraint("gene_archive", "peptide_archive_id", "peptide_archive", "peptide_archive_id", "peptide_archive_id != 0");
+		orphanChecker.checkForOrphans("peptide_archive", "peptide_archive_id", "gene_archive", "peptide_archive_id", true);
+		orphanChecker.checkForOrphans("stable_id_event", "mapping_session_id", "mapping_session", "mapping_session_id", false);
+		orphanChecker.checkForOrphans("gene_archive", "mapping_session_id", "mapping_session", "mapping_session_id", true);
 
 		// ----------------------------
 		// Check object xrefs point to existing objects
 		String[] types = { "Gene", "Transcript", "Translation" };
 		for (int i = 0; i < types.length; i++) {
-			result &= checkKeysByEnsemblObjectType(con, "object_xref", types[i]);
+			addKeysByEnsemblObjectType(orphanChecker, "object_xref", types[i]);
 		}
 
 		// ----------------------------
@@ -161,56 +165,56 @@ public class CoreForeignKeys extends SingleDatabaseTestCase {
 			// if (featTab.equals("protein_align_feature") || featTab.equals("dna_align_feature") || featTab.equals("repeat_feature")) {
 			// continue;
 			// }
-			result &= checkForOrphans(con, featTab, "seq_region_id", "seq_region", "seq_region_id", true);
+			orphanChecker.checkForOrphans(featTab, "seq_region_id", "seq_region", "seq_region_id", true);
 		}
 
-		result &= checkForOrphans(con, "analysis_description", "analysis_id", "analysis", "analysis_id", true);
+		orphanChecker.checkForOrphans("analysis_description", "analysis_id", "analysis", "analysis_id", true);
 
-		result &= checkForOrphans(con, "gene_attrib", "gene_id", "gene", "gene_id", true);
-		result &= checkForOrphans(con, "gene_attrib", "attrib_type_id", "attrib_type", "attrib_type_id", true);
-		result &= checkForOrphans(con, "transcript_attrib", "attrib_type_id", "attrib_type", "attrib_type_id", true);
-		result &= checkForOrphans(con, "translation_attrib", "attrib_type_id", "attrib_type", "attrib_type_id", true);
+		orphanChecker.checkForOrphans("gene_attrib", "gene_id", "gene", "gene_id", true);
+		orphanChecker.checkForOrphans("gene_attrib", "attrib_type_id", "attrib_type", "attrib_type_id", true);
+		orphanChecker.checkForOrphans("transcript_attrib", "attrib_type_id", "attrib_type", "attrib_type_id", true);
+		orphanChecker.checkForOrphans("translation_attrib", "attrib_type_id", "attrib_type", "attrib_type_id", true);
 
-		result &= checkForOrphans(con, "translation", "end_exon_id", "exon", "exon_id", true);
-		result &= checkForOrphans(con, "translation", "start_exon_id", "exon", "exon_id", true);
+		orphanChecker.checkForOrphans("translation", "end_exon_id", "exon", "exon_id", true);
+		orphanChecker.checkForOrphans("translation", "start_exon_id", "exon", "exon_id", true);
 
-		result &= checkForOrphans(con, "alt_allele", "gene_id", "gene", "gene_id", true);
+		orphanChecker.checkForOrphans("alt_allele", "gene_id", "gene", "gene_id", true);
 
-		result &= checkForOrphans(con, "marker_map_location", "map_id", "map", "map_id", true);
-		result &= checkForOrphans(con, "marker_map_location", "marker_id", "marker", "marker_id", true);
-		result &= checkForOrphans(con, "marker_map_location", "marker_synonym_id", "marker_synonym", "marker_synonym_id", true);
+		orphanChecker.checkForOrphans("marker_map_location", "map_id", "map", "map_id", true);
+		orphanChecker.checkForOrphans("marker_map_location", "marker_id", "marker", "marker_id", true);
+		orphanChecker.checkForOrphans("marker_map_location", "marker_synonym_id", "marker_synonym", "marker_synonym_id", true);
 
 		// 73 -> 74 core schema patch: qtl* removed
 		// result &= checkForOrphans(con, "qtl_feature", "qtl_id", "qtl", "qtl_id", true);
 		// result &= checkForOrphans(con, "qtl_synonym", "qtl_id", "qtl", "qtl_id", true);
 
-		result &= checkForOrphans(con, "assembly", "asm_seq_region_id", "seq_region", "seq_region_id", true);
+		orphanChecker.checkForOrphans("assembly", "asm_seq_region_id", "seq_region", "seq_region_id", true);
 
-		result &= checkForOrphans(con, "unmapped_object", "unmapped_reason_id", "unmapped_reason", "unmapped_reason_id", true);
-		result &= checkForOrphans(con, "unmapped_object", "analysis_id", "analysis", "analysis_id", true);
+		orphanChecker.checkForOrphans("unmapped_object", "unmapped_reason_id", "unmapped_reason", "unmapped_reason_id", true);
+		orphanChecker.checkForOrphans("unmapped_object", "analysis_id", "analysis", "analysis_id", true);
 
-		result &= checkForOrphansWithConstraint(con, "supporting_feature", "feature_id", "dna_align_feature", "dna_align_feature_id", "feature_type = 'dna_align_feature'");
+		orphanChecker.checkForOrphansWithConstraint("supporting_feature", "feature_id", "dna_align_feature", "dna_align_feature_id", "feature_type = 'dna_align_feature'");
 
-		result &= checkForOrphansWithConstraint(con, "supporting_feature", "feature_id", "protein_align_feature", "protein_align_feature_id", "feature_type = 'protein_align_feature'");
+		orphanChecker.checkForOrphansWithConstraint("supporting_feature", "feature_id", "protein_align_feature", "protein_align_feature_id", "feature_type = 'protein_align_feature'");
 
-		result &= checkForOrphansWithConstraint(con, "transcript_supporting_feature", "feature_id", "dna_align_feature", "dna_align_feature_id", "feature_type = 'dna_align_feature'");
+		orphanChecker.checkForOrphansWithConstraint("transcript_supporting_feature", "feature_id", "dna_align_feature", "dna_align_feature_id", "feature_type = 'dna_align_feature'");
 
-		result &= checkForOrphansWithConstraint(con, "transcript_supporting_feature", "feature_id", "protein_align_feature", "protein_align_feature_id", "feature_type = 'protein_align_feature'");
+		orphanChecker.checkForOrphansWithConstraint("transcript_supporting_feature", "feature_id", "protein_align_feature", "protein_align_feature_id", "feature_type = 'protein_align_feature'");
 
-		result &= checkForOrphans(con, "density_feature", "density_type_id", "density_type", "density_type_id");
+		orphanChecker.checkForOrphans("density_feature", "density_type_id", "density_type", "density_type_id");
 
-		result &= checkForOrphans(con, "prediction_exon", "prediction_transcript_id", "prediction_transcript", "prediction_transcript_id");
+		orphanChecker.checkForOrphans("prediction_exon", "prediction_transcript_id", "prediction_transcript", "prediction_transcript_id");
 
 		// result &= checkForOrphans(con, "prediction_exon", "prediction_exon_id", "exon", "exon_id");
 
-		result &= checkForOrphans(con, "marker", "display_marker_synonym_id", "marker_synonym", "marker_synonym_id");
+		orphanChecker.checkForOrphans("marker", "display_marker_synonym_id", "marker_synonym", "marker_synonym_id");
 
 		// optional relations
 		// 73 -> 74 core schema patch: qtl* removed
 		// result &= checkOptionalRelation(con, "qtl", "flank_marker_id_1", "marker", "marker_id");
 		// result &= checkOptionalRelation(con, "qtl", "flank_marker_id_2", "marker", "marker_id");
 		// result &= checkOptionalRelation(con, "qtl", "peak_marker_id", "marker", "marker_id");
-		result &= checkOptionalRelation(con, "unmapped_object", "external_db_id", "external_db", "external_db_id");
+		orphanChecker.checkOptionalRelation("unmapped_object", "external_db_id", "external_db", "external_db_id");
 
 		/*
 		 * don't test
@@ -219,6 +223,8 @@ public class CoreForeignKeys extends SingleDatabaseTestCase {
 		 * "repeat_consensus_id");
 		 */
 
+		result &= orphanChecker.run(con);
+
 		// ----------------------------
 		// Check tables which reference the analysis table
 		String[] analysisTabs = getCoreTablesWithAnalysisID();
@@ -254,17 +260,39 @@ public class CoreForeignKeys extends SingleDatabaseTestCase {
 
 
 	// -------------------------------------------------------------------------
-	public boolean checkKeysByEnsemblObjectType(Connection con, String baseTable, String type) {
+	/**
+	 * Like {@link #checkKeysByEnsemblObjectType(Connection, String, String)} but only adds the relation to orphanChecker.
+	 */
+	public void addKeysByEnsemblObjectType(OrphanChecker orphanChecker, String baseTable, String type) {
+
+		String table = getTableForEnsemblObjectType(type);
+
+		orphanChecker.checkForOrphansWithConstraint(baseTable, getEnsemblObjectColumn(baseTable), table, table + "_id", "ensembl_object_type=\'" + type + "\'");
+
+	} // addKeysByEnsemblObjectType
+
+	private String getTableForEnsemblObjectType(String type) {
 
 		// Need to handle under scores in tables here
 		// e.g. ProbeFeature > probe_feature
 		String table = type.replaceAll("([a-z])([A-Z])", "$1_$2");
-		table = table.toLowerCase();
+		return table.toLowerCase();
+
+	}
+
+	private String getEnsemblObjectColumn(String baseTable) {
 
 		// Where is ensembl_object_id used?
-		String column = baseTable.equals("object_xref") ? "ensembl_id" : "ensembl_object_id";
+		return baseTable.equals("object_xref") ? "ensembl_id" : "ensembl_object_id";
+
+	}
+
+	// -------------------------------------------------------------------------
+	public boolean checkKeysByEnsemblObjectType(Connection con, String baseTable, String type) {
+
+		String table = getTableForEnsemblObjectType(type);
 
-		return checkForOrphansWithConstraint(con, baseTable, column, table, table + "_id", "ensembl_object_type=\'" + type + "\'");
+		return checkForOrphansWithConstraint(con, baseTable, getEnsemblObjectColumn(baseTable), table, table + "_id", "ensembl_object_type=\'" + type + "\'");
 
 		/**
 		 * Is this not just checkForOrphansWithConstraint?
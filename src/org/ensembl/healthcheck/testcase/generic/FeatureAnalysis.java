@@ -114,7 +114,7 @@ public class FeatureAnalysis extends SingleDatabaseTestCase {
 
       Map<Integer, String> analysesFromFeatureTables = new HashMap<Integer, String>();
 
-      Map<Integer, String> analysesFromAnalysisTable = getLogicNamesFromAnalysisTable(con);
+      Map<Integer, String> analysesFromAnalysisTable = dbre.getReferenceData().getAnalysisLogicNames();
 
       // build cumulative list of analyses from feature tables
       for (String featureTable: featureTables) {
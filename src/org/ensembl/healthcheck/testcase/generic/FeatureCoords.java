@@ -29,6 +29,7 @@ import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
 import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
 import org.ensembl.healthcheck.util.DBUtils;
+import org.ensembl.healthcheck.util.SeqRegionCache;
 import org.ensembl.healthcheck.util.SqlTemplate;
 import org.ensembl.healthcheck.util.Utils;
 import org.ensembl.healthcheck.util.RowMapper;
@@ -94,15 +95,18 @@ public class FeatureCoords extends SingleDatabaseTestCase {
                 }
                 DefaultMapRowMapper<Integer, Integer> mapper = new DefaultMapRowMapper<Integer, Integer>(Integer.class, Integer.class);
                 String featureSQL = "SELECT seq_region_id, max(seq_region_start) from " + tableName + " group by seq_region_id ";
-                String lengthSQL = "SELECT length from seq_region where seq_region_id = ?";
-                String nameSQL = "SELECT name from seq_region where seq_region_id = ?";
                 Map<Integer, Integer> featureResults = t.queryForMap(featureSQL, mapper);
+                SeqRegionCache seqRegions = SeqRegionCache.getInstance(dbre);
 
                 for (Map.Entry<Integer, Integer> entry : featureResults.entrySet()) {
                         Integer max = entry.getValue();
                         Integer region = entry.getKey();
-                        Integer length = t.queryForDefaultObject(lengthSQL, Integer.class, region);
-                        String name = t.queryForDefaultObject(nameSQL, String.class, region);
+                        if (!seqRegions.contains(region)) {
+                                // features on missing seq_regions are reported by the foreign key checks
+                                continue;
+                        }
+                        int length = seqRegions.getLength(region);
+                        String name = seqRegions.getName(region);
 
                         if (max > length) {
                                 ReportManager.problem(this, dbre.getConnection(), "Some features in " + tableName + " start on position " + max + " when region " + name + " is only " + length + " long");
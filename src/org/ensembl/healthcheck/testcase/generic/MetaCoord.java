@@ -18,11 +18,6 @@
 package org.ensembl.healthcheck.testcase.generic;
 
 import java.sql.Connection;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -30,8 +25,8 @@ import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.DatabaseType;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
+import org.ensembl.healthcheck.testcase.MetaCoordChecker;
 import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
-import org.ensembl.healthcheck.util.DBUtils;
 
 /**
  * Check that meta_coord table contains entries for all the coordinate systems that all the features are stored in.
@@ -69,109 +64,88 @@ public class MetaCoord extends SingleDatabaseTestCase {
 
 		Connection con = dbre.getConnection();
 
-		// coordSystems is a hash of lists of coordinate systems that each feature table contains
-		Map<String, List<String>> coordSystems = new HashMap<String, List<String>>();
+		MetaCoordChecker checker = new MetaCoordChecker(this);
 
-		try {
+		// max_length of each coordinate system of each table in meta_coord
+		Map<String, Map<String, List<String>>> metaCoord = checker.readMetaCoord(con);
 
-			Statement stmt = con.createStatement();
+		// the coordinate systems that each feature table contains, with the length of its longest feature
+		logger.finest("Getting feature coordinate systems and max_length");
+		Map<String, Map<String, String>> coordSystems = checker.readFeatureCoordSystems(dbre, featureTables,
+				dbre.getType() == DatabaseType.SANGER_VEGA ? "VEGA%" : null);
 
-			// build up a list of all the coordinate systems that are in the various feature tables
-			for (String tableName : featureTables) {
-				String sql = "";
-				if (dbre.getType() == DatabaseType.SANGER_VEGA) {
-					sql = "SELECT DISTINCT(sr.coord_system_id) FROM seq_region sr join coord_system cs on sr.coord_system_id = cs.coord_system_id, " + tableName
-							+ " f WHERE sr.seq_region_id = f.seq_region_id and cs.version like 'VEGA%' ";
-				} else {
-					sql = "SELECT DISTINCT(sr.coord_system_id) FROM seq_region sr, " + tableName + " f WHERE sr.seq_region_id = f.seq_region_id";
-				}
-
-				logger.finest("Getting feature coordinate systems and max_length for " + tableName);
-				ResultSet rs = stmt.executeQuery(sql);
-
-				while (rs.next()) {
-
-					String coordSystemID = rs.getString(1);
-					logger.finest("Added feature coordinate system for " + tableName + ": " + coordSystemID);
+		for (String tableName : featureTables) {
 
-					// check that the meta_coord table has an entry corresponding to this
-					int mc = DBUtils.getRowCount(con, "SELECT COUNT(*) FROM meta_coord WHERE coord_system_id=" + coordSystemID + " AND table_name='" + tableName + "'");
+			Map<String, String> tableCoordSystems = coordSystems.get(tableName);
+			if (tableCoordSystems == null) {
+				continue;
+			}
 
-					if (mc == 0) {
+			Map<String, List<String>> tableMetaCoord = metaCoord.get(tableName);
 
-						ReportManager.problem(this, con, "No entry for coordinate system with ID " + coordSystemID + " for " + tableName + " in meta_coord");
-						result = false;
+			for (Map.Entry<String, String> entry : tableCoordSystems.entrySet()) {
 
-					} else if (mc > 1) {
+				String coordSystemID = entry.getKey();
+				logger.finest("Added feature coordinate system for " + tableName + ": " + coordSystemID);
 
-						ReportManager.problem(this, con, "Coordinate system with ID " + coordSystemID + " duplicated for " + tableName + " in meta_coord");
-						result = false;
+				// check that the meta_coord table has an entry corresponding to this
+				List<String> maxLengths = tableMetaCoord == null ? null : tableMetaCoord.get(coordSystemID);
+				int mc = maxLengths == null ? 0 : maxLengths.size();
 
-					} else {
+				if (mc == 0) {
 
-						ReportManager.correct(this, con, "Coordinate system with ID " + coordSystemID + " for table " + tableName + " has an entry in meta_coord");
+					ReportManager.problem(this, con, "No entry for coordinate system with ID " + coordSystemID + " for " + tableName + " in meta_coord");
+					result = false;
 
-					}
+				} else if (mc > 1) {
 
-					// store in coordSystems map - create List if necessary
-					List<String> csList = coordSystems.get(tableName);
+					ReportManager.problem(this, con, "Coordinate system with ID " + coordSystemID + " duplicated for " + tableName + " in meta_coord");
+					result = false;
 
-					if (csList == null) {
+				} else {
 
-						csList = new ArrayList<String>();
+					ReportManager.correct(this, con, "Coordinate system with ID " + coordSystemID + " for table " + tableName + " has an entry in meta_coord");
 
-					}
+				}
 
-					csList.add(coordSystemID);
-					coordSystems.put(tableName, csList);
-									
-					// check that the max_length value in meta_coord corresponds to max feature length in each table per coord_system 
-					String mc_max_length = DBUtils.getRowColumnValue(con, "SELECT max_length FROM meta_coord WHERE coord_system_id=" + coordSystemID + " AND table_name='" + tableName + "'");					
-					String f_max_length = DBUtils.getRowColumnValue(con, "SELECT ABS(MAX(f.seq_region_end - f.seq_region_start) + 1) FROM " + tableName + " f JOIN seq_region s USING(seq_region_id) WHERE s.coord_system_id=" + coordSystemID);
-					
-					if (mc_max_length.equals(f_max_length)) {
-						ReportManager.correct(this, con, "max_length value correct for coordinate system with ID " + coordSystemID + " for table " + tableName + " in meta_coord");
-					} else {
-						ReportManager.problem(this, con, "max_length value " + mc_max_length + " incorrect for coordinate system with ID " + coordSystemID + " for table " + tableName + " in meta_coord; max_length should equal "+ f_max_length);
-						result = false;
-					}
-					
+				// check that the max_length value in meta_coord corresponds to max feature length in each table per coord_system
+				String mc_max_length = mc == 0 ? "" : maxLengths.get(0);
+				String f_max_length = entry.getValue();
 
+				if (mc_max_length != null && mc_max_length.equals(f_max_length)) {
+					ReportManager.correct(this, con, "max_length value correct for coordinate system with ID " + coordSystemID + " for table " + tableName + " in meta_coord");
+				} else {
+					ReportManager.problem(this, con, "max_length value " + mc_max_length + " incorrect for coordinate system with ID " + coordSystemID + " for table " + tableName + " in meta_coord; max_length should equal "+ f_max_length);
+					result = false;
 				}
-				
-				rs.close();
 
 			}
 
-			// check that every meta_coord table entry refers to a coordinate system that is used in a feature
-			// if this isn't true it's not fatal but should be flagged
-			String sql = "SELECT * FROM meta_coord";
-			ResultSet rs = stmt.executeQuery(sql);
+		}
+
+		// check that every meta_coord table entry refers to a coordinate system that is used in a feature
+		// if this isn't true it's not fatal but should be flagged
+		for (Map.Entry<String, Map<String, List<String>>> table : metaCoord.entrySet()) {
 
-			while (rs.next()) {
+			String tableName = table.getKey();
+			Map<String, String> featureCSs = coordSystems.get(tableName);
+
+			for (String csID : table.getValue().keySet()) {
 
-				String tableName = rs.getString("table_name");
-				String csID = rs.getString("coord_system_id");
 				logger.finest("Checking for coord_system_id " + csID + " in " + tableName);
 
-				List<String> featureCSs = coordSystems.get(tableName);
-				if (featureCSs != null && !featureCSs.contains(csID)) {
+				if (featureCSs != null && !featureCSs.containsKey(csID)) {
 					ReportManager.problem(this, con, "meta_coord has entry for coord_system ID " + csID + " in " + tableName + " but this coordinate system is not actually used in " + tableName);
 					result = false;
 				}
 
 			}
 
-			rs.close();
-			stmt.close();
-
-			// check that there are no null max_length entries
-			result &= checkNoNulls(con, "meta_coord", "max_length");
-
-		} catch (SQLException e) {
-			e.printStackTrace();
 		}
 
+		// check that there are no null max_length entries
+		result &= checkNoNulls(con, "meta_coord", "max_length");
+
 		return result;
 
 	}
@@ -631,8 +631,8 @@ public class MetaValues extends SingleDatabaseTestCase {
 		boolean result = true;
 		
 		Connection con = dbre.getConnection();
-		String currentAssemblyAccession = DBUtils.getMetaValue(con, "assembly.accession");
-		String currentAssemblyName = DBUtils.getMetaValue(con, "assembly.name");
+		String currentAssemblyAccession = dbre.getReferenceData().getMetaValue("assembly.accession");
+		String currentAssemblyName = dbre.getReferenceData().getMetaValue("assembly.name");
 
 		if (currentAssemblyAccession.equals("")) {
 			ReportManager.problem(this, con, "No assembly.accession entry present in Meta table");
@@ -658,8 +658,8 @@ public class MetaValues extends SingleDatabaseTestCase {
 		logger.finest("Equivalent database on secondary server is " + sec.getName());		
 
 		Connection previousCon = sec.getConnection();
-		String previousAssemblyAccession = DBUtils.getMetaValue(previousCon, "assembly.accession");
-		String previousAssemblyName = DBUtils.getMetaValue(previousCon, "assembly.name");
+		String previousAssemblyAccession = sec.getReferenceData().getMetaValue("assembly.accession");
+		String previousAssemblyName = sec.getReferenceData().getMetaValue("assembly.name");
 		
 		long currentAssemblyChecksum = DBUtils.getChecksum(con, "assembly");
 		long previousAssemblyChecksum = DBUtils.getChecksum(previousCon, "assembly");
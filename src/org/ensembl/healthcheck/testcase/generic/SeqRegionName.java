@@ -62,7 +62,7 @@ public class SeqRegionName extends SingleDatabaseTestCase {
 
 		Species s = dbre.getSpecies();
                 Connection con = dbre.getConnection();
-                String AssemblyAccession = DBUtils.getMetaValue(con, "assembly.accession");
+                String AssemblyAccession = dbre.getReferenceData().getMetaValue("assembly.accession");
 
                 if (AssemblyAccession.contains("GCA")) {
 
@@ -79,7 +79,7 @@ public class SeqRegionsTopLevel extends SingleDatabaseTestCase {
 
 		Connection con = dbre.getConnection();
 
-		int topLevelAttribTypeID = getAttribTypeID(con);
+		int topLevelAttribTypeID = getAttribTypeID(dbre);
 		if (topLevelAttribTypeID == -1) {
 			return false;
 		}
@@ -98,15 +98,15 @@ public class SeqRegionsTopLevel extends SingleDatabaseTestCase {
 
 	// --------------------------------------------------------------------------
 
-	private int getAttribTypeID(Connection con) {
+	private int getAttribTypeID(DatabaseRegistryEntry dbre) {
 
 		// check that all gene seq_regions have toplevel attributes
-		String val = DBUtils.getRowColumnValue(con, "SELECT attrib_type_id FROM attrib_type WHERE code=\'toplevel\'");
-		if (val == null || val.equals("")) {
-			ReportManager.problem(this, con, "Can't find a seq_region attrib_type with code 'toplevel', exiting");
+		Integer val = dbre.getReferenceData().getAttribTypeId("toplevel");
+		if (val == null) {
+			ReportManager.problem(this, dbre.getConnection(), "Can't find a seq_region attrib_type with code 'toplevel', exiting");
 			return -1;
 		}
-		int topLevelAttribTypeID = Integer.parseInt(val);
+		int topLevelAttribTypeID = val;
 
 		logger.info("attrib_type_id for toplevel: " + topLevelAttribTypeID);
 
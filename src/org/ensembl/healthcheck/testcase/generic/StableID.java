@@ -95,7 +95,7 @@ public class StableID extends SingleDatabaseTestCase {
 		if (s != null && s != Species.CAENORHABDITIS_ELEGANS && s != Species.DROSOPHILA_MELANOGASTER && s != Species.SACCHAROMYCES_CEREVISIAE && s != Species.ANOPHELES_GAMBIAE && s != Species.UNKNOWN) {
 			if (dbre.getType() == DatabaseType.CORE) {// for sangervega, do not check the prefixes
 				result &= checkPrefixes(dbre);
-        			result &= checkStableIDEventTypes(con);
+        			result &= checkStableIDEventTypes(dbre);
                                 result = checkStableIDTimestamps(con);
                         }
 		}
@@ -194,10 +194,12 @@ public class StableID extends SingleDatabaseTestCase {
 	 * Check for any stable ID events where the 'type' column does not match the identifier type.
 	 * 
 	 */
-	private boolean checkStableIDEventTypes(Connection con) {
+	private boolean checkStableIDEventTypes(DatabaseRegistryEntry dbre) {
 
 		boolean result = true;
 
+		Connection con = dbre.getConnection();
+
 		String[] types = { "gene", "transcript", "translation", "exon" };
 
 
@@ -232,19 +234,19 @@ public class StableID extends SingleDatabaseTestCase {
 
                         // make sure stable ID versions in the typeName table matches those in stable_id_event
                         // for the latest mapping_session
-                        String mappingSessionId = DBUtils.getRowColumnValue(con, "SELECT mapping_session_id FROM mapping_session " + "ORDER BY created DESC LIMIT 1");
+                        Integer mappingSessionId = dbre.getReferenceData().getLatestMappingSessionId();
 
-                        if (mappingSessionId.equals("")) {
+                        if (mappingSessionId == null) {
                                 ReportManager.info(this, con, "No mapping_session found");
                                 return result;
                         }
 
-                        int nVersionMismatch = DBUtils.getRowCount(con, "SELECT COUNT(*) FROM stable_id_event sie, " + type + " si WHERE sie.mapping_session_id = " + Integer.parseInt(mappingSessionId)
+                        int nVersionMismatch = DBUtils.getRowCount(con, "SELECT COUNT(*) FROM stable_id_event sie, " + type + " si WHERE sie.mapping_session_id = " + mappingSessionId
                                         + " AND sie.new_stable_id = si.stable_id AND sie.new_version <> si.version");
 
                         if (nVersionMismatch > 0) {
                                 ReportManager.problem(this, con, "Version mismatch between " + nVersionMismatch + " " + type + " versions in and stable_id_event");
-                                DBUtils.printRows(this, con, "SELECT si.stable_id FROM stable_id_event sie, " + type + " si WHERE sie.mapping_session_id = " + Integer.parseInt(mappingSessionId)
+                                DBUtils.printRows(this, con, "SELECT si.stable_id FROM stable_id_event sie, " + type + " si WHERE sie.mapping_session_id = " + mappingSessionId
                                                 + " AND sie.new_stable_id = si.stable_id AND sie.new_version <> si.version");
                                 result = false;
                         }
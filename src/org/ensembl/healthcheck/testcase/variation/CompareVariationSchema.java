@@ -36,6 +36,7 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -170,8 +171,8 @@ public class CompareVariationSchema extends AbstractCompareSchema {
 		String targetName = getDbNameForMsg(target);
 		String masterName = getDbNameForMsg(master);
 		
-		Set<String> targetTables = createLinkedHashSet(getTableNames(target));
-		Set<String> masterTables = createLinkedHashSet(getTableNames(master));
+		Set<String> targetTables = new LinkedHashSet<String>(getSnapshot(target).getTableNames());
+		Set<String> masterTables = new LinkedHashSet<String>(getSnapshot(master).getTableNames());
 		
 		Species species = targetDbre.getSpecies();
 		
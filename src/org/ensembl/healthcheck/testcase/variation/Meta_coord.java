@@ -18,10 +18,13 @@
 package org.ensembl.healthcheck.testcase.variation;
 
 import java.sql.Connection;
+import java.util.List;
+import java.util.Map;
 
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
+import org.ensembl.healthcheck.testcase.MetaCoordChecker;
 import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
 import org.ensembl.healthcheck.util.DBUtils;
 
@@ -56,15 +59,17 @@ public class Meta_coord extends SingleDatabaseTestCase {
 		String[] tables = { "variation_feature", "compressed_genotype_region", "transcript_variation", "structural_variation_feature" };
 		
 		try {
+			Map<String, Map<String, List<String>>> metaCoord = new MetaCoordChecker(this).readMetaCoord(con);
 			/*
 			 * Will check the presence of the variation_feature, transcript_variation, compressed_genotype
 			 * and variation_group_feature entries in the meta_coord, when data present in those tables
 			 */
 			for (int i = 0; i < tables.length; i++) {
-				int rows = DBUtils.getRowCount(con, "SELECT COUNT(*) FROM " + tables[i]); // count if table has data
+				// check if table has data, without counting all of it
+				int rows = DBUtils.getRowCountSlow(con, "SELECT 1 FROM " + tables[i] + " LIMIT 1");
 				if (rows > 0) {
 					// the meta_coord table should contain entry
-					result &= checkKeysPresent(con, tables[i]);
+					result &= checkKeysPresent(con, metaCoord, tables[i]);
 				}
 			}
 		} catch (Exception e) {
@@ -80,12 +85,11 @@ public class Meta_coord extends SingleDatabaseTestCase {
 
 	// --------------------------------------------------------------
 
-	private boolean checkKeysPresent(Connection con, String tableName) {
+	private boolean checkKeysPresent(Connection con, Map<String, Map<String, List<String>>> metaCoord, String tableName) {
 
 		boolean result = true;
 
-		int rows = DBUtils.getRowCount(con, "SELECT COUNT(*) FROM meta_coord WHERE table_name='" + tableName + "'");
-		if (rows == 0) {
+		if (!metaCoord.containsKey(tableName)) {
 			result = false;
 			ReportManager.problem(this, con, "No entry in meta_coord table for " + tableName);
 		} else {
@@ -22,6 +22,7 @@ import java.sql.Connection;
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.ReportManager;
 import org.ensembl.healthcheck.Team;
+import org.ensembl.healthcheck.testcase.OrphanChecker;
 import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
 import org.ensembl.healthcheck.util.DBUtils;
 
@@ -58,62 +59,67 @@ public class VariationForeignKeys extends SingleDatabaseTestCase {
 
 		try {
 			
+			// relations are checked together by child table, see OrphanChecker
+			OrphanChecker orphanChecker = new OrphanChecker(this);
+
 			/*
 			 * This is allowed allele can have null population_id 
 			 * result &= checkForOrphans(con, "allele", "population_id", "population", "population_id",true);
 			 */
-			result &= checkForOrphans(con, "allele", "variation_id", "variation", "variation_id", true);
-			result &= checkForOrphans(con, "compressed_genotype_region", "individual_id", "individual", "individual_id", true);
-			result &= checkForOrphans(con, "failed_allele", "failed_description_id", "failed_description", "failed_description_id", true);
-			result &= checkForOrphans(con, "failed_allele", "allele_id", "allele", "allele_id", true);
-			result &= checkForOrphans(con, "failed_variation", "failed_description_id", "failed_description", "failed_description_id", true);
-			result &= checkForOrphans(con, "failed_variation", "variation_id", "variation", "variation_id", true);
-			result &= checkForOrphans(con, "failed_structural_variation", "failed_description_id", "failed_description", "failed_description_id", true);
-			result &= checkForOrphans(con, "failed_structural_variation", "structural_variation_id", "structural_variation", "structural_variation_id", true);
-			result &= checkForOrphans(con, "individual_genotype_multiple_bp", "individual_id", "individual_population", "individual_id", true);
-			result &= checkForOrphans(con, "individual_genotype_multiple_bp", "individual_id", "individual", "individual_id", true);
-			result &= checkForOrphans(con, "individual_population", "individual_id", "individual", "individual_id", true);
-			result &= checkForOrphans(con, "individual_population", "population_id", "population", "population_id", true);
-			result &= checkForOrphans(con, "phenotype", "phenotype_id", "phenotype_feature", "phenotype_id", true);
-			result &= checkForOrphans(con, "phenotype_feature", "phenotype_id", "phenotype", "phenotype_id", true);
-			result &= checkForOrphans(con, "phenotype_feature", "source_id", "source", "source_id", true);
-			result &= checkForOrphans(con, "phenotype_feature", "study_id", "study", "study_id", true);
-			result &= checkForOrphans(con, "phenotype_feature_attrib", "phenotype_feature_id", "phenotype_feature", "phenotype_feature_id", true);
-			result &= checkForOrphans(con, "phenotype_feature_attrib", "attrib_type_id", "attrib_type", "attrib_type_id", true);
-			result &= checkForOrphans(con, "population_genotype", "population_id", "population", "population_id", true);
-			result &= checkForOrphans(con, "population_genotype", "variation_id", "variation", "variation_id", true);
-			result &= checkForOrphans(con, "compressed_genotype_var", "variation_id", "variation", "variation_id", true);
-			result &= checkForOrphans(con, "individual_synonym", "individual_id", "individual", "individual_id", true);
-			result &= checkForOrphans(con, "population_synonym", "population_id", "population", "population_id", true);
-			result &= checkForOrphans(con, "tagged_variation_feature", "population_id", "population", "population_id", true);
+			orphanChecker.checkForOrphans("allele", "variation_id", "variation", "variation_id", true);
+			orphanChecker.checkForOrphans("compressed_genotype_region", "individual_id", "individual", "individual_id", true);
+			orphanChecker.checkForOrphans("failed_allele", "failed_description_id", "failed_description", "failed_description_id", true);
+			orphanChecker.checkForOrphans("failed_allele", "allele_id", "allele", "allele_id", true);
+			orphanChecker.checkForOrphans("failed_variation", "failed_description_id", "failed_description", "failed_description_id", true);
+			orphanChecker.checkForOrphans("failed_variation", "variation_id", "variation", "variation_id", true);
+			orphanChecker.checkForOrphans("failed_structural_variation", "failed_description_id", "failed_description", "failed_description_id", true);
+			orphanChecker.checkForOrphans("failed_structural_variation", "structural_variation_id", "structural_variation", "structural_variation_id", true);
+			orphanChecker.checkForOrphans("individual_genotype_multiple_bp", "individual_id", "individual_population", "individual_id", true);
+			orphanChecker.checkForOrphans("individual_genotype_multiple_bp", "individual_id", "individual", "individual_id", true);
+			orphanChecker.checkForOrphans("individual_population", "individual_id", "individual", "individual_id", true);
+			orphanChecker.checkForOrphans("individual_population", "population_id", "population", "population_id", true);
+			orphanChecker.checkForOrphans("phenotype", "phenotype_id", "phenotype_feature", "phenotype_id", true);
+			orphanChecker.checkForOrphans("phenotype_feature", "phenotype_id", "phenotype", "phenotype_id", true);
+			orphanChecker.checkForOrphans("phenotype_feature", "source_id", "source", "source_id", true);
+			orphanChecker.checkForOrphans("phenotype_feature", "study_id", "study", "study_id", true);
+			orphanChecker.checkForOrphans("phenotype_feature_attrib", "phenotype_feature_id", "phenotype_feature", "phenotype_feature_id", true);
+			orphanChecker.checkForOrphans("phenotype_feature_attrib", "attrib_type_id", "attrib_type", "attrib_type_id", true);
+			orphanChecker.checkForOrphans("population_genotype", "population_id", "population", "population_id", true);
+			orphanChecker.checkForOrphans("population_genotype", "variation_id", "variation", "variation_id", true);
+			orphanChecker.checkForOrphans("compressed_genotype_var", "variation_id", "variation", "variation_id", true);
+			orphanChecker.checkForOrphans("individual_synonym", "individual_id", "individual", "individual_id", true);
+			orphanChecker.checkForOrphans("population_synonym", "population_id", "population", "population_id", true);
+			orphanChecker.checkForOrphans("tagged_variation_feature", "population_id", "population", "population_id", true);
 			/*
 			 * instead check compressed_genotype_single_bp with individual table
 			 * result &= checkForOrphans(con, "tmp_individual_genotype_single_bp", "variation_id", "variation", "variation_id", true);
 			 * this is true only for ensembl snps
 			 * result &= checkForOrphans(con, "tmp_individual_genotype_single_bp", "variation_id", "variation_feature", "variation_id",true);
 			 */
-			result &= checkForOrphans(con, "transcript_variation", "variation_feature_id", "variation_feature", "variation_feature_id", true);
-			result &= checkForOrphans(con, "variation", "source_id", "source", "source_id", true);
-			result &= checkForOrphans(con, "variation_feature", "source_id", "source", "source_id", true);
-			result &= checkForOrphans(con, "variation_feature", "variation_id", "allele", "variation_id", true);
-			result &= checkForOrphans(con, "variation_set_structure", "variation_set_sub", "variation_set", "variation_set_id", true);
-			result &= checkForOrphans(con, "variation_set_structure", "variation_set_super", "variation_set", "variation_set_id", true);
-			result &= checkForOrphans(con, "variation_set_variation", "variation_id", "variation", "variation_id", true);
-			result &= checkForOrphans(con, "variation_set_variation", "variation_set_id", "variation_set", "variation_set_id", true);
-			result &= checkForOrphans(con, "variation_synonym", "source_id", "source", "source_id", true);
-			result &= checkForOrphans(con, "variation_synonym", "variation_id", "variation", "variation_id", true);
-			result &= checkForOrphans(con, "structural_variation_feature", "structural_variation_id", "structural_variation", "structural_variation_id", true);
-			result &= checkForOrphans(con, "structural_variation", "study_id", "study", "study_id", true);
-			result &= checkForOrphans(con, "structural_variation_sample", "structural_variation_id", "structural_variation", "structural_variation_id", true);
-			result &= checkForOrphans(con, "study_variation", "study_id", "study", "study_id", true);
-			result &= checkForOrphans(con, "study_variation", "variation_id", "variation", "variation_id", true);
-			result &= checkForOrphans(con, "variation_citation", "variation_id", "variation", "variation_id", true);			
-			result &= checkForOrphans(con, "variation_citation", "publication_id", "publication", "publication_id", true);
+			orphanChecker.checkForOrphans("transcript_variation", "variation_feature_id", "variation_feature", "variation_feature_id", true);
+			orphanChecker.checkForOrphans("variation", "source_id", "source", "source_id", true);
+			orphanChecker.checkForOrphans("variation_feature", "source_id", "source", "source_id", true);
+			orphanChecker.checkForOrphans("variation_feature", "variation_id", "allele", "variation_id", true);
+			orphanChecker.checkForOrphans("variation_set_structure", "variation_set_sub", "variation_set", "variation_set_id", true);
+			orphanChecker.checkForOrphans("variation_set_structure", "variation_set_super", "variation_set", "variation_set_id", true);
+			orphanChecker.checkForOrphans("variation_set_variation", "variation_id", "variation", "variation_id", true);
+			orphanChecker.checkForOrphans("variation_set_variation", "variation_set_id", "variation_set", "variation_set_id", true);
+			orphanChecker.checkForOrphans("variation_synonym", "source_id", "source", "source_id", true);
+			orphanChecker.checkForOrphans("variation_synonym", "variation_id", "variation", "variation_id", true);
+			orphanChecker.checkForOrphans("structural_variation_feature", "structural_variation_id", "structural_variation", "structural_variation_id", true);
+			orphanChecker.checkForOrphans("structural_variation", "study_id", "study", "study_id", true);
+			orphanChecker.checkForOrphans("structural_variation_sample", "structural_variation_id", "structural_variation", "structural_variation_id", true);
+			orphanChecker.checkForOrphans("study_variation", "study_id", "study", "study_id", true);
+			orphanChecker.checkForOrphans("study_variation", "variation_id", "variation", "variation_id", true);
+			orphanChecker.checkForOrphans("variation_citation", "variation_id", "variation", "variation_id", true);			
+			orphanChecker.checkForOrphans("variation_citation", "publication_id", "publication", "publication_id", true);
 			
 			// alleles and genotypes
-			result &= checkForOrphans(con, "allele", "allele_code_id", "allele_code", "allele_code_id", true);
-			result &= checkForOrphans(con, "population_genotype", "genotype_code_id", "genotype_code", "genotype_code_id", true);
-			result &= checkForOrphans(con, "genotype_code", "allele_code_id", "allele_code", "allele_code_id", true);
+			orphanChecker.checkForOrphans("allele", "allele_code_id", "allele_code", "allele_code_id", true);
+			orphanChecker.checkForOrphans("population_genotype", "genotype_code_id", "genotype_code", "genotype_code_id", true);
+			orphanChecker.checkForOrphans("genotype_code", "allele_code_id", "allele_code", "allele_code_id", true);
+
+			result &= orphanChecker.run(con);
             
             // check phenotype_feature (special case since it can contain links to multiple tables)
             rows = countOrphansWithConstraint(con,"phenotype_feature","object_id","variation","name","type = 'Variation'");
@@ -47,6 +47,37 @@ public class ChecksumDatabase {
 
 	protected final static String CHECKSUM_SQL = "CHECKSUM TABLE %s EXTENDED";
 
+	/**
+	 * Maps the first column of each row (the table) to the second (its
+	 * checksum)
+	 */
+	protected final static MapRowMapper<String, String> TABLE_VALUE_MAPPER = new MapRowMapper<String, String>() {
+
+		@Override
+		public String mapRow(ResultSet resultSet, int position)
+				throws SQLException {
+			return resultSet.getString(2);
+		}
+
+		@Override
+		public Map<String, String> getMap() {
+			return CollectionUtils.createHashMap(1);
+		}
+
+		@Override
+		public String getKey(ResultSet resultSet)
+				throws SQLException {
+			return resultSet.getString(1);
+		}
+
+		@Override
+		public void existingObject(String currentValue,
+				ResultSet resultSet, int position)
+				throws SQLException {
+			throw new RuntimeException();
+		}
+	};
+
 	protected final String databaseName;
 	protected final SqlTemplate templ;
 	protected final File checksumFile;
@@ -93,41 +124,25 @@ public class ChecksumDatabase {
 		Properties dbSum = new Properties();
 		for (final String table : tables) {
 			dbSum.putAll(templ.queryForMap(
-					CHECKSUM_SQL.replaceFirst("%s", table),
-					new MapRowMapper<String, String>() {
-
-						@Override
-						public String mapRow(ResultSet resultSet, int position)
-								throws SQLException {
-							return resultSet.getString(2);
-						}
-
-						@Override
-						public Map<String, String> getMap() {
-							return CollectionUtils.createHashMap(1);
-						}
-
-						@Override
-						public String getKey(ResultSet resultSet)
-								throws SQLException {
-							return resultSet.getString(1);
-						}
-
-						@Override
-						public void existingObject(String currentValue,
-								ResultSet resultSet, int position)
-								throws SQLException {
-							throw new RuntimeException();
-						}
-					}));
+					CHECKSUM_SQL.replaceFirst("%s", table), TABLE_VALUE_MAPPER));
 		}
 		return dbSum;
 	}
 
 	public boolean isUpdated() {
+		return isUpdated(getChecksumFromDatabase());
+	}
+
+	/**
+	 * @return true if the checksums in db differ from the ones last stored,
+	 *         including tables which have been added or removed since
+	 */
+	protected boolean isUpdated(Properties db) {
 		boolean updated = false;
-		Properties db = getChecksumFromDatabase();
 		Properties fs = getChecksumFromFile();
+		if (db.size() != fs.size()) {
+			return true;
+		}
 		for (Entry<Object, Object> e : db.entrySet()) {
 			Object fsVal = fs.get(e.getKey());
 			if (!e.getValue().equals(fsVal)) {
@@ -139,10 +154,23 @@ public class ChecksumDatabase {
 	}
 
 	public void setRead() {
+		setRead(getChecksumFromDatabase());
+	}
+
+	/**
+	 * Store checksums read earlier with {@link #getChecksumFromDatabase()},
+	 * e.g. the state of the tables before a test was run, so changes made
+	 * since they were read are still seen by the next {@link #isUpdated()}.
+	 */
+	public void setRead(Properties db) {
 		// Write properties file
 		try {
-			getChecksumFromDatabase().store(new FileOutputStream(checksumFile),
-					null);
+			FileOutputStream out = new FileOutputStream(checksumFile);
+			try {
+				db.store(out, null);
+			} finally {
+				out.close();
+			}
 		} catch (IOException e) {
 			throw new RuntimeException("Cannot write table properties to "
 					+ checksumFile, e);
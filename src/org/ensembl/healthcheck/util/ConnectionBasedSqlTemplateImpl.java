@@ -308,6 +308,34 @@ public class ConnectionBasedSqlTemplateImpl implements SqlTemplate {
 		}, args);
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	public LongHashSet queryForLongSet(String sql, Object... args) {
+		LongHashSet set = new LongHashSet();
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY);
+			ps.setFetchSize(DBUtils.getStreamingFetchSize(connection));
+			bindParamsToPreparedStatement(ps, args);
+			rs = ps.executeQuery();
+			while (rs.next()) {
+				long value = rs.getLong(FIRST_COLUMN_INDEX);
+				if (!rs.wasNull()) {
+					set.add(value);
+				}
+			}
+		} catch (SQLException e) {
+			throw createUncheckedException(sql, args, e);
+		} finally {
+			closeDbObject(rs);
+			closeDbObject(ps);
+		}
+		return set;
+	}
+
   /**
    * {@inheritDoc}
    */
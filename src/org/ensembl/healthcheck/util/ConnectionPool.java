@@ -1,12 +1,12 @@
 /*
  * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
- * 
+ *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
  * You may obtain a copy of the License at
- * 
+ *
  *      http://www.apache.org/licenses/LICENSE-2.0
- * 
+ *
  * Unless required by applicable law or agreed to in writing, software
  * distributed under the License is distributed on an "AS IS" BASIS,
  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
@@ -22,32 +22,159 @@ import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.ensembl.healthcheck.TestMetrics;
+
 /**
+ * <p>
  * Implements connection pooling.
+ * </p>
+ *
+ * <p>
+ * Several connections can be open to the same database URL. Connections are
+ * either borrowed explicitly with {@link #borrowConnection} and handed back
+ * with {@link #returnConnection}, or obtained with {@link #getConnection}.
+ * The latter is what most of the code uses: it returns a connection that is
+ * pinned to the calling thread, so repeated calls from the same thread get
+ * the same connection and no two threads ever share one. Pinned connections
+ * stay with their thread until {@link #endScope} or {@link #closeAll} is
+ * called.
+ * </p>
+ *
+ * <p>
+ * The pool is configured with system properties:
+ * </p>
+ * <ul>
+ * <li>connection.pool.max.per.server - maximum number of open connections to
+ * one server (host and port), 0 for no limit. Default 0.</li>
+ * <li>connection.pool.max.idle.seconds - idle connections older than this are
+ * closed. Default 600. Whenever a connection is borrowed or returned, the
+ * idle connections to all databases are checked, at most once a minute (or
+ * once every max.idle.seconds if that is shorter).</li>
+ * <li>connection.pool.max.lifetime.seconds - connections older than this are
+ * closed instead of being reused. Default 3600.</li>
+ * <li>connection.pool.wait.seconds - how long to wait for a free connection
+ * when the per server limit has been reached. Default 300.</li>
+ * <li>connection.pool.validation.interval.seconds - a connection is only
+ * checked before it is handed out if it has not been handed out for this many
+ * seconds. Default 30.</li>
+ * </ul>
  */
 public final class ConnectionPool {
 
     /** The logger to use for this class */
     private static Logger logger = Logger.getLogger("HealthCheckLogger");
 
-    // store connections; key = database URL (as String), Connection object
-    private static Map<String, Connection> pool = new HashMap<String, Connection>();
+    public static final String MAX_PER_SERVER = "connection.pool.max.per.server";
+
+    public static final String MAX_IDLE_SECONDS = "connection.pool.max.idle.seconds";
+
+    public static final String MAX_LIFETIME_SECONDS = "connection.pool.max.lifetime.seconds";
+
+    public static final String WAIT_SECONDS = "connection.pool.wait.seconds";
+
+    public static final String VALIDATION_INTERVAL_SECONDS = "connection.pool.validation.interval.seconds";
+
+    /** Seconds to wait for a reply when checking a connection. */
+    private static final int VALIDATION_TIMEOUT = 5;
+
+    private static final long MAX_EVICTION_INTERVAL = 60 * 1000;
+
+    // when evictIdleConnections was last run by evictIfDue
+    private static final AtomicLong lastEviction = new AtomicLong(System.currentTimeMillis());
+
+    private static final AtomicLong validationsPerformed = new AtomicLong();
+
+    private static final AtomicLong validationsSkipped = new AtomicLong();
+
+    private static final AtomicLong validationsFailed = new AtomicLong();
+
+    /**
+     * A connection together with the bookkeeping the pool needs for it.
+     */
+    private static class PooledConnection {
+
+        final Connection connection;
+        final String databaseURL;
+        final String serverKey;
+        final long created;
+        volatile long lastUsed;
+
+        PooledConnection(Connection connection, String databaseURL, String serverKey) {
+            this.connection = connection;
+            this.databaseURL = databaseURL;
+            this.serverKey = serverKey;
+            this.created = System.currentTimeMillis();
+            this.lastUsed = created;
+        }
+
+        boolean isExpired(long now, long maxIdleMillis, long maxLifetimeMillis) {
+            return (maxIdleMillis > 0 && now - lastUsed > maxIdleMillis)
+                || (maxLifetimeMillis > 0 && now - created > maxLifetimeMillis);
+        }
+    }
+
+    /**
+     * A connection pinned to a thread and the scope it was pinned in.
+     */
+    private static class Pin {
+
+        final PooledConnection pooled;
+        final int scope;
+
+        Pin(PooledConnection pooled, int scope) {
+            this.pooled = pooled;
+            this.scope = scope;
+        }
+    }
+
+    // idle connections; key = database URL
+    private static final ConcurrentHashMap<String, ConcurrentLinkedQueue<PooledConnection>> idle = new ConcurrentHashMap<String, ConcurrentLinkedQueue<PooledConnection>>();
+
+    // every connection opened by the pool that has not been closed yet
+    private static final ConcurrentHashMap<Connection, PooledConnection> open = new ConcurrentHashMap<Connection, PooledConnection>();
+
+    // limits the number of open connections; key = server part of the URL
+    private static final ConcurrentHashMap<String, Semaphore> serverPermits = new ConcurrentHashMap<String, Semaphore>();
+
+    // connections pinned to the current thread; key = database URL
+    private static final ThreadLocal<Map<String, Pin>> pinned = new ThreadLocal<Map<String, Pin>>() {
+        protected Map<String, Pin> initialValue() {
+            return new HashMap<String, Pin>();
+        }
+    };
+
+    private static final ThreadLocal<Integer> currentScope = new ThreadLocal<Integer>() {
+        protected Integer initialValue() {
+            return 0;
+        }
+    };
+
+    // databases asked for on the current thread since startRecording
+    private static final ThreadLocal<Set<String>> recorded = new ThreadLocal<Set<String>>();
 
     // hide constructor to stop people instantiating this
     private ConnectionPool() { }
-    
+
     /**
-     * Get a connection from the pool. If a connection to this database already
-     * exists in the pool, it is returned. If not, it is created and added to
-     * the pool.
-     * 
+     * Get a connection from the pool. If the calling thread already has a
+     * connection to this database, it is returned. If not, one is borrowed
+     * from the pool (or created) and pinned to the calling thread.
+     *
      * @return A new connection, or one re-used from the pool.
      * @param driverClassName
      *          The class of the JDBC driver.
@@ -57,27 +184,476 @@ public final class ConnectionPool {
      *          The username to connect to the database with.
      * @param password
      *          The password for username.
-     * @throws ClassNotFoundException 
-     * @throws SQLException 
+     * @throws SQLException
      */
     public static Connection getConnection(String driverClassName, String databaseURL, String user, String password) throws SQLException {
 
-        Connection con = null;
+        record(databaseURL);
 
-        if (pool.containsKey(databaseURL)) {
+        Map<String, Pin> pins = pinned.get();
+        Pin pin = pins.get(databaseURL);
 
-		logger.finest("Got connection to " + databaseURL + " from pool");
-		con = getConnectionFromPool(driverClassName, databaseURL, user, password);
-		// mnuhn: Turn off connection pooling, see if this fixes the problems we are having.
-		//
-		//con = getConnectionByClassloader(driverClassName, databaseURL, user, password);
+        if (pin != null) {
 
-        } else {
+            PooledConnection pooled = pin.pooled;
+            if (open.containsKey(pooled.connection) && !pooled.connection.isClosed() && validateIfIdle(pooled)) {
+                logger.finest("Got connection to " + databaseURL + " from pool");
+                pooled.lastUsed = System.currentTimeMillis();
+                return pooled.connection;
+            }
+
+            // closed behind our back, e.g. by DBUtils.closeQuietly, or timed
+            // out on the server
+            pins.remove(databaseURL);
+            discard(pooled);
+
+        }
+
+        PooledConnection pooled = borrow(driverClassName, databaseURL, user, password);
+        pins.put(databaseURL, new Pin(pooled, currentScope.get()));
+
+        return pooled.connection;
+    }
+
+    // -------------------------------------------------------------------------
+    /**
+     * Borrow a connection for the exclusive use of the caller. It must be
+     * handed back with {@link #returnConnection} when it is no longer needed.
+     *
+     * @return A connection that is not used by anyone else.
+     * @throws SQLException
+     *           If no connection could be made, or none became available
+     *           within connection.pool.wait.seconds.
+     */
+    public static Connection borrowConnection(String driverClassName, String databaseURL, String user, String password) throws SQLException {
+
+        record(databaseURL);
+
+        return borrow(driverClassName, databaseURL, user, password).connection;
+
+    }
+
+    /**
+     * Hand a borrowed connection back to the pool. Connections which are
+     * closed, too old or not from this pool are closed and forgotten.
+     *
+     * @param con
+     *          The connection to return.
+     */
+    public static void returnConnection(Connection con) {
+
+        if (con == null) {
+            return;
+        }
+
+        PooledConnection pooled = open.get(con);
+
+        if (pooled == null) {
+            DBUtils.closeQuietly(con);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        boolean closed;
+        try {
+            closed = con.isClosed();
+        } catch (SQLException e) {
+            closed = true;
+        }
+
+        if (closed || pooled.isExpired(now, 0, getMillis(MAX_LIFETIME_SECONDS, 3600))) {
+            discard(pooled);
+            return;
+        }
+
+        pooled.lastUsed = now;
+        idleQueue(pooled.databaseURL).add(pooled);
+
+        evictIfDue(now);
+
+    }
+
+    // -------------------------------------------------------------------------
+    /**
+     * Start a new scope on the calling thread. Connections pinned by
+     * {@link #getConnection} from now on are returned to the pool by the
+     * matching call to {@link #endScope}. Connections pinned before are not
+     * affected.
+     *
+     * @return The scope to pass to {@link #endScope}.
+     */
+    public static int beginScope() {
+
+        int scope = currentScope.get() + 1;
+        currentScope.set(scope);
+        return scope;
+
+    }
+
+    /**
+     * Return all connections that were pinned to the calling thread in scope
+     * (or in scopes nested inside it) to the pool.
+     *
+     * @param scope
+     *          A value returned by {@link #beginScope}.
+     */
+    public static void endScope(int scope) {
+
+        Iterator<Pin> it = pinned.get().values().iterator();
+        while (it.hasNext()) {
+            Pin pin = it.next();
+            if (pin.scope >= scope) {
+                it.remove();
+                returnConnection(pin.pooled.connection);
+            }
+        }
+
+        currentScope.set(scope - 1);
+
+    }
+
+    // -------------------------------------------------------------------------
+    /**
+     * Start remembering the URLs of all databases the calling thread gets a
+     * connection to.
+     */
+    public static void startRecording() {
+
+        recorded.set(new HashSet<String>());
+
+    }
+
+    /**
+     * Stop remembering database URLs on the calling thread.
+     *
+     * @return The URLs of the databases connected to since
+     *         {@link #startRecording}.
+     */
+    public static Set<String> stopRecording() {
+
+        Set<String> urls = recorded.get();
+        recorded.remove();
+        return urls == null ? new HashSet<String>() : urls;
+
+    }
+
+    private static void record(String databaseURL) {
+
+        Set<String> urls = recorded.get();
+        if (urls != null) {
+            urls.add(databaseURL);
+        }
+
+    }
+
+    // -------------------------------------------------------------------------
+
+    private static PooledConnection borrow(String driverClassName, String databaseURL, String user, String password) throws SQLException {
+
+        long now = System.currentTimeMillis();
+        long maxIdle = getMillis(MAX_IDLE_SECONDS, 600);
+        long maxLifetime = getMillis(MAX_LIFETIME_SECONDS, 3600);
+
+        evictIfDue(now);
+
+        ConcurrentLinkedQueue<PooledConnection> queue = idleQueue(databaseURL);
+        PooledConnection pooled;
+
+        while ((pooled = queue.poll()) != null) {
+
+            if (pooled.isExpired(now, maxIdle, maxLifetime) || pooled.connection.isClosed() || !validateIfIdle(pooled)) {
+                discard(pooled);
+                continue;
+            }
+
+            pooled.lastUsed = now;
+            return pooled;
+
+        }
+
+        String serverKey = getServerKey(databaseURL);
+        acquirePermit(serverKey);
+
+        Connection con;
+        try {
+            con = getConnectionByClassloader(driverClassName, databaseURL, user, password);
+            if (TestMetrics.isJdbcEnabled() || SqlTrace.isEnabled()) {
+                con = MonitoredConnection.wrap(con);
+            }
+        } catch (SQLException e) {
+            releasePermit(serverKey);
+            throw e;
+        } catch (RuntimeException e) {
+            releasePermit(serverKey);
+            throw e;
+        }
+
+        pooled = new PooledConnection(con, databaseURL, serverKey);
+        open.put(con, pooled);
+        logger.finest("Added connection to " + databaseURL + " to pool");
+
+        return pooled;
+
+    }
+
+    private static void acquirePermit(String serverKey) throws SQLException {
+
+        Semaphore permit = getPermit(serverKey);
+        if (permit == null) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        long deadline = start + getMillis(WAIT_SECONDS, 300);
+
+        try {
+
+            while (!permit.tryAcquire()) {
 
-        	con = getConnectionByClassloader(driverClassName, databaseURL, user, password);
+                // make room by closing a connection nobody is using
+                if (closeOneIdle(serverKey)) {
+                    continue;
+                }
+
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new SQLException("Timed out waiting for a free connection to " + serverKey
+                        + " (" + MAX_PER_SERVER + "=" + System.getProperty(MAX_PER_SERVER) + ")");
+                }
+                if (permit.tryAcquire(Math.min(remaining, 250), TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection to " + serverKey);
+        } finally {
+            TestMetrics.addConnectionWait(System.currentTimeMillis() - start);
+        }
+
+    }
+
+    private static void releasePermit(String serverKey) {
+
+        Semaphore permit = serverPermits.get(serverKey);
+        if (permit != null) {
+            permit.release();
+        }
+
+    }
+
+    private static Semaphore getPermit(String serverKey) {
+
+        int maxPerServer = Integer.parseInt(System.getProperty(MAX_PER_SERVER, "0"));
+        if (maxPerServer < 1) {
+            return null;
+        }
+
+        Semaphore permit = serverPermits.get(serverKey);
+        if (permit == null) {
+            serverPermits.putIfAbsent(serverKey, new Semaphore(maxPerServer, true));
+            permit = serverPermits.get(serverKey);
+        }
+        return permit;
+
+    }
+
+    private static boolean closeOneIdle(String serverKey) {
+
+        for (ConcurrentLinkedQueue<PooledConnection> queue : idle.values()) {
+            for (PooledConnection pooled : queue) {
+                if (pooled.serverKey.equals(serverKey) && queue.remove(pooled)) {
+                    discard(pooled);
+                    return true;
+                }
+            }
+        }
+        return false;
+
+    }
+
+    private static void discard(PooledConnection pooled) {
+
+        if (open.remove(pooled.connection) != null) {
+            releasePermit(pooled.serverKey);
+        }
+        DBUtils.closeQuietly(pooled.connection);
+
+    }
+
+    private static ConcurrentLinkedQueue<PooledConnection> idleQueue(String databaseURL) {
+
+        ConcurrentLinkedQueue<PooledConnection> queue = idle.get(databaseURL);
+        if (queue == null) {
+            idle.putIfAbsent(databaseURL, new ConcurrentLinkedQueue<PooledConnection>());
+            queue = idle.get(databaseURL);
+        }
+        return queue;
+
+    }
+
+    /**
+     * The part of a JDBC URL identifying the server, e.g.
+     * jdbc:mysql://host:3306/ for jdbc:mysql://host:3306/homo_sapiens_core_75_37
+     */
+    static String getServerKey(String databaseURL) {
+
+        int hostStart = databaseURL.indexOf("//");
+        if (hostStart == -1) {
+            return databaseURL;
         }
-        
-        return con;
+        int slash = databaseURL.indexOf('/', hostStart + 2);
+        return slash == -1 ? databaseURL : databaseURL.substring(0, slash + 1);
+
+    }
+
+    private static long getMillis(String property, long defaultSeconds) {
+
+        return Long.parseLong(System.getProperty(property, Long.toString(defaultSeconds))) * 1000;
+
+    }
+
+    // -------------------------------------------------------------------------
+    /**
+     * Close idle connections which have been idle for longer than
+     * connection.pool.max.idle.seconds or are older than
+     * connection.pool.max.lifetime.seconds.
+     *
+     * @return The number of connections closed.
+     */
+    public static int evictIdleConnections() {
+
+        long now = System.currentTimeMillis();
+        long maxIdle = getMillis(MAX_IDLE_SECONDS, 600);
+        long maxLifetime = getMillis(MAX_LIFETIME_SECONDS, 3600);
+        int evicted = 0;
+
+        for (ConcurrentLinkedQueue<PooledConnection> queue : idle.values()) {
+            for (PooledConnection pooled : queue) {
+                if (pooled.isExpired(now, maxIdle, maxLifetime) && queue.remove(pooled)) {
+                    discard(pooled);
+                    evicted++;
+                }
+            }
+        }
+
+        return evicted;
+
+    }
+
+    /**
+     * Run {@link #evictIdleConnections} if it hasn't been run for a while, so
+     * that connections to databases which are not used again are closed by
+     * us rather than timed out by the server. Only one thread does it.
+     */
+    private static void evictIfDue(long now) {
+
+        long maxIdle = getMillis(MAX_IDLE_SECONDS, 600);
+        long interval = maxIdle > 0 ? Math.min(maxIdle, MAX_EVICTION_INTERVAL) : MAX_EVICTION_INTERVAL;
+        long last = lastEviction.get();
+
+        if (now - last >= interval && lastEviction.compareAndSet(last, now)) {
+            int evicted = evictIdleConnections();
+            if (evicted > 0) {
+                logger.fine("Closed " + evicted + " idle connections");
+            }
+        }
+
+    }
+
+    /**
+     * @return The number of connections currently open, idle or in use.
+     */
+    public static int getOpenConnectionCount() {
+
+        return open.size();
+
+    }
+
+    /**
+     * @return The number of idle connections waiting to be reused.
+     */
+    public static int getIdleConnectionCount() {
+
+        int count = 0;
+        for (ConcurrentLinkedQueue<PooledConnection> queue : idle.values()) {
+            count += queue.size();
+        }
+        return count;
+
+    }
+
+    // -------------------------------------------------------------------------
+    /**
+     * Check a connection before handing it out, but only if it has not been
+     * handed out for connection.pool.validation.interval.seconds. Connections
+     * in constant use are not checked at all, which saves a round trip to the
+     * server every time a test asks for its connection.
+     */
+    private static boolean validateIfIdle(PooledConnection pooled) {
+
+        if (System.currentTimeMillis() - pooled.lastUsed < getMillis(VALIDATION_INTERVAL_SECONDS, 30)) {
+            validationsSkipped.incrementAndGet();
+            return true;
+        }
+
+        validationsPerformed.incrementAndGet();
+
+        boolean valid;
+        try {
+
+            valid = pooled.connection.isValid(VALIDATION_TIMEOUT);
+
+        } catch (AbstractMethodError e) {
+
+            // pre JDBC 4 driver
+            logger.finest("Connection object does not implement \"isValid()\" call. Using manual implementation");
+            valid = isValidConnection(pooled.connection);
+
+        } catch (SQLException e) {
+
+            valid = false;
+
+        }
+
+        if (!valid) {
+            validationsFailed.incrementAndGet();
+            logger.warning("Connection to " + pooled.databaseURL + " in pool was invalid. Creating again from scratch.");
+        }
+
+        return valid;
+
+    }
+
+    /**
+     * @return The number of times a connection was checked before being
+     *         handed out.
+     */
+    public static long getValidationsPerformed() {
+
+        return validationsPerformed.get();
+
+    }
+
+    /**
+     * @return The number of times a connection was handed out without being
+     *         checked, because it had been used recently.
+     */
+    public static long getValidationsSkipped() {
+
+        return validationsSkipped.get();
+
+    }
+
+    /**
+     * @return The number of checks that found a broken connection.
+     */
+    public static long getValidationsFailed() {
+
+        return validationsFailed.get();
+
     }
 
   public static boolean isValidConnection(Connection con) {
@@ -129,49 +705,42 @@ public final class ConnectionPool {
       DBUtils.closeQuietly(rs);
       DBUtils.closeQuietly(stmt);
     }
-		
-	  if(valid) 
+
+	  if(valid)
 	    logger.fine("Connection is valid");
-		  
+
   	return valid;
   }
- 
-    public static Connection getConnectionFromPool(String driverClassName, String databaseURL, String user, String password) throws SQLException {
-    	
-        Connection con = (Connection) pool.get(databaseURL);
-        
-        boolean connectionIsValid;
 
-        if (con.isClosed()) {
-        	con = getConnectionByClassloader(driverClassName, databaseURL, user, password);
-        	return con;
+    /**
+     * Close a connection that has been found to be broken and forget about
+     * it, so the next request for the same database gets a new one.
+     *
+     * @param con
+     *          The broken connection.
+     */
+    public static void invalidate(Connection con) {
+
+        PooledConnection pooled = open.get(con);
+
+        if (pooled != null) {
+            Pin pin = pinned.get().get(pooled.databaseURL);
+            if (pin != null && pin.pooled == pooled) {
+                pinned.get().remove(pooled.databaseURL);
+            }
+            discard(pooled);
+        } else {
+            DBUtils.closeQuietly(con);
         }
 
-        try {
-        	
-        	// Currently throws a java.lang.AbstractMethodError, but maybe
-        	// someday this will work.
-        	//
-        	connectionIsValid = con.isValid(5000);
-        	
-        } catch(java.lang.AbstractMethodError e) {
-        	
-        	logger.finest("Connection object does not implement \"isValid()\" call. Using manual implementation");
-        	connectionIsValid = isValidConnection(con);
-        }
-        if (!connectionIsValid) {
-        	
-        	logger.warning("Connection in pool was invalid. Creating again from scratch.");
-        	con = getConnectionByClassloader(driverClassName, databaseURL, user, password); 
-        }
-        return con;
-    }
-    
+    }
+
+    /**
+     * Open a new connection that is not managed by the pool.
+     */
     public static Connection getConnectionByClassloader(String driverClassName, String databaseURL, String user, String password) throws SQLException {
 
-    	Connection con = null;
-    	
-        // create a connection and add it to the pool
+        // create a connection
         try {
 
             Class.forName(driverClassName);
@@ -182,27 +751,21 @@ public final class ConnectionPool {
             throw new RuntimeException(e);
 
         }
-       	con = DriverManager.getConnection(databaseURL, user, password);
-        pool.put(databaseURL, con);
-        logger.finest("Added connection to " + databaseURL + " to pool");
-    	
-    	return con;
+        return DriverManager.getConnection(databaseURL, user, password);
     }
 
     // -------------------------------------------------------------------------
     /**
-     * Close all the connections in the pool.
+     * Close all the connections in the pool, including the ones in use.
      */
     public static void closeAll() {
 
-        Set<String> keys = pool.keySet();
-        Iterator<String> it = keys.iterator();
+        List<PooledConnection> all = new ArrayList<PooledConnection>(open.values());
 
-        while (it.hasNext()) {
+        for (PooledConnection pooled : all) {
             try {
 
-                Connection con = (Connection) pool.get(it.next());
-                con.close();
+                discard(pooled);
 
             } catch (Exception e) {
 
@@ -211,6 +774,14 @@ public final class ConnectionPool {
             }
         }
 
+        logger.fine("Connection validations: " + validationsPerformed.get() + " performed, "
+            + validationsSkipped.get() + " skipped, " + validationsFailed.get() + " failed");
+
+        idle.clear();
+        serverPermits.clear();
+        pinned.get().clear();
+        currentScope.set(0);
+
     } // closeAll
 
 } // ConnectionPool
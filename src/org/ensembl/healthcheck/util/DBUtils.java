@@ -310,64 +310,20 @@ public final class DBUtils {
 	public static boolean checkSameSQLResult(EnsTestCase test, String sql,
 			String regexp, boolean comparingSchema) {
 
-		ArrayList<ResultSet> resultSetGroup = new ArrayList<ResultSet>();
-		ArrayList<Statement> statements = new ArrayList<Statement>();
-
-		try {
-
-			DatabaseRegistry mainDatabaseRegistry = DBUtils
-					.getMainDatabaseRegistry();
-
-			for (DatabaseRegistryEntry dbre : mainDatabaseRegistry
-					.getMatching(regexp)) {
-
-				Connection con = dbre.getConnection();
-				Statement stmt = null;
-				ResultSet rs = null;
-				try {
-					stmt = con.createStatement();
-					rs = stmt.executeQuery(sql);
-					if (rs != null) {
-						resultSetGroup.add(rs);
-					}
-					logger.fine("Added ResultSet for "
-							+ DBUtils.getShortDatabaseName(con) + ": " + sql);
-					// note that the Statement can't be closed here as we use
-					// the
-					// ResultSet elsewhere so store a reference to it for
-					// closing
-					// later
-					statements.add(stmt);
-
-				} catch (Exception e) {
-					throw new SqlUncheckedException(
-							"Could not check same SQL results", e);
-				} finally {
-					closeQuietly(rs);
-					closeQuietly(stmt);
-				}
-			}
-
-			logger.finest("Number of ResultSets to compare: "
-					+ resultSetGroup.size());
-			return DBUtils.compareResultSetGroup(resultSetGroup, test,
-					comparingSchema);
-
-		} finally {
-			for (ResultSet rs : resultSetGroup) {
-				closeQuietly(rs);
-			}
-			for (Statement s : statements) {
-				closeQuietly(s);
-			}
-		}
+		List<DatabaseRegistryEntry> databases = DBUtils
+				.getMainDatabaseRegistry().getMatching(regexp);
+		return checkSameSQLResult(test, sql,
+				databases.toArray(new DatabaseRegistryEntry[databases.size()]),
+				comparingSchema);
 
 	} // checkSameSQLResult
 
 	// -------------------------------------------------------------------------
 	/**
 	 * Check that a particular SQL statement has the same result when executed
-	 * on more than one database.
+	 * on more than one database. Databases whose result differs from the most
+	 * common one are reported against a database with that result; see
+	 * {@link SqlResultComparator}.
 	 * 
 	 * @return True if all matched databases provide the same result, false
 	 *         otherwise.
@@ -379,48 +335,9 @@ public final class DBUtils {
 	public static boolean checkSameSQLResult(EnsTestCase test, String sql,
 			DatabaseRegistryEntry[] databases, boolean comparingSchema) {
 
-		List<ResultSet> resultSetGroup = new ArrayList<ResultSet>();
-		List<Statement> statements = new ArrayList<Statement>();
-		try {
-
-			for (int i = 0; i < databases.length; i++) {
-
-				Connection con = databases[i].getConnection();
-				Statement stmt = null;
-				ResultSet rs = null;
-				try {
-					stmt = con.createStatement();
-					rs = stmt.executeQuery(sql);
-					if (rs != null) {
-						resultSetGroup.add(rs);
-					}
-					logger.fine("Added ResultSet for "
-							+ DBUtils.getShortDatabaseName(con) + ": " + sql);
-					statements.add(stmt);
-				} catch (Exception e) {
-					DBUtils.closeQuietly(rs);
-					DBUtils.closeQuietly(stmt);
-					throw new SqlUncheckedException(
-							"Could not check same SQL results", e);
-
-				}
-			}
-
-			logger.finest("Number of ResultSets to compare: "
-					+ resultSetGroup.size());
-			return DBUtils.compareResultSetGroup(resultSetGroup, test,
-					comparingSchema);
-		} catch (Exception e) {
-			throw new SqlUncheckedException("Could not check same SQL results",
-					e);
-		} finally {
-			for (ResultSet rs : resultSetGroup) {
-				DBUtils.closeQuietly(rs);
-			}
-			for (Statement s : statements) {
-				DBUtils.closeQuietly(s);
-			}
-		}
+		logger.finest("Number of databases to compare: " + databases.length);
+		return new SqlResultComparator(test, comparingSchema).compare(sql,
+				databases);
 
 	} // checkSameSQLResult
 
@@ -506,28 +423,39 @@ public final class DBUtils {
 			} // for column
 
 			// make sure both cursors are at the start of the ResultSet
-			// (default is before the start)
-			rs1.beforeFirst();
-			rs2.beforeFirst();
+			// (default is before the start); streamed ones can't be rewound
+			if (rs1.getType() != ResultSet.TYPE_FORWARD_ONLY) {
+				rs1.beforeFirst();
+			}
+			if (rs2.getType() != ResultSet.TYPE_FORWARD_ONLY) {
+				rs2.beforeFirst();
+			}
 			// if quick checks didn't cause return, try comparing row-wise
 
 			int row = 1;
 			while (rs1.next()) {
 
 				if (rs2.next()) {
-                                        String str = name1 + " and " + name2 + text + " " + singleTableName + " with columns ";
 					for (int j = 0; j < columns.length; j++) {
 						int i = columns[j];
-                                                str += rsmd1.getColumnName(i) + " " + Utils.truncate(rs1.getString(i), 250, true) + ", ";
 						// note columns indexed from 1
 						if (!compareColumns(rs1, rs2, i, warnNull)) {
-							str +=  " differ for values "
-									+ Utils.truncate(rs1.getString(i), 250,
-											true)
-									+ ", "
-									+ Utils.truncate(rs2.getString(i), 250,
-											true);
 							if (reportErrors) {
+								String str = name1 + " and " + name2 + text + " "
+										+ singleTableName + " with columns ";
+								for (int k = 0; k <= j; k++) {
+									str += rsmd1.getColumnName(columns[k])
+											+ " "
+											+ Utils.truncate(
+													rs1.getString(columns[k]),
+													250, true) + ", ";
+								}
+								str += " differ for values "
+										+ Utils.truncate(rs1.getString(i), 250,
+												true)
+										+ ", "
+										+ Utils.truncate(rs2.getString(i), 250,
+												true);
 								ReportManager.problem(testCase, name1, str);
 							}
 							return false;
@@ -1359,6 +1287,18 @@ public final class DBUtils {
 
 	}
 
+	/**
+	 * @return The fetch size which makes the driver of con stream the rows of
+	 *         a forward only, read only statement instead of reading them all
+	 *         first. The MySQL driver only does so for Integer.MIN_VALUE,
+	 *         which other drivers reject.
+	 */
+	public static int getStreamingFetchSize(Connection con) throws SQLException {
+		String url = con.getMetaData().getURL();
+		return url != null && url.startsWith("jdbc:mysql") ? Integer.MIN_VALUE
+				: 1000;
+	}
+
 	public static void closeQuietly(ResultSet rs) {
 		if (rs != null) {
 			try {
@@ -0,0 +1,238 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * A set of longs kept in a single array with open addressing, for holding
+ * large numbers of IDs (seq_region_id, gene_id, member_id etc.) without
+ * boxing each of them. A set of a million IDs takes 16MB at most, against
+ * about 60MB for a HashSet&lt;Integer&gt;.
+ * </p>
+ *
+ * <p>
+ * Fill it from a query with {@link SqlTemplate#queryForLongSet}. Not thread
+ * safe.
+ * </p>
+ */
+public class LongHashSet {
+
+	// marks an empty slot; 0 itself is tracked by hasZero
+	private static final long EMPTY = 0L;
+
+	private static final int MIN_CAPACITY = 16;
+
+	// the largest power of two an array can have
+	private static final int MAX_CAPACITY = 1 << 30;
+
+	private long[] slots;
+
+	private boolean hasZero = false;
+
+	private int size = 0;
+
+	public LongHashSet() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * @param expected
+	 *            Number of values the set should hold without growing. Row
+	 *            count estimates can be passed as they are: the initial size
+	 *            is capped, and the set grows if the estimate was too low.
+	 */
+	public LongHashSet(int expected) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < MAX_CAPACITY && (long) capacity * 3 / 4 < expected) {
+			capacity <<= 1;
+		}
+		slots = new long[capacity];
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * @return true if value was not already in the set.
+	 */
+	public boolean add(long value) {
+
+		if (value == EMPTY) {
+			if (hasZero) {
+				return false;
+			}
+			hasZero = true;
+			size++;
+			return true;
+		}
+
+		int i = find(slots, value);
+		if (slots[i] == value) {
+			return false;
+		}
+		slots[i] = value;
+		size++;
+		if (size > (long) slots.length * 3 / 4) {
+			grow();
+		}
+		return true;
+
+	}
+
+	public void addAll(LongHashSet other) {
+		if (other.hasZero) {
+			add(EMPTY);
+		}
+		for (long value : other.slots) {
+			if (value != EMPTY) {
+				add(value);
+			}
+		}
+	}
+
+	public boolean contains(long value) {
+		if (value == EMPTY) {
+			return hasZero;
+		}
+		return slots[find(slots, value)] == value;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * @return A new set with the values of this set which are not in other,
+	 *         e.g. the orphans of a foreign key if this set holds the
+	 *         referencing IDs and other the referenced ones.
+	 */
+	public LongHashSet difference(LongHashSet other) {
+		LongHashSet result = new LongHashSet();
+		if (hasZero && !other.hasZero) {
+			result.add(EMPTY);
+		}
+		for (long value : slots) {
+			if (value != EMPTY && !other.contains(value)) {
+				result.add(value);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return A new set with the values which are in both sets.
+	 */
+	public LongHashSet intersection(LongHashSet other) {
+		if (other.size < size) {
+			return other.intersection(this);
+		}
+		LongHashSet result = new LongHashSet();
+		if (hasZero && other.hasZero) {
+			result.add(EMPTY);
+		}
+		for (long value : slots) {
+			if (value != EMPTY && other.contains(value)) {
+				result.add(value);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return The number of values of this set which are not in other,
+	 *         without building the difference.
+	 */
+	public int countNotIn(LongHashSet other) {
+		int count = hasZero && !other.hasZero ? 1 : 0;
+		for (long value : slots) {
+			if (value != EMPTY && !other.contains(value)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return The values in ascending order.
+	 */
+	public long[] toArray() {
+		long[] values = new long[size];
+		int n = 0;
+		if (hasZero) {
+			values[n++] = EMPTY;
+		}
+		for (long value : slots) {
+			if (value != EMPTY) {
+				values[n++] = value;
+			}
+		}
+		Arrays.sort(values);
+		return values;
+	}
+
+	/**
+	 * @return The approximate number of bytes used by the set.
+	 */
+	public long getMemoryUsage() {
+		// array header and the fields of the set
+		return 16L + 8L * slots.length + 32L;
+	}
+
+	public String toString() {
+		return "LongHashSet[size=" + size + ", bytes=" + getMemoryUsage() + "]";
+	}
+
+	// -------------------------------------------------------------------------
+
+	private void grow() {
+		if (slots.length >= MAX_CAPACITY) {
+			throw new IllegalStateException("Cannot hold more than " + size + " values");
+		}
+		long[] old = slots;
+		slots = new long[old.length * 2];
+		for (long value : old) {
+			if (value != EMPTY) {
+				slots[find(slots, value)] = value;
+			}
+		}
+	}
+
+	/**
+	 * @return The slot holding value, or the empty slot it should go in.
+	 */
+	private static int find(long[] slots, long value) {
+		int mask = slots.length - 1;
+		int i = hash(value) & mask;
+		while (slots[i] != EMPTY && slots[i] != value) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private static int hash(long value) {
+		// spread sequential IDs over the table (from MurmurHash3's finalizer)
+		long h = value * 0xff51afd7ed558ccdL;
+		h ^= h >>> 32;
+		return (int) h;
+	}
+
+} // LongHashSet
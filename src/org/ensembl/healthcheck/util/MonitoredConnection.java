@@ -0,0 +1,324 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ensembl.healthcheck.TestMetrics;
+
+/**
+ * <p>
+ * Wraps a JDBC connection so that the statements it executes, the rows
+ * fetched from their results and the size of the values read are added to
+ * the {@link TestMetrics} of the test running on the calling thread, and the
+ * time spent executing each statement and fetching its rows is added to the
+ * {@link SqlTrace}.
+ * </p>
+ *
+ * <p>
+ * The connection, its statements and their result sets are replaced by
+ * dynamic proxies which pass every call on. Bytes read are the length of the
+ * strings and byte arrays read from result sets, with 8 counted for any
+ * other value, so they are an estimate of the data a test looks at rather
+ * than of the traffic from the server.
+ * </p>
+ *
+ * <p>
+ * EXPLAINs of slow statements are run on the wrapped connection once none of
+ * the statements created through the wrapper is open any more, so they never
+ * interrupt a result set which is still being read.
+ * </p>
+ */
+public class MonitoredConnection {
+
+	// hide constructor to stop instantiation
+	private MonitoredConnection() {
+
+	}
+
+	/**
+	 * @return A connection counting what is done with con.
+	 */
+	public static Connection wrap(Connection con) {
+
+		return (Connection) Proxy.newProxyInstance(MonitoredConnection.class.getClassLoader(), new Class<?>[] { Connection.class },
+				new ConnectionHandler(con));
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Passes calls on to the wrapped object. Proxies are only equal to
+	 * themselves.
+	 */
+	private abstract static class Handler implements InvocationHandler {
+
+		private final Object target;
+
+		Handler(Object target) {
+			this.target = target;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+			String name = method.getName();
+			if (name.equals("equals") && args != null && args.length == 1) {
+				return proxy == args[0];
+			}
+			if (name.equals("hashCode") && args == null) {
+				return System.identityHashCode(proxy);
+			}
+			return handle(proxy, method, args);
+
+		}
+
+		/**
+		 * @return The result of calling method on the wrapped object.
+		 */
+		Object call(Method method, Object[] args) throws Throwable {
+
+			try {
+				return method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+
+		}
+
+		/**
+		 * @return What the proxy returns for a call of method.
+		 */
+		abstract Object handle(Object proxy, Method method, Object[] args) throws Throwable;
+
+	}
+
+	private static class ConnectionHandler extends Handler {
+
+		private final Connection con;
+
+		// statements created through the proxy which have not been closed
+		private final AtomicInteger openStatements = new AtomicInteger();
+
+		ConnectionHandler(Connection con) {
+			super(con);
+			this.con = con;
+		}
+
+		/**
+		 * Run the EXPLAINs waiting for the connection if this was the last open
+		 * statement.
+		 */
+		void statementClosed() {
+
+			if (openStatements.decrementAndGet() == 0 && SqlTrace.isEnabled()) {
+				SqlTrace.explainPending(con);
+			}
+
+		}
+
+		Object handle(Object proxy, Method method, Object[] args) throws Throwable {
+
+			Object result = call(method, args);
+			if (result instanceof Statement) {
+				// Statement, PreparedStatement or CallableStatement
+				String sql = null;
+				if (method.getName().startsWith("prepare") && args != null && args[0] instanceof String) {
+					sql = (String) args[0];
+				}
+				openStatements.incrementAndGet();
+				return Proxy.newProxyInstance(MonitoredConnection.class.getClassLoader(), new Class<?>[] { method.getReturnType() },
+						new StatementHandler((Statement) result, (Connection) proxy, this, sql));
+			}
+			return result;
+
+		}
+
+	}
+
+	private static class StatementHandler extends Handler {
+
+		private final Connection connection;
+
+		// told when the statement is closed
+		private final ConnectionHandler owner;
+
+		// the SQL of a prepared or callable statement
+		private final String preparedSql;
+
+		private boolean closed = false;
+
+		// the last traced execution, finished when its result set or the
+		// statement is closed or the statement is executed again
+		private SqlTrace.Execution execution;
+
+		StatementHandler(Statement stmt, Connection connection, ConnectionHandler owner, String preparedSql) {
+			super(stmt);
+			this.connection = connection;
+			this.owner = owner;
+			this.preparedSql = preparedSql;
+		}
+
+		Object handle(Object proxy, Method method, Object[] args) throws Throwable {
+
+			String name = method.getName();
+			TestMetrics.Measurement measurement = TestMetrics.current();
+
+			if (name.startsWith("execute")) {
+				if (measurement != null) {
+					measurement.addStatement();
+				}
+				String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+				if (sql != null && SqlTrace.isEnabled()) {
+					return execute(proxy, method, args, measurement, sql);
+				}
+			}
+
+			Object result = call(method, args);
+			if (name.equals("close")) {
+				finish();
+				// close may be called more than once
+				if (!closed) {
+					closed = true;
+					owner.statementClosed();
+				}
+			}
+			if (result instanceof ResultSet) {
+				// from getResultSet after execute
+				return wrap(proxy, (ResultSet) result, measurement, execution);
+			}
+			if (result instanceof Connection) {
+				return connection;
+			}
+			return result;
+
+		}
+
+		private Object execute(Object proxy, Method method, Object[] args, TestMetrics.Measurement measurement, String sql)
+				throws Throwable {
+
+			finish();
+			execution = SqlTrace.start(sql, owner.con);
+
+			Object result;
+			long start = System.nanoTime();
+			try {
+				result = call(method, args);
+			} catch (Throwable e) {
+				execution.executed(System.nanoTime() - start);
+				finish();
+				throw e;
+			}
+			execution.executed(System.nanoTime() - start);
+
+			if (result instanceof ResultSet) {
+				return wrap(proxy, (ResultSet) result, measurement, execution);
+			}
+			if (!Boolean.TRUE.equals(result) || !method.getName().equals("execute")) {
+				// no result set to fetch
+				finish();
+			}
+			return result;
+
+		}
+
+		private void finish() {
+
+			if (execution != null) {
+				execution.finish();
+				execution = null;
+			}
+
+		}
+
+		private Object wrap(Object proxy, ResultSet rs, TestMetrics.Measurement measurement, SqlTrace.Execution execution) {
+
+			if (measurement == null && execution == null) {
+				return rs;
+			}
+			return Proxy.newProxyInstance(MonitoredConnection.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+					new ResultSetHandler(rs, (Statement) proxy, measurement, execution));
+
+		}
+
+	}
+
+	private static class ResultSetHandler extends Handler {
+
+		private final Statement statement;
+
+		// the test which executed the statement, even if another thread reads
+		// the result; may be null when only tracing
+		private final TestMetrics.Measurement measurement;
+
+		// null when not tracing
+		private final SqlTrace.Execution execution;
+
+		ResultSetHandler(ResultSet rs, Statement statement, TestMetrics.Measurement measurement, SqlTrace.Execution execution) {
+			super(rs);
+			this.statement = statement;
+			this.measurement = measurement;
+			this.execution = execution;
+		}
+
+		Object handle(Object proxy, Method method, Object[] args) throws Throwable {
+
+			String name = method.getName();
+
+			if (name.equals("next")) {
+				long start = System.nanoTime();
+				Object result = call(method, args);
+				boolean row = Boolean.TRUE.equals(result);
+				if (execution != null) {
+					execution.fetched(System.nanoTime() - start, row);
+				}
+				if (row && measurement != null) {
+					measurement.addRow();
+				}
+				return result;
+			}
+
+			Object result = call(method, args);
+			if (name.equals("close")) {
+				if (execution != null) {
+					execution.finish();
+				}
+			} else if (name.equals("getStatement")) {
+				return statement;
+			} else if (name.startsWith("get") && args != null && result != null && measurement != null) {
+				// a column value
+				if (result instanceof String) {
+					measurement.addBytes(((String) result).length());
+				} else if (result instanceof byte[]) {
+					measurement.addBytes(((byte[]) result).length);
+				} else {
+					measurement.addBytes(8);
+				}
+			}
+			return result;
+
+		}
+
+	}
+
+} // MonitoredConnection
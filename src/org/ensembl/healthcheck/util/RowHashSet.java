@@ -0,0 +1,175 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * A compact multiset of table rows. Each row is stored as a 64 bit hash of
+ * its column values in a sorted array of longs, so a table of a million rows
+ * takes about 8MB and looking a row up is a binary search.
+ * </p>
+ *
+ * <p>
+ * Rows are compared on the string values of their columns, which is stricter
+ * than comparing them in SQL (where for example string comparison usually
+ * ignores case). A row which is not found may therefore still have to be
+ * confirmed with a query.
+ * </p>
+ *
+ * <p>
+ * Call {@link #add(ResultSet)} for every row and then {@link #seal()} before
+ * looking rows up.
+ * </p>
+ */
+public class RowHashSet {
+
+	private long[] hashes = new long[1024];
+
+	private int size = 0;
+
+	private boolean sealed = false;
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Add the current row of rs.
+	 */
+	public void add(ResultSet rs) throws SQLException {
+
+		add(hashRow(rs));
+
+	}
+
+	public void add(long hash) {
+
+		if (sealed) {
+			throw new IllegalStateException("Can't add rows to a sealed RowHashSet");
+		}
+		if (size == hashes.length) {
+			hashes = Arrays.copyOf(hashes, hashes.length * 2);
+		}
+		hashes[size++] = hash;
+
+	}
+
+	/**
+	 * Sort the hashes. No more rows can be added afterwards.
+	 */
+	public void seal() {
+
+		hashes = Arrays.copyOf(hashes, size);
+		Arrays.sort(hashes);
+		sealed = true;
+
+	}
+
+	/**
+	 * @return The number of rows added.
+	 */
+	public int size() {
+
+		return size;
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * @return How many times the current row of rs was added.
+	 */
+	public int count(ResultSet rs) throws SQLException {
+
+		return count(hashRow(rs));
+
+	}
+
+	public int count(long hash) {
+
+		if (!sealed) {
+			throw new IllegalStateException("RowHashSet must be sealed before it is used");
+		}
+
+		int pos = Arrays.binarySearch(hashes, hash);
+		if (pos < 0) {
+			return 0;
+		}
+
+		int first = pos;
+		while (first > 0 && hashes[first - 1] == hash) {
+			first--;
+		}
+		int last = pos;
+		while (last < size - 1 && hashes[last + 1] == hash) {
+			last++;
+		}
+		return last - first + 1;
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * @return A 64 bit hash of the string values of all the columns of the
+	 *         current row of rs. Null values hash differently from empty
+	 *         strings.
+	 */
+	public static long hashRow(ResultSet rs) throws SQLException {
+
+		int numColumns = rs.getMetaData().getColumnCount();
+		String[] values = new String[numColumns];
+		for (int i = 0; i < numColumns; i++) {
+			values[i] = rs.getString(i + 1);
+		}
+		return hashValues(values);
+
+	}
+
+	public static long hashValues(String... values) {
+
+		try {
+
+			MessageDigest md = MessageDigest.getInstance("MD5");
+			for (String value : values) {
+				if (value == null) {
+					md.update((byte) 1);
+				} else {
+					md.update((byte) 0);
+					md.update(value.getBytes("UTF-8"));
+				}
+				md.update((byte) 0);
+			}
+
+			byte[] digest = md.digest();
+			long hash = 0;
+			for (int i = 0; i < 8; i++) {
+				hash = (hash << 8) | (digest[i] & 0xff);
+			}
+			return hash;
+
+		} catch (NoSuchAlgorithmException e) {
+			throw new UtilUncheckedException("MD5 is not available", e);
+		} catch (UnsupportedEncodingException e) {
+			throw new UtilUncheckedException("UTF-8 is not available", e);
+		}
+
+	}
+
+} // RowHashSet
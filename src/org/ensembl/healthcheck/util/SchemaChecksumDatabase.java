@@ -0,0 +1,248 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+import org.ensembl.healthcheck.DatabaseServer;
+
+/**
+ * <p>
+ * A {@link ChecksumDatabase} for the schema of a database. Instead of running
+ * CHECKSUM TABLE it reads the creation and update times and the options of all
+ * tables from information_schema.TABLES with a single query, which is enough
+ * to notice tables being added, dropped or altered. Checksums of a few tables
+ * can be added on top for engines which don't keep an update time.
+ * </p>
+ *
+ * <p>
+ * Next to the .chk file it keeps the {@link SchemaSnapshot} of the database
+ * and the tests it has passed a schema comparison in, so a database which has
+ * not changed since does not have to be compared again.
+ * </p>
+ *
+ * <p>
+ * Databases with the same name on different servers are kept apart: the files
+ * are stored in a directory named after the host and port of the server, and
+ * the server is stored in the files and checked when they are read, so files
+ * copied or shared between servers are not trusted.
+ * </p>
+ */
+public class SchemaChecksumDatabase extends ChecksumDatabase {
+
+	private static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	protected final static String TABLE_STATUS_SQL = "SELECT TABLE_NAME, CONCAT_WS('/', "
+			+ "IFNULL(CREATE_TIME,''), IFNULL(UPDATE_TIME,''), IFNULL(ENGINE,''), "
+			+ "IFNULL(TABLE_COLLATION,''), IFNULL(CREATE_OPTIONS,'')) "
+			+ "FROM information_schema.TABLES WHERE TABLE_SCHEMA=?";
+
+	/**
+	 * Key of the server in the stored checksums and verdicts. It starts with a
+	 * dot so it can be neither a table nor a test name.
+	 */
+	protected final static String SERVER_KEY = ".server";
+
+	protected final Connection con;
+	protected final String server;
+	protected final File snapshotFile;
+	protected final File verdictFile;
+
+	public SchemaChecksumDatabase(DatabaseRegistryEntry dbre, File directory) {
+		this(dbre, directory, Collections.<String> emptyList());
+	}
+
+	public SchemaChecksumDatabase(DatabaseRegistryEntry dbre, File directory,
+			Collection<String> tables) {
+		this(dbre.getConnection(), dbre.getDatabaseServer(), directory, tables);
+	}
+
+	private SchemaChecksumDatabase(Connection con, DatabaseServer server,
+			File directory, Collection<String> tables) {
+		super(DBUtils.getShortDatabaseName(con),
+				new ConnectionBasedSqlTemplateImpl(con), getServerDirectory(
+						directory, server), tables);
+		this.con = con;
+		this.server = server.getHost() + ":" + server.getPort();
+		File serverDirectory = getServerDirectory(directory, server);
+		this.snapshotFile = new File(serverDirectory, databaseName + ".schema");
+		this.verdictFile = new File(serverDirectory, databaseName + ".verdict");
+	}
+
+	private static File getServerDirectory(File directory, DatabaseServer server) {
+		return new File(directory, server.getHost() + "_" + server.getPort());
+	}
+
+	@Override
+	public Properties getChecksumFromDatabase() {
+		Properties dbSum = super.getChecksumFromDatabase();
+		dbSum.putAll(templ.queryForMap(TABLE_STATUS_SQL, TABLE_VALUE_MAPPER,
+				databaseName));
+		// checksums stored for another server never match
+		dbSum.setProperty(SERVER_KEY, server);
+		return dbSum;
+	}
+
+	/**
+	 * Returns the snapshot stored by the last run if no table has changed
+	 * since, otherwise reads the schema and stores it. Verdicts stored for an
+	 * earlier version of the schema are forgotten.
+	 */
+	public SchemaSnapshot getSnapshot() {
+
+		Properties current = getChecksumFromDatabase();
+
+		if (!isUpdated(current) && snapshotFile.exists()) {
+			SchemaSnapshot snapshot = readSnapshot();
+			if (snapshot != null) {
+				return snapshot;
+			}
+		}
+
+		SchemaSnapshot snapshot;
+		try {
+			snapshot = SchemaSnapshot.fromDatabase(con);
+		} catch (SQLException e) {
+			throw new SqlUncheckedException("Could not read the schema of "
+					+ databaseName, e);
+		}
+
+		verdictFile.delete();
+		writeSnapshot(snapshot);
+		setRead(current);
+
+		return snapshot;
+	}
+
+	/**
+	 * @return true if the database passed testName the last time it was
+	 *         compared with a master schema with the given digest. Only
+	 *         meaningful after {@link #getSnapshot()}.
+	 */
+	public boolean hasPassed(String testName, String masterDigest) {
+		return masterDigest != null
+				&& masterDigest.equals(getVerdicts().getProperty(testName));
+	}
+
+	/**
+	 * Stores whether the database passed testName against the master schema
+	 * with the given digest.
+	 */
+	public void setPassed(String testName, String masterDigest, boolean passed) {
+
+		Properties verdicts = getVerdicts();
+		verdicts.setProperty(SERVER_KEY, server);
+		if (passed) {
+			verdicts.setProperty(testName, masterDigest);
+		} else {
+			verdicts.remove(testName);
+		}
+
+		try {
+			FileOutputStream out = new FileOutputStream(verdictFile);
+			try {
+				verdicts.store(out, null);
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Cannot write verdicts to "
+					+ verdictFile, e);
+		}
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		snapshotFile.delete();
+		verdictFile.delete();
+	}
+
+	protected Properties getVerdicts() {
+		Properties verdicts = new Properties();
+		if (verdictFile.exists()) {
+			try {
+				FileInputStream in = new FileInputStream(verdictFile);
+				try {
+					verdicts.load(in);
+				} finally {
+					in.close();
+				}
+			} catch (IOException e) {
+				throw new RuntimeException("Cannot read verdicts from "
+						+ verdictFile, e);
+			}
+			if (!server.equals(verdicts.getProperty(SERVER_KEY))) {
+				logger.warning("Ignoring verdicts stored for another server in "
+						+ verdictFile);
+				verdicts.clear();
+			}
+		}
+		return verdicts;
+	}
+
+	/**
+	 * @return The stored snapshot or null if it can't be read, e.g. because it
+	 *         was written by an incompatible version.
+	 */
+	protected SchemaSnapshot readSnapshot() {
+		try {
+			ObjectInputStream in = new ObjectInputStream(new FileInputStream(
+					snapshotFile));
+			try {
+				return (SchemaSnapshot) in.readObject();
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			logger.warning("Cannot read schema snapshot from " + snapshotFile
+					+ ": " + e.getMessage());
+		} catch (ClassNotFoundException e) {
+			logger.warning("Cannot read schema snapshot from " + snapshotFile
+					+ ": " + e.getMessage());
+		}
+		return null;
+	}
+
+	protected void writeSnapshot(SchemaSnapshot snapshot) {
+		try {
+			ObjectOutputStream out = new ObjectOutputStream(
+					new FileOutputStream(snapshotFile));
+			try {
+				out.writeObject(snapshot);
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Cannot write schema snapshot to "
+					+ snapshotFile, e);
+		}
+	}
+
+}
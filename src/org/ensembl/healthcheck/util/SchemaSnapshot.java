@@ -0,0 +1,528 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * <p>
+ * An immutable picture of the tables, columns and indexes of a MySQL schema,
+ * read with one query each on information_schema.TABLES, COLUMNS and
+ * STATISTICS instead of a round of metadata calls per table.
+ * </p>
+ *
+ * <p>
+ * Snapshots of two schemas can be compared in memory. They are serializable
+ * so they can be stored between runs.
+ * </p>
+ */
+public final class SchemaSnapshot implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String databaseName;
+
+	private final Map<String, Table> tables;
+
+	private SchemaSnapshot(String databaseName, Map<String, Table> tables) {
+		this.databaseName = databaseName;
+		this.tables = Collections.unmodifiableMap(tables);
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * Read the schema of the database con is connected to.
+	 */
+	public static SchemaSnapshot fromDatabase(Connection con) throws SQLException {
+
+		String databaseName = DBUtils.getShortDatabaseName(con);
+
+		Map<String, TableBuilder> builders = new LinkedHashMap<String, TableBuilder>();
+
+		PreparedStatement stmt = con.prepareStatement(
+				"SELECT TABLE_NAME, TABLE_TYPE, ENGINE, TABLE_COLLATION, CREATE_OPTIONS "
+						+ "FROM information_schema.TABLES WHERE TABLE_SCHEMA=? ORDER BY TABLE_NAME");
+		try {
+			stmt.setString(1, databaseName);
+			ResultSet rs = stmt.executeQuery();
+			while (rs.next()) {
+				TableBuilder builder = new TableBuilder();
+				builder.name = rs.getString(1);
+				builder.view = "VIEW".equalsIgnoreCase(rs.getString(2));
+				builder.engine = rs.getString(3);
+				builder.collation = rs.getString(4);
+				builder.createOptions = rs.getString(5);
+				builders.put(builder.name, builder);
+			}
+			rs.close();
+		} finally {
+			DBUtils.closeQuietly(stmt);
+		}
+
+		stmt = con.prepareStatement(
+				"SELECT TABLE_NAME, COLUMN_NAME, COLUMN_TYPE, IS_NULLABLE, COLUMN_DEFAULT, CHARACTER_OCTET_LENGTH, EXTRA "
+						+ "FROM information_schema.COLUMNS WHERE TABLE_SCHEMA=? ORDER BY TABLE_NAME, ORDINAL_POSITION");
+		try {
+			stmt.setString(1, databaseName);
+			ResultSet rs = stmt.executeQuery();
+			while (rs.next()) {
+				TableBuilder builder = builders.get(rs.getString(1));
+				if (builder == null) {
+					continue;
+				}
+				String extra = rs.getString(7);
+				builder.columns.add(new Column(
+						rs.getString(2),
+						rs.getString(3),
+						"YES".equalsIgnoreCase(rs.getString(4)),
+						rs.getString(5),
+						rs.getLong(6),
+						extra != null && extra.toLowerCase().contains("auto_increment")));
+			}
+			rs.close();
+		} finally {
+			DBUtils.closeQuietly(stmt);
+		}
+
+		stmt = con.prepareStatement(
+				"SELECT TABLE_NAME, INDEX_NAME, NON_UNIQUE, INDEX_TYPE, COLUMN_NAME "
+						+ "FROM information_schema.STATISTICS WHERE TABLE_SCHEMA=? ORDER BY TABLE_NAME, INDEX_NAME, SEQ_IN_INDEX");
+		try {
+			stmt.setString(1, databaseName);
+			ResultSet rs = stmt.executeQuery();
+			while (rs.next()) {
+				TableBuilder builder = builders.get(rs.getString(1));
+				if (builder == null) {
+					continue;
+				}
+				String indexName = rs.getString(2);
+				IndexBuilder index = builder.indexes.get(indexName);
+				if (index == null) {
+					index = new IndexBuilder(indexName, rs.getBoolean(3), rs.getString(4));
+					builder.indexes.put(indexName, index);
+				}
+				index.columns.add(rs.getString(5));
+			}
+			rs.close();
+		} finally {
+			DBUtils.closeQuietly(stmt);
+		}
+
+		Map<String, Table> tables = new LinkedHashMap<String, Table>();
+		for (TableBuilder builder : builders.values()) {
+			tables.put(builder.name, builder.build());
+		}
+
+		return new SchemaSnapshot(databaseName, tables);
+
+	}
+
+	// -------------------------------------------------------------------------
+
+	public String getDatabaseName() {
+		return databaseName;
+	}
+
+	/**
+	 * @return Names of all tables and views, in alphabetical order.
+	 */
+	public Set<String> getTableNames() {
+		return tables.keySet();
+	}
+
+	/**
+	 * @return Names of the views.
+	 */
+	public Set<String> getViewNames() {
+		Set<String> views = new LinkedHashSet<String>();
+		for (Table table : tables.values()) {
+			if (table.isView()) {
+				views.add(table.getName());
+			}
+		}
+		return views;
+	}
+
+	/**
+	 * @return The table or view called name or null if there is none.
+	 */
+	public Table getTable(String name) {
+		return tables.get(name);
+	}
+
+	/**
+	 * @return An MD5 hex digest of the definitions of all tables. Two
+	 *         snapshots have the same digest if they are equal and their
+	 *         tables and indexes have the same names, whatever the name of the
+	 *         database is.
+	 */
+	public String digest() {
+
+		StringBuilder sb = new StringBuilder();
+		for (Table table : tables.values()) {
+			table.appendTo(sb);
+		}
+
+		try {
+			byte[] bytes = MessageDigest.getInstance("MD5").digest(sb.toString().getBytes("UTF-8"));
+			StringBuilder hex = new StringBuilder(32);
+			for (byte b : bytes) {
+				hex.append(String.format("%02x", b & 0xff));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new UtilUncheckedException("MD5 is not available", e);
+		} catch (UnsupportedEncodingException e) {
+			throw new UtilUncheckedException("UTF-8 is not available", e);
+		}
+
+	}
+
+	private static void append(StringBuilder sb, Object value) {
+		sb.append(value == null ? "\1" : value.toString()).append('\0');
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof SchemaSnapshot))
+			return false;
+		return tables.equals(((SchemaSnapshot) obj).tables);
+	}
+
+	@Override
+	public int hashCode() {
+		return tables.hashCode();
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * A table or view. Two tables are equal if everything apart from their
+	 * name is.
+	 */
+	public static final class Table implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String name;
+		private final boolean view;
+		private final String engine;
+		private final String charset;
+		private final String createOptions;
+		private final List<Column> columns;
+		private final Set<Index> indexes;
+
+		private Table(String name, boolean view, String engine, String charset, String createOptions, List<Column> columns,
+				Set<Index> indexes) {
+			this.name = name;
+			this.view = view;
+			this.engine = engine;
+			this.charset = charset;
+			this.createOptions = createOptions;
+			this.columns = Collections.unmodifiableList(columns);
+			this.indexes = Collections.unmodifiableSet(indexes);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public boolean isView() {
+			return view;
+		}
+
+		/**
+		 * @return The storage engine or an empty string for views.
+		 */
+		public String getEngine() {
+			return engine == null ? "" : engine;
+		}
+
+		/**
+		 * @return The default character set, derived from the table collation.
+		 */
+		public String getCharset() {
+			return charset;
+		}
+
+		/**
+		 * @return The value of an option like max_rows given when the table was
+		 *         created, or an empty string if it was not given.
+		 */
+		public String getCreateOption(String option) {
+			if (createOptions == null) {
+				return "";
+			}
+			Matcher m = Pattern.compile("(?i)\\b" + Pattern.quote(option) + "=(\\S+)").matcher(createOptions);
+			return m.find() ? m.group(1) : "";
+		}
+
+		/**
+		 * @return The columns in the order they are defined.
+		 */
+		public List<Column> getColumns() {
+			return columns;
+		}
+
+		public Set<Index> getIndexes() {
+			return indexes;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Table))
+				return false;
+			Table other = (Table) obj;
+			return view == other.view
+					&& StringUtils.equals(engine, other.engine)
+					&& StringUtils.equals(charset, other.charset)
+					&& StringUtils.equals(createOptions, other.createOptions)
+					&& columns.equals(other.columns)
+					&& indexes.equals(other.indexes);
+		}
+
+		@Override
+		public int hashCode() {
+			return columns.hashCode() * 31 + indexes.hashCode();
+		}
+
+		private void appendTo(StringBuilder sb) {
+			append(sb, name);
+			append(sb, view);
+			append(sb, engine);
+			append(sb, charset);
+			append(sb, createOptions);
+			for (Column column : columns) {
+				column.appendTo(sb);
+			}
+			for (Index index : indexes) {
+				index.appendTo(sb);
+			}
+			sb.append('\n');
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * A column. The type is MySQL's full column type, e.g. "int(10) unsigned"
+	 * or "enum('a','b')".
+	 */
+	public static final class Column implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String name;
+		private final String columnType;
+		private final boolean nullable;
+		private final String columnDefault;
+		private final long charOctetLength;
+		private final boolean autoIncrement;
+
+		public Column(String name, String columnType, boolean nullable, String columnDefault, long charOctetLength,
+				boolean autoIncrement) {
+			this.name = name;
+			this.columnType = columnType;
+			this.nullable = nullable;
+			this.columnDefault = columnDefault;
+			this.charOctetLength = charOctetLength;
+			this.autoIncrement = autoIncrement;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getColumnType() {
+			return columnType;
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + (autoIncrement ? 1231 : 1237);
+			result = prime * result + (int) (charOctetLength ^ (charOctetLength >>> 32));
+			result = prime * result + ((columnDefault == null) ? 0 : columnDefault.hashCode());
+			result = prime * result + ((columnType == null) ? 0 : columnType.hashCode());
+			result = prime * result + ((name == null) ? 0 : name.hashCode());
+			result = prime * result + (nullable ? 1231 : 1237);
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Column))
+				return false;
+			Column other = (Column) obj;
+			return autoIncrement == other.autoIncrement
+					&& charOctetLength == other.charOctetLength
+					&& nullable == other.nullable
+					&& StringUtils.equals(columnDefault, other.columnDefault)
+					&& StringUtils.equals(columnType, other.columnType)
+					&& StringUtils.equals(name, other.name);
+		}
+
+		@Override
+		public String toString() {
+			return getName();
+		}
+
+		private void appendTo(StringBuilder sb) {
+			sb.append('C');
+			append(sb, name);
+			append(sb, columnType);
+			append(sb, nullable);
+			append(sb, columnDefault);
+			append(sb, charOctetLength);
+			append(sb, autoIncrement);
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * An index. Equality does not take the name into account, so indexes
+	 * which only differ in their names are considered the same.
+	 */
+	public static final class Index implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String name;
+		private final List<String> columns;
+		private final boolean nonUnique;
+		private final String type;
+
+		public Index(String name, List<String> columns, boolean nonUnique, String type) {
+			this.name = name;
+			this.columns = Collections.unmodifiableList(new ArrayList<String>(columns));
+			this.nonUnique = nonUnique;
+			this.type = type;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public List<String> getColumns() {
+			return columns;
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + columns.hashCode();
+			result = prime * result + (nonUnique ? 1231 : 1237);
+			result = prime * result + ((type == null) ? 0 : type.hashCode());
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Index))
+				return false;
+			Index other = (Index) obj;
+			return columns.equals(other.columns)
+					&& nonUnique == other.nonUnique
+					&& StringUtils.equals(type, other.type);
+		}
+
+		@Override
+		public String toString() {
+			return name + "=[" + StringUtils.join(columns, ',') + "]";
+		}
+
+		private void appendTo(StringBuilder sb) {
+			sb.append('I');
+			append(sb, name);
+			append(sb, StringUtils.join(columns, ','));
+			append(sb, nonUnique);
+			append(sb, type);
+		}
+	}
+
+	// -------------------------------------------------------------------------
+
+	private static class TableBuilder {
+
+		String name;
+		boolean view;
+		String engine;
+		String collation;
+		String createOptions;
+		List<Column> columns = new ArrayList<Column>();
+		Map<String, IndexBuilder> indexes = new LinkedHashMap<String, IndexBuilder>();
+
+		Table build() {
+
+			String charset = collation == null ? "" : collation.split("_")[0];
+
+			Set<Index> builtIndexes = new LinkedHashSet<Index>();
+			for (IndexBuilder index : indexes.values()) {
+				builtIndexes.add(new Index(index.name, index.columns, index.nonUnique, index.type));
+			}
+
+			return new Table(name, view, engine, charset, createOptions == null ? "" : createOptions.trim(), columns, builtIndexes);
+
+		}
+	}
+
+	private static class IndexBuilder {
+
+		final String name;
+		final boolean nonUnique;
+		final String type;
+		final List<String> columns = new ArrayList<String>();
+
+		IndexBuilder(String name, boolean nonUnique, String type) {
+			this.name = name;
+			this.nonUnique = nonUnique;
+			this.type = type;
+		}
+	}
+
+} // SchemaSnapshot
@@ -0,0 +1,183 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+
+/**
+ * <p>
+ * The length and name of every seq_region of a database, read with one query when first asked for and then shared by all
+ * tests run on the database, so tests don't look up the regions one by one.
+ * </p>
+ *
+ * <p>
+ * The regions are held in arrays sorted by seq_region_id rather than in a map
+ * of objects, so assemblies with hundreds of thousands of scaffolds take a few
+ * MB. The caches of the seq.region.cache.databases databases used last are
+ * kept.
+ * </p>
+ */
+public class SeqRegionCache {
+
+	/**
+	 * System property with the number of databases whose seq_regions are
+	 * kept.
+	 */
+	public static final String DATABASES = "seq.region.cache.databases";
+
+	private static final int DEFAULT_DATABASES = 8;
+
+	private static final String SEQ_REGION_SQL = "SELECT sr.seq_region_id, sr.length, sr.name "
+			+ "FROM seq_region sr ORDER BY sr.seq_region_id";
+
+	private static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	private static final Map<String, SeqRegionCache> caches = new PoorLruMap<String, SeqRegionCache>(
+			Integer.getInteger(DATABASES, DEFAULT_DATABASES));
+
+	private final DatabaseRegistryEntry dbre;
+
+	private boolean loaded = false;
+
+	private long[] ids;
+
+	private int[] lengths;
+
+	private String[] names;
+
+	// -------------------------------------------------------------------------
+	/**
+	 * @return The seq_regions of dbre, read now if they are not cached.
+	 */
+	public static SeqRegionCache getInstance(DatabaseRegistryEntry dbre) {
+
+		String key = dbre.getDatabaseServer().getDatabaseURL() + dbre.getName();
+		SeqRegionCache cache;
+		synchronized (caches) {
+			cache = caches.get(key);
+			if (cache == null) {
+				cache = new SeqRegionCache(dbre);
+				caches.put(key, cache);
+			}
+		}
+		// outside the lock on caches so databases can be read in parallel
+		cache.load();
+		return cache;
+
+	}
+
+	/**
+	 * Forget the cached seq_regions of dbre, e.g. after it has been changed.
+	 */
+	public static void invalidate(DatabaseRegistryEntry dbre) {
+		synchronized (caches) {
+			caches.remove(dbre.getDatabaseServer().getDatabaseURL()
+					+ dbre.getName());
+		}
+	}
+
+	/**
+	 * Forget the cached seq_regions of all databases.
+	 */
+	public static void clear() {
+		synchronized (caches) {
+			caches.clear();
+		}
+	}
+
+	private SeqRegionCache(DatabaseRegistryEntry dbre) {
+		this.dbre = dbre;
+	}
+
+	// -------------------------------------------------------------------------
+
+	public int size() {
+		return ids.length;
+	}
+
+	public boolean contains(long seqRegionId) {
+		return Arrays.binarySearch(ids, seqRegionId) >= 0;
+	}
+
+	/**
+	 * @return The length of the seq_region, or -1 if there is none with this
+	 *         ID.
+	 */
+	public int getLength(long seqRegionId) {
+		int i = Arrays.binarySearch(ids, seqRegionId);
+		return i < 0 ? -1 : lengths[i];
+	}
+
+	/**
+	 * @return The name of the seq_region, or null if there is none with this
+	 *         ID.
+	 */
+	public String getName(long seqRegionId) {
+		int i = Arrays.binarySearch(ids, seqRegionId);
+		return i < 0 ? null : names[i];
+	}
+
+	// -------------------------------------------------------------------------
+
+	private synchronized void load() {
+
+		if (loaded) {
+			return;
+		}
+
+		Connection con = dbre.getConnection();
+		SqlTemplate t = DBUtils.getSqlTemplate(con);
+
+		t.execute(SEQ_REGION_SQL, new SqlTemplate.ResultSetCallback<Void>() {
+			public Void process(ResultSet rs) throws SQLException {
+				int size = 0;
+				ids = new long[1024];
+				lengths = new int[ids.length];
+				names = new String[ids.length];
+				while (rs.next()) {
+					if (size == ids.length) {
+						int capacity = size * 2;
+						ids = Arrays.copyOf(ids, capacity);
+						lengths = Arrays.copyOf(lengths, capacity);
+						names = Arrays.copyOf(names, capacity);
+					}
+					ids[size] = rs.getLong(1);
+					lengths[size] = rs.getInt(2);
+					names[size] = rs.getString(3);
+					size++;
+				}
+				ids = Arrays.copyOf(ids, size);
+				lengths = Arrays.copyOf(lengths, size);
+				names = Arrays.copyOf(names, size);
+				return null;
+			}
+		});
+
+		loaded = true;
+
+		logger.fine("Read " + ids.length + " seq_regions of " + dbre.getName());
+
+	}
+
+} // SeqRegionCache
@@ -0,0 +1,305 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+import org.ensembl.healthcheck.TestMetrics;
+import org.ensembl.healthcheck.testcase.EnsTestCase;
+
+/**
+ * <p>
+ * Checks that a query gives the same result on a number of databases without
+ * comparing every pair of them. The result of each database is streamed
+ * through a digest, on up to sql.compare.threads databases at the same time.
+ * If the digests all match the results are the same and nothing else is
+ * done.
+ * </p>
+ *
+ * <p>
+ * Otherwise the databases with the most common digest are taken as the
+ * reference, and the result of each database with another digest is compared
+ * row by row with that of the first reference database using
+ * {@link DBUtils#compareResultSets}, which reports the first difference. So
+ * each database which differs is reported once, against the reference,
+ * rather than once against every other database.
+ * </p>
+ */
+public class SqlResultComparator {
+
+	/**
+	 * System property with the number of databases queried at the same time.
+	 */
+	public static final String THREADS = "sql.compare.threads";
+
+	private static final int DEFAULT_THREADS = 4;
+
+	private static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	private final EnsTestCase testCase;
+
+	private final boolean comparingSchema;
+
+	public SqlResultComparator(EnsTestCase testCase, boolean comparingSchema) {
+		this.testCase = testCase;
+		this.comparingSchema = comparingSchema;
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * @return True if sql gives the same result on all the databases.
+	 */
+	public boolean compare(String sql, DatabaseRegistryEntry[] databases) {
+
+		if (databases.length == 0) {
+			return true;
+		}
+
+		List<String> digests = digest(sql, databases);
+
+		// the most common result, preferring the one of the earliest database
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		int reference = 0;
+		for (int i = 0; i < databases.length; i++) {
+			Integer count = counts.get(digests.get(i));
+			counts.put(digests.get(i), count == null ? 1 : count + 1);
+			if (counts.get(digests.get(i)) > counts.get(digests.get(reference))) {
+				reference = i;
+			}
+		}
+		if (counts.size() == 1) {
+			return true;
+		}
+		for (int i = 0; i < reference; i++) {
+			if (digests.get(i).equals(digests.get(reference))) {
+				reference = i;
+				break;
+			}
+		}
+
+		logger.fine(counts.size() + " different results of " + sql + " in "
+				+ databases.length + " databases; comparing with "
+				+ databases[reference].getName());
+
+		boolean same = true;
+		for (int i = 0; i < databases.length; i++) {
+			if (!digests.get(i).equals(digests.get(reference))) {
+				same &= compare(sql, databases[i], databases[reference]);
+			}
+		}
+		return same;
+
+	}
+
+	// -------------------------------------------------------------------------
+
+	private List<String> digest(final String sql,
+			DatabaseRegistryEntry[] databases) {
+
+		List<String> digests = new ArrayList<String>();
+
+		int threads = Integer.getInteger(THREADS, DEFAULT_THREADS);
+		if (threads < 2 || databases.length < 2) {
+			for (DatabaseRegistryEntry dbre : databases) {
+				digests.add(digest(sql, dbre));
+			}
+			return digests;
+		}
+
+		final String threadName = testCase.getShortTestName() + "-worker-";
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.min(threads, databases.length), new ThreadFactory() {
+
+					private final AtomicInteger count = new AtomicInteger();
+
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(TestMetrics.inherit(r), threadName
+								+ count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+
+		List<Future<String>> futures = new ArrayList<Future<String>>();
+
+		for (final DatabaseRegistryEntry dbre : databases) {
+			futures.add(executor.submit(new Callable<String>() {
+
+				public String call() {
+
+					int scope = ConnectionPool.beginScope();
+					try {
+						return digest(sql, dbre);
+					} finally {
+						ConnectionPool.endScope(scope);
+					}
+				}
+			}));
+		}
+
+		executor.shutdown();
+
+		try {
+			for (Future<String> future : futures) {
+				digests.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+			throw new SqlUncheckedException("Could not check same SQL results",
+					e);
+		} catch (ExecutionException e) {
+			executor.shutdownNow();
+			throw new SqlUncheckedException("Could not check same SQL results",
+					e.getCause());
+		}
+
+		return digests;
+
+	}
+
+	/**
+	 * @return A digest of the column names and types and of the rows sql
+	 *         returns on dbre. Results which {@link DBUtils#compareColumns}
+	 *         finds equal may have different digests, but results with the
+	 *         same digest are equal.
+	 */
+	private String digest(String sql, DatabaseRegistryEntry dbre) {
+
+		Connection con = dbre.getConnection();
+		Statement stmt = null;
+		ResultSet rs = null;
+		try {
+
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+
+			stmt = createStreamingStatement(con);
+			rs = stmt.executeQuery(sql);
+
+			ResultSetMetaData rsmd = rs.getMetaData();
+			int columns = rsmd.getColumnCount();
+			boolean[] varchar = new boolean[columns + 1];
+			update(digest, Integer.toString(columns));
+			for (int i = 1; i <= columns; i++) {
+				update(digest, rsmd.getColumnName(i));
+				update(digest, Integer.toString(rsmd.getColumnType(i)));
+				varchar[i] = rsmd.getColumnType(i) == Types.VARCHAR;
+			}
+
+			while (rs.next()) {
+				digest.update((byte) 'R');
+				for (int i = 1; i <= columns; i++) {
+					String value = rs.getString(i);
+					if (value != null && varchar[i]) {
+						// as compareColumns does
+						value = value.replaceAll("AUTO_INCREMENT=[0-9]+ ", "");
+					}
+					update(digest, value);
+				}
+			}
+
+			return new BigInteger(1, digest.digest()).toString(16);
+
+		} catch (SQLException e) {
+			throw new SqlUncheckedException("Could not check same SQL results",
+					e);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		} finally {
+			DBUtils.closeQuietly(rs);
+			DBUtils.closeQuietly(stmt);
+		}
+
+	}
+
+	private static void update(MessageDigest digest, String value) {
+		if (value == null) {
+			digest.update((byte) 0);
+			return;
+		}
+		try {
+			byte[] bytes = value.getBytes("UTF-8");
+			digest.update((byte) 1);
+			digest.update(Integer.toString(bytes.length).getBytes("UTF-8"));
+			digest.update((byte) ':');
+			digest.update(bytes);
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Compare the results of sql on two databases row by row, reporting the
+	 * first difference.
+	 */
+	private boolean compare(String sql, DatabaseRegistryEntry dbre,
+			DatabaseRegistryEntry reference) {
+
+		Statement stmt1 = null;
+		Statement stmt2 = null;
+		ResultSet rs1 = null;
+		ResultSet rs2 = null;
+		try {
+			stmt1 = createStreamingStatement(dbre.getConnection());
+			stmt2 = createStreamingStatement(reference.getConnection());
+			rs1 = stmt1.executeQuery(sql);
+			rs2 = stmt2.executeQuery(sql);
+			return DBUtils.compareResultSets(rs1, rs2, testCase, "", true,
+					true, "", comparingSchema);
+		} catch (SQLException e) {
+			throw new SqlUncheckedException("Could not check same SQL results",
+					e);
+		} finally {
+			DBUtils.closeQuietly(rs1);
+			DBUtils.closeQuietly(rs2);
+			DBUtils.closeQuietly(stmt1);
+			DBUtils.closeQuietly(stmt2);
+		}
+
+	}
+
+	private static Statement createStreamingStatement(Connection con)
+			throws SQLException {
+		Statement stmt = con.createStatement(ResultSet.TYPE_FORWARD_ONLY,
+				ResultSet.CONCUR_READ_ONLY);
+		stmt.setFetchSize(DBUtils.getStreamingFetchSize(con));
+		return stmt;
+	}
+
+} // SqlResultComparator
@@ -293,6 +293,26 @@ public interface SqlTemplate {
 	<K, T> Map<K, T> queryForMap(String sql, MapRowMapper<K, T> mapRowMapper,
 			Object... args);
 
+	/**
+	 * Reads the first column of the rows returned by the SQL into a
+	 * {@link LongHashSet}. The rows are streamed from the server instead of
+	 * being read into memory first, and no object is created per row, so this
+	 * can be used on ID columns of the largest tables. NULLs are skipped.
+	 *
+	 * <code>
+	 * LongHashSet geneIds = template.queryForLongSet("select gene_id from gene");
+	 * </code>
+	 *
+	 * @param sql
+	 *            The SQL to run
+	 * @param args
+	 *            Arguments to send to the target server
+	 * @return The set of values
+	 * @throws SqlServiceUncheckedException
+	 *             Thrown in the event of problems with the query
+	 */
+	LongHashSet queryForLongSet(String sql, Object... args);
+
 	/**
    * A generic method used for opening {@link PreparedStatement} and
    * {@link ResultSet} instances and closing them down. Useful for when
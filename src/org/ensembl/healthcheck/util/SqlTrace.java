@@ -0,0 +1,470 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import org.ensembl.healthcheck.TestMetrics;
+
+/**
+ * <p>
+ * Times the SQL executed through {@link MonitoredConnection}s. For each test
+ * case and statement, with literals replaced by ?, it keeps the number of
+ * executions, the time spent executing them and fetching their results, and
+ * the rows fetched. At the end of the run the statements taking the most
+ * time in total are written to sql.trace.file.
+ * </p>
+ *
+ * <p>
+ * If sql.trace.explain.ms is more than 0, the first execution of a SELECT
+ * statement taking at least that many milliseconds is explained and the plan
+ * added to the report. Prepared statements with parameters are not
+ * explained. The EXPLAIN is run on the same connection once no statement on
+ * it is open any more, as a streaming result set of any of them must be read
+ * to the end before the connection can be used again, or else when the report
+ * is written.
+ * </p>
+ */
+public class SqlTrace {
+
+	/** System property with the report file, empty to turn tracing off. */
+	public static final String FILE = "sql.trace.file";
+
+	/** System property with the number of statements in the report. */
+	public static final String TOP = "sql.trace.top";
+
+	/** System property with the time a statement must take to be explained. */
+	public static final String EXPLAIN_MS = "sql.trace.explain.ms";
+
+	private static final int DEFAULT_TOP = 20;
+
+	/** Name used for statements executed outside any test. */
+	static final String NO_TEST = "-";
+
+	private static Logger logger = Logger.getLogger("HealthCheckLogger");
+
+	private static final Pattern QUOTED = Pattern.compile("'(?:[^'\\\\]|\\\\.|'')*'|\"(?:[^\"\\\\]|\\\\.)*\"");
+
+	private static final Pattern NUMBER = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+
+	private static final Pattern LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+
+	private static final Pattern SPACE = Pattern.compile("\\s+");
+
+	// statistics keyed on test name and normalised statement
+	private static final Map<String, Statistics> statistics = new HashMap<String, Statistics>();
+
+	// statistics with an EXPLAIN still to be run
+	private static final List<Statistics> pendingExplains = new ArrayList<Statistics>();
+
+	static {
+		Runtime.getRuntime().addShutdownHook(new Thread("sql-trace-report") {
+			public void run() {
+				writeReportFile();
+			}
+		});
+	}
+
+	// hide constructor to stop instantiation
+	private SqlTrace() {
+
+	}
+
+	// -------------------------------------------------------------------------
+
+	public static boolean isEnabled() {
+
+		return System.getProperty(FILE, "").length() > 0;
+
+	}
+
+	/**
+	 * @return sql with string and number literals replaced by ?, lists of
+	 *         literals by (?+) and white space collapsed, so executions which
+	 *         only differ in their values are counted together.
+	 */
+	public static String normalise(String sql) {
+
+		String result = QUOTED.matcher(sql).replaceAll("?");
+		result = NUMBER.matcher(result).replaceAll("?");
+		result = LIST.matcher(result).replaceAll("(?+)");
+		return SPACE.matcher(result).replaceAll(" ").trim();
+
+	}
+
+	/**
+	 * Start timing an execution of sql on con by the test running on the
+	 * current thread.
+	 */
+	static Execution start(String sql, Connection con) {
+
+		TestMetrics.Measurement measurement = TestMetrics.current();
+		return new Execution(measurement == null ? NO_TEST : measurement.getTestName(), sql, con);
+
+	}
+
+	private static void record(Execution execution) {
+
+		String normalised = normalise(execution.sql);
+		String key = execution.testName + "\t" + normalised;
+		long time = execution.executionTime + execution.fetchTime;
+
+		synchronized (SqlTrace.class) {
+			Statistics s = statistics.get(key);
+			if (s == null) {
+				s = new Statistics(execution.testName, normalised, execution.sql);
+				statistics.put(key, s);
+			}
+			s.add(execution);
+			long threshold = Long.getLong(EXPLAIN_MS, 0) * 1000000;
+			if (threshold > 0 && time >= threshold && !s.explained && isExplainable(execution.sql)) {
+				// the result set may still be open, see explainPending
+				s.explained = true;
+				s.explainSql = execution.sql;
+				s.explainConnection = execution.con;
+				pendingExplains.add(s);
+			}
+		}
+
+	}
+
+	/**
+	 * Run the EXPLAINs waiting for con, or for any connection if con is null.
+	 * Only call this when no result set of con is being read.
+	 */
+	static void explainPending(Connection con) {
+
+		List<Statistics> todo = new ArrayList<Statistics>();
+		synchronized (SqlTrace.class) {
+			if (pendingExplains.isEmpty()) {
+				return;
+			}
+			for (Iterator<Statistics> it = pendingExplains.iterator(); it.hasNext();) {
+				Statistics s = it.next();
+				if (con == null || s.explainConnection == con) {
+					todo.add(s);
+					it.remove();
+				}
+			}
+		}
+
+		for (Statistics s : todo) {
+			String plan = explain(s.explainConnection, s.explainSql);
+			synchronized (SqlTrace.class) {
+				s.explain = plan;
+				s.explainConnection = null;
+			}
+		}
+
+	}
+
+	private static boolean isExplainable(String sql) {
+
+		return sql.trim().toLowerCase().startsWith("select") && sql.indexOf('?') < 0;
+
+	}
+
+	private static String explain(Connection con, String sql) {
+
+		Statement stmt = null;
+		ResultSet rs = null;
+		try {
+			if (con.isClosed()) {
+				return "EXPLAIN not run: the connection was closed before the report was written";
+			}
+			stmt = con.createStatement();
+			rs = stmt.executeQuery("EXPLAIN " + sql);
+			ResultSetMetaData rsmd = rs.getMetaData();
+			StringBuffer plan = new StringBuffer();
+			for (int i = 1; i <= rsmd.getColumnCount(); i++) {
+				plan.append(i == 1 ? "" : " | ").append(rsmd.getColumnLabel(i));
+			}
+			while (rs.next()) {
+				plan.append('\n');
+				for (int i = 1; i <= rsmd.getColumnCount(); i++) {
+					plan.append(i == 1 ? "" : " | ").append(rs.getString(i));
+				}
+			}
+			return plan.toString();
+		} catch (SQLException e) {
+			return "EXPLAIN failed: " + e.getMessage();
+		} finally {
+			DBUtils.closeQuietly(rs);
+			DBUtils.closeQuietly(stmt);
+		}
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * @return The n statements which took the most time in total, executing
+	 *         and fetching, slowest first.
+	 */
+	public static synchronized List<Statistics> getSlowest(int n) {
+
+		List<Statistics> result = new ArrayList<Statistics>(statistics.values());
+		Collections.sort(result, new Comparator<Statistics>() {
+			public int compare(Statistics s1, Statistics s2) {
+				long t1 = s1.executionTime + s1.fetchTime;
+				long t2 = s2.executionTime + s2.fetchTime;
+				return t1 < t2 ? 1 : t1 > t2 ? -1 : 0;
+			}
+		});
+		return result.subList(0, Math.min(n, result.size()));
+
+	}
+
+	/**
+	 * Write the sql.trace.top slowest statements, running any EXPLAINs which
+	 * are still waiting first.
+	 */
+	public static void writeReport(Writer writer) {
+
+		explainPending(null);
+
+		synchronized (SqlTrace.class) {
+			write(new PrintWriter(writer));
+		}
+
+	}
+
+	private static void write(PrintWriter out) {
+
+		List<Statistics> slowest = getSlowest(Integer.getInteger(TOP, DEFAULT_TOP));
+
+		out.println("Top " + slowest.size() + " of " + statistics.size() + " statements by total time");
+		out.println();
+		out.println("total_ms\tcount\tmax_ms\texecute_ms\tfetch_ms\trows\ttest\tstatement");
+		for (Statistics s : slowest) {
+			out.println(s.getTotalTime() + "\t" + s.getCount() + "\t" + s.getMaxTime() + "\t" + s.getExecutionTime() + "\t" + s.getFetchTime() + "\t"
+					+ s.getRows() + "\t" + s.getTestName() + "\t" + s.getStatement());
+			if (s.getExplain() != null) {
+				out.println("EXPLAIN " + s.getExample());
+				out.println(s.getExplain());
+				out.println();
+			}
+		}
+		out.flush();
+
+	}
+
+	private static void writeReportFile() {
+
+		String name = System.getProperty(FILE, "");
+		if (name.length() == 0 || getSlowest(1).isEmpty()) {
+			return;
+		}
+
+		Writer out = null;
+		try {
+			out = new OutputStreamWriter(new FileOutputStream(name), "UTF-8");
+			writeReport(out);
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Could not write SQL trace to " + name, e);
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					// nothing more to do
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Forget all statements traced so far.
+	 */
+	public static synchronized void reset() {
+
+		statistics.clear();
+		pendingExplains.clear();
+
+	}
+
+	// -------------------------------------------------------------------------
+	/**
+	 * One execution of a statement, from the call executing it until its
+	 * result set or the statement is closed.
+	 */
+	static class Execution {
+
+		private final String testName;
+
+		private final String sql;
+
+		private final Connection con;
+
+		private long executionTime = 0;
+
+		private long fetchTime = 0;
+
+		private long rows = 0;
+
+		private boolean finished = false;
+
+		Execution(String testName, String sql, Connection con) {
+			this.testName = testName;
+			this.sql = sql;
+			this.con = con;
+		}
+
+		void executed(long nanos) {
+			executionTime += nanos;
+		}
+
+		void fetched(long nanos, boolean row) {
+			fetchTime += nanos;
+			if (row) {
+				rows++;
+			}
+		}
+
+		/**
+		 * Record the execution, once.
+		 */
+		void finish() {
+			if (!finished) {
+				finished = true;
+				record(this);
+			}
+		}
+
+	} // Execution
+
+	// -------------------------------------------------------------------------
+	/**
+	 * The executions of one statement by one test. Times are in milliseconds.
+	 */
+	public static class Statistics {
+
+		private final String testName;
+
+		private final String statement;
+
+		private final String example;
+
+		private long count = 0;
+
+		private long executionTime = 0;
+
+		private long fetchTime = 0;
+
+		private long maxTime = 0;
+
+		private long rows = 0;
+
+		private boolean explained = false;
+
+		private String explain;
+
+		// the statement to explain and where, until it has been explained
+		private String explainSql;
+
+		private Connection explainConnection;
+
+		Statistics(String testName, String statement, String example) {
+			this.testName = testName;
+			this.statement = statement;
+			this.example = example;
+		}
+
+		void add(Execution execution) {
+			count++;
+			executionTime += execution.executionTime;
+			fetchTime += execution.fetchTime;
+			maxTime = Math.max(maxTime, execution.executionTime + execution.fetchTime);
+			rows += execution.rows;
+		}
+
+		/**
+		 * @return The short name of the test, or "-" for statements executed
+		 *         outside a test.
+		 */
+		public String getTestName() {
+			return testName;
+		}
+
+		/**
+		 * @return The normalised statement.
+		 */
+		public String getStatement() {
+			return statement;
+		}
+
+		/**
+		 * @return The statement as it was first executed.
+		 */
+		public String getExample() {
+			return example;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getExecutionTime() {
+			return executionTime / 1000000;
+		}
+
+		public long getFetchTime() {
+			return fetchTime / 1000000;
+		}
+
+		public long getTotalTime() {
+			return (executionTime + fetchTime) / 1000000;
+		}
+
+		public long getMaxTime() {
+			return maxTime / 1000000;
+		}
+
+		public long getRows() {
+			return rows;
+		}
+
+		/**
+		 * @return The EXPLAIN output, one line per row, or null if the statement
+		 *         was not explained.
+		 */
+		public String getExplain() {
+			return explain;
+		}
+
+	} // Statistics
+
+} // SqlTrace
@@ -0,0 +1,80 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+
+/**
+ * A {@link ChecksumDatabase} which uses the creation and update times of
+ * tables from information_schema.TABLES instead of CHECKSUM TABLE. All
+ * tables are read with one query, so this is cheap enough to do before every
+ * test.
+ *
+ * Tables without an update time (e.g. InnoDB tables after a server restart)
+ * can't be checked and always count as updated.
+ */
+public class TableUpdateChecksumDatabase extends ChecksumDatabase {
+
+	protected final static String UNKNOWN = "unknown";
+
+	protected final static String MISSING = "missing";
+
+	protected final static String TABLE_TIMES_SQL = "SELECT TABLE_NAME, "
+			+ "CONCAT(IFNULL(CREATE_TIME,''), '/', IFNULL(UPDATE_TIME,'"
+			+ UNKNOWN + "')) FROM information_schema.TABLES "
+			+ "WHERE TABLE_SCHEMA=? AND TABLE_TYPE='BASE TABLE'";
+
+	/**
+	 * @param tables
+	 *            The tables to check, or null for all tables of the database
+	 */
+	public TableUpdateChecksumDatabase(String databaseName, SqlTemplate templ,
+			File directory, Collection<String> tables) {
+		super(databaseName, templ, directory, tables);
+	}
+
+	@Override
+	public Properties getChecksumFromDatabase() {
+		Map<String, String> times = templ.queryForMap(TABLE_TIMES_SQL,
+				TABLE_VALUE_MAPPER, databaseName);
+		Properties dbSum = new Properties();
+		if (tables == null) {
+			dbSum.putAll(times);
+		} else {
+			for (String table : tables) {
+				String time = times.get(table);
+				dbSum.setProperty(table, time == null ? MISSING : time);
+			}
+		}
+		return dbSum;
+	}
+
+	@Override
+	public boolean isUpdated(Properties db) {
+		for (Entry<Object, Object> e : db.entrySet()) {
+			if (e.getValue().toString().endsWith(UNKNOWN)) {
+				return true;
+			}
+		}
+		return super.isUpdated(db);
+	}
+
+}
@@ -18,6 +18,7 @@ package org.ensembl.healthcheck.test;
 
 import org.ensembl.healthcheck.DatabaseRegistryEntry;
 import org.ensembl.healthcheck.DatabaseType;
+import org.ensembl.healthcheck.DatabaseRegistryEntry.DatabaseInfo;
 import org.ensembl.healthcheck.Species;
 import org.testng.Assert;
 import org.testng.annotations.Test;
@@ -44,6 +45,29 @@ public class DatabaseRegistryEntryTest {
     }
   }
 
+  @Test
+  public void testInfoFromNameIsCached() {
+
+    DatabaseInfo info = DatabaseRegistryEntry.getInfoFromName("mus_musculus_core_20_32");
+    Assert.assertSame(DatabaseRegistryEntry.getInfoFromName("mus_musculus_core_20_32"), info);
+    Assert.assertEquals(info.getSpecies(), Species.MUS_MUSCULUS);
+    Assert.assertEquals(info.getType(), DatabaseType.CORE);
+    Assert.assertEquals(info.getSchemaVersion(), "20");
+  }
+
+  @Test
+  public void testResolveAlias() {
+
+    Assert.assertEquals(Species.resolveAlias("Mouse"), Species.MUS_MUSCULUS);
+    Assert.assertEquals(Species.resolveAlias("homo_sapiens"), Species.HOMO_SAPIENS);
+    Assert.assertEquals(Species.resolveAlias("no_such_species"), Species.UNKNOWN);
+
+    // a part of a type name is enough
+    Assert.assertEquals(DatabaseType.resolveAlias("var"), DatabaseType.VARIATION);
+    Assert.assertEquals(DatabaseType.resolveAlias("otherfeatures"), DatabaseType.OTHERFEATURES);
+    Assert.assertEquals(DatabaseType.resolveAlias("OTHERFEATURES"), DatabaseType.OTHERFEATURES);
+  }
+
   // -----------------------------------------------------------------
 
 }
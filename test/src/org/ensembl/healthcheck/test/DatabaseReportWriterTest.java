@@ -0,0 +1,191 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Collections;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+import org.ensembl.healthcheck.DatabaseReportWriter;
+import org.ensembl.healthcheck.ReportLine;
+import org.ensembl.healthcheck.ReportManager;
+import org.ensembl.healthcheck.testcase.EnsTestCase;
+import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+public class DatabaseReportWriterTest {
+
+  private static class NoOpTest extends SingleDatabaseTestCase {
+    public boolean run(DatabaseRegistryEntry dbre) {
+      return true;
+    }
+  }
+
+  private static final String DB = "homo_sapiens_core_20_34";
+
+  private final EnsTestCase testCase = new NoOpTest();
+
+  @AfterMethod
+  void tearDown() {
+    ReportManager.setSessionID(-1);
+  }
+
+  @Test
+  public void testDuplicatesAndLaterSessions() throws Exception {
+
+    Connection con = createReportTable("jdbc:h2:mem:reportwritertest", false);
+    Statement stmt = con.createStatement();
+
+    DatabaseReportWriter writer = new DatabaseReportWriter(con, 2, 3);
+    writer.start();
+
+    ReportManager.setSessionID(1);
+    writer.add(problem("Missing rows"));
+    writer.add(problem("Missing rows"));
+    writer.add(problem("missing rows"));
+    writer.add(problem("Missing rows"));
+    writer.flush();
+
+    Assert.assertEquals(count(stmt, "SELECT COUNT(*) FROM report"), 2, "Identical reports should only be stored once");
+
+    ReportManager.setSessionID(2);
+    writer.add(problem("Missing rows"));
+    writer.add(problem("Bad rows"));
+    writer.flush();
+
+    Assert.assertEquals(count(stmt, "SELECT COUNT(*) FROM report"), 3);
+    Assert.assertEquals(count(stmt, "SELECT COUNT(*) FROM report WHERE last_session_id=2 AND first_session_id=1"), 1,
+        "Report from the previous session should be updated");
+    Assert.assertEquals(count(stmt, "SELECT COUNT(*) FROM report WHERE last_session_id=1"), 1);
+
+    con.close();
+  }
+
+  @Test
+  public void testPreloadedDigests() throws Exception {
+
+    Connection con = createReportTable("jdbc:h2:mem:reportwriterdigest", true);
+    Statement stmt = con.createStatement();
+    stmt.execute("INSERT INTO report (first_session_id, last_session_id, database_name, testcase, result, text, report_digest) "
+        + "VALUES (1, 1, '" + DB + "', 'NoOpTest', 'PROBLEM', 'stored text', '" + DatabaseReportWriter.digest(problem("Missing rows")) + "')");
+
+    DatabaseReportWriter writer = new DatabaseReportWriter(con, 10, 10);
+    writer.start();
+
+    ReportManager.setSessionID(2);
+    writer.preload(Collections.singletonList(DB));
+    writer.add(problem("Missing rows"));
+    writer.add(problem("Bad rows"));
+    writer.flush();
+
+    Assert.assertEquals(count(stmt, "SELECT COUNT(*) FROM report WHERE last_session_id=2"), 2);
+    Assert.assertEquals(count(stmt, "SELECT COUNT(*) FROM report WHERE report_digest IS NOT NULL"), 2,
+        "Reports should be matched on their digest, not their text");
+
+    con.close();
+  }
+
+  @Test(timeOut = 30000)
+  public void testFlushAfterWriteFails() throws Exception {
+
+    Connection con = createReportTable("jdbc:h2:mem:reportwriterfails", true);
+    Statement stmt = con.createStatement();
+
+    DatabaseReportWriter writer = new DatabaseReportWriter(con, 10, 2);
+    writer.start();
+
+    ReportManager.setSessionID(1);
+    writer.add(new ReportLine(testCase, DB, ReportLine.PROBLEM, "Unreadable", null, null) {
+      public String getMessage() {
+        throw new IllegalStateException("Cannot read message");
+      }
+    });
+    writer.flush();
+
+    // the writer must still be running, and keep up with a full queue
+    for (int i = 0; i < 5; i++) {
+      writer.add(problem("Missing rows " + i));
+    }
+    writer.flush();
+
+    Assert.assertEquals(count(stmt, "SELECT COUNT(*) FROM report"), 5);
+
+    con.close();
+  }
+
+  /**
+   * Reports which were inserted must not be inserted again when the update
+   * of older reports in the same batch fails.
+   */
+  @Test
+  public void testInsertKeptWhenUpdateFails() throws Exception {
+
+    Connection con = createReportTable("jdbc:h2:mem:reportwriterupdatefails", true);
+    Statement stmt = con.createStatement();
+    // reports from earlier sessions cannot be updated to session 3
+    stmt.execute("ALTER TABLE report ADD CONSTRAINT no_update CHECK (last_session_id = first_session_id OR last_session_id < 3)");
+
+    DatabaseReportWriter writer = new DatabaseReportWriter(con, 10, 10);
+    writer.start();
+
+    ReportManager.setSessionID(1);
+    writer.add(problem("Missing rows"));
+    writer.flush();
+
+    ReportManager.setSessionID(3);
+    writer.add(problem("Missing rows"));
+    writer.add(problem("Bad rows"));
+    writer.flush();
+    writer.add(problem("Bad rows"));
+    writer.flush();
+
+    Assert.assertEquals(count(stmt, "SELECT COUNT(*) FROM report WHERE text='Bad rows'"), 1);
+    Assert.assertEquals(count(stmt, "SELECT COUNT(*) FROM report WHERE last_session_id=1"), 1);
+
+    con.close();
+  }
+
+  private Connection createReportTable(String url, boolean withDigest) throws Exception {
+    Class.forName("org.h2.Driver");
+    Connection con = DriverManager.getConnection(url + ";DB_CLOSE_DELAY=-1", "sa", "");
+    Statement stmt = con.createStatement();
+    stmt.execute("CREATE TABLE report (report_id INT AUTO_INCREMENT PRIMARY KEY, first_session_id INT, last_session_id INT, "
+        + "database_name VARCHAR(255), species VARCHAR(255), database_type VARCHAR(255), timestamp TIMESTAMP, "
+        + "testcase VARCHAR(255), result VARCHAR(10), text TEXT, team_responsible VARCHAR(255), created TIMESTAMP"
+        + (withDigest ? ", report_digest CHAR(32))" : ")"));
+    stmt.close();
+    return con;
+  }
+
+  private ReportLine problem(String text) {
+    return new ReportLine(testCase, DB, ReportLine.PROBLEM, text, null, null);
+  }
+
+  private int count(Statement stmt, String sql) throws Exception {
+    ResultSet rs = stmt.executeQuery(sql);
+    rs.next();
+    int count = rs.getInt(1);
+    rs.close();
+    return count;
+  }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.test;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+import org.ensembl.healthcheck.DatabaseServer;
+import org.ensembl.healthcheck.IncrementalTestTracker;
+import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
+import org.ensembl.healthcheck.util.SqlTemplate;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class IncrementalTestTrackerTest {
+
+  private static class GeneTest extends SingleDatabaseTestCase {
+    public boolean run(DatabaseRegistryEntry dbre) {
+      return true;
+    }
+
+    public String[] getInputTables() {
+      return new String[] { "gene" };
+    }
+  }
+
+  /**
+   * A test which passed is skipped until the update time of one of its
+   * tables changes.
+   */
+  @Test
+  public void testRerunAfterUpdate() throws Exception {
+
+    // table name -> "CREATE_TIME/UPDATE_TIME" as read from information_schema
+    final Map<String, String> times = new HashMap<String, String>();
+    times.put("gene", "2014-01-01 10:00:00/2014-01-02 10:00:00");
+    times.put("transcript", "2014-01-01 10:00:00/2014-01-02 10:00:00");
+
+    final SqlTemplate templ = (SqlTemplate) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { SqlTemplate.class },
+        new InvocationHandler() {
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            Assert.assertEquals(method.getName(), "queryForMap");
+            return new HashMap<String, String>(times);
+          }
+        });
+
+    File directory = File.createTempFile("incremental", "");
+    directory.delete();
+    IncrementalTestTracker tracker = new IncrementalTestTracker(directory) {
+      protected SqlTemplate getSqlTemplate(DatabaseRegistryEntry database) {
+        return templ;
+      }
+    };
+
+    DatabaseServer server = new DatabaseServer("localhost", "1", "sa", "", "org.h2.Driver");
+    DatabaseRegistryEntry dbre = new DatabaseRegistryEntry(server, "homo_sapiens_core_75_37", null, null);
+    GeneTest test = new GeneTest();
+
+    try {
+      Assert.assertFalse(run(tracker, test, dbre, true), "A test which never ran must be run");
+      Assert.assertTrue(run(tracker, test, dbre, true), "Nothing changed since the test passed");
+
+      times.put("transcript", "2014-01-01 10:00:00/2014-03-01 10:00:00");
+      Assert.assertTrue(run(tracker, test, dbre, true), "The test does not read transcript");
+
+      times.put("gene", "2014-01-01 10:00:00/2014-03-01 10:00:00");
+      Assert.assertFalse(run(tracker, test, dbre, false), "The test must be run again after gene was updated");
+      Assert.assertFalse(run(tracker, test, dbre, true), "The test failed the last time");
+      Assert.assertTrue(run(tracker, test, dbre, true));
+
+      times.put("gene", "2014-01-01 10:00:00/unknown");
+      Assert.assertFalse(run(tracker, test, dbre, true), "Tables without an update time always count as changed");
+    } finally {
+      FileUtils.deleteDirectory(directory);
+    }
+  }
+
+  /**
+   * Go through the tracker as the runner does.
+   *
+   * @return true if the test was skipped
+   */
+  private boolean run(IncrementalTestTracker tracker, GeneTest test, DatabaseRegistryEntry dbre, boolean passes) {
+
+    IncrementalTestTracker.Checkpoint checkpoint = tracker.checkpoint(test, dbre);
+    Assert.assertNotNull(checkpoint);
+    if (checkpoint.isUnchanged()) {
+      return true;
+    }
+    checkpoint.start();
+    checkpoint.finish(passes);
+    return false;
+  }
+
+}
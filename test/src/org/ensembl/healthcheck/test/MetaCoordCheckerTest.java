@@ -0,0 +1,83 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+import org.ensembl.healthcheck.DatabaseServer;
+import org.ensembl.healthcheck.ReportLine;
+import org.ensembl.healthcheck.ReportManager;
+import org.ensembl.healthcheck.testcase.MetaCoordChecker;
+import org.ensembl.healthcheck.testcase.generic.MetaCoord;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class MetaCoordCheckerTest {
+
+  /**
+   * A meta_coord entry for a feature table without features is not reported
+   * as unused.
+   */
+  @Test
+  public void testEmptyFeatureTable() throws Exception {
+
+    MetaCoord test = new MetaCoord();
+
+    Class.forName("org.h2.Driver");
+    // keeps the in-memory database open while the checker uses its own connections
+    Connection con = DriverManager.getConnection("jdbc:h2:mem:mus_musculus_core_75_38", "sa", "");
+    Statement stmt = con.createStatement();
+    stmt.execute("CREATE TABLE seq_region (seq_region_id INT PRIMARY KEY, coord_system_id INT)");
+    stmt.execute("CREATE TABLE meta_coord (table_name VARCHAR(40), coord_system_id INT, max_length INT)");
+    for (String table : test.getCoreFeatureTables()) {
+      stmt.execute("CREATE TABLE " + table + " (seq_region_id INT, seq_region_start INT, seq_region_end INT)");
+    }
+    stmt.execute("INSERT INTO seq_region VALUES (1, 1)");
+    stmt.execute("INSERT INTO gene VALUES (1, 101, 200), (1, 1, 50)");
+    stmt.execute("INSERT INTO meta_coord VALUES ('gene', 1, 100), ('simple_feature', 1, 10)");
+
+    DatabaseServer server = new DatabaseServer("localhost", "1", "sa", "", "org.h2.Driver");
+    server.setDatabaseURL("jdbc:h2:mem:");
+    DatabaseRegistryEntry dbre = new DatabaseRegistryEntry(server, "mus_musculus_core_75_38", null, null);
+
+    try {
+      Map<String, Map<String, String>> coordSystems = new MetaCoordChecker(test).readFeatureCoordSystems(dbre,
+          test.getCoreFeatureTables(), null);
+      Assert.assertEquals(coordSystems.keySet().toString(), "[gene]");
+      Assert.assertEquals(coordSystems.get("gene").get("1"), "100");
+
+      Assert.assertTrue(test.run(dbre), problems(test).toString());
+    } finally {
+      con.close();
+    }
+  }
+
+  private List<String> problems(MetaCoord test) {
+    List<String> problems = new ArrayList<String>();
+    for (Object report : ReportManager.getReportsByTestCase(test.getTestName(), ReportLine.PROBLEM)) {
+      problems.add(((ReportLine) report).getMessage());
+    }
+    return problems;
+  }
+
+}
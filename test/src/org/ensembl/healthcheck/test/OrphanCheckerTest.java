@@ -0,0 +1,90 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+import org.ensembl.healthcheck.ReportLine;
+import org.ensembl.healthcheck.ReportManager;
+import org.ensembl.healthcheck.testcase.EnsTestCase;
+import org.ensembl.healthcheck.testcase.OrphanChecker;
+import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class OrphanCheckerTest {
+
+  private static class OrphanTest extends SingleDatabaseTestCase {
+    public boolean run(DatabaseRegistryEntry dbre) {
+      return true;
+    }
+  }
+
+  private static class SingleOrphanTest extends SingleDatabaseTestCase {
+    public boolean run(DatabaseRegistryEntry dbre) {
+      return true;
+    }
+  }
+
+  @Test
+  public void testSameResultsAsSingleChecks() throws Exception {
+
+    Class.forName("org.h2.Driver");
+    Connection con = DriverManager.getConnection("jdbc:h2:mem:orphancheckertest", "sa", "");
+    Statement stmt = con.createStatement();
+    stmt.execute("CREATE TABLE gene (gene_id INT PRIMARY KEY)");
+    stmt.execute("CREATE TABLE transcript (transcript_id INT PRIMARY KEY, gene_id INT, biotype VARCHAR(20))");
+    stmt.execute("INSERT INTO gene VALUES (1), (2), (3)");
+    stmt.execute("CREATE TABLE exon (exon_id INT PRIMARY KEY, transcript_id INT)");
+    stmt.execute("INSERT INTO exon VALUES (20, 10), (21, 12)");
+    stmt.execute("INSERT INTO transcript VALUES (10, 1, 'a'), (11, 1, 'b'), (12, 4, 'a'), (13, 5, 'b'), (14, NULL, 'b')");
+
+    EnsTestCase grouped = new OrphanTest();
+    OrphanChecker orphanChecker = new OrphanChecker(grouped);
+    orphanChecker.checkForOrphans("transcript", "gene_id", "gene", "gene_id", false);
+    orphanChecker.checkForOrphansWithConstraint("transcript", "gene_id", "gene", "gene_id", "biotype = 'a'");
+    orphanChecker.checkOptionalRelation("transcript", "gene_id", "gene", "gene_id");
+    orphanChecker.checkForOrphans("exon", "transcript_id", "transcript", "transcript_id");
+    Assert.assertFalse(orphanChecker.run(con));
+
+    EnsTestCase single = new SingleOrphanTest();
+    single.checkForOrphans(con, "transcript", "gene_id", "gene", "gene_id", false);
+    single.checkForOrphansWithConstraint(con, "transcript", "gene_id", "gene", "gene_id", "biotype = 'a'");
+    single.checkOptionalRelation(con, "transcript", "gene_id", "gene", "gene_id");
+    single.checkForOrphans(con, "exon", "transcript_id", "transcript", "transcript_id");
+
+    List<String> expected = messages(single);
+    Assert.assertTrue(expected.contains("FAILURE DETAILS: 5 transcript entries are not linked to gene"), expected.toString());
+    Assert.assertEquals(messages(grouped), expected);
+
+    con.close();
+  }
+
+  private List<String> messages(EnsTestCase testCase) {
+    List<String> messages = new ArrayList<String>();
+    for (Object report : ReportManager.getReportsByTestCase(testCase.getTestName(), ReportLine.ALL)) {
+      messages.add(((ReportLine) report).getMessage());
+    }
+    return messages;
+  }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+import org.ensembl.healthcheck.ParallelTestScheduler;
+import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ParallelTestSchedulerTest {
+
+  private static class NoOpTest extends SingleDatabaseTestCase {
+    public boolean run(DatabaseRegistryEntry dbre) {
+      return true;
+    }
+  }
+
+  private final String[] names = { "homo_sapiens_core_20_34", "mus_musculus_core_20_34", "danio_rerio_core_20_34" };
+
+  @Test
+  public void testSerialRunKeepsOrder() {
+
+    ParallelTestScheduler scheduler = new ParallelTestScheduler(1, 0);
+    final List<String> seen = new ArrayList<String>();
+
+    SingleDatabaseTestCase t1 = new NoOpTest();
+    SingleDatabaseTestCase t2 = new NoOpTest();
+    for (String name : names) {
+      DatabaseRegistryEntry dbre = new DatabaseRegistryEntry(null, name, null, null);
+      scheduler.add(t1, dbre);
+      scheduler.add(t2, dbre);
+    }
+
+    scheduler.runAll(new ParallelTestScheduler.PairRunner() {
+      public void run(SingleDatabaseTestCase testCase, DatabaseRegistryEntry database) {
+        seen.add(database.getName());
+      }
+    });
+
+    Assert.assertEquals(seen.size(), 6);
+    Assert.assertEquals(seen.get(0), names[0]);
+    Assert.assertEquals(seen.get(1), names[0]);
+    Assert.assertEquals(seen.get(5), names[2]);
+  }
+
+  @Test
+  public void testConcurrentRunNeverSharesATestInstance() {
+
+    ParallelTestScheduler scheduler = new ParallelTestScheduler(4, 0);
+    final Set<SingleDatabaseTestCase> running = Collections.synchronizedSet(new HashSet<SingleDatabaseTestCase>());
+    final List<String> seen = Collections.synchronizedList(new ArrayList<String>());
+    final List<String> clashes = Collections.synchronizedList(new ArrayList<String>());
+
+    for (int i = 0; i < 8; i++) {
+      SingleDatabaseTestCase testCase = new NoOpTest();
+      for (String name : names) {
+        scheduler.add(testCase, new DatabaseRegistryEntry(null, name, null, null));
+      }
+    }
+
+    scheduler.runAll(new ParallelTestScheduler.PairRunner() {
+      public void run(SingleDatabaseTestCase testCase, DatabaseRegistryEntry database) {
+        if (!running.add(testCase)) {
+          clashes.add(database.getName());
+        }
+        try {
+          Thread.sleep(5);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        seen.add(database.getName());
+        running.remove(testCase);
+      }
+    });
+
+    Assert.assertEquals(seen.size(), 24);
+    Assert.assertTrue(clashes.isEmpty(), "A test instance was run on two databases at once");
+  }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.ensembl.healthcheck.testcase.PerlWorkerPool;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class PerlWorkerPoolTest {
+
+  // stands in for run_healthcheck.pl -worker; the module "crash" kills it
+  private static final String WORKER = "echo HEALTHCHECK-WORKER:READY\n"
+      + "while IFS=$'\\t' read -r cmd id module dbname species; do\n"
+      + "  case \"$cmd\" in\n"
+      + "    PING) echo HEALTHCHECK-WORKER:PONG ;;\n"
+      + "    RUN) if [ \"$module\" = crash ]; then exit 1; fi\n"
+      + "         echo \"PROBLEM:$module $dbname $species\" >&2\n"
+      + "         echo \"pid $$\"\n"
+      + "         echo \"HEALTHCHECK-WORKER:DONE\t$id\t0\" ;;\n"
+      + "  esac\n"
+      + "done\n";
+
+  @Test
+  public void testWorkerReusedAndReplacedAfterCrash() throws Exception {
+
+    File script = File.createTempFile("perlworkerpooltest", ".sh");
+    script.deleteOnExit();
+    FileWriter writer = new FileWriter(script);
+    writer.write(WORKER);
+    writer.close();
+
+    PerlWorkerPool pool = PerlWorkerPool.getInstance("/bin/bash " + script.getAbsolutePath(), System.getenv());
+
+    StringBuilder first = new StringBuilder();
+    Assert.assertTrue(pool.run("Translation", "homo_sapiens_core_75_37", 1, first));
+    Assert.assertTrue(first.toString().startsWith("PROBLEM:Translation homo_sapiens_core_75_37 1\npid "), first.toString());
+    StringBuilder second = new StringBuilder();
+    Assert.assertTrue(pool.run("Translation", "mus_musculus_core_75_38", 1, second));
+    Assert.assertEquals(pid(second), pid(first), "the worker should be reused");
+
+    try {
+      pool.run("crash", "homo_sapiens_core_75_37", 1, new StringBuilder());
+      Assert.fail("a crashed worker should be reported");
+    } catch (IOException e) {
+      // expected
+    }
+    StringBuilder third = new StringBuilder();
+    Assert.assertTrue(pool.run("Translation", "homo_sapiens_core_75_37", 1, third));
+    Assert.assertNotEquals(pid(third), pid(first), "the crashed worker should be replaced");
+
+    pool.shutdown();
+  }
+
+  private String pid(CharSequence output) {
+    String s = output.toString();
+    return s.substring(s.indexOf("pid "));
+  }
+
+}
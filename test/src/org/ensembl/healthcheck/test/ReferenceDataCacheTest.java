@@ -0,0 +1,72 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+import org.ensembl.healthcheck.DatabaseServer;
+import org.ensembl.healthcheck.ReferenceDataCache;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ReferenceDataCacheTest {
+
+  private static final String URL = "jdbc:h2:mem:referencedatacachetest";
+
+  @Test
+  public void testCachedUntilInvalidated() throws Exception {
+
+    Class.forName("org.h2.Driver");
+    // keeps the in-memory database alive
+    Connection con = DriverManager.getConnection(URL, "sa", "");
+    Statement stmt = con.createStatement();
+    stmt.execute("CREATE TABLE meta (meta_id INT, species_id INT, meta_key VARCHAR(40), meta_value VARCHAR(40))");
+    stmt.execute("INSERT INTO meta VALUES (1, NULL, 'schema_version', '75'), (2, 1, 'species.alias', 'human'), (3, 2, 'species.alias', 'mouse')");
+    stmt.execute("CREATE TABLE attrib_type (attrib_type_id INT, code VARCHAR(20))");
+    stmt.execute("INSERT INTO attrib_type VALUES (6, 'toplevel')");
+
+    DatabaseServer server = new DatabaseServer("localhost", "1", "sa", "", "org.h2.Driver") {
+      public Connection getDatabaseConnection(String databaseName) throws SQLException {
+        return DriverManager.getConnection(URL, "sa", "");
+      }
+    };
+    DatabaseRegistryEntry dbre = new DatabaseRegistryEntry(server, "homo_sapiens_core_75_37", null, null);
+    ReferenceDataCache cache = dbre.getReferenceData();
+
+    long misses = ReferenceDataCache.getMisses();
+    Assert.assertEquals(cache.getMetaValue("schema_version"), "75");
+    Assert.assertEquals(cache.getMetaValues("species.alias"), Arrays.asList("human", "mouse"));
+    Assert.assertEquals(cache.getMetaValues("species.alias", 2), Arrays.asList("mouse"));
+    Assert.assertEquals(cache.getMetaValue("no.such.key"), "");
+    Assert.assertEquals(cache.getAttribTypeId("toplevel"), Integer.valueOf(6));
+    Assert.assertNull(cache.getAttribTypeId("GeneGC"));
+    Assert.assertEquals(ReferenceDataCache.getMisses(), misses + 2, "meta and attrib_type should be read once");
+
+    stmt.execute("UPDATE meta SET meta_value = '76' WHERE meta_key = 'schema_version'");
+    Assert.assertEquals(cache.getMetaValue("schema_version"), "75");
+    cache.invalidate();
+    Assert.assertEquals(cache.getMetaValue("schema_version"), "76");
+
+    con.close();
+  }
+
+}
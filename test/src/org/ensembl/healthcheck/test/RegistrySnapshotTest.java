@@ -0,0 +1,67 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.test;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+import org.ensembl.healthcheck.DatabaseRegistryEntry.DatabaseInfo;
+import org.ensembl.healthcheck.DatabaseServer;
+import org.ensembl.healthcheck.DatabaseType;
+import org.ensembl.healthcheck.RegistrySnapshot;
+import org.ensembl.healthcheck.Species;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class RegistrySnapshotTest {
+
+  private static final String NAME = "mus_musculus_est_20_32";
+
+  @Test
+  public void testSaveAndReload() throws Exception {
+
+    File file = File.createTempFile("registry", ".snapshot");
+    file.delete();
+
+    // never connected to
+    DatabaseServer server = new DatabaseServer("localhost", "1", "nobody", "", "org.h2.Driver");
+
+    RegistrySnapshot snapshot = new RegistrySnapshot(file);
+    // a type which resolveAlias would not give back from its name
+    DatabaseInfo info = new DatabaseInfo(NAME, "mus_musculus", Species.MUS_MUSCULUS, DatabaseType.EST, "20", "32");
+    snapshot.putEntry(server, new DatabaseRegistryEntry(server, info), "2014-01-01/2014-01-02");
+    snapshot.putEntry(server, new DatabaseRegistryEntry(server, "homo_sapiens_core_20_34", null, null), "2014-01-01/unknown");
+    snapshot.save();
+
+    RegistrySnapshot reloaded = new RegistrySnapshot(file);
+    DatabaseRegistryEntry dbre = reloaded.getEntry(server, NAME, "2014-01-01/2014-01-02");
+    Assert.assertNotNull(dbre);
+    Assert.assertEquals(dbre.getSpecies(), Species.MUS_MUSCULUS);
+    Assert.assertEquals(dbre.getType(), DatabaseType.EST);
+    Assert.assertEquals(dbre.getSchemaVersion(), "20");
+
+    Assert.assertNull(reloaded.getEntry(server, NAME, "2014-01-01/2014-02-01"), "Changed meta table");
+    Assert.assertNull(reloaded.getEntry(server, "homo_sapiens_core_20_34", "2014-01-01/unknown"), "Unknown update time");
+
+    reloaded.retainOnly(server, Collections.<String> emptySet());
+    Assert.assertNull(reloaded.getEntry(server, NAME, "2014-01-01/2014-01-02"), "Database gone");
+
+    file.delete();
+  }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.test;
+
+import java.util.List;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+import org.ensembl.healthcheck.ReportLine;
+import org.ensembl.healthcheck.ReportStore;
+import org.ensembl.healthcheck.Team;
+import org.ensembl.healthcheck.testcase.EnsTestCase;
+import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ReportStoreTest {
+
+  private static class FirstTest extends SingleDatabaseTestCase {
+    public boolean run(DatabaseRegistryEntry dbre) {
+      return true;
+    }
+  }
+
+  private static class SecondTest extends SingleDatabaseTestCase {
+    public boolean run(DatabaseRegistryEntry dbre) {
+      return true;
+    }
+  }
+
+  private static final String HUMAN = "homo_sapiens_core_20_34";
+  private static final String MOUSE = "mus_musculus_core_20_32";
+
+  private final EnsTestCase first = new FirstTest();
+  private final EnsTestCase second = new SecondTest();
+
+  @Test
+  public void testSpilledReportsAreKept() {
+
+    ReportStore store = new ReportStore(2);
+    store.add(new ReportLine(first, HUMAN, ReportLine.INFO, "one", null, null));
+    store.add(new ReportLine(first, MOUSE, ReportLine.PROBLEM, "two", Team.CORE, null));
+    store.add(new ReportLine(second, HUMAN, ReportLine.CORRECT, "three", null, null));
+    store.add(new ReportLine(first, HUMAN, ReportLine.PROBLEM, "four\nlines", Team.CORE, Team.GENEBUILD));
+    store.add(new ReportLine(second, MOUSE, ReportLine.INFO, "five", null, null));
+
+    Assert.assertEquals(store.size(), 5);
+
+    List<ReportLine> firstReports = store.getByTestCase(first.getTestName(), ReportLine.ALL);
+    Assert.assertEquals(firstReports.size(), 3);
+    ReportLine spilled = firstReports.get(2);
+    Assert.assertEquals(spilled.getMessage(), "four\nlines");
+    Assert.assertEquals(spilled.getDatabaseName(), HUMAN);
+    Assert.assertEquals(spilled.getSecondTeamResponsible(), Team.GENEBUILD);
+    Assert.assertSame(spilled.getTestCase(), first);
+
+    Assert.assertEquals(store.getByDatabase(HUMAN, ReportLine.PROBLEM).size(), 1);
+    Assert.assertEquals(store.get(second.getTestName(), MOUSE).get(0).getMessage(), "five");
+    Assert.assertEquals(store.get(first.getTestName(), HUMAN).size(), 2);
+
+    store.close();
+  }
+
+  /**
+   * Spilled reports are read when they are accessed rather than all at once,
+   * and lists don't change when reports are added later.
+   */
+  @Test
+  public void testSpilledReportsReadOnAccess() {
+
+    ReportStore store = new ReportStore(1);
+    store.add(new ReportLine(first, HUMAN, ReportLine.INFO, "one", null, null));
+    store.add(new ReportLine(first, MOUSE, ReportLine.PROBLEM, "two", null, null));
+
+    List<ReportLine> reports = store.getAllByTestCase(ReportLine.ALL).get(first.getTestName());
+    store.add(new ReportLine(first, HUMAN, ReportLine.PROBLEM, "three", null, null));
+
+    Assert.assertEquals(reports.size(), 2);
+    Assert.assertSame(reports.get(0), reports.get(0));
+    Assert.assertNotSame(reports.get(1), reports.get(1), "Spilled reports should not be kept in memory");
+    Assert.assertEquals(reports.get(1).getMessage(), "two");
+
+    store.close();
+  }
+
+  @Test
+  public void testCounts() {
+
+    ReportStore store = new ReportStore(1);
+    store.add(new ReportLine(first, HUMAN, ReportLine.INFO, "one", null, null));
+    store.add(new ReportLine(first, MOUSE, ReportLine.PROBLEM, "two", null, null));
+    store.add(new ReportLine(second, HUMAN, ReportLine.CORRECT, "three", null, null));
+
+    Assert.assertEquals(store.countPassesAndFailsTest(first.getTestName()), new int[] { 1, 1 });
+    Assert.assertEquals(store.countPassesAndFailsDatabase(HUMAN), new int[] { 2, 0 });
+    Assert.assertEquals(store.countPassesAndFailsAll(), new int[] { 2, 1 });
+    Assert.assertTrue(store.databasePassed(first.getTestName(), HUMAN));
+    Assert.assertFalse(store.databasePassed(first.getTestName(), MOUSE));
+    Assert.assertFalse(store.allDatabasesPassed(first.getTestName()));
+    Assert.assertTrue(store.allDatabasesPassed(second.getTestName()));
+
+    store.close();
+  }
+
+}
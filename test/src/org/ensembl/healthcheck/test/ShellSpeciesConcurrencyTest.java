@@ -0,0 +1,82 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+import org.ensembl.healthcheck.DatabaseServer;
+import org.ensembl.healthcheck.ReportLine;
+import org.ensembl.healthcheck.ReportManager;
+import org.ensembl.healthcheck.testcase.AbstractShellBasedTestCase;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ShellSpeciesConcurrencyTest {
+
+  // the later species finish first; species 3 fails
+  private static class SpeciesShellTest extends AbstractShellBasedTestCase {
+    public SpeciesShellTest() {
+      setSpeciesIdAware(true);
+    }
+    protected String createCommandLine(DatabaseRegistryEntry dbre, int speciesId) {
+      return "echo start " + speciesId + "; sleep 0." + (5 - speciesId) + "; echo end " + speciesId
+          + (speciesId == 3 ? "; exit 1" : "");
+    }
+  }
+
+  @Test
+  public void testOutputGroupedBySpecies() throws Exception {
+
+    Class.forName("org.h2.Driver");
+    final String url = "jdbc:h2:mem:shellspeciesconcurrencytest";
+    Connection con = DriverManager.getConnection(url, "sa", "");
+    DatabaseServer server = new DatabaseServer("localhost", "1", "sa", "", "org.h2.Driver") {
+      public Connection getDatabaseConnection(String databaseName) throws SQLException {
+        return DriverManager.getConnection(url, "sa", "");
+      }
+    };
+    DatabaseRegistryEntry dbre = new DatabaseRegistryEntry(server, "fungi_collection_core_21_74_1", null, null) {
+      public List<Integer> getSpeciesIds() {
+        return Arrays.asList(1, 2, 3, 4);
+      }
+    };
+
+    SpeciesShellTest test = new SpeciesShellTest();
+    Assert.assertFalse(test.run(dbre));
+
+    List<String> messages = new ArrayList<String>();
+    for (Object report : ReportManager.getReportsByTestCase(test.getTestName(), ReportLine.ALL)) {
+      // the newline after each line of output is reported on its own
+      if (((ReportLine) report).getMessage().length() > 0) {
+        messages.add(((ReportLine) report).getMessage());
+      }
+    }
+    Assert.assertEquals(messages, Arrays.asList(
+        "start 1", "end 1", "Command \n" + test.createCommandLine(dbre, 1) + "\ncompleted successfully",
+        "start 2", "end 2", "Command \n" + test.createCommandLine(dbre, 2) + "\ncompleted successfully",
+        "start 3", "end 3", "Command \n" + test.createCommandLine(dbre, 3) + "\ndid not complete successfully"));
+
+    con.close();
+  }
+
+}
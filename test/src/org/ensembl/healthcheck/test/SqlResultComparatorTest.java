@@ -0,0 +1,90 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ensembl.healthcheck.DatabaseRegistry;
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+import org.ensembl.healthcheck.DatabaseServer;
+import org.ensembl.healthcheck.ReportLine;
+import org.ensembl.healthcheck.ReportManager;
+import org.ensembl.healthcheck.testcase.EnsTestCase;
+import org.ensembl.healthcheck.testcase.MultiDatabaseTestCase;
+import org.ensembl.healthcheck.util.DBUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SqlResultComparatorTest {
+
+  private static class AcrossSpeciesTest extends MultiDatabaseTestCase {
+    public boolean run(DatabaseRegistry dbr) {
+      return true;
+    }
+  }
+
+  @Test
+  public void testOnlyDifferentDatabaseReported() throws Exception {
+
+    Class.forName("org.h2.Driver");
+    List<Connection> connections = new ArrayList<Connection>();
+    DatabaseRegistryEntry[] databases = new DatabaseRegistryEntry[4];
+    for (int i = 0; i < databases.length; i++) {
+      final String url = "jdbc:h2:mem:sqlresultcomparatortest" + i;
+      // keeps the in-memory database alive
+      Connection con = DriverManager.getConnection(url, "sa", "");
+      connections.add(con);
+      Statement stmt = con.createStatement();
+      stmt.execute("CREATE TABLE attrib_type (attrib_type_id INT, code VARCHAR(20), description VARCHAR(40))");
+      stmt.execute("INSERT INTO attrib_type VALUES (1, 'toplevel', NULL), (2, 'GeneGC', 'GC content')");
+      if (i == 2) {
+        stmt.execute("UPDATE attrib_type SET code = 'GeneCount' WHERE attrib_type_id = 2");
+      }
+      DatabaseServer server = new DatabaseServer("localhost", "1", "sa", "", "org.h2.Driver") {
+        public Connection getDatabaseConnection(String databaseName) throws SQLException {
+          return DriverManager.getConnection(url, "sa", "");
+        }
+      };
+      databases[i] = new DatabaseRegistryEntry(server, "species" + i + "_core_75_1", null, null);
+    }
+
+    String sql = "SELECT attrib_type_id, code, description FROM attrib_type ORDER BY attrib_type_id";
+    EnsTestCase test = new AcrossSpeciesTest();
+    Assert.assertFalse(DBUtils.checkSameSQLResult(test, sql, databases, false));
+
+    List<String> messages = new ArrayList<String>();
+    for (Object report : ReportManager.getReportsByTestCase(test.getTestName(), ReportLine.ALL)) {
+      messages.add(((ReportLine) report).getMessage());
+    }
+    Assert.assertEquals(messages.size(), 1, messages.toString());
+    Assert.assertTrue(messages.get(0).startsWith("jdbc:h2:mem:sqlresultcomparatortest2 and jdbc:h2:mem:sqlresultcomparatortest0 "
+        + " with columns ATTRIB_TYPE_ID 2, CODE GeneCount,  differ for values GeneCount, GeneGC"), messages.get(0));
+
+    connections.get(2).createStatement().execute("UPDATE attrib_type SET code = 'GeneGC' WHERE attrib_type_id = 2");
+    Assert.assertTrue(DBUtils.checkSameSQLResult(test, sql, databases, false));
+
+    for (Connection con : connections) {
+      con.close();
+    }
+  }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+
+import org.ensembl.healthcheck.DatabaseType;
+import org.ensembl.healthcheck.TestCatalogue;
+import org.ensembl.healthcheck.testcase.EnsTestCase;
+import org.ensembl.healthcheck.testcase.SingleDatabaseTestCase;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestCatalogueTest {
+
+  /**
+   * The catalogue must describe each test as the registry would see it after
+   * instantiating it.
+   */
+  @Test
+  public void testEntriesMatchInstances() throws Exception {
+
+    String packageName = "org.ensembl.healthcheck.testcase.variation";
+    File file = File.createTempFile("test-catalogue", ".txt");
+    file.deleteOnExit();
+    TestCatalogue.main(new String[] { file.getPath(), packageName });
+
+    TestCatalogue catalogue;
+    InputStream in = new FileInputStream(file);
+    try {
+      catalogue = TestCatalogue.read(in);
+    } finally {
+      in.close();
+    }
+
+    Assert.assertTrue(catalogue.covers(packageName));
+    Assert.assertFalse(catalogue.covers("org.ensembl.healthcheck.testcase"));
+
+    List<TestCatalogue.Entry> entries = catalogue.getEntries(packageName);
+    Assert.assertFalse(entries.isEmpty());
+
+    for (TestCatalogue.Entry entry : entries) {
+      EnsTestCase test = entry.newTest();
+      Assert.assertEquals(entry.getShortName(), test.getShortTestName());
+      Assert.assertTrue(entry.getAliases().contains(test.getShortTestName()));
+      Assert.assertEquals(entry.getGroups(), test.getGroups(), entry.getClassName());
+      Assert.assertEquals(entry.getTypes(), Arrays.asList(test.getAppliesToTypes()), entry.getClassName());
+      Assert.assertEquals(entry.isLongRunning(), test.isLongRunning());
+      Assert.assertEquals(entry.getKind().equals(TestCatalogue.Entry.SINGLE), test instanceof SingleDatabaseTestCase);
+      Assert.assertTrue(entry.appliesToType(DatabaseType.VARIATION), entry.getClassName());
+    }
+  }
+
+  /**
+   * A class compiled after the catalogue was written, e.g. by an IDE, makes
+   * the catalogue stale.
+   */
+  @Test
+  public void testNewerClassFound() throws Exception {
+
+    File root = File.createTempFile("test-catalogue", "");
+    root.delete();
+    File classFile = new File(root, "org/example/testcase/NewTest.class");
+    File catalogueFile = new File(root, TestCatalogue.RESOURCE);
+    try {
+      classFile.getParentFile().mkdirs();
+      catalogueFile.getParentFile().mkdirs();
+      FileUtils.touch(classFile);
+      FileUtils.touch(catalogueFile);
+      URL catalogue = catalogueFile.toURI().toURL();
+      ClassLoader loader = new URLClassLoader(new URL[] { root.toURI().toURL() }, null);
+      List<String> packages = Collections.singletonList("org.example.testcase");
+
+      classFile.setLastModified(catalogueFile.lastModified() - 10000);
+      Assert.assertNull(TestCatalogue.findNewerClass(loader, catalogue, packages));
+      Assert.assertNull(TestCatalogue.findNewerClass(loader, catalogue, Collections.singletonList("org.example.other")));
+
+      classFile.setLastModified(catalogueFile.lastModified() + 10000);
+      String newer = TestCatalogue.findNewerClass(loader, catalogue, packages);
+      Assert.assertNotNull(newer);
+      Assert.assertTrue(newer.endsWith("org/example/testcase/NewTest.class"), newer);
+    } finally {
+      FileUtils.deleteDirectory(root);
+    }
+  }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.test;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.ensembl.healthcheck.DatabaseRegistry;
+import org.ensembl.healthcheck.ReportManager;
+import org.ensembl.healthcheck.TestMetrics;
+import org.ensembl.healthcheck.testcase.EnsTestCase;
+import org.ensembl.healthcheck.testcase.MultiDatabaseTestCase;
+import org.ensembl.healthcheck.util.ConnectionPool;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestMetricsTest {
+
+  private static class CountingTest extends MultiDatabaseTestCase {
+    public boolean run(DatabaseRegistry dbr) {
+      return true;
+    }
+  }
+
+  @Test
+  public void testMeasurementOfTestRun() throws Exception {
+
+    File file = File.createTempFile("test-metrics", ".csv");
+    file.delete();
+    file.deleteOnExit();
+    System.setProperty(TestMetrics.FILE, file.getPath());
+
+    try {
+      Connection con = ConnectionPool.getConnection("org.h2.Driver", "jdbc:h2:mem:testmetricstest", "sa", "");
+      Statement stmt = con.createStatement();
+      stmt.execute("CREATE TABLE seq_region (seq_region_id INT, name VARCHAR(20))");
+      stmt.execute("INSERT INTO seq_region VALUES (1, 'chr1'), (2, 'chr22'), (3, NULL)");
+
+      EnsTestCase test = new CountingTest();
+      ReportManager.startTestCase(test, null);
+
+      ResultSet rs = stmt.executeQuery("SELECT seq_region_id, name FROM seq_region ORDER BY seq_region_id");
+      int rows = 0;
+      while (rs.next()) {
+        rs.getString(2);
+        rows++;
+      }
+      Assert.assertEquals(rows, 3);
+      Assert.assertSame(rs.getStatement().getConnection(), con);
+      rs.close();
+
+      ReportManager.finishTestCase(test, false, null);
+      Assert.assertNull(TestMetrics.current());
+
+      List<String> lines = FileUtils.readLines(file, "UTF-8");
+      Assert.assertEquals(lines.size(), 2, lines.toString());
+      String[] fields = lines.get(1).split(",", -1);
+      Assert.assertEquals(fields[0], test.getShortTestName());
+      Assert.assertEquals(fields[1], "");
+      Assert.assertEquals(fields[2], "false");
+      // one statement, three rows, "chr1" and "chr22"
+      Assert.assertEquals(fields[6], "1");
+      Assert.assertEquals(fields[7], "3");
+      Assert.assertEquals(fields[8], "9");
+
+      TestMetrics.Summary summary = null;
+      for (TestMetrics.Summary s : TestMetrics.getSummaries()) {
+        if (s.getTestName().equals(test.getShortTestName())) {
+          summary = s;
+        }
+      }
+      Assert.assertNotNull(summary);
+      Assert.assertEquals(summary.getRuns(), 1);
+      Assert.assertEquals(summary.getFailures(), 1);
+
+      StringWriter json = new StringWriter();
+      TestMetrics.writeSummary(json);
+      Assert.assertTrue(json.toString().contains("\"runs\": 1"), json.toString());
+
+      stmt.execute("DROP TABLE seq_region");
+      stmt.close();
+    } finally {
+      System.clearProperty(TestMetrics.FILE);
+      TestMetrics.reset();
+    }
+  }
+
+  /**
+   * Threads started while a test runs only count towards it if they are
+   * bound to it with inherit.
+   */
+  @Test
+  public void testWorkerThreads() throws Exception {
+
+    EnsTestCase test = new CountingTest();
+    TestMetrics.start(test, null);
+    try {
+      final TestMetrics.Measurement[] seen = new TestMetrics.Measurement[2];
+      Thread infrastructure = new Thread(new Runnable() {
+        public void run() {
+          seen[0] = TestMetrics.current();
+        }
+      });
+      Thread worker = new Thread(TestMetrics.inherit(new Runnable() {
+        public void run() {
+          seen[1] = TestMetrics.current();
+          TestMetrics.current().addStatement();
+        }
+      }));
+      infrastructure.start();
+      worker.start();
+      infrastructure.join();
+      worker.join();
+
+      Assert.assertNull(seen[0]);
+      Assert.assertSame(seen[1], TestMetrics.current());
+      Assert.assertEquals(TestMetrics.current().getStatements(), 1);
+    } finally {
+      TestMetrics.finish(test, true, null);
+      TestMetrics.reset();
+    }
+  }
+
+  @Test
+  public void testHistogramBuckets() {
+
+    TestMetrics.Histogram histogram = new TestMetrics.Histogram();
+    histogram.add(0);
+    histogram.add(1);
+    histogram.add(3);
+    histogram.add(1000);
+
+    Assert.assertEquals(histogram.getCount(), 4);
+    Assert.assertEquals(histogram.getTotal(), 1004);
+    Assert.assertEquals(histogram.getMax(), 1000);
+    Assert.assertEquals(histogram.getBucket(0), 1);
+    Assert.assertEquals(histogram.getBucket(1), 1);
+    Assert.assertEquals(histogram.getBucket(2), 1);
+    // 512 <= 1000 < 1024
+    Assert.assertEquals(histogram.getBucket(10), 1);
+  }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+public class ConnectionPoolTest {
+
+  private static final String DRIVER = "org.h2.Driver";
+  private static final String URL = "jdbc:h2:mem:connectionpooltest";
+
+  @AfterMethod
+  void tearDown() {
+    System.clearProperty(ConnectionPool.MAX_PER_SERVER);
+    System.clearProperty(ConnectionPool.WAIT_SECONDS);
+    System.clearProperty(ConnectionPool.VALIDATION_INTERVAL_SECONDS);
+    System.clearProperty(ConnectionPool.MAX_IDLE_SECONDS);
+  }
+
+  @Test
+  public void testPinnedPerThread() throws Exception {
+
+    final Connection mine = ConnectionPool.getConnection(DRIVER, URL, "sa", "");
+    assertSame(ConnectionPool.getConnection(DRIVER, URL, "sa", ""), mine, "Same thread should get the same connection");
+
+    final Connection[] theirs = new Connection[1];
+    Thread t = new Thread() {
+      public void run() {
+        try {
+          theirs[0] = ConnectionPool.getConnection(DRIVER, URL, "sa", "");
+        } catch (SQLException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    };
+    t.start();
+    t.join();
+
+    assertNotSame(theirs[0], mine, "Threads must not share connections");
+  }
+
+  @Test
+  public void testScopeReturnsConnections() throws Exception {
+
+    int scope = ConnectionPool.beginScope();
+    Connection first = ConnectionPool.getConnection(DRIVER, URL + "scope", "sa", "");
+    ConnectionPool.endScope(scope);
+
+    assertFalse(first.isClosed(), "Connection should go back to the pool, not be closed");
+
+    Connection borrowed = ConnectionPool.borrowConnection(DRIVER, URL + "scope", "sa", "");
+    assertSame(borrowed, first, "Idle connection should be reused");
+    ConnectionPool.returnConnection(borrowed);
+  }
+
+  @Test
+  public void testPerServerLimit() throws Exception {
+
+    System.setProperty(ConnectionPool.MAX_PER_SERVER, "1");
+    System.setProperty(ConnectionPool.WAIT_SECONDS, "1");
+
+    String url = "jdbc:h2:mem://limited/";
+    Connection first = ConnectionPool.borrowConnection(DRIVER, url + "a", "sa", "");
+    try {
+      ConnectionPool.borrowConnection(DRIVER, url + "b", "sa", "");
+      fail("Second connection to the same server should time out");
+    } catch (SQLException e) {
+      assertTrue(e.getMessage().startsWith("Timed out"));
+    }
+
+    // an idle connection to another database on the same server is closed
+    // to make room
+    ConnectionPool.returnConnection(first);
+    Connection second = ConnectionPool.borrowConnection(DRIVER, url + "b", "sa", "");
+    assertTrue(first.isClosed());
+    ConnectionPool.invalidate(second);
+  }
+
+  @Test
+  public void testIdleConnectionsEvicted() throws Exception {
+
+    System.setProperty(ConnectionPool.MAX_IDLE_SECONDS, "1");
+
+    Connection unused = ConnectionPool.borrowConnection(DRIVER, URL + "unused", "sa", "");
+    ConnectionPool.returnConnection(unused);
+    Thread.sleep(2100);
+
+    // using another database closes the idle connection to this one
+    Connection other = ConnectionPool.borrowConnection(DRIVER, URL + "other", "sa", "");
+    assertTrue(unused.isClosed(), "Connection idle for longer than the limit should be closed");
+    ConnectionPool.returnConnection(other);
+  }
+
+  @Test
+  public void testValidationOnlyWhenIdle() throws Exception {
+
+    String url = URL + "validation";
+    Connection con = ConnectionPool.getConnection(DRIVER, url, "sa", "");
+
+    long skipped = ConnectionPool.getValidationsSkipped();
+    long performed = ConnectionPool.getValidationsPerformed();
+    assertSame(ConnectionPool.getConnection(DRIVER, url, "sa", ""), con);
+    assertEquals(ConnectionPool.getValidationsSkipped(), skipped + 1, "Recently used connection should not be checked");
+    assertEquals(ConnectionPool.getValidationsPerformed(), performed);
+
+    System.setProperty(ConnectionPool.VALIDATION_INTERVAL_SECONDS, "0");
+    assertSame(ConnectionPool.getConnection(DRIVER, url, "sa", ""), con);
+    assertEquals(ConnectionPool.getValidationsPerformed(), performed + 1);
+  }
+
+  @Test
+  public void testRecording() throws Exception {
+
+    ConnectionPool.getConnection(DRIVER, URL + "before", "sa", "");
+
+    ConnectionPool.startRecording();
+    ConnectionPool.getConnection(DRIVER, URL + "recorded", "sa", "");
+    ConnectionPool.returnConnection(ConnectionPool.borrowConnection(DRIVER, URL + "borrowed", "sa", ""));
+    Set<String> urls = ConnectionPool.stopRecording();
+
+    assertEquals(urls, new HashSet<String>(Arrays.asList(URL + "recorded", URL + "borrowed")));
+    assertTrue(ConnectionPool.stopRecording().isEmpty(), "Nothing should be recorded after stopping");
+  }
+
+  @Test
+  public void testServerKey() {
+    assertEquals(ConnectionPool.getServerKey("jdbc:mysql://host:3306/homo_sapiens_core_75_37"), "jdbc:mysql://host:3306/");
+    assertEquals(ConnectionPool.getServerKey("jdbc:mysql://host:3306/"), "jdbc:mysql://host:3306/");
+  }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+import org.testng.annotations.Test;
+
+public class LongHashSetTest {
+
+  @Test
+  public void testSetOperations() {
+
+    LongHashSet referencing = new LongHashSet();
+    LongHashSet referenced = new LongHashSet();
+    for (long i = 0; i < 100000; i++) {
+      referencing.add(i * 2);
+      referenced.add(i * 3);
+    }
+    assertFalse(referencing.add(0));
+    assertEquals(referencing.size(), 100000);
+    assertTrue(referencing.contains(0));
+    assertTrue(referencing.contains(199998));
+    assertFalse(referencing.contains(3));
+
+    // multiples of 6 are in both
+    LongHashSet both = referencing.intersection(referenced);
+    assertEquals(both.size(), 33334);
+    assertTrue(both.contains(0));
+    assertTrue(both.contains(6));
+
+    LongHashSet orphans = referencing.difference(referenced);
+    assertEquals(orphans.size(), 100000 - 33334);
+    assertEquals(referencing.countNotIn(referenced), orphans.size());
+    assertFalse(orphans.contains(0));
+    assertEquals(orphans.toArray()[0], 2L);
+
+    assertTrue(referencing.getMemoryUsage() < 100000L * 24);
+  }
+
+  @Test
+  public void testQueryForLongSet() throws Exception {
+
+    Class.forName("org.h2.Driver");
+    Connection con = DriverManager.getConnection("jdbc:h2:mem:longhashsettest", "sa", "");
+    Statement stmt = con.createStatement();
+    stmt.execute("CREATE TABLE object_xref (object_xref_id INT, ensembl_id BIGINT)");
+    stmt.execute("INSERT INTO object_xref VALUES (1, 10), (2, 10), (3, NULL), (4, 5000000000)");
+
+    LongHashSet ids = new ConnectionBasedSqlTemplateImpl(con).queryForLongSet("SELECT ensembl_id FROM object_xref WHERE object_xref_id > ?", 0);
+    assertEquals(ids.toArray(), new long[] { 10L, 5000000000L });
+
+    con.close();
+  }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+import org.testng.annotations.Test;
+
+public class RowHashSetTest {
+
+  @Test
+  public void testCounts() {
+
+    RowHashSet rows = new RowHashSet();
+    for (int i = 0; i < 5000; i++) {
+      rows.add(RowHashSet.hashValues(String.valueOf(i), "chromosome"));
+    }
+    rows.add(RowHashSet.hashValues("42", "chromosome"));
+    rows.seal();
+
+    assertEquals(rows.size(), 5001);
+    assertEquals(rows.count(RowHashSet.hashValues("1", "chromosome")), 1);
+    assertEquals(rows.count(RowHashSet.hashValues("42", "chromosome")), 2);
+    assertEquals(rows.count(RowHashSet.hashValues("1", "scaffold")), 0);
+  }
+
+  @Test
+  public void testNullIsNotEmpty() {
+    assertFalse(RowHashSet.hashValues((String) null) == RowHashSet.hashValues(""));
+    assertFalse(RowHashSet.hashValues("a", "b") == RowHashSet.hashValues("ab", ""));
+  }
+
+}
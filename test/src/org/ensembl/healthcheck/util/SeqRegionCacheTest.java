@@ -0,0 +1,68 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+import org.ensembl.healthcheck.DatabaseRegistryEntry;
+import org.ensembl.healthcheck.DatabaseServer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SeqRegionCacheTest {
+
+  @Test
+  public void testLookupAndInvalidate() throws Exception {
+
+    Class.forName("org.h2.Driver");
+    // keeps the in-memory database open while the cache uses its own connections
+    Connection con = DriverManager.getConnection("jdbc:h2:mem:homo_sapiens_core_75_37", "sa", "");
+    Statement stmt = con.createStatement();
+    stmt.execute("CREATE TABLE seq_region (seq_region_id INT PRIMARY KEY, name VARCHAR(40), coord_system_id INT, length INT)");
+    stmt.execute("INSERT INTO seq_region VALUES (1, 'chr1', 1, 1000), (3, 'scaffold_3', 2, 50)");
+
+    DatabaseServer server = new DatabaseServer("localhost", "1", "sa", "", "org.h2.Driver");
+    server.setDatabaseURL("jdbc:h2:mem:");
+    DatabaseRegistryEntry dbre = new DatabaseRegistryEntry(server, "homo_sapiens_core_75_37", null, null);
+
+    try {
+      SeqRegionCache cache = SeqRegionCache.getInstance(dbre);
+      Assert.assertEquals(cache.size(), 2);
+      Assert.assertTrue(cache.contains(1));
+      Assert.assertFalse(cache.contains(2));
+      Assert.assertEquals(cache.getLength(3), 50);
+      Assert.assertEquals(cache.getLength(2), -1);
+      Assert.assertEquals(cache.getName(1), "chr1");
+      Assert.assertNull(cache.getName(4));
+
+      stmt.execute("INSERT INTO seq_region VALUES (2, 'chr2', 1, 700)");
+      Assert.assertSame(SeqRegionCache.getInstance(dbre), cache, "The regions should be read once");
+      Assert.assertFalse(SeqRegionCache.getInstance(dbre).contains(2));
+
+      SeqRegionCache.invalidate(dbre);
+      cache = SeqRegionCache.getInstance(dbre);
+      Assert.assertEquals(cache.size(), 3);
+      Assert.assertEquals(cache.getLength(2), 700);
+    } finally {
+      SeqRegionCache.clear();
+      con.close();
+    }
+  }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright [1999-2014] Wellcome Trust Sanger Institute and the EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ensembl.healthcheck.util;
+
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SqlTraceTest {
+
+  @Test
+  public void testNormalise() {
+
+    Assert.assertEquals(SqlTrace.normalise("SELECT  name FROM seq_region\n WHERE seq_region_id = 12 AND name='chr1'"),
+        "SELECT name FROM seq_region WHERE seq_region_id = ? AND name=?");
+    Assert.assertEquals(SqlTrace.normalise("SELECT * FROM gene WHERE biotype IN ('protein_coding', \"lincRNA\")"),
+        "SELECT * FROM gene WHERE biotype IN (?+)");
+    Assert.assertEquals(SqlTrace.normalise("SELECT * FROM t2 WHERE x IN (1,2.5 , 3) AND y = 'it''s'"),
+        "SELECT * FROM t2 WHERE x IN (?+) AND y = ?");
+  }
+
+  @Test
+  public void testTrace() throws Exception {
+
+    System.setProperty(SqlTrace.FILE, "sql-trace-test.txt");
+    System.setProperty(SqlTrace.EXPLAIN_MS, "1");
+    SqlTrace.reset();
+
+    Class.forName("org.h2.Driver");
+    Connection con = MonitoredConnection.wrap(DriverManager.getConnection("jdbc:h2:mem:sqltracetest", "sa", ""));
+    try {
+      Statement stmt = con.createStatement();
+      stmt.execute("CREATE TABLE seq_region (seq_region_id INT, name VARCHAR(20))");
+      stmt.execute("INSERT INTO seq_region VALUES (1, 'chr1'), (2, 'chr22'), (3, NULL)");
+
+      for (int i = 1; i <= 3; i++) {
+        ResultSet rs = stmt.executeQuery("SELECT name FROM seq_region WHERE seq_region_id >= " + i);
+        while (rs.next()) {
+          rs.getString(1);
+        }
+        rs.close();
+      }
+
+      PreparedStatement ps = con.prepareStatement("SELECT name FROM seq_region WHERE seq_region_id = ?");
+      ps.setInt(1, 2);
+      Assert.assertTrue(ps.execute());
+      ResultSet rs = ps.getResultSet();
+      Assert.assertTrue(rs.next());
+      Assert.assertFalse(rs.next());
+      // finished by closing the statement
+      ps.close();
+
+      stmt.close();
+    } finally {
+      con.close();
+      System.clearProperty(SqlTrace.FILE);
+    }
+
+    SqlTrace.Statistics select = null;
+    SqlTrace.Statistics prepared = null;
+    for (SqlTrace.Statistics s : SqlTrace.getSlowest(10)) {
+      Assert.assertEquals(s.getTestName(), SqlTrace.NO_TEST);
+      if (s.getStatement().equals("SELECT name FROM seq_region WHERE seq_region_id >= ?")) {
+        select = s;
+      } else if (s.getStatement().equals("SELECT name FROM seq_region WHERE seq_region_id = ?")) {
+        prepared = s;
+      }
+    }
+    Assert.assertEquals(SqlTrace.getSlowest(10).size(), 4);
+
+    Assert.assertNotNull(select);
+    Assert.assertEquals(select.getCount(), 3);
+    // 3 + 2 + 1
+    Assert.assertEquals(select.getRows(), 6);
+    Assert.assertEquals(select.getExample(), "SELECT name FROM seq_region WHERE seq_region_id >= 1");
+
+    Assert.assertNotNull(prepared);
+    Assert.assertEquals(prepared.getCount(), 1);
+    Assert.assertEquals(prepared.getRows(), 1);
+    Assert.assertNull(prepared.getExplain());
+
+    StringWriter report = new StringWriter();
+    SqlTrace.writeReport(report);
+    Assert.assertTrue(report.toString().startsWith("Top 4 of 4 statements"), report.toString());
+    Assert.assertTrue(report.toString().contains("\t6\t-\tSELECT name FROM seq_region WHERE seq_region_id >= ?"), report.toString());
+
+    System.clearProperty(SqlTrace.EXPLAIN_MS);
+    SqlTrace.reset();
+  }
+
+  /**
+   * EXPLAINs wait until no statement of the connection is open, e.g. when
+   * another statement is still reading its result set.
+   */
+  @Test
+  public void testExplainDeferred() throws Exception {
+
+    String slow = "SELECT COUNT(*) FROM SYSTEM_RANGE(1, 1000) a, SYSTEM_RANGE(1, 1000) b";
+
+    System.setProperty(SqlTrace.FILE, "sql-trace-test.txt");
+    System.setProperty(SqlTrace.EXPLAIN_MS, "1");
+    SqlTrace.reset();
+
+    Class.forName("org.h2.Driver");
+    Connection con = MonitoredConnection.wrap(DriverManager.getConnection("jdbc:h2:mem:sqltraceexplain", "sa", ""));
+    try {
+      Statement reading = con.createStatement();
+      ResultSet open = reading.executeQuery("SELECT X FROM SYSTEM_RANGE(1, 10)");
+      Assert.assertTrue(open.next());
+
+      Statement stmt = con.createStatement();
+      ResultSet rs = stmt.executeQuery(slow);
+      while (rs.next()) {
+        rs.getLong(1);
+      }
+      rs.close();
+      stmt.close();
+
+      SqlTrace.Statistics statistics = find(SqlTrace.normalise(slow));
+      Assert.assertNotNull(statistics);
+      Assert.assertNull(statistics.getExplain(), "The EXPLAIN must wait until the other statement is closed");
+
+      open.close();
+      Assert.assertNull(statistics.getExplain(), "The EXPLAIN must wait until the other statement is closed");
+
+      reading.close();
+      Assert.assertNotNull(statistics.getExplain());
+      Assert.assertFalse(statistics.getExplain().startsWith("EXPLAIN"), statistics.getExplain());
+
+      // closing a statement again must not count it twice
+      reading.close();
+      String other = slow + " WHERE a.X > 1";
+      stmt = con.createStatement();
+      stmt.executeQuery(other).close();
+      stmt.close();
+      Assert.assertNotNull(find(SqlTrace.normalise(other)).getExplain());
+    } finally {
+      con.close();
+      System.clearProperty(SqlTrace.FILE);
+      System.clearProperty(SqlTrace.EXPLAIN_MS);
+      SqlTrace.reset();
+    }
+  }
+
+  private SqlTrace.Statistics find(String statement) {
+    for (SqlTrace.Statistics s : SqlTrace.getSlowest(Integer.MAX_VALUE)) {
+      if (s.getStatement().equals(statement)) {
+        return s;
+      }
+    }
+    return null;
+  }
+
+}